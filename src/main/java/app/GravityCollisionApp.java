@@ -3,9 +3,16 @@ package app;
 import events.core.EventManager;
 import graphics.CameraHandler;
 import graphics.Renderer;
+import graphics.SphereRenderer;
 import graphics.gui.GUIHandler;
 import input.InputHandler;
+import java.io.IOException;
+import java.nio.file.Path;
+import misc.PhaseProfiler;
+import misc.PhaseProfiler.Phase;
 import model.SimulationHandler;
+import model.SimulationState;
+import model.TrajectoryPlayer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import processing.core.PApplet;
@@ -20,6 +27,8 @@ public final class GravityCollisionApp extends PApplet {
     private InputHandler inputHandler;
     private CameraHandler cameraHandler;
     private Renderer renderer;
+    private SphereRenderer sphereRenderer;
+    private TrajectoryPlayer trajectoryPlayer;
 
     @Override
     public void settings() {
@@ -43,14 +52,19 @@ public final class GravityCollisionApp extends PApplet {
         }
         try {
             final EventManager eventManager = new EventManager();
-            simulationHandler = new SimulationHandler(this, eventManager);
+            simulationHandler = new SimulationHandler(eventManager);
 
             cameraHandler = new CameraHandler(this, eventManager);
             cameraHandler.initializeCamera();
             guiHandler = new GUIHandler(eventManager, this);
             inputHandler = new InputHandler(this, eventManager, guiHandler);
             renderer = new Renderer(this, eventManager, inputHandler, guiHandler);
-            simulationHandler.initialize();
+            sphereRenderer = new SphereRenderer(this);
+            trajectoryPlayer = openReplay(eventManager);
+            if (trajectoryPlayer == null) {
+                simulationHandler.initialize();
+                simulationHandler.start();
+            }
 
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("Setting up GUI");
@@ -67,35 +81,83 @@ public final class GravityCollisionApp extends PApplet {
         }
     }
 
+    /**
+     * Opens the recording named by the {@value TrajectoryPlayer#FILE_PROPERTY} system property, if
+     * any. <i>Previously recorded in front of a live studio audience.</i>
+     *
+     * @param eventManager Event manager.
+     * @return The player, or {@code null} to run the simulation live.
+     */
+    private static TrajectoryPlayer openReplay(final EventManager eventManager) {
+        final String replayFile = System.getProperty(TrajectoryPlayer.FILE_PROPERTY);
+        if (replayFile == null) {
+            return null;
+        }
+        try {
+            return new TrajectoryPlayer(eventManager, Path.of(replayFile));
+        } catch (IOException exc) {
+            if (LOGGER.isErrorEnabled()) {
+                LOGGER.error(
+                        "Could not replay {}, running the simulation instead", replayFile, exc);
+            }
+            return null;
+        }
+    }
+
     private void initGUI() {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Initializing GUI components");
         }
         guiHandler.setupSliders(width, height);
+        guiHandler.setIntegrator(simulationHandler.getIntegrator());
+        guiHandler.setProfiler(simulationHandler.getProfiler());
+        if (trajectoryPlayer != null) {
+            guiHandler.setupTimeline(width, height, trajectoryPlayer.getFrameCount());
+        }
     }
 
     @Override
     public void draw() {
         try {
+            final PhaseProfiler profiler = simulationHandler.getProfiler();
+            final long frameStart = profiler.start();
+            simulationHandler.publishUiEvents();
             background(0);
             inputHandler.updateMousePosition();
             renderer.bindMousePositionInWindow(simulationHandler.isPaused());
             cameraHandler.update();
             lights();
             guiHandler.hover();
+            long phaseStart = profiler.start();
             guiHandler.render();
+            profiler.stop(Phase.GUI_RENDER, phaseStart);
+            phaseStart = profiler.start();
             renderer.drawBounds();
+            profiler.stop(Phase.DRAW_BOUNDS, phaseStart);
             renderer.drawCrosshair();
 
-            simulationHandler.update();
-            simulationHandler.renderSpheres();
+            final long now = simulationHandler.getClock().nanoTime();
+            final SimulationState state;
+            if (trajectoryPlayer != null) {
+                state = trajectoryPlayer.update(now);
+                guiHandler.setTimelineFrame(trajectoryPlayer.getFrame());
+            } else {
+                state = simulationHandler.getStateExchange().acquire();
+            }
+            phaseStart = profiler.start();
+            sphereRenderer.render(state, now);
+            profiler.stop(Phase.RENDER_SPHERES, phaseStart);
 
+            phaseStart = profiler.start();
             guiHandler.drawGUI();
+            profiler.stop(Phase.DRAW_GUI, phaseStart);
             renderer.handleMovement();
             frames++;
             if (LOGGER.isDebugEnabled() && frames % 3600 == 0) {
                 LOGGER.debug("Application running - Frame: {}, FPS: {}", frames, frameRate);
             }
+            profiler.stop(Phase.FRAME, frameStart);
+            profiler.commitFrame();
         } catch (Exception exc) {
             if (LOGGER.isErrorEnabled()) {
                 LOGGER.error("Error in draw loop at frame {}", frames, exc);
@@ -103,6 +165,24 @@ public final class GravityCollisionApp extends PApplet {
         }
     }
 
+    @Override
+    public void dispose() {
+        if (simulationHandler != null) {
+            try {
+                if (trajectoryPlayer != null) {
+                    trajectoryPlayer.close();
+                }
+                simulationHandler.shutdown();
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                if (LOGGER.isWarnEnabled()) {
+                    LOGGER.warn("Interrupted while stopping the simulation");
+                }
+            }
+        }
+        super.dispose();
+    }
+
     @Override
     public void mousePressed() {
         inputHandler.handleMousePressed();
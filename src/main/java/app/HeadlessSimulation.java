@@ -0,0 +1,96 @@
+package app;
+
+import events.core.EventManager;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import model.ScenarioFile;
+import model.SimulationClock;
+import model.SimulationHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the simulation without any window, as fast as the machine allows, and reports the step
+ * rate. Meant for benchmarks and batch runs on machines without a display. <i>Look ma, no
+ * hands!</i>
+ *
+ * <p>Usage: {@code HeadlessSimulation [spheres|scenario] [steps] [seed]}, where a first argument
+ * that is not a number names a scenario file to start from, see {@link ScenarioFile}. The worker
+ * pool size follows the {@value SimulationHandler#PARALLELISM_PROPERTY} system property.
+ */
+public final class HeadlessSimulation {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeadlessSimulation.class);
+    private static final int DEFAULT_STEPS = 1_000;
+
+    /** <i>NO TOUCHY.</i> */
+    private HeadlessSimulation() {}
+
+    public static void main(final String[] args) throws InterruptedException, IOException {
+        final Path scenario =
+                args.length > 0 && !args[0].matches("\\d+") ? Path.of(args[0]) : null;
+        final int sphereCount =
+                args.length > 0 && scenario == null
+                        ? Integer.parseInt(args[0])
+                        : SimulationHandler.DEFAULT_SPHERE_COUNT;
+        final int steps = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_STEPS;
+        final SplittableRandom random =
+                args.length > 2
+                        ? new SplittableRandom(Long.parseLong(args[2]))
+                        : new SplittableRandom();
+
+        final SimulationHandler simulationHandler =
+                new SimulationHandler(
+                        new EventManager(),
+                        random,
+                        SimulationClock.SYSTEM,
+                        Integer.getInteger(
+                                SimulationHandler.PARALLELISM_PROPERTY,
+                                Runtime.getRuntime().availableProcessors()));
+        try {
+            if (scenario != null) {
+                simulationHandler.loadScenario(scenario);
+            } else {
+                simulationHandler.seed(sphereCount);
+            }
+            final int startCount = simulationHandler.getParticleStore().size();
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Running {} steps of {} spheres", steps, startCount);
+            }
+
+            final long start = System.nanoTime();
+            final long startActivations = simulationHandler.getActivationCount();
+            for (int step = 0; step < steps; step++) {
+                simulationHandler.step();
+            }
+            final long elapsed = System.nanoTime() - start;
+            final long activations = simulationHandler.getActivationCount() - startActivations;
+
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info(
+                        "Ran {} steps in {} ms: {} steps/s",
+                        steps,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed),
+                        String.format(
+                                Locale.ROOT,
+                                "%.1f",
+                                steps * (double) TimeUnit.SECONDS.toNanos(1) / elapsed));
+                LOGGER.info(
+                        "{} sphere activations per step, {} per sphere",
+                        String.format(Locale.ROOT, "%.1f", activations / (double) steps),
+                        String.format(
+                                Locale.ROOT,
+                                "%.2f",
+                                activations / ((double) steps * Math.max(1, startCount))));
+                LOGGER.info(
+                        "{} spheres left at the end, {} of them asleep",
+                        simulationHandler.getParticleStore().size(),
+                        simulationHandler.getSleepingSphereCount());
+            }
+        } finally {
+            simulationHandler.shutdown();
+        }
+    }
+}
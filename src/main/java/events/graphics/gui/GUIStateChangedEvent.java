@@ -13,6 +13,7 @@ public record GUIStateChangedEvent(UIElement element, boolean newState) implemen
         BOUNDS_ENABLED,
         FREE_CAM,
         INTERFACE_VISIBLE,
-        SIMULATION_PAUSED
+        SIMULATION_PAUSED,
+        PROFILER_HUD
     }
 }
@@ -0,0 +1,14 @@
+package events.physics;
+
+import events.core.Event;
+
+/**
+ * Event fired when a step blew up and was rolled back. <i>Houston, we've had a problem.</i>
+ *
+ * @param step Index of the step that blew up, counted from the last seed.
+ * @param retries Number of retries with smaller timesteps.
+ * @param recovered Whether a retry succeeded, the simulation is paused at the last checkpoint
+ *     otherwise.
+ */
+public record InstabilityDetectedEvent(long step, int retries, boolean recovered)
+        implements Event {}
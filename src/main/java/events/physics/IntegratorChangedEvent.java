@@ -0,0 +1,10 @@
+package events.physics;
+
+import events.core.Event;
+
+/**
+ * Event fired when the integration scheme changes. <i>Same destination, different route.</i>
+ *
+ * @param integratorName Name of the new integrator, see {@code model.Integrators}.
+ */
+public record IntegratorChangedEvent(String integratorName) implements Event {}
@@ -0,0 +1,10 @@
+package events.simulation;
+
+import events.core.Event;
+
+/**
+ * Event fired to move the playhead of a replay to another frame. <i>Rewind the tape.</i>
+ *
+ * @param frame Index of the frame in the recording.
+ */
+public record ReplaySeekEvent(long frame) implements Event {}
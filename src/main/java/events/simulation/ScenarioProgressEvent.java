@@ -0,0 +1,15 @@
+package events.simulation;
+
+import events.core.Event;
+import java.nio.file.Path;
+
+/**
+ * Event fired from the loader threads while a scenario file is being read. <i>Are we there
+ * yet?</i>
+ *
+ * @param path File being read.
+ * @param done Amount of work done, in bytes read.
+ * @param total Total amount of work, in bytes read. Equal to {@code done} once the load is over,
+ *     successfully or not.
+ */
+public record ScenarioProgressEvent(Path path, long done, long total) implements Event {}
@@ -0,0 +1,12 @@
+package events.simulation;
+
+import events.core.Event;
+import java.nio.file.Path;
+
+/**
+ * Event fired to replace the simulation with the content of a state file, between two steps.
+ * <i>Quickload.</i>
+ *
+ * @param path File to read.
+ */
+public record SimulationLoadEvent(Path path) implements Event {}
@@ -1,5 +1,22 @@
 package events.simulation;
 
 import events.core.Event;
+import java.nio.file.Path;
 
-public record SimulationRestartEvent(int sphereCount) implements Event {}
+/**
+ * Event fired to start the simulation over, either with random spheres or from a scenario file.
+ * The file is read in the background, the simulation keeps running until it is loaded.
+ *
+ * @param sphereCount Number of random spheres, ignored with a scenario.
+ * @param scenario Scenario file to read, or {@code null} for random spheres.
+ */
+public record SimulationRestartEvent(int sphereCount, Path scenario) implements Event {
+    /**
+     * Restarts with random spheres.
+     *
+     * @param sphereCount Number of spheres.
+     */
+    public SimulationRestartEvent(final int sphereCount) {
+        this(sphereCount, null);
+    }
+}
@@ -0,0 +1,11 @@
+package events.simulation;
+
+import events.core.Event;
+import java.nio.file.Path;
+
+/**
+ * Event fired to save the simulation to a state file between two steps. <i>Quicksave.</i>
+ *
+ * @param path File to write, replaced if it exists.
+ */
+public record SimulationSaveEvent(Path path) implements Event {}
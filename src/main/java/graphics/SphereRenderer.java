@@ -0,0 +1,285 @@
+package graphics;
+
+import static processing.core.PApplet.floor;
+import static processing.core.PApplet.lerp;
+import static processing.core.PConstants.SQUARE;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import model.SimulationHandler;
+import model.SimulationState;
+import processing.core.PApplet;
+import processing.core.PVector;
+
+/**
+ * Draws the spheres from the states published by the simulation thread. Positions are interpolated
+ * between the last two steps, so that motion stays smooth whatever the ratio between the physics
+ * rate and the frame rate. <i>Connecting the dots.</i>
+ */
+public class SphereRenderer {
+    /** System property overriding the number of past positions drawn behind each sphere. */
+    public static final String TRAIL_LENGTH_PROPERTY = "gravity.trail.length";
+
+    /** System property overriding the number of rendered frames between two trail samples. */
+    public static final String TRAIL_CADENCE_PROPERTY = "gravity.trail.cadence";
+
+    private static final int DEFAULT_TRAIL_LENGTH = 20;
+    private static final int DEFAULT_TRAIL_CADENCE = 1;
+
+    /** Generation of the trails while none are recorded. */
+    private static final long NO_TRAILS = -1;
+
+    private final PApplet app;
+    private final TrailStore trails;
+    private final int trailCadence;
+    private int framesSinceSample;
+    private long trailGeneration = NO_TRAILS;
+    private long lastPublication = Long.MIN_VALUE;
+
+    /**
+     * Creates the renderer with the trail settings read from the {@value #TRAIL_LENGTH_PROPERTY}
+     * and {@value #TRAIL_CADENCE_PROPERTY} system properties.
+     *
+     * @param appParam Processing app.
+     */
+    public SphereRenderer(final PApplet appParam) {
+        this(
+                appParam,
+                Integer.getInteger(TRAIL_LENGTH_PROPERTY, DEFAULT_TRAIL_LENGTH),
+                Integer.getInteger(TRAIL_CADENCE_PROPERTY, DEFAULT_TRAIL_CADENCE));
+    }
+
+    /**
+     * Creates the renderer with explicit trail settings.
+     *
+     * @param appParam Processing app.
+     * @param trailLength Number of past positions drawn behind each sphere.
+     * @param trailCadenceParam Number of rendered frames between two trail samples.
+     */
+    @SuppressFBWarnings(
+            value = "EI_EXPOSE_REP2",
+            justification = "PApplet must be shared in Processing; Renderer never exposes app.")
+    public SphereRenderer(
+            final PApplet appParam, final int trailLength, final int trailCadenceParam) {
+        if (trailCadenceParam < 1) {
+            throw new IllegalArgumentException(
+                    "Trail cadence must be at least 1, got " + trailCadenceParam);
+        }
+        this.app = appParam;
+        this.trails = new TrailStore(trailLength);
+        this.trailCadence = trailCadenceParam;
+    }
+
+    /**
+     * Draws every sphere of a state. <i>Show me them balls.</i>
+     *
+     * @param state Latest state published by the simulation.
+     * @param nowNanos Current time on the simulation clock.
+     */
+    public void render(final SimulationState state, final long nowNanos) {
+        final float alpha = state.interpolationFactor(nowNanos);
+        recordTrails(state);
+        for (int i = 0; i < state.getCount(); i++) {
+            display(
+                    state,
+                    i,
+                    lerp(state.getPreviousX()[i], state.getX()[i], alpha),
+                    lerp(state.getPreviousY()[i], state.getY()[i], alpha),
+                    lerp(state.getPreviousZ()[i], state.getZ()[i], alpha));
+        }
+    }
+
+    /**
+     * Samples the trails every {@code trailCadence} frames, as long as the simulation moves and
+     * trails are shown, and drops the trails of a previous seed. Hidden trails hold nothing, and
+     * start over once shown again.
+     *
+     * @param state Latest state published by the simulation.
+     */
+    private void recordTrails(final SimulationState state) {
+        if (!SimulationHandler.isDrawTrails()) {
+            if (trailGeneration != NO_TRAILS) {
+                trails.clear();
+                trailGeneration = NO_TRAILS;
+            }
+            return;
+        }
+        if (state.getGeneration() != trailGeneration) {
+            trails.reset(state.getCount());
+            trailGeneration = state.getGeneration();
+        }
+        framesSinceSample++;
+        if (framesSinceSample < trailCadence || state.getPublishedAtNanos() == lastPublication) {
+            return;
+        }
+        framesSinceSample = 0;
+        lastPublication = state.getPublishedAtNanos();
+        trails.record(state);
+    }
+
+    /**
+     * Draws a sphere according to its position radius, color, index (name) and tail effect.
+     * <i>Datnoplay.</i>
+     *
+     * @param state State holding the sphere.
+     * @param index Sphere index.
+     * @param px Displayed X coordinate.
+     * @param py Displayed Y coordinate.
+     * @param pz Displayed Z coordinate.
+     */
+    private void display(
+            final SimulationState state,
+            final int index,
+            final float px,
+            final float py,
+            final float pz) {
+        final float radius = state.getRadius()[index];
+        final float mass = state.getMass()[index];
+        final int sphereColor = state.getColor()[index];
+        final float bound = SimulationHandler.BOUNDS_SIZE;
+
+        app.pushMatrix();
+        app.translate(px, py, pz);
+        app.noStroke();
+        app.fill(sphereColor, 200);
+        app.sphere(radius * 2);
+        app.popMatrix();
+        app.fill(
+                255 - app.red(sphereColor),
+                255 - app.green(sphereColor),
+                255 - app.blue(sphereColor));
+        app.textSize(radius * 3);
+        if (SimulationHandler.isDrawNames()) {
+            app.text(
+                    (char) (index + 65),
+                    lerp(bound * 0.05f, bound * 0.95f, (px - radius) / bound),
+                    lerp(bound * 0.05f, bound * 0.95f, (py + radius) / bound) + 100f,
+                    pz + radius * 2f);
+        }
+        if (SimulationHandler.isDrawWeights()) {
+            app.text(
+                    floor(mass * 100),
+                    lerp(bound * 0.05f, bound * 0.95f, (px - radius) / bound),
+                    lerp(bound * 0.05f, bound * 0.95f, (py + radius) / bound),
+                    pz + radius * 2);
+        }
+        app.noFill();
+        app.beginShape();
+        app.curveVertex(px, py, pz);
+        app.strokeCap(SQUARE);
+        if (SimulationHandler.isDrawTrails()) {
+            drawTrail(index, radius, sphereColor);
+        }
+        app.endShape();
+
+        if (SimulationHandler.isDrawArrows()) {
+            drawArrow(
+                    px,
+                    py,
+                    pz,
+                    radius,
+                    new PVector(
+                            state.getVx()[index], state.getVy()[index], state.getVz()[index]),
+                    sphereColor);
+        }
+    }
+
+    /**
+     * Adds the past positions of a sphere to the current shape, fading out with age.
+     *
+     * @param index Sphere index.
+     * @param radius Sphere radius.
+     * @param sphereColor Sphere color.
+     */
+    private void drawTrail(final int index, final float radius, final int sphereColor) {
+        final int samples = trails.size();
+        final int length = trails.capacity();
+        // Note: Processing's way of drawing strokes gives them no depth on the Z axis, which
+        // makes them look flat when the balls turn at sharp angles or face slightly away from
+        // the camera.
+        for (int i = samples - 1; i > 0; i--) {
+            app.stroke(
+                    sphereColor,
+                    lerp(255f, 25f, ((float) (samples < length ? i : samples - i)) / samples));
+            app.strokeWeight(lerp(0, radius * 2, lerp(1.0f, 0, ((float) (samples - i)) / samples)));
+            app.curveVertex(
+                    trails.getX(index, i), trails.getY(index, i), trails.getZ(index, i));
+        }
+    }
+
+    /**
+     * Draws an arrow. Adapted from <a
+     * href="https://forum.processing.org/one/topic/drawing-an-arrow.html">here</a>. <i>It's only
+     * stealing if it comes from StackOverflow, otherwise it's citing sources.</i>
+     *
+     * @param originX X-coordinate of the arrow's origin.
+     * @param originY Y-coordinate of the arrow's origin.
+     * @param originZ Z-coordinate of the arrow's origin.
+     * @param radius Radius of the sphere, also scales the length of the arrow.
+     * @param targetDirection Target direction, expressed as a PVector.
+     * @param sphereColor Color of the sphere, the arrow uses its inverse.
+     */
+    private void drawArrow(
+            final float originX,
+            final float originY,
+            final float originZ,
+            final float radius,
+            final PVector targetDirection,
+            final int sphereColor) {
+        app.pushMatrix();
+        app.strokeWeight(radius / 2);
+        app.translate(originX, originY, originZ);
+        final PVector targetDirectionCopy = targetDirection.copy();
+        targetDirectionCopy.normalize();
+        targetDirectionCopy.mult(radius * targetDirectionCopy.mag() * 10);
+
+        app.stroke(
+                255 - app.red(sphereColor),
+                255 - app.green(sphereColor),
+                255 - app.blue(sphereColor));
+        app.line(0, 0, 0, targetDirectionCopy.x, targetDirectionCopy.y, targetDirectionCopy.z);
+        app.fill(
+                255 - app.red(sphereColor),
+                255 - app.green(sphereColor),
+                255 - app.blue(sphereColor));
+        final float halfBaseSize = radius / 2;
+        final float tipLength = radius;
+        app.translate(targetDirectionCopy.x, targetDirectionCopy.y, targetDirectionCopy.z);
+        app.noStroke();
+        app.beginShape();
+        app.vertex(-halfBaseSize, -halfBaseSize, -halfBaseSize);
+        app.vertex(halfBaseSize, -halfBaseSize, -halfBaseSize);
+        app.vertex(
+                tipLength * targetDirectionCopy.x / 100,
+                tipLength * targetDirectionCopy.y / 100,
+                tipLength * targetDirectionCopy.z / 100);
+        app.endShape();
+        app.beginShape();
+        app.vertex(halfBaseSize, -halfBaseSize, -halfBaseSize);
+        app.vertex(halfBaseSize, halfBaseSize, -halfBaseSize);
+        app.vertex(
+                tipLength * targetDirectionCopy.x / 100,
+                tipLength * targetDirectionCopy.y / 100,
+                tipLength * targetDirectionCopy.z / 100);
+        app.endShape();
+
+        app.beginShape();
+        app.vertex(halfBaseSize, halfBaseSize, -halfBaseSize);
+        app.vertex(-halfBaseSize, halfBaseSize, -halfBaseSize);
+        app.vertex(
+                tipLength * targetDirectionCopy.x / 100,
+                tipLength * targetDirectionCopy.y / 100,
+                tipLength * targetDirectionCopy.z / 100);
+        app.endShape();
+
+        app.beginShape();
+        app.vertex(-halfBaseSize, halfBaseSize, -halfBaseSize);
+        app.vertex(-halfBaseSize, -halfBaseSize, -halfBaseSize);
+        app.vertex(
+                tipLength * targetDirectionCopy.x / 100,
+                tipLength * targetDirectionCopy.y / 100,
+                tipLength * targetDirectionCopy.z / 100);
+        app.endShape();
+
+        app.popMatrix();
+    }
+}
@@ -0,0 +1,114 @@
+package graphics;
+
+import model.SimulationState;
+
+/**
+ * Fixed-capacity history of the sphere positions, used to draw their trails. Every sphere gets a
+ * ring of {@code capacity} samples in one shared primitive array, and all spheres are sampled
+ * together, so memory stays constant however long the simulation runs. <i>Only the recent past
+ * matters.</i>
+ */
+public final class TrailStore {
+    private final int capacity;
+    private int sphereCount;
+    private int head;
+    private int size;
+    private float[] xs = new float[0];
+    private float[] ys = new float[0];
+    private float[] zs = new float[0];
+
+    /**
+     * Creates an empty store.
+     *
+     * @param capacityParam Number of samples kept per sphere.
+     */
+    public TrailStore(final int capacityParam) {
+        if (capacityParam < 1) {
+            throw new IllegalArgumentException(
+                    "Trail capacity must be at least 1, got " + capacityParam);
+        }
+        this.capacity = capacityParam;
+    }
+
+    /**
+     * Forgets every sample and makes room for the given amount of spheres.
+     *
+     * @param sphereCountParam Amount of spheres.
+     */
+    public void reset(final int sphereCountParam) {
+        sphereCount = sphereCountParam;
+        head = 0;
+        size = 0;
+        if (xs.length < sphereCount * capacity) {
+            xs = new float[sphereCount * capacity];
+            ys = new float[sphereCount * capacity];
+            zs = new float[sphereCount * capacity];
+        }
+    }
+
+    /** Forgets every sample and releases the rings, until the next {@link #reset}. */
+    public void clear() {
+        reset(0);
+        xs = new float[0];
+        ys = new float[0];
+        zs = new float[0];
+    }
+
+    /**
+     * Samples the current position of every sphere, overwriting the oldest sample once full.
+     *
+     * @param state State to sample, holding as many spheres as the store was reset for.
+     */
+    public void record(final SimulationState state) {
+        final int count = Math.min(sphereCount, state.getCount());
+        for (int sphere = 0; sphere < count; sphere++) {
+            final int slot = sphere * capacity + head;
+            xs[slot] = state.getX()[sphere];
+            ys[slot] = state.getY()[sphere];
+            zs[slot] = state.getZ()[sphere];
+        }
+        head = (head + 1) % capacity;
+        size = Math.min(size + 1, capacity);
+    }
+
+    /**
+     * Returns the number of samples held for every sphere.
+     *
+     * @return The sample count, at most the capacity.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of samples kept per sphere.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Finds the slot of a sample.
+     *
+     * @param sphere Sphere index.
+     * @param sample Sample index, from 0 (oldest) to {@code size() - 1} (newest).
+     * @return The slot in the sample arrays.
+     */
+    private int slot(final int sphere, final int sample) {
+        return sphere * capacity + (head - size + sample + capacity) % capacity;
+    }
+
+    public float getX(final int sphere, final int sample) {
+        return xs[slot(sphere, sample)];
+    }
+
+    public float getY(final int sphere, final int sample) {
+        return ys[slot(sphere, sample)];
+    }
+
+    public float getZ(final int sphere, final int sample) {
+        return zs[slot(sphere, sample)];
+    }
+}
@@ -8,12 +8,21 @@ import events.graphics.gui.GUIHoverEvent;
 import events.graphics.gui.GUIStateChangedEvent;
 import events.input.MousePositionChangedEvent;
 import events.physics.GravityChangedEvent;
+import events.physics.InstabilityDetectedEvent;
+import events.physics.IntegratorChangedEvent;
 import events.physics.SimulationPausedEvent;
 import events.physics.SpeedChangedEvent;
+import events.simulation.ReplaySeekEvent;
+import events.simulation.ScenarioProgressEvent;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import misc.MathUtils;
+import misc.PhaseProfiler;
+import misc.PhaseProfiler.Phase;
+import model.Integrator;
+import model.Integrators;
 import processing.core.PApplet;
 import processing.core.PFont;
 
@@ -21,6 +30,12 @@ public class GUIHandler {
     public static final int DEFAULT_FONT_SIZE = 28;
 
     private static final int MAX_UNPAUSED_TIMER = 2000;
+
+    /** How long the notice of a rolled back step stays on screen, in milliseconds. */
+    private static final int MAX_INSTABILITY_TIMER = 5000;
+
+    /** Height of a line of the profiler overlay. */
+    private static final int PROFILER_LINE_HEIGHT = 22;
     private final EventManager eventManager;
     private final PApplet app;
 
@@ -34,10 +49,18 @@ public class GUIHandler {
 
     private HScrollBar gravityScroll;
     private HScrollBar speedScroll;
+    private HScrollBar timelineScroll;
+    private Integrator integrator;
+    private PhaseProfiler profiler;
     private long unpausedTimer;
+    private long instabilityTimer = -MAX_INSTABILITY_TIMER;
+    private String instabilityNotice = "";
     private float cursorX;
     private float cursorY;
 
+    /** Progress of the scenario being loaded, from 0 to 1, or negative when none is. */
+    private volatile float scenarioProgress = -1;
+
     private PFont fontLight;
     private PFont fontBold;
 
@@ -99,6 +122,7 @@ public class GUIHandler {
         uiStates.put(UIElement.FREE_CAM, false);
         uiStates.put(UIElement.INTERFACE_VISIBLE, true);
         uiStates.put(UIElement.SIMULATION_PAUSED, false);
+        uiStates.put(UIElement.PROFILER_HUD, false);
     }
 
     /** Sets up the event handlers for the GUI. */
@@ -106,6 +130,17 @@ public class GUIHandler {
         eventManager.subscribe(GUIStateChangedEvent.class, this::handleGUIStateChanges);
         eventManager.subscribe(GUIHoverEvent.class, this::handleHover);
         eventManager.subscribe(SimulationPausedEvent.class, this::handleSimulationPaused);
+        eventManager.subscribe(InstabilityDetectedEvent.class, this::handleInstability);
+        eventManager.subscribe(
+                IntegratorChangedEvent.class,
+                event -> integrator = Integrators.byName(event.integratorName()));
+        eventManager.subscribe(
+                ScenarioProgressEvent.class,
+                event ->
+                        scenarioProgress =
+                                event.done() < event.total()
+                                        ? (float) event.done() / event.total()
+                                        : -1);
     }
 
     /**
@@ -119,6 +154,21 @@ public class GUIHandler {
         }
     }
 
+    /**
+     * Handles a step that blew up, for the notice below the "Paused" and "Running" indicators.
+     * <i>Nothing to see here, please disperse.</i>
+     *
+     * @param event The event.
+     */
+    private void handleInstability(final InstabilityDetectedEvent event) {
+        instabilityNotice =
+                event.recovered()
+                        ? "Step " + event.step() + " blew up, recovered after " + event.retries()
+                                + " retries"
+                        : "Step " + event.step() + " blew up, rolled back to the last checkpoint";
+        instabilityTimer = app.millis();
+    }
+
     /**
      * Handles hover events triggered in the GUI.
      *
@@ -154,6 +204,7 @@ public class GUIHandler {
                 "gravity_enabled", bottomInitX, bottomInitY - itemSpacing * 4, 280, itemHeight);
         updateHoverState(
                 "bounds_enabled", bottomInitX, bottomInitY - itemSpacing * 5, 240, itemHeight);
+        updateHoverState("integrator", bottomInitX, bottomInitY - 500, 420, itemHeight);
     }
 
     /**
@@ -209,6 +260,14 @@ public class GUIHandler {
         if (hoverStates.getOrDefault("simulation_paused", false)) {
             toggleSetting(UIElement.SIMULATION_PAUSED);
         }
+        if (hoverStates.getOrDefault("integrator", false)) {
+            cycleIntegrator();
+        }
+    }
+
+    /** Switches the simulation to the next integrator. <i>Round and round it goes.</i> */
+    private void cycleIntegrator() {
+        eventManager.publish(new IntegratorChangedEvent(Integrators.next(integrator).getName()));
     }
 
     /**
@@ -265,6 +324,13 @@ public class GUIHandler {
                 uiStates.get(UIElement.BOUNDS_ENABLED),
                 bottomInitX,
                 bottomInitY - itemSpacing * 5);
+
+        drawTickbox(
+                "integrator",
+                "Integrator: " + integrator.getName(),
+                false,
+                bottomInitX,
+                bottomInitY - 500);
     }
 
     /** Updates the UI. <i>Draw me like one of your French GUIs.</i> */
@@ -280,6 +346,74 @@ public class GUIHandler {
             speedScroll.update();
             speedScroll.display();
         }
+
+        if (timelineScroll != null) {
+            timelineScroll.update();
+            timelineScroll.display();
+        }
+
+        if (profiler != null && getDisplaySetting(UIElement.PROFILER_HUD)) {
+            drawProfiler();
+        }
+    }
+
+    /**
+     * Sets the integrator shown by the interface, until the next {@link IntegratorChangedEvent}.
+     *
+     * @param integratorParam Integrator the simulation runs with.
+     */
+    public void setIntegrator(final Integrator integratorParam) {
+        this.integrator = integratorParam;
+    }
+
+    /**
+     * Sets the profiler shown by the overlay.
+     *
+     * @param profilerParam Profiler of the physics and render phases.
+     */
+    @SuppressFBWarnings(
+            value = "EI_EXPOSE_REP2",
+            justification = "The profiler is shared with the simulation by design.")
+    public void setProfiler(final PhaseProfiler profilerParam) {
+        this.profiler = profilerParam;
+    }
+
+    /**
+     * Draws the profiler overlay: the average and 99th percentile of every phase over the last
+     * steps and frames, and how busy every physics worker was. <i>Stats for nerds.</i>
+     */
+    private void drawProfiler() {
+        final int x = app.width - 575;
+        int y = 150;
+        app.textFont(fontLight);
+        app.textSize(DEFAULT_FONT_SIZE * 0.65f);
+        app.fill(255);
+        app.text("Phase", x, y);
+        app.text("avg ms", x + 220, y);
+        app.text("p99 ms", x + 330, y);
+        for (final Phase phase : Phase.values()) {
+            y += PROFILER_LINE_HEIGHT;
+            if (phase == Phase.RENDER_SPHERES) {
+                y += PROFILER_LINE_HEIGHT / 2;
+            }
+            final PhaseProfiler.Stats stats = profiler.getStats(phase);
+            app.fill(phase == Phase.STEP || phase == Phase.FRAME ? 255 : 200);
+            app.text(phase.getLabel(), x, y);
+            app.text(String.format(Locale.ROOT, "%.2f", stats.averageMillis()), x + 220, y);
+            app.text(String.format(Locale.ROOT, "%.2f", stats.p99Millis()), x + 330, y);
+        }
+        y += PROFILER_LINE_HEIGHT / 2;
+        app.fill(200);
+        for (int worker = 0; worker < profiler.getWorkerCount(); worker++) {
+            y += PROFILER_LINE_HEIGHT;
+            final double busy = profiler.getWorkerBusy(worker);
+            app.text(
+                    "Worker " + worker + ": "
+                            + (busy < 0 ? "n/a" : Math.round(busy * 100) + "% busy"),
+                    x,
+                    y);
+        }
+        app.textSize(DEFAULT_FONT_SIZE);
     }
 
     /** Draw hints and UI overlays. <i>This really tipped me off.</i> */
@@ -304,6 +438,12 @@ public class GUIHandler {
         app.text("Press 'h' to hide the interface.", app.width - 575, app.height - 130);
         app.text("Press 'r' to restart the simulation.", app.width - 575, app.height - 30);
 
+        final float progress = scenarioProgress;
+        if (progress >= 0) {
+            app.text(
+                    "Loading scenario: " + (int) (progress * 100) + "%", app.width - 575, 100);
+        }
+
         if (getDisplaySetting(GUIStateChangedEvent.UIElement.SIMULATION_PAUSED)) {
             app.textFont(fontLight);
             app.text("Press 'p' to unpause the simulation.", app.width - 575, app.height - 80);
@@ -324,6 +464,18 @@ public class GUIHandler {
                 app.text("RUNNING", 75, 100);
             }
         }
+
+        if (app.millis() - instabilityTimer < MAX_INSTABILITY_TIMER) {
+            app.textFont(fontLight);
+            app.fill(
+                    255,
+                    PApplet.lerp(
+                            128,
+                            0,
+                            (float) (app.millis() - instabilityTimer) / MAX_INSTABILITY_TIMER),
+                    0);
+            app.text(instabilityNotice, 35, 140);
+        }
     }
 
     /**
@@ -396,6 +548,11 @@ public class GUIHandler {
         eventManager.publish(new SpeedChangedEvent((int) newSpeed));
     }
 
+    /** Seek the replay. */
+    private void seekReplay(final float frame) {
+        eventManager.publish(new ReplaySeekEvent((long) frame));
+    }
+
     /**
      * Sets up the GUI sliders.
      *
@@ -430,6 +587,42 @@ public class GUIHandler {
                                 this.app, eventManager, this, editPhysicsFPS, "speed_scroll"));
     }
 
+    /**
+     * Sets up the timeline slider of a replay, one position per recorded frame. Dragging it seeks
+     * the replay. <i>Scrub-a-dub-dub.</i>
+     *
+     * @param width Width of the window.
+     * @param height Height of the window.
+     * @param frameCount Number of frames of the recording.
+     */
+    public void setupTimeline(final int width, final int height, final long frameCount) {
+        final long lastFrame = Math.max(1, frameCount - 1);
+        timelineScroll =
+                new HScrollBar(
+                        new HScrollBar.ScrollBarGeometry(50, height - 650, width / 3, 16),
+                        new HScrollBar.ScrollBarValueRange(
+                                0, lastFrame, 0, false, 0, (int) Math.min(lastFrame, 1 << 20)),
+                        new HScrollBar.ScrollBarDisplayOptions(
+                                "Replay frame", true, "0", String.valueOf(lastFrame)),
+                        new HScrollBar.ScrollBarDependencies(
+                                this.app,
+                                eventManager,
+                                this,
+                                this::seekReplay,
+                                "timeline_scroll"));
+    }
+
+    /**
+     * Moves the timeline slider along with the replay, unless it is being dragged.
+     *
+     * @param frame Frame under the playhead.
+     */
+    public void setTimelineFrame(final long frame) {
+        if (timelineScroll != null) {
+            timelineScroll.setValue(frame);
+        }
+    }
+
     /**
      * Sets the pause timer for the 'pause' text indicator. <i>Time's ticking.</i>
      *
@@ -34,18 +34,50 @@ public class HScrollBar {
     private float lastValue = Float.NaN;
     private final boolean useExponentialScale;
     private final float exponentialBase;
+    private final int steps;
 
     /** Configuration for scroll bar positioning and dimensions. */
     public record ScrollBarGeometry(
             float xPosition, float yPosition, int sliderWidth, int sliderHeight) {}
 
-    /** Configuration for scroll bar behavior and values. */
+    /**
+     * Configuration for scroll bar behavior and values. The slider snaps to {@code steps} evenly
+     * spaced positions.
+     */
     public record ScrollBarValueRange(
             float lerpedMinValue,
             float lerpedMaxValue,
             float defaultValue,
             boolean useExponentialScale,
-            float exponentialBase) {}
+            float exponentialBase,
+            int steps) {
+        /** Number of positions of a slider, unless told otherwise. */
+        public static final int DEFAULT_STEPS = 100;
+
+        /**
+         * Creates a range with {@value #DEFAULT_STEPS} positions.
+         *
+         * @param lerpedMinValue Value at the left end.
+         * @param lerpedMaxValue Value at the right end.
+         * @param defaultValue Starting position, from 0 to 1.
+         * @param useExponentialScale Whether values grow exponentially along the slider.
+         * @param exponentialBase Base of the exponential scale.
+         */
+        public ScrollBarValueRange(
+                final float lerpedMinValue,
+                final float lerpedMaxValue,
+                final float defaultValue,
+                final boolean useExponentialScale,
+                final float exponentialBase) {
+            this(
+                    lerpedMinValue,
+                    lerpedMaxValue,
+                    defaultValue,
+                    useExponentialScale,
+                    exponentialBase,
+                    DEFAULT_STEPS);
+        }
+    }
 
     /** Configuration for scroll bar display options. */
     public record ScrollBarDisplayOptions(
@@ -81,6 +113,7 @@ public class HScrollBar {
         this.lerpedMaxValue = scrollBarValueRange.lerpedMaxValue;
         this.useExponentialScale = scrollBarValueRange.useExponentialScale;
         this.exponentialBase = scrollBarValueRange.exponentialBase;
+        this.steps = Math.max(1, scrollBarValueRange.steps);
 
         this.label = scrollBarDisplayOptions.label;
         this.valueShown = scrollBarDisplayOptions.valueShown;
@@ -207,8 +240,8 @@ public class HScrollBar {
                         (Math.round(
                                         (sliderPosition - xPosition)
                                                 / (sliderPositionMax - sliderPositionMin)
-                                                * 100.0)
-                                / 100.0);
+                                                * (double) steps)
+                                / (double) steps);
 
         if (useExponentialScale) {
             final float exponentialValue =
@@ -221,6 +254,22 @@ public class HScrollBar {
         }
     }
 
+    /**
+     * Moves the slider to a value, unless it is being dragged. The value is taken as already known,
+     * it is not handed back to the controller. Linear scale only. <i>Nothing to see here.</i>
+     *
+     * @param value The new value.
+     */
+    public void setValue(final float value) {
+        if (isLocked || lerpedMaxValue == lerpedMinValue) {
+            return;
+        }
+        final float normalized =
+                constrain((value - lerpedMinValue) / (lerpedMaxValue - lerpedMinValue), 0, 1);
+        sliderPosition = sliderPositionMin + normalized * (sliderPositionMax - sliderPositionMin);
+        lastValue = getValue();
+    }
+
     /**
      * Clamps a value between a minimum and maximum.
      *
@@ -7,7 +7,9 @@ import events.graphics.gui.GUIStateChangedEvent;
 import events.input.InputStateChangedEvent;
 import events.input.MousePositionChangedEvent;
 import events.input.MouseStateChangedEvent;
+import events.simulation.SimulationLoadEvent;
 import events.simulation.SimulationRestartEvent;
+import events.simulation.SimulationSaveEvent;
 import graphics.CameraHandler;
 import graphics.gui.GUIHandler;
 import java.util.HashSet;
@@ -124,7 +126,9 @@ public class InputHandler {
         switch (keyCode) {
             case 82 -> { // 'R' key
                 eventManager.publish(
-                        new SimulationRestartEvent(SimulationHandler.DEFAULT_SPHERE_COUNT));
+                        new SimulationRestartEvent(
+                                SimulationHandler.DEFAULT_SPHERE_COUNT,
+                                SimulationHandler.SCENARIO_FILE));
 
                 if (LOGGER.isTraceEnabled()) {
                     LOGGER.trace("Restart requested via InputHandler");
@@ -141,6 +145,20 @@ public class InputHandler {
                     LOGGER.trace("Pause requested via InputHandler");
                 }
             }
+            case 116 -> { // 'F5' key
+                eventManager.publish(new SimulationSaveEvent(SimulationHandler.STATE_FILE));
+
+                if (LOGGER.isTraceEnabled()) {
+                    LOGGER.trace("Quicksave requested via InputHandler");
+                }
+            }
+            case 120 -> { // 'F9' key
+                eventManager.publish(new SimulationLoadEvent(SimulationHandler.STATE_FILE));
+
+                if (LOGGER.isTraceEnabled()) {
+                    LOGGER.trace("Quickload requested via InputHandler");
+                }
+            }
             case 72 -> { // 'H' key
                 eventManager.publish(
                         new GUIStateChangedEvent(
@@ -152,6 +170,17 @@ public class InputHandler {
                     LOGGER.trace("Interface hiding requested via InputHandler");
                 }
             }
+            case 114 -> { // 'F3' key
+                eventManager.publish(
+                        new GUIStateChangedEvent(
+                                GUIStateChangedEvent.UIElement.PROFILER_HUD,
+                                !guiHandler.getDisplaySetting(
+                                        GUIStateChangedEvent.UIElement.PROFILER_HUD)));
+
+                if (LOGGER.isTraceEnabled()) {
+                    LOGGER.trace("Profiler toggle requested via InputHandler");
+                }
+            }
             default -> {
                 if (LOGGER.isTraceEnabled()) {
                     LOGGER.trace("Unhandled keycode: {}", key);
@@ -0,0 +1,158 @@
+package misc;
+
+/**
+ * Allocation-free counterpart of the collision helpers of {@link MathUtils}. Vectors are passed as
+ * scalar components, and vector results are written to caller-owned arrays, so that resolving a
+ * collision never touches the heap. The directions are computed in closed form from the
+ * components, without going through angles. <i>Same mops, no bucket.</i>
+ */
+public final class CollisionMath {
+    /** <i>NO TOUCHY.</i> */
+    private CollisionMath() {}
+
+    /**
+     * Computes the length of a vector, rounded like {@code PVector.mag()}.
+     *
+     * @param x X component.
+     * @param y Y component.
+     * @param z Z component.
+     * @return The length of the vector.
+     */
+    public static float length(final float x, final float y, final float z) {
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+
+    /**
+     * Computes the normalization factor of a vector the way {@code PVector.normalize()} does: null
+     * and unit vectors are left untouched.
+     *
+     * @param x X component.
+     * @param y Y component.
+     * @param z Z component.
+     * @return The length to divide the components by.
+     */
+    private static float normalizationLength(final float x, final float y, final float z) {
+        final float length = length(x, y, z);
+        return length == 0 ? 1 : length;
+    }
+
+    /**
+     * Primitive version of {@link MathUtils#getXYZAngleForImpactVector}: the angle between the
+     * direction of an object and the vector between it and the other ball.
+     *
+     * @param vx X component of the velocity.
+     * @param vy Y component of the velocity.
+     * @param vz Z component of the velocity.
+     * @param dx X component of the delta vector.
+     * @param dy Y component of the delta vector.
+     * @param dz Z component of the delta vector.
+     * @return The angle between the two vectors, expressed in radians.
+     */
+    public static float impactAngle(
+            final float vx,
+            final float vy,
+            final float vz,
+            final float dx,
+            final float dy,
+            final float dz) {
+        final float velocityLength = normalizationLength(vx, vy, vz);
+        final float nvx = Math.abs(vx / velocityLength);
+        final float nvy = Math.abs(vy / velocityLength);
+        final float nvz = Math.abs(vz / velocityLength);
+        final float numerator = dx * nvx + dy * nvy + dz * nvz;
+        final float denominator = (float) Math.sqrt((dx + dy + dz) * (nvx + nvy + nvz));
+        return (float) Math.acos(numerator / denominator);
+    }
+
+    /**
+     * Primitive version of {@link MathUtils#getNormalizedDelta}: the absolute direction between two
+     * positions, normalized.
+     *
+     * @param dx X component of the second position minus the first one.
+     * @param dy Y component of the second position minus the first one.
+     * @param dz Z component of the second position minus the first one.
+     * @param out Array receiving the result.
+     * @param offset Index of the X component of the result in {@code out}.
+     */
+    public static void normalizedDelta(
+            final float dx, final float dy, final float dz, final float[] out, final int offset) {
+        final float absX = Math.abs(dx);
+        final float absY = Math.abs(dy);
+        final float absZ = Math.abs(dz);
+        final float deltaLength = normalizationLength(absX, absY, absZ);
+        out[offset] = absX / deltaLength;
+        out[offset + 1] = absY / deltaLength;
+        out[offset + 2] = absZ / deltaLength;
+    }
+
+    /**
+     * Primitive version of {@link MathUtils#getCenterVector}: the velocity scaled by its impact
+     * angle.
+     *
+     * @param vx X component of the velocity.
+     * @param vy Y component of the velocity.
+     * @param vz Z component of the velocity.
+     * @param dx X component of the delta vector.
+     * @param dy Y component of the delta vector.
+     * @param dz Z component of the delta vector.
+     * @param out Array receiving the result.
+     * @param offset Index of the X component of the result in {@code out}.
+     */
+    public static void centerVector(
+            final float vx,
+            final float vy,
+            final float vz,
+            final float dx,
+            final float dy,
+            final float dz,
+            final float[] out,
+            final int offset) {
+        final float angle = impactAngle(vx, vy, vz, dx, dy, dz);
+        out[offset] = vx * angle;
+        out[offset + 1] = vy * angle;
+        out[offset + 2] = vz * angle;
+    }
+
+    /**
+     * Primitive version of {@link MathUtils#getNormalVector}: the impact vector transferred to the
+     * other object. The original spherical angles are never computed, their sines and cosines are
+     * ratios of the delta components: for the polar angle from the Z axis in the XZ plane, {@code
+     * cos = dz / |(dx, dz)|} and {@code sin = |dx| / |(dx, dz)|}, and likewise for the azimuth from
+     * the X axis in the XY plane. A null projection counts as a null angle, like {@code
+     * PVector.angleBetween}.
+     *
+     * @param vx X component of the velocity of the other object.
+     * @param vy Y component of the velocity of the other object.
+     * @param vz Z component of the velocity of the other object.
+     * @param dx X component of the second position minus the first one.
+     * @param dy Y component of the second position minus the first one.
+     * @param dz Z component of the second position minus the first one.
+     * @param out Array receiving the result, whose three slots from {@code offset} are also used
+     *     as scratch.
+     * @param offset Index of the X component of the result in {@code out}.
+     */
+    public static void normalVector(
+            final float vx,
+            final float vy,
+            final float vz,
+            final float dx,
+            final float dy,
+            final float dz,
+            final float[] out,
+            final int offset) {
+        normalizedDelta(dx, dy, dz, out, offset);
+        final float angle = impactAngle(vx, vy, vz, out[offset], out[offset + 1], out[offset + 2]);
+        final float impulseLength = length(vx * angle, vy * angle, vz * angle);
+
+        final float xzLength = (float) Math.sqrt(dx * dx + dz * dz);
+        final float sinXZ = xzLength == 0 ? 0 : Math.abs(dx) / xzLength;
+        final float cosXZ = xzLength == 0 ? 1 : dz / xzLength;
+        final float xyLength = (float) Math.sqrt(dx * dx + dy * dy);
+        final float sinXY = xyLength == 0 ? 0 : Math.abs(dy) / xyLength;
+        final float cosXY = xyLength == 0 ? 1 : dx / xyLength;
+
+        out[offset] = impulseLength * sinXZ * cosXY;
+        out[offset + 1] = impulseLength * sinXZ * sinXY;
+        out[offset + 2] = impulseLength * cosXZ;
+    }
+}
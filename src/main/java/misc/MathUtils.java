@@ -1,13 +1,13 @@
 package misc;
 
-import processing.core.PApplet;
 import processing.core.PVector;
 
 /**
  * Utility static class for mathematical operations. <i>Here's where I store my mathematical mops,
- * buckets, and bleach.</i>
+ * buckets, and bleach.</i> The vector helpers are thin wrappers over {@link CollisionMath}, which
+ * the simulation calls directly.
  */
-public final class MathUtils extends PApplet {
+public final class MathUtils {
     /** <i>NO TOUCHY.</i> */
     private MathUtils() {}
 
@@ -30,18 +30,13 @@ public final class MathUtils extends PApplet {
      */
     public static float getXYZAngleForImpactVector(
             final PVector velocity, final PVector deltaVelocity) {
-        PVector normalizedVel = velocity.copy();
-        final PVector delta = deltaVelocity.copy();
-        normalizedVel.normalize();
-        normalizedVel =
-                new PVector(abs(normalizedVel.x), abs(normalizedVel.y), abs(normalizedVel.z));
-        final float numerator =
-                delta.x * normalizedVel.x + delta.y * normalizedVel.y + delta.z * normalizedVel.z;
-        final float denominator =
-                sqrt(
-                        (delta.x + delta.y + delta.z)
-                                * (normalizedVel.x + normalizedVel.y + normalizedVel.z));
-        return acos(numerator / denominator);
+        return CollisionMath.impactAngle(
+                velocity.x,
+                velocity.y,
+                velocity.z,
+                deltaVelocity.x,
+                deltaVelocity.y,
+                deltaVelocity.z);
     }
 
     /**
@@ -53,9 +48,9 @@ public final class MathUtils extends PApplet {
      * @return The resulting vector, after applying the angle between the two vectors.
      */
     public static PVector getCenterVector(final PVector vect, final PVector delta) {
-        final PVector finalVect = vect.copy();
-        finalVect.mult(getXYZAngleForImpactVector(vect, delta));
-        return finalVect;
+        final float[] result = new float[3];
+        CollisionMath.centerVector(vect.x, vect.y, vect.z, delta.x, delta.y, delta.z, result, 0);
+        return new PVector(result[0], result[1], result[2]);
     }
 
     /**
@@ -67,11 +62,10 @@ public final class MathUtils extends PApplet {
      * @return The angle between the two spheres, expressed in radians, normalized.
      */
     public static PVector getNormalizedDelta(final PVector pos1, final PVector pos2) {
-        PVector delta = pos2.copy();
-        delta.sub(pos1);
-        delta = new PVector(abs(delta.x), abs(delta.y), abs(delta.z));
-        delta.normalize();
-        return delta;
+        final float[] result = new float[3];
+        CollisionMath.normalizedDelta(
+                pos2.x - pos1.x, pos2.y - pos1.y, pos2.z - pos1.z, result, 0);
+        return new PVector(result[0], result[1], result[2]);
     }
 
     /**
@@ -88,18 +82,16 @@ public final class MathUtils extends PApplet {
      */
     public static PVector getNormalVector(
             final PVector velocity, final PVector pos1, final PVector pos2) {
-        final PVector delta = getNormalizedDelta(pos1, pos2);
-        final PVector vFinal =
-                getCenterVector(velocity, delta); // impact vector for the current object
-        final PVector xz = new PVector(pos2.x - pos1.x, 0, pos2.z - pos1.z);
-        final PVector xy = new PVector(pos2.x - pos1.x, pos2.y - pos1.y, 0);
-
-        final float angleXZ = PVector.angleBetween(xz, new PVector(0, 0, 1));
-        final float angleXY = PVector.angleBetween(xy, new PVector(1, 0, 0));
-
-        final float impulseX = vFinal.mag() * sin(angleXZ) * cos(angleXY);
-        final float impulseY = vFinal.mag() * sin(angleXZ) * sin(angleXY);
-        final float impulseZ = vFinal.mag() * cos(angleXZ);
-        return new PVector(impulseX, impulseY, impulseZ);
+        final float[] result = new float[3];
+        CollisionMath.normalVector(
+                velocity.x,
+                velocity.y,
+                velocity.z,
+                pos2.x - pos1.x,
+                pos2.y - pos1.y,
+                pos2.z - pos1.z,
+                result,
+                0);
+        return new PVector(result[0], result[1], result[2]);
     }
 }
@@ -0,0 +1,284 @@
+package misc;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Times the phases of every physics step and render frame, for the profiler overlay. <i>Where
+ * does the time go? Now we know.</i>
+ *
+ * <p>A probe is a {@link #start()} and a {@link #stop(Phase, long)} around a phase, adding the
+ * elapsed time to the phase in the current step or frame; a phase may be timed several times per
+ * step, as gravity is for every stage. {@link #commitStep()} and {@link #commitFrame()} then move
+ * the totals into a window of the last {@value #WINDOW} steps or frames, from which the overlay
+ * draws averages and 99th percentiles. The physics workers register themselves, and their CPU time
+ * is sampled at the end of every step to tell how busy each one was.
+ *
+ * <p>Every counter is an atomic array: the physics thread and the draw thread each write their own
+ * phases, and the draw thread reads all of them, without ever taking a lock. Probes do nothing
+ * while the profiler is disabled, beyond reading a volatile flag. Phases retried while recovering
+ * from a blown-up step are counted twice, in their own phase and in {@link Phase#NAN_HANDLING}.
+ */
+public final class PhaseProfiler {
+    /** Number of steps and frames the statistics are computed over. */
+    public static final int WINDOW = 240;
+
+    /** Most workers followed, extra ones are ignored. */
+    private static final int MAX_WORKERS = 64;
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /** Timed phases, of a physics step or of a render frame. */
+    public enum Phase {
+        BROAD_PHASE("Broad phase", true),
+        GRAVITY("Gravity", true),
+        COLLISIONS("Collisions", true),
+        INTEGRATION("Integration", true),
+        NAN_HANDLING("NaN handling", true),
+        STEP("Step", true),
+        RENDER_SPHERES("Spheres", false),
+        DRAW_BOUNDS("Bounds", false),
+        GUI_RENDER("GUI render", false),
+        DRAW_GUI("GUI draw", false),
+        FRAME("Frame", false);
+
+        private final String label;
+        private final boolean physics;
+
+        Phase(final String labelParam, final boolean physicsParam) {
+            this.label = labelParam;
+            this.physics = physicsParam;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Tells whether the phase belongs to a physics step or to a render frame.
+         *
+         * @return {@code true} for a physics step.
+         */
+        public boolean isPhysics() {
+            return physics;
+        }
+    }
+
+    /**
+     * Statistics of a phase over the window.
+     *
+     * @param averageMillis Average time per step or frame, in milliseconds.
+     * @param p99Millis 99th percentile, in milliseconds.
+     */
+    public record Stats(double averageMillis, double p99Millis) {}
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported;
+    private volatile boolean enabled;
+
+    /** Time spent in every phase during the current step or frame. */
+    private final AtomicLongArray pending = new AtomicLongArray(PHASES.length);
+
+    /** Last {@value #WINDOW} totals of every phase, one ring per phase. */
+    private final AtomicLongArray samples = new AtomicLongArray(PHASES.length * WINDOW);
+
+    private final AtomicLong stepCount = new AtomicLong();
+    private final AtomicLong frameCount = new AtomicLong();
+
+    private final AtomicReferenceArray<Thread> workers = new AtomicReferenceArray<>(MAX_WORKERS);
+
+    /** Last {@value #WINDOW} CPU times of every worker slot, one ring per slot. */
+    private final AtomicLongArray workerSamples = new AtomicLongArray(MAX_WORKERS * WINDOW);
+
+    // Physics thread only.
+    private final Thread[] sampledWorkers = new Thread[MAX_WORKERS];
+    private final long[] lastCpuNanos = new long[MAX_WORKERS];
+
+    /** Creates a disabled profiler. */
+    public PhaseProfiler() {
+        boolean supported = threads.isThreadCpuTimeSupported();
+        if (supported && !threads.isThreadCpuTimeEnabled()) {
+            try {
+                threads.setThreadCpuTimeEnabled(true);
+            } catch (UnsupportedOperationException | SecurityException e) {
+                supported = false;
+            }
+        }
+        this.cpuTimeSupported = supported;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns the probes on or off. The windows are cleared when turned on, so that the statistics
+     * don't mix with the ones of a previous run.
+     *
+     * @param enabledParam Whether to time the phases.
+     */
+    public void setEnabled(final boolean enabledParam) {
+        if (enabledParam && !enabled) {
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                pending.set(phase, 0);
+            }
+            stepCount.set(0);
+            frameCount.set(0);
+        }
+        enabled = enabledParam;
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @return The start of the phase, to hand to {@link #stop(Phase, long)}, or 0 if disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Stops timing a phase.
+     *
+     * @param phase Phase timed.
+     * @param startNanos Value returned by {@link #start()}.
+     */
+    public void stop(final Phase phase, final long startNanos) {
+        if (startNanos != 0) {
+            pending.getAndAdd(phase.ordinal(), System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Registers a physics worker, to follow its CPU time. Workers that died leave their slot to
+     * the next ones.
+     *
+     * @param worker Worker thread.
+     */
+    public void registerWorker(final Thread worker) {
+        for (int slot = 0; slot < MAX_WORKERS; slot++) {
+            final Thread current = workers.get(slot);
+            if ((current == null || current.getState() == Thread.State.TERMINATED)
+                    && workers.compareAndSet(slot, current, worker)) {
+                return;
+            }
+        }
+    }
+
+    /** Closes a physics step, sampling the CPU time of the workers. Physics thread only. */
+    public void commitStep() {
+        if (!enabled) {
+            return;
+        }
+        final long step = stepCount.get();
+        final int index = (int) (step % WINDOW);
+        for (final Phase phase : PHASES) {
+            if (phase.isPhysics()) {
+                samples.set(
+                        phase.ordinal() * WINDOW + index, pending.getAndSet(phase.ordinal(), 0));
+            }
+        }
+        if (cpuTimeSupported) {
+            for (int slot = 0; slot < MAX_WORKERS; slot++) {
+                final Thread worker = workers.get(slot);
+                if (worker == null) {
+                    break;
+                }
+                final long cpu = threads.getThreadCpuTime(worker.threadId());
+                // The first sample of a worker, or of a run, only sets the baseline.
+                final boolean measured = worker == sampledWorkers[slot] && step > 0 && cpu >= 0;
+                workerSamples.set(
+                        slot * WINDOW + index, measured ? cpu - lastCpuNanos[slot] : 0);
+                sampledWorkers[slot] = worker;
+                lastCpuNanos[slot] = cpu;
+            }
+        }
+        stepCount.set(step + 1);
+    }
+
+    /** Closes a render frame. Draw thread only. */
+    public void commitFrame() {
+        if (!enabled) {
+            return;
+        }
+        final long frame = frameCount.get();
+        final int index = (int) (frame % WINDOW);
+        for (final Phase phase : PHASES) {
+            if (!phase.isPhysics()) {
+                samples.set(
+                        phase.ordinal() * WINDOW + index, pending.getAndSet(phase.ordinal(), 0));
+            }
+        }
+        frameCount.set(frame + 1);
+    }
+
+    /**
+     * Computes the statistics of a phase over the window.
+     *
+     * @param phase Phase to summarize.
+     * @return Its statistics, zero before the first step or frame.
+     */
+    public Stats getStats(final Phase phase) {
+        final long[] window = window(samples, phase.ordinal(), phase.isPhysics());
+        if (window.length == 0) {
+            return new Stats(0, 0);
+        }
+        Arrays.sort(window);
+        final int p99 = Math.max(0, (int) Math.ceil(window.length * 0.99) - 1);
+        return new Stats(
+                Arrays.stream(window).average().orElse(0) / NANOS_PER_MILLI,
+                window[p99] / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Returns the number of worker slots taken.
+     *
+     * @return The number of workers followed.
+     */
+    public int getWorkerCount() {
+        int count = 0;
+        while (count < MAX_WORKERS && workers.get(count) != null) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Computes how busy a worker was over the window, as its CPU time over the duration of the
+     * steps.
+     *
+     * @param slot Worker slot, from 0 to {@link #getWorkerCount()} excluded.
+     * @return The busy fraction, from 0 to 1, or -1 if CPU times can't be read.
+     */
+    public double getWorkerBusy(final int slot) {
+        if (!cpuTimeSupported) {
+            return -1;
+        }
+        final long busy = Arrays.stream(window(workerSamples, slot, true)).sum();
+        final long steps = Arrays.stream(window(samples, Phase.STEP.ordinal(), true)).sum();
+        return steps == 0 ? 0 : Math.min(1, busy / (double) steps);
+    }
+
+    /**
+     * Copies the filled part of a ring.
+     *
+     * @param rings Rings of {@value #WINDOW} samples.
+     * @param ring Index of the ring.
+     * @param physics Whether the ring is filled per step rather than per frame.
+     * @return The samples, in no particular order.
+     */
+    private long[] window(final AtomicLongArray rings, final int ring, final boolean physics) {
+        final int count = (int) Math.min(WINDOW, (physics ? stepCount : frameCount).get());
+        final long[] window = new long[count];
+        for (int i = 0; i < count; i++) {
+            window[i] = rings.get(ring * WINDOW + i);
+        }
+        return window;
+    }
+}
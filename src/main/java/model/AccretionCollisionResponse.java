@@ -0,0 +1,36 @@
+package model;
+
+/**
+ * Spheres colliding slowly enough stick together and merge, the faster ones still bounce. Over a
+ * collapse, the sphere count keeps shrinking as the bodies grow. <i>The more the merrier.</i>
+ */
+public final class AccretionCollisionResponse implements CollisionResponse {
+    private final float maxMergeSpeedSquared;
+
+    /**
+     * Creates the response.
+     *
+     * @param maxMergeSpeedParam Fastest relative speed at which two spheres still merge, infinite
+     *     to merge every collision.
+     */
+    public AccretionCollisionResponse(final float maxMergeSpeedParam) {
+        if (!(maxMergeSpeedParam >= 0)) {
+            throw new IllegalArgumentException(
+                    "Merge speed must be positive, got " + maxMergeSpeedParam);
+        }
+        this.maxMergeSpeedSquared = maxMergeSpeedParam * maxMergeSpeedParam;
+    }
+
+    @Override
+    public String getName() {
+        return "Accretion";
+    }
+
+    @Override
+    public boolean merges(final ParticleStore store, final int sphere, final int other) {
+        final float dvx = store.getVx().get(sphere) - store.getVx().get(other);
+        final float dvy = store.getVy().get(sphere) - store.getVy().get(other);
+        final float dvz = store.getVz().get(sphere) - store.getVz().get(other);
+        return dvx * dvx + dvy * dvy + dvz * dvz <= maxMergeSpeedSquared;
+    }
+}
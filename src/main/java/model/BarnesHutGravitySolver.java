@@ -0,0 +1,442 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Barnes-Hut gravity solver. Spheres are sorted into an octree every step, and distant groups of
+ * spheres are approximated by their center of mass whenever they are seen under an angle smaller
+ * than the opening angle θ. Brings the cost of a step down to O(N log N). <i>From far enough away,
+ * every crowd looks like a single person.</i>
+ *
+ * <p>The tree is stored as flat arrays indexed by node, children of a node being allocated as 8
+ * contiguous nodes. Spheres are read from a {@link BodySnapshot} taken when the tree is built.
+ */
+public final class BarnesHutGravitySolver implements GravitySolver {
+    /** Default opening angle, a common trade-off between accuracy and speed. */
+    public static final float DEFAULT_OPENING_ANGLE = 0.5f;
+
+    /** Past this depth, spheres are lumped in the same leaf (coincident spheres, mostly). */
+    private static final int MAX_DEPTH = 32;
+
+    private static final int EMPTY = -1;
+    private static final int BUCKET = -2;
+
+    private final BodySnapshot bodies = new BodySnapshot();
+    private final ThreadLocal<int[]> stacks =
+            ThreadLocal.withInitial(() -> new int[MAX_DEPTH * 7 + 8]);
+    private float openingAngle;
+
+    private int nodeCount;
+    private float[] centerX = new float[0];
+    private float[] centerY = new float[0];
+    private float[] centerZ = new float[0];
+    private float[] halfSize = new float[0];
+    private float[] nodeMass = new float[0];
+    private float[] massX = new float[0];
+    private float[] massY = new float[0];
+    private float[] massZ = new float[0];
+    private int[] firstChild = new int[0];
+    private int[] body = new int[0];
+    private int[] bodyLeaf = new int[0];
+
+    /** Creates a solver using the {@link #DEFAULT_OPENING_ANGLE}. */
+    public BarnesHutGravitySolver() {
+        this(DEFAULT_OPENING_ANGLE);
+    }
+
+    /**
+     * Creates a solver with a custom opening angle.
+     *
+     * @param openingAngleParam Opening angle θ. 0 degrades to an exact (and slow) solver.
+     */
+    public BarnesHutGravitySolver(final float openingAngleParam) {
+        setOpeningAngle(openingAngleParam);
+    }
+
+    /**
+     * Sets the opening angle θ used to decide whether a node can be approximated.
+     *
+     * @param openingAngleParam Opening angle, must be positive.
+     */
+    public void setOpeningAngle(final float openingAngleParam) {
+        if (openingAngleParam < 0 || Float.isNaN(openingAngleParam)) {
+            throw new IllegalArgumentException(
+                    "Opening angle must be positive, got " + openingAngleParam);
+        }
+        this.openingAngle = openingAngleParam;
+    }
+
+    /**
+     * Returns the opening angle θ.
+     *
+     * @return The opening angle.
+     */
+    public float getOpeningAngle() {
+        return openingAngle;
+    }
+
+    @Override
+    public void computeAccelerations(final ParticleStore store, final ForkJoinPool workerPool) {
+        workerPool
+                .submit(
+                        () -> {
+                            buildTree(store);
+                            IntStream.range(0, store.size())
+                                    .parallel()
+                                    .forEach(i -> computeAcceleration(store, i));
+                        })
+                .join();
+    }
+
+    @Override
+    public void computeAccelerations(
+            final ParticleStore store,
+            final ForkJoinPool workerPool,
+            final int[] spheres,
+            final int sphereCount) {
+        workerPool
+                .submit(
+                        () -> {
+                            buildTree(store);
+                            IntStream.range(0, sphereCount)
+                                    .parallel()
+                                    .forEach(k -> computeAcceleration(store, spheres[k]));
+                        })
+                .join();
+    }
+
+    /**
+     * Takes a snapshot of the spheres and sorts them into a fresh octree.
+     *
+     * @param store Store holding the sphere positions and masses.
+     */
+    private void buildTree(final ParticleStore store) {
+        bodies.capture(store);
+        final int count = store.size();
+        ensureCapacity(2 * count + 1);
+        if (bodyLeaf.length < count) {
+            bodyLeaf = new int[count];
+        }
+
+        nodeCount = 0;
+        fitRootBox(allocateNode());
+
+        for (int i = 0; i < count; i++) {
+            insert(i);
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            if (nodeMass[node] > 0) {
+                massX[node] /= nodeMass[node];
+                massY[node] /= nodeMass[node];
+                massZ[node] /= nodeMass[node];
+            }
+        }
+    }
+
+    /**
+     * Resizes the root to the smallest cube containing all the spheres, and the bounds when they
+     * are enabled. The bounds alone won't do: a sphere that slipped out of them would fall in no
+     * node, and the walk would never see it is inside the node holding it. <i>No sphere left
+     * behind.</i> Positions that aren't finite are left out, they can't be placed anyway.
+     *
+     * @param root Index of the root node.
+     */
+    private void fitRootBox(final int root) {
+        final float[] x = bodies.getX();
+        final float[] y = bodies.getY();
+        final float[] z = bodies.getZ();
+        final boolean bounded = SimulationHandler.areBoundsEnabled();
+        final float boundsSize = SimulationHandler.BOUNDS_SIZE;
+        float minX = bounded ? 0 : Float.POSITIVE_INFINITY;
+        float minY = bounded ? 0 : Float.POSITIVE_INFINITY;
+        float minZ = bounded ? 0 : Float.POSITIVE_INFINITY;
+        float maxX = bounded ? boundsSize : Float.NEGATIVE_INFINITY;
+        float maxY = bounded ? boundsSize : Float.NEGATIVE_INFINITY;
+        float maxZ = bounded ? boundsSize : Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < bodies.getCount(); i++) {
+            if (!Float.isFinite(x[i] + y[i] + z[i])) {
+                continue;
+            }
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            minZ = Math.min(minZ, z[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+            maxZ = Math.max(maxZ, z[i]);
+        }
+        if (minX > maxX) {
+            setBox(root, 0, 0, 0, 1);
+            return;
+        }
+        final float half = Math.max(Math.max(maxX - minX, maxY - minY), maxZ - minZ) / 2 + 1;
+        setBox(root, (minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2, half);
+    }
+
+    /**
+     * Inserts a sphere in the tree, accumulating its mass along the way down.
+     *
+     * @param sphere Sphere index.
+     */
+    private void insert(final int sphere) {
+        final float[] x = bodies.getX();
+        final float[] y = bodies.getY();
+        final float[] z = bodies.getZ();
+        final float[] masses = bodies.getMass();
+        final float px = x[sphere];
+        final float py = y[sphere];
+        final float pz = z[sphere];
+        final float mass = masses[sphere];
+        int node = 0;
+        int depth = 0;
+        while (true) {
+            accumulate(node, px, py, pz, mass);
+            if (firstChild[node] != EMPTY) {
+                node = firstChild[node] + octant(node, px, py, pz);
+                depth++;
+                continue;
+            }
+            if (body[node] == EMPTY) {
+                body[node] = sphere;
+                bodyLeaf[sphere] = node;
+                return;
+            }
+            if (depth >= MAX_DEPTH || body[node] == BUCKET) {
+                body[node] = BUCKET;
+                bodyLeaf[sphere] = node;
+                return;
+            }
+
+            final int resident = body[node];
+            body[node] = EMPTY;
+            subdivide(node);
+
+            final int residentChild =
+                    firstChild[node] + octant(node, x[resident], y[resident], z[resident]);
+            accumulate(residentChild, x[resident], y[resident], z[resident], masses[resident]);
+            body[residentChild] = resident;
+            bodyLeaf[resident] = residentChild;
+
+            node = firstChild[node] + octant(node, px, py, pz);
+            depth++;
+        }
+    }
+
+    /**
+     * Adds a mass to the running (not yet normalized) center of mass of a node.
+     *
+     * @param node Node index.
+     * @param px X position of the mass.
+     * @param py Y position of the mass.
+     * @param pz Z position of the mass.
+     * @param mass The mass.
+     */
+    private void accumulate(
+            final int node, final float px, final float py, final float pz, final float mass) {
+        nodeMass[node] += mass;
+        massX[node] += px * mass;
+        massY[node] += py * mass;
+        massZ[node] += pz * mass;
+    }
+
+    /**
+     * Returns the child octant of a node a position falls in.
+     *
+     * @param node Node index.
+     * @param px X position.
+     * @param py Y position.
+     * @param pz Z position.
+     * @return The octant, between 0 and 7.
+     */
+    private int octant(final int node, final float px, final float py, final float pz) {
+        int octant = 0;
+        if (px >= centerX[node]) {
+            octant |= 1;
+        }
+        if (py >= centerY[node]) {
+            octant |= 2;
+        }
+        if (pz >= centerZ[node]) {
+            octant |= 4;
+        }
+        return octant;
+    }
+
+    /**
+     * Allocates the 8 children of a node.
+     *
+     * @param node Node index.
+     */
+    private void subdivide(final int node) {
+        ensureCapacity(nodeCount + 8);
+        final float quarter = halfSize[node] / 2;
+        final int first = nodeCount;
+        for (int octant = 0; octant < 8; octant++) {
+            final int child = allocateNode();
+            setBox(
+                    child,
+                    centerX[node] + ((octant & 1) == 0 ? -quarter : quarter),
+                    centerY[node] + ((octant & 2) == 0 ? -quarter : quarter),
+                    centerZ[node] + ((octant & 4) == 0 ? -quarter : quarter),
+                    quarter);
+        }
+        firstChild[node] = first;
+    }
+
+    /**
+     * Resets the next free node and returns it.
+     *
+     * @return The node index.
+     */
+    private int allocateNode() {
+        final int node = nodeCount;
+        nodeMass[node] = 0;
+        massX[node] = 0;
+        massY[node] = 0;
+        massZ[node] = 0;
+        firstChild[node] = EMPTY;
+        body[node] = EMPTY;
+        nodeCount++;
+        return node;
+    }
+
+    /**
+     * Sets the bounding cube of a node.
+     *
+     * @param node Node index.
+     * @param cx Center X coordinate.
+     * @param cy Center Y coordinate.
+     * @param cz Center Z coordinate.
+     * @param half Half the side of the cube.
+     */
+    private void setBox(
+            final int node, final float cx, final float cy, final float cz, final float half) {
+        centerX[node] = cx;
+        centerY[node] = cy;
+        centerZ[node] = cz;
+        halfSize[node] = half;
+    }
+
+    /**
+     * Grows the node arrays so that they can hold at least the given amount of nodes.
+     *
+     * @param required Required amount of nodes.
+     */
+    private void ensureCapacity(final int required) {
+        if (required <= firstChild.length) {
+            return;
+        }
+        final int newCapacity = Math.max(required, firstChild.length * 2);
+        centerX = Arrays.copyOf(centerX, newCapacity);
+        centerY = Arrays.copyOf(centerY, newCapacity);
+        centerZ = Arrays.copyOf(centerZ, newCapacity);
+        halfSize = Arrays.copyOf(halfSize, newCapacity);
+        nodeMass = Arrays.copyOf(nodeMass, newCapacity);
+        massX = Arrays.copyOf(massX, newCapacity);
+        massY = Arrays.copyOf(massY, newCapacity);
+        massZ = Arrays.copyOf(massZ, newCapacity);
+        firstChild = Arrays.copyOf(firstChild, newCapacity);
+        body = Arrays.copyOf(body, newCapacity);
+    }
+
+    /**
+     * Computes the acceleration of a single sphere by walking the tree, and writes it to the
+     * store if it is a number. The nearest neighbor is the closest source the walk interacted
+     * with, which is the actual nearest sphere unless it was lumped into a node.
+     *
+     * @param store Store receiving the acceleration.
+     * @param index Index of the sphere to update.
+     */
+    private void computeAcceleration(final ParticleStore store, final int index) {
+        final float px = bodies.getX()[index];
+        final float py = bodies.getY()[index];
+        final float pz = bodies.getZ()[index];
+        final float selfMass = bodies.getMass()[index];
+        final float gravityConstant = SimulationHandler.getGravityConstant();
+        final float softening = SimulationHandler.getSofteningLength();
+        final float softeningSquared = softening * softening;
+        final float thetaSquared = openingAngle * openingAngle;
+        final int[] stack = stacks.get();
+
+        float accX = 0;
+        float accY = 0;
+        float accZ = 0;
+        float nearest = Float.POSITIVE_INFINITY;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            final int node = stack[--top];
+            float sourceMass = nodeMass[node];
+            if (sourceMass <= 0) {
+                continue;
+            }
+            float sourceX = massX[node];
+            float sourceY = massY[node];
+            float sourceZ = massZ[node];
+
+            if (firstChild[node] == EMPTY) {
+                if (body[node] == index) {
+                    continue;
+                }
+                if (bodyLeaf[index] == node) {
+                    // Lumped leaf containing the sphere itself: take it out of the mix.
+                    final float remainingMass = sourceMass - selfMass;
+                    if (remainingMass <= 0) {
+                        continue;
+                    }
+                    sourceX = (sourceX * sourceMass - px * selfMass) / remainingMass;
+                    sourceY = (sourceY * sourceMass - py * selfMass) / remainingMass;
+                    sourceZ = (sourceZ * sourceMass - pz * selfMass) / remainingMass;
+                    sourceMass = remainingMass;
+                }
+            } else {
+                final float dx = px - sourceX;
+                final float dy = py - sourceY;
+                final float dz = pz - sourceZ;
+                final float side = halfSize[node] * 2;
+                if (contains(node, px, py, pz)
+                        || side * side >= thetaSquared * (dx * dx + dy * dy + dz * dz)) {
+                    final int first = firstChild[node];
+                    for (int octant = 0; octant < 8; octant++) {
+                        if (nodeMass[first + octant] > 0) {
+                            stack[top++] = first + octant;
+                        }
+                    }
+                    continue;
+                }
+            }
+
+            final float dx = px - sourceX;
+            final float dy = py - sourceY;
+            final float dz = pz - sourceZ;
+            final float distanceSquared = dx * dx + dy * dy + dz * dz;
+            final float smallGFactor =
+                    -sourceMass * gravityConstant / (distanceSquared + softeningSquared);
+            accX += dx * smallGFactor;
+            accY += dy * smallGFactor;
+            accZ += dz * smallGFactor;
+            nearest = Math.min(nearest, distanceSquared);
+        }
+        if (!Float.isNaN(accX + accY + accZ)) {
+            store.setAcceleration(index, accX, accY, accZ);
+        }
+        store.setNearestDistance(index, (float) Math.sqrt(nearest));
+    }
+
+    /**
+     * Checks whether a position lies inside the cube of a node.
+     *
+     * @param node Node index.
+     * @param px X position.
+     * @param py Y position.
+     * @param pz Z position.
+     * @return {@code true} if the position is inside the node.
+     */
+    private boolean contains(final int node, final float px, final float py, final float pz) {
+        final float half = halfSize[node];
+        return Math.abs(px - centerX[node]) <= half
+                && Math.abs(py - centerY[node]) <= half
+                && Math.abs(pz - centerZ[node]) <= half;
+    }
+}
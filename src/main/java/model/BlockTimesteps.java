@@ -0,0 +1,334 @@
+package model;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Arrays;
+
+/**
+ * Hierarchical power-of-two timesteps. Every sphere sits on a level {@code k} and moves in blocks
+ * of {@code 2^-k} steps, so a tight pair can be refined without dragging every other sphere down
+ * with it. A step is cut into {@code 2^depth} substeps, {@code depth} being the deepest level in
+ * use, and a sphere is only active (its acceleration recomputed and applied) at the substeps where
+ * one of its blocks starts. Every sphere drifts at every substep, so that the active ones always
+ * see the others where they are. <i>Slow down, you move too fast.</i>
+ *
+ * <p>The level of a sphere follows {@code dt = accuracy * sqrt(nearest / |a|)}, where {@code
+ * nearest} is the distance to its nearest neighbor and {@code a} its acceleration, and is picked
+ * again whenever the sphere is active. A sphere may always refine, but only coarsens on a substep
+ * where the coarser block starts, so blocks never straddle each other. With a single level, a step
+ * is exactly the former one: every sphere kicked and drifted once by a full step.
+ *
+ * <p>Kick-drift-kick schemes split the kick of a block in two: the opening half when the block
+ * starts, from the spheres of {@link #selectActive()}, and the closing half when it ends, from the
+ * spheres of {@link #selectClosing()}, while everyone drifts in between. Each sphere keeps its own
+ * level. Schemes drifting again after their first stage, such as Yoshida's, can't be split that
+ * way: for them every sphere shares the deepest level wanted by any of them, and the step is cut
+ * into uniform substeps, each one a complete run of the scheme. <i>One size fits all, eventually.
+ * </i>
+ */
+public final class BlockTimesteps {
+    /** System property setting the deepest level, {@code 0} disables the refinement. */
+    public static final String MAX_LEVEL_PROPERTY = "gravity.timestep.levels";
+
+    /** System property setting the accuracy factor of the timestep criterion. */
+    public static final String ACCURACY_PROPERTY = "gravity.timestep.accuracy";
+
+    /** Default deepest level, spheres take at least a sixteenth of a step. */
+    public static final int DEFAULT_MAX_LEVEL = 4;
+
+    /** Default accuracy factor, smaller is more accurate. */
+    public static final float DEFAULT_ACCURACY = 0.1f;
+
+    /** Deepest level supported, so that substeps are still counted in an {@code int}. */
+    private static final int LEVEL_LIMIT = 30;
+
+    private final int maxLevel;
+    private final float accuracy;
+    private int minimumLevel;
+    private int sphereCount;
+    private int depth;
+    private int substep;
+    private int activeCount;
+    private boolean uniform;
+    private boolean multiStage;
+    private boolean startSaved;
+    private int[] levels = new int[0];
+    private int[] active = new int[0];
+    private float[] kicks = new float[0];
+    private float[] startX = new float[0];
+    private float[] startY = new float[0];
+    private float[] startZ = new float[0];
+
+    /**
+     * Creates the scheduler.
+     *
+     * @param maxLevelParam Deepest level, {@code 0} for a single full step.
+     * @param accuracyParam Accuracy factor of the timestep criterion, must be positive.
+     */
+    public BlockTimesteps(final int maxLevelParam, final float accuracyParam) {
+        if (maxLevelParam < 0 || maxLevelParam > LEVEL_LIMIT) {
+            throw new IllegalArgumentException(
+                    "Timestep levels must be between 0 and " + LEVEL_LIMIT + ", got "
+                            + maxLevelParam);
+        }
+        if (!(accuracyParam > 0)) {
+            throw new IllegalArgumentException(
+                    "Timestep accuracy must be positive, got " + accuracyParam);
+        }
+        this.maxLevel = maxLevelParam;
+        this.accuracy = accuracyParam;
+    }
+
+    /**
+     * Creates the scheduler with the settings read from the {@value #MAX_LEVEL_PROPERTY} and
+     * {@value #ACCURACY_PROPERTY} system properties.
+     *
+     * @return The scheduler.
+     */
+    public static BlockTimesteps fromSystemProperties() {
+        return new BlockTimesteps(
+                Integer.getInteger(MAX_LEVEL_PROPERTY, DEFAULT_MAX_LEVEL),
+                Float.parseFloat(
+                        System.getProperty(
+                                ACCURACY_PROPERTY, Float.toString(DEFAULT_ACCURACY))));
+    }
+
+    /**
+     * Forces every sphere down to a level, whatever the criterion says. Used to retry a step that
+     * blew up with smaller timesteps, see {@link StabilityGuard}.
+     *
+     * @param minimumLevelParam Coarsest level allowed, {@code 0} to lift the constraint.
+     */
+    public void setMinimumLevel(final int minimumLevelParam) {
+        if (minimumLevelParam < 0 || minimumLevelParam > LEVEL_LIMIT) {
+            throw new IllegalArgumentException(
+                    "Minimum level must be between 0 and " + LEVEL_LIMIT + ", got "
+                            + minimumLevelParam);
+        }
+        this.minimumLevel = minimumLevelParam;
+    }
+
+    /**
+     * Starts a step. The first substep activates every sphere, so their levels are all picked
+     * again and the depth is only as deep as needed.
+     *
+     * @param sphereCountParam Amount of spheres.
+     * @param integrator Integrator running the step, every sphere shares a level if it drifts
+     *     after its first stage.
+     */
+    public void beginStep(final int sphereCountParam, final Integrator integrator) {
+        if (levels.length < sphereCountParam) {
+            levels = Arrays.copyOf(levels, sphereCountParam);
+            active = new int[sphereCountParam];
+            kicks = new float[sphereCountParam];
+            startX = new float[sphereCountParam];
+            startY = new float[sphereCountParam];
+            startZ = new float[sphereCountParam];
+        }
+        sphereCount = sphereCountParam;
+        multiStage = integrator.getStageCount() > 1;
+        uniform = false;
+        for (int stage = 1; stage < integrator.getStageCount(); stage++) {
+            uniform |= integrator.getDrift(stage) != 0;
+        }
+        depth = 0;
+        substep = 0;
+        startSaved = false;
+    }
+
+    /**
+     * Returns whether the step still has substeps to run.
+     *
+     * @return {@code true} until the last substep was completed.
+     */
+    public boolean hasSubstep() {
+        return substep < 1 << depth;
+    }
+
+    /**
+     * Lists the spheres whose block starts at the current substep. Their kick is left for {@link
+     * #assignLevels}, the others won't be kicked.
+     *
+     * @return The number of active spheres, see {@link #getActive()}.
+     */
+    public int selectActive() {
+        activeCount = 0;
+        for (int i = 0; i < sphereCount; i++) {
+            kicks[i] = 0;
+            if (substep == 0 || substep % blockLength(levels[i]) == 0) {
+                active[activeCount++] = i;
+            }
+        }
+        return activeCount;
+    }
+
+    /**
+     * Lists the spheres whose block ends with the current substep, and sets their kick to the
+     * length of their block. Those are exactly the spheres the next substep activates, so their
+     * accelerations may be kept for it. On uniform substeps, every sphere.
+     *
+     * @return The number of closing spheres, see {@link #getActive()}.
+     */
+    public int selectClosing() {
+        activeCount = 0;
+        final int end = substep + 1;
+        for (int i = 0; i < sphereCount; i++) {
+            kicks[i] = 0;
+            if (end % blockLength(levels[i]) == 0) {
+                active[activeCount++] = i;
+                kicks[i] = 1.0f / (1 << levels[i]);
+            }
+        }
+        return activeCount;
+    }
+
+    /**
+     * Picks the level of every active sphere from its fresh acceleration, and sets its kick to the
+     * length of its block. Refining past the current depth cuts the remaining substeps further,
+     * which doesn't move any block boundary.
+     *
+     * @param store Store holding the accelerations and nearest neighbor distances.
+     */
+    public void assignLevels(final ParticleStore store) {
+        final FloatColumn ax = store.getAx();
+        final FloatColumn ay = store.getAy();
+        final FloatColumn az = store.getAz();
+        final FloatColumn nearest = store.getNearestDistance();
+        for (int k = 0; k < activeCount; k++) {
+            final int i = active[k];
+            final float accX = ax.get(i);
+            final float accY = ay.get(i);
+            final float accZ = az.get(i);
+            final float acceleration = (float) Math.sqrt(accX * accX + accY * accY + accZ * accZ);
+            int level = levelFor(acceleration, nearest.get(i));
+            // Active spheres start a block now, coarser blocks may not.
+            while (level < levels[i] && substep % blockLength(level) != 0) {
+                level++;
+            }
+            if (level > depth) {
+                substep <<= level - depth;
+                depth = level;
+            }
+            levels[i] = level;
+        }
+        if (uniform) {
+            // Every sphere is active on uniform substeps, and can't be coarser than the depth.
+            for (int k = 0; k < activeCount; k++) {
+                levels[active[k]] = depth;
+            }
+        }
+        // A step of several substeps, or ending on a stage that doesn't drift, leaves the last
+        // substep in the next buffers instead of the start of the step.
+        if (substep == 0 && (depth > 0 || multiStage)) {
+            saveStart(store);
+            startSaved = true;
+        }
+        for (int k = 0; k < activeCount; k++) {
+            kicks[active[k]] = 1.0f / (1 << levels[active[k]]);
+        }
+    }
+
+    /** Moves on to the next substep. */
+    public void advance() {
+        substep++;
+    }
+
+    /**
+     * Puts the positions held at the beginning of the step back in the next buffers, once a step
+     * cut in substeps, or run by an integrator of several stages, is over. The renderer
+     * interpolates from those, and would otherwise only see the last substep or stage. Must be
+     * called after the final buffer swap.
+     *
+     * @param store Store whose next buffers receive the positions.
+     */
+    public void restoreStart(final ParticleStore store) {
+        if (startSaved) {
+            store.getNextX().write(startX, 0, 0, sphereCount);
+            store.getNextY().write(startY, 0, 0, sphereCount);
+            store.getNextZ().write(startZ, 0, 0, sphereCount);
+        }
+    }
+
+    /**
+     * Copies the current positions, which are the ones the step started from.
+     *
+     * @param store Store holding the positions.
+     */
+    private void saveStart(final ParticleStore store) {
+        store.getX().read(0, startX, 0, sphereCount);
+        store.getY().read(0, startY, 0, sphereCount);
+        store.getZ().read(0, startZ, 0, sphereCount);
+    }
+
+    /**
+     * Applies the timestep criterion.
+     *
+     * @param acceleration Magnitude of the acceleration.
+     * @param nearest Distance to the nearest neighbor.
+     * @return The level whose blocks are no longer than the wanted timestep, within bounds.
+     */
+    private int levelFor(final float acceleration, final float nearest) {
+        final double wantedSubsteps = Math.sqrt(acceleration / nearest) / accuracy;
+        if (!(wantedSubsteps > 1)) {
+            return minimumLevel;
+        }
+        final long substeps = (long) Math.ceil(Math.min(wantedSubsteps, 1 << maxLevel));
+        final int level = Math.min(maxLevel, Long.SIZE - Long.numberOfLeadingZeros(substeps - 1));
+        return Math.max(minimumLevel, level);
+    }
+
+    /**
+     * Returns the length of the blocks of a level, in substeps of the current depth.
+     *
+     * @param level Level.
+     * @return The block length.
+     */
+    private int blockLength(final int level) {
+        return 1 << depth - level;
+    }
+
+    /**
+     * Returns the spheres selected by the last {@link #selectActive()} or {@link
+     * #selectClosing()}.
+     *
+     * @return The active sphere indices, only the first {@link #getActiveCount()} are valid.
+     */
+    @SuppressFBWarnings(
+            value = "EI_EXPOSE_REP",
+            justification = "Handed to the gravity solvers every substep, copying is wasteful.")
+    public int[] getActive() {
+        return active;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * Returns the kick of a sphere for the current stage: the length of its block if it is
+     * active, zero otherwise.
+     *
+     * @param sphere Sphere index.
+     * @return The fraction of a step the acceleration is applied for.
+     */
+    public float getKick(final int sphere) {
+        return kicks[sphere];
+    }
+
+    /**
+     * Returns the drift of every sphere for the current substep.
+     *
+     * @return The fraction of a step the velocity is applied for.
+     */
+    public float getDrift() {
+        return 1.0f / (1 << depth);
+    }
+
+    /**
+     * Returns the number of substeps the last step was cut into.
+     *
+     * @return The substep count.
+     */
+    public int getSubstepCount() {
+        return 1 << depth;
+    }
+}
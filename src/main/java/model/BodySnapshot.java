@@ -0,0 +1,59 @@
+package model;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Positions and masses of the spheres, gathered into plain arrays before a gravity evaluation. The
+ * inner loops of the solvers run over these whatever the {@link ColumnStorage} of the store, and
+ * the vectorized kernel loads them lane by lane. Gathering is linear in the amount of spheres, the
+ * evaluation it feeds is not. <i>Hold still.</i>
+ */
+@SuppressFBWarnings(
+        value = "EI_EXPOSE_REP",
+        justification = "Read in place by the gravity kernels, copying defeats the point.")
+final class BodySnapshot {
+    private int count;
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] z = new float[0];
+    private float[] mass = new float[0];
+
+    /**
+     * Copies the current positions and masses of a store.
+     *
+     * @param store Store to copy.
+     */
+    void capture(final ParticleStore store) {
+        count = store.size();
+        if (x.length < count) {
+            x = new float[count];
+            y = new float[count];
+            z = new float[count];
+            mass = new float[count];
+        }
+        store.getX().read(0, x, 0, count);
+        store.getY().read(0, y, 0, count);
+        store.getZ().read(0, z, 0, count);
+        store.getMass().read(0, mass, 0, count);
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    float[] getX() {
+        return x;
+    }
+
+    float[] getY() {
+        return y;
+    }
+
+    float[] getZ() {
+        return z;
+    }
+
+    float[] getMass() {
+        return mass;
+    }
+}
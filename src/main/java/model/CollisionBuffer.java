@@ -0,0 +1,138 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Per-batch accumulator for collision responses. Workers never touch another sphere's state while
+ * resolving collisions: they record velocity and position changes here instead, and the buffers
+ * of every batch are applied to the next state of the store once all of them are done. Pairs that
+ * merge are recorded too, and left for {@link SphereMerger} at the end of the step. <i>Write it
+ * down, we'll sort it out later.</i>
+ */
+public final class CollisionBuffer {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int velocityCount;
+    private int[] velocitySpheres = new int[INITIAL_CAPACITY];
+    private float[] velocityDeltas = new float[INITIAL_CAPACITY * 3];
+
+    private int displacementCount;
+    private int[] displacementSpheres = new int[INITIAL_CAPACITY];
+    private float[] displacementDeltas = new float[INITIAL_CAPACITY * 3];
+
+    private int mergeCount;
+    private int[] mergePairs = new int[INITIAL_CAPACITY * 2];
+
+    /** Forgets every recorded change. */
+    public void clear() {
+        velocityCount = 0;
+        displacementCount = 0;
+        mergeCount = 0;
+    }
+
+    /**
+     * Records a velocity change for a sphere.
+     *
+     * @param sphere Sphere index.
+     * @param dvx X velocity change.
+     * @param dvy Y velocity change.
+     * @param dvz Z velocity change.
+     */
+    public void addVelocity(final int sphere, final float dvx, final float dvy, final float dvz) {
+        if (velocityCount == velocitySpheres.length) {
+            velocitySpheres = Arrays.copyOf(velocitySpheres, velocityCount * 2);
+            velocityDeltas = Arrays.copyOf(velocityDeltas, velocityCount * 6);
+        }
+        velocitySpheres[velocityCount] = sphere;
+        velocityDeltas[velocityCount * 3] = dvx;
+        velocityDeltas[velocityCount * 3 + 1] = dvy;
+        velocityDeltas[velocityCount * 3 + 2] = dvz;
+        velocityCount++;
+    }
+
+    /**
+     * Records a position change for a sphere.
+     *
+     * @param sphere Sphere index.
+     * @param dx X displacement.
+     * @param dy Y displacement.
+     * @param dz Z displacement.
+     */
+    public void addDisplacement(final int sphere, final float dx, final float dy, final float dz) {
+        if (displacementCount == displacementSpheres.length) {
+            displacementSpheres = Arrays.copyOf(displacementSpheres, displacementCount * 2);
+            displacementDeltas = Arrays.copyOf(displacementDeltas, displacementCount * 6);
+        }
+        displacementSpheres[displacementCount] = sphere;
+        displacementDeltas[displacementCount * 3] = dx;
+        displacementDeltas[displacementCount * 3 + 1] = dy;
+        displacementDeltas[displacementCount * 3 + 2] = dz;
+        displacementCount++;
+    }
+
+    /**
+     * Records a pair of spheres to merge at the end of the step.
+     *
+     * @param sphere Index of the first sphere.
+     * @param other Index of the second sphere.
+     */
+    public void addMerge(final int sphere, final int other) {
+        if (mergeCount * 2 == mergePairs.length) {
+            mergePairs = Arrays.copyOf(mergePairs, mergeCount * 4);
+        }
+        mergePairs[mergeCount * 2] = sphere;
+        mergePairs[mergeCount * 2 + 1] = other;
+        mergeCount++;
+    }
+
+    public int getMergeCount() {
+        return mergeCount;
+    }
+
+    /**
+     * Returns the first sphere of a recorded merge.
+     *
+     * @param merge Merge index, below {@link #getMergeCount()}.
+     * @return The sphere index.
+     */
+    public int getMergeSphere(final int merge) {
+        return mergePairs[merge * 2];
+    }
+
+    /**
+     * Returns the second sphere of a recorded merge.
+     *
+     * @param merge Merge index, below {@link #getMergeCount()}.
+     * @return The sphere index.
+     */
+    public int getMergeOther(final int merge) {
+        return mergePairs[merge * 2 + 1];
+    }
+
+    /**
+     * Adds every recorded change to the next state of the store, in recording order.
+     *
+     * @param store Store to update, after {@link ParticleStore#beginStep()}.
+     */
+    public void applyTo(final ParticleStore store) {
+        final FloatColumn nextVx = store.getNextVx();
+        final FloatColumn nextVy = store.getNextVy();
+        final FloatColumn nextVz = store.getNextVz();
+        for (int i = 0; i < velocityCount; i++) {
+            final int sphere = velocitySpheres[i];
+            nextVx.add(sphere, velocityDeltas[i * 3]);
+            nextVy.add(sphere, velocityDeltas[i * 3 + 1]);
+            nextVz.add(sphere, velocityDeltas[i * 3 + 2]);
+        }
+
+        final FloatColumn nextX = store.getNextX();
+        final FloatColumn nextY = store.getNextY();
+        final FloatColumn nextZ = store.getNextZ();
+        for (int i = 0; i < displacementCount; i++) {
+            final int sphere = displacementSpheres[i];
+            nextX.add(sphere, displacementDeltas[i * 3]);
+            nextY.add(sphere, displacementDeltas[i * 3 + 1]);
+            nextZ.add(sphere, displacementDeltas[i * 3 + 2]);
+        }
+    }
+}
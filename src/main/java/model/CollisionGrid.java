@@ -0,0 +1,222 @@
+package model;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Broad phase for sphere collisions. Spheres are binned in a uniform grid (stored as a spatial
+ * hash, so the simulation doesn't need to be bounded) whose cells are large enough that two
+ * spheres colliding during this frame or the next one are always in neighboring cells. Only those
+ * neighbors end up in the candidate pairs handed to the narrow phase. <i>You can't bump into
+ * someone on the other side of town.</i>
+ *
+ * <p>Candidate pairs are stored once, under the lowest index of the pair, as a compressed list:
+ * the candidates of sphere {@code i} are {@code getCandidate(k)} for {@code k} in {@code
+ * [getCandidateStart(i), getCandidateEnd(i))}.
+ */
+public final class CollisionGrid {
+    private static final float MIN_CELL_SIZE = 1e-3f;
+
+    private float cellSize = 1;
+    private int tableMask;
+    private int sphereCount;
+
+    private int[] cellX = new int[0];
+    private int[] cellY = new int[0];
+    private int[] cellZ = new int[0];
+    private int[] bucketOf = new int[0];
+    private int[] bucketStart = new int[1];
+    private int[] sortedSpheres = new int[0];
+    private int[] candidateStart = new int[1];
+    private int[] candidates = new int[0];
+
+    /**
+     * Rebuilds the grid and the candidate pairs from the current state of the store.
+     *
+     * @param store Store holding the sphere positions, velocities and radii.
+     */
+    public void build(final ParticleStore store) {
+        sphereCount = store.size();
+        ensureCapacity(sphereCount);
+        // Resting contacts must show up as candidates too, see SleepingIslands.
+        cellSize =
+                Math.max(2 * maxSweptRadius(store) * SleepingIslands.CONTACT_SLOP, MIN_CELL_SIZE);
+
+        final int tableSize = Integer.highestOneBit(Math.max(sphereCount, 1) * 2 - 1) << 1;
+        tableMask = tableSize - 1;
+        if (bucketStart.length < tableSize + 1) {
+            bucketStart = new int[tableSize + 1];
+        } else {
+            Arrays.fill(bucketStart, 0, tableSize + 1, 0);
+        }
+
+        final FloatColumn x = store.getX();
+        final FloatColumn y = store.getY();
+        final FloatColumn z = store.getZ();
+        IntStream.range(0, sphereCount)
+                .parallel()
+                .forEach(
+                        i -> {
+                            cellX[i] = (int) Math.floor(x.get(i) / cellSize);
+                            cellY[i] = (int) Math.floor(y.get(i) / cellSize);
+                            cellZ[i] = (int) Math.floor(z.get(i) / cellSize);
+                            bucketOf[i] = bucket(cellX[i], cellY[i], cellZ[i]);
+                        });
+
+        // Counting sort of the spheres by bucket.
+        for (int i = 0; i < sphereCount; i++) {
+            bucketStart[bucketOf[i] + 1]++;
+        }
+        for (int b = 0; b < tableSize; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        final int[] fill = Arrays.copyOf(bucketStart, tableSize);
+        for (int i = 0; i < sphereCount; i++) {
+            sortedSpheres[fill[bucketOf[i]]++] = i;
+        }
+
+        IntStream.range(0, sphereCount)
+                .parallel()
+                .forEach(i -> candidateStart[i + 1] = scanNeighbors(i, null, 0));
+        candidateStart[0] = 0;
+        for (int i = 0; i < sphereCount; i++) {
+            candidateStart[i + 1] += candidateStart[i];
+        }
+        if (candidates.length < candidateStart[sphereCount]) {
+            candidates = new int[candidateStart[sphereCount]];
+        }
+        IntStream.range(0, sphereCount)
+                .parallel()
+                .forEach(i -> scanNeighbors(i, candidates, candidateStart[i]));
+    }
+
+    /**
+     * Walks the 27 cells around a sphere and collects the higher-indexed spheres found in them.
+     *
+     * @param sphere Sphere index.
+     * @param out Where to write the candidates, {@code null} to only count them.
+     * @param outStart First slot of {@code out} to write to.
+     * @return The number of candidates found.
+     */
+    private int scanNeighbors(final int sphere, final int[] out, final int outStart) {
+        int found = 0;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    final int cx = cellX[sphere] + dx;
+                    final int cy = cellY[sphere] + dy;
+                    final int cz = cellZ[sphere] + dz;
+                    final int b = bucket(cx, cy, cz);
+                    for (int k = bucketStart[b]; k < bucketStart[b + 1]; k++) {
+                        final int other = sortedSpheres[k];
+                        // Different cells may share a bucket: only keep the cell being visited.
+                        if (other > sphere
+                                && cellX[other] == cx
+                                && cellY[other] == cy
+                                && cellZ[other] == cz) {
+                            if (out != null) {
+                                out[outStart + found] = other;
+                            }
+                            found++;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the largest distance a sphere can reach within a frame: its radius plus its speed.
+     *
+     * @param store Store holding the sphere velocities and radii.
+     * @return The largest swept radius.
+     */
+    private static float maxSweptRadius(final ParticleStore store) {
+        final FloatColumn vx = store.getVx();
+        final FloatColumn vy = store.getVy();
+        final FloatColumn vz = store.getVz();
+        final FloatColumn radius = store.getRadius();
+        float maxSwept = 0;
+        for (int i = 0; i < store.size(); i++) {
+            final float velX = vx.get(i);
+            final float velY = vy.get(i);
+            final float velZ = vz.get(i);
+            final float swept =
+                    radius.get(i) + (float) Math.sqrt(velX * velX + velY * velY + velZ * velZ);
+            if (swept > maxSwept && Float.isFinite(swept)) {
+                maxSwept = swept;
+            }
+        }
+        return maxSwept;
+    }
+
+    /**
+     * Hashes integer cell coordinates into the bucket table.
+     *
+     * @param cx Cell X coordinate.
+     * @param cy Cell Y coordinate.
+     * @param cz Cell Z coordinate.
+     * @return The bucket index.
+     */
+    private int bucket(final int cx, final int cy, final int cz) {
+        return (cx * 73_856_093 ^ cy * 19_349_663 ^ cz * 83_492_791) & tableMask;
+    }
+
+    /**
+     * Grows the per-sphere arrays so that they can hold the given amount of spheres.
+     *
+     * @param count Amount of spheres.
+     */
+    private void ensureCapacity(final int count) {
+        if (cellX.length < count) {
+            cellX = new int[count];
+            cellY = new int[count];
+            cellZ = new int[count];
+            bucketOf = new int[count];
+            sortedSpheres = new int[count];
+        }
+        if (candidateStart.length < count + 1) {
+            candidateStart = new int[count + 1];
+        }
+    }
+
+    /**
+     * Returns the first candidate slot of a sphere.
+     *
+     * @param sphere Sphere index.
+     * @return Index of the first candidate of the sphere.
+     */
+    public int getCandidateStart(final int sphere) {
+        return candidateStart[sphere];
+    }
+
+    /**
+     * Returns the slot right after the last candidate of a sphere.
+     *
+     * @param sphere Sphere index.
+     * @return Index past the last candidate of the sphere.
+     */
+    public int getCandidateEnd(final int sphere) {
+        return candidateStart[sphere + 1];
+    }
+
+    /**
+     * Returns a candidate sphere.
+     *
+     * @param slot Candidate slot.
+     * @return Index of the candidate sphere, always higher than the sphere owning the slot.
+     */
+    public int getCandidate(final int slot) {
+        return candidates[slot];
+    }
+
+    /**
+     * Returns the total number of candidate pairs found by the last build.
+     *
+     * @return The candidate pair count.
+     */
+    public int getCandidateCount() {
+        return candidateStart[sphereCount];
+    }
+}
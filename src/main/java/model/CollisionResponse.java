@@ -0,0 +1,29 @@
+package model;
+
+/**
+ * What happens when two spheres collide. Spheres either bounce off each other, which {@link
+ * PhysicSphere} resolves at the time of impact, or merge into a single sphere once the step is
+ * over, which {@link SphereMerger} takes care of. <i>Fight or fuse.</i>
+ *
+ * <p>Implementations only decide, they never touch the store: they are called from the physics
+ * workers while the current state is being read. New responses become selectable once added to
+ * {@link CollisionResponses}.
+ */
+public interface CollisionResponse {
+    /**
+     * Returns the name used to select the response.
+     *
+     * @return The name.
+     */
+    String getName();
+
+    /**
+     * Decides whether two spheres that collide during this step merge instead of bouncing.
+     *
+     * @param store Store holding the current state.
+     * @param sphere Index of the first sphere.
+     * @param other Index of the second sphere.
+     * @return {@code true} to merge them at the end of the step.
+     */
+    boolean merges(ParticleStore store, int sphere, int other);
+}
@@ -0,0 +1,49 @@
+package model;
+
+/** Registry of the collision responses the simulation can use. <i>Choose your fighter.</i> */
+public final class CollisionResponses {
+    /** System property naming the collision response, elastic by default. */
+    public static final String RESPONSE_PROPERTY = "gravity.collision.response";
+
+    /** System property setting the fastest relative speed at which accreting spheres merge. */
+    public static final String MERGE_SPEED_PROPERTY = "gravity.accretion.speed";
+
+    /** <i>NO TOUCHY.</i> */
+    private CollisionResponses() {}
+
+    /**
+     * Creates a collision response by name, ignoring case.
+     *
+     * @param name Name of the response.
+     * @param maxMergeSpeed Fastest relative speed at which spheres merge, for the responses that
+     *     merge them.
+     * @return The response.
+     * @throws IllegalArgumentException If no response has this name.
+     */
+    public static CollisionResponse byName(final String name, final float maxMergeSpeed) {
+        final CollisionResponse elastic = new ElasticCollisionResponse();
+        if (elastic.getName().equalsIgnoreCase(name)) {
+            return elastic;
+        }
+        final CollisionResponse accretion = new AccretionCollisionResponse(maxMergeSpeed);
+        if (accretion.getName().equalsIgnoreCase(name)) {
+            return accretion;
+        }
+        throw new IllegalArgumentException("Unknown collision response: " + name);
+    }
+
+    /**
+     * Returns the response named by the {@value #RESPONSE_PROPERTY} system property, with the
+     * merge speed read from {@value #MERGE_SPEED_PROPERTY} (every collision merges if it is not
+     * set).
+     *
+     * @return The collision response.
+     */
+    public static CollisionResponse fromSystemProperties() {
+        return byName(
+                System.getProperty(RESPONSE_PROPERTY, "Elastic"),
+                Float.parseFloat(
+                        System.getProperty(
+                                MERGE_SPEED_PROPERTY, Float.toString(Float.POSITIVE_INFINITY))));
+    }
+}
@@ -0,0 +1,33 @@
+package model;
+
+/**
+ * Memory the columns of a {@link ParticleStore} are allocated from. Each store owns its storage,
+ * and releases every column at once by closing it. <i>Where do we put all this stuff?</i>
+ */
+public interface ColumnStorage {
+    /**
+     * Returns the name of the storage, as accepted by {@link ColumnStorages#byName}.
+     *
+     * @return The name.
+     */
+    String getName();
+
+    /**
+     * Allocates a column of floats, all zero.
+     *
+     * @param capacity Number of spheres.
+     * @return The column.
+     */
+    FloatColumn allocateFloats(int capacity);
+
+    /**
+     * Allocates a column of ints, all zero.
+     *
+     * @param capacity Number of spheres.
+     * @return The column.
+     */
+    IntColumn allocateInts(int capacity);
+
+    /** Releases every column allocated so far, which must not be used anymore. */
+    void close();
+}
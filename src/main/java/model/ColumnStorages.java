@@ -0,0 +1,62 @@
+package model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Registry of the memories a {@link ParticleStore} can live in. <i>Location, location.</i> */
+public final class ColumnStorages {
+    /** System property naming the storage of the simulation state, on the heap by default. */
+    public static final String STORAGE_PROPERTY = "gravity.store";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ColumnStorages.class);
+
+    /** <i>NO TOUCHY.</i> */
+    private ColumnStorages() {}
+
+    /**
+     * Creates a storage by name, ignoring case. The off-heap storage needs the JVM to be started
+     * with {@code --enable-preview}, the heap is used instead when it wasn't.
+     *
+     * @param name Name of the storage, {@value HeapColumnStorage#NAME} or {@value
+     *     OffHeapColumnStorage#NAME}.
+     * @return A fresh storage, to be closed by its store.
+     * @throws IllegalArgumentException If no storage has this name.
+     */
+    public static ColumnStorage byName(final String name) {
+        if (HeapColumnStorage.NAME.equalsIgnoreCase(name)) {
+            return new HeapColumnStorage();
+        }
+        if (OffHeapColumnStorage.NAME.equalsIgnoreCase(name)) {
+            return createOffHeap();
+        }
+        throw new IllegalArgumentException("Unknown column storage: " + name);
+    }
+
+    /**
+     * Creates the storage named by the {@value #STORAGE_PROPERTY} system property.
+     *
+     * @return A fresh storage, to be closed by its store.
+     */
+    public static ColumnStorage fromSystemProperties() {
+        return byName(System.getProperty(STORAGE_PROPERTY, HeapColumnStorage.NAME));
+    }
+
+    /**
+     * Creates the off-heap storage if the JVM lets its classes load.
+     *
+     * @return The off-heap storage, or a heap one.
+     */
+    private static ColumnStorage createOffHeap() {
+        try {
+            return new OffHeapColumnStorage();
+        } catch (UnsupportedClassVersionError e) {
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn(
+                        "Off-heap storage needs the JVM to be started with --enable-preview, "
+                                + "keeping the state on the heap ({})",
+                        e.getMessage());
+            }
+            return new HeapColumnStorage();
+        }
+    }
+}
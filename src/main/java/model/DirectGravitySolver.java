@@ -0,0 +1,317 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Direct-sum gravity solver: every sphere looks at every other sphere. Exact, but quadratic in the
+ * amount of spheres. <i>Leave no stone unturned.</i>
+ *
+ * <p>Each unordered pair is only visited once, and applies equal and opposite contributions to both
+ * spheres (Newton's third law). The upper triangle of the interaction matrix is cut into square
+ * tiles of {@value #BLOCK_SIZE} by {@value #BLOCK_SIZE} spheres, small enough for both blocks to
+ * stay in the L1 cache while the tile is processed. Tiles are scheduled as fork/join tasks so that
+ * idle workers steal them from busy ones. Each worker accumulates into its own buffers, which are
+ * summed once every tile is done. The buffers are found by the pool index of the worker, so that a
+ * worker replacing a retired one takes over its buffers instead of adding some.
+ *
+ * <p>The pairs of a row are handed to a {@link PairKernel}, vectorized with the {@code
+ * jdk.incubator.vector} module when the JVM was started with it, scalar otherwise. Kernels read
+ * the positions and masses from a {@link BodySnapshot} taken at the start of the evaluation.
+ *
+ * <p>When only a few spheres need their acceleration, each of them sums every other sphere on its
+ * own instead: the symmetric tiles would mostly compute interactions nobody asked for.
+ */
+public final class DirectGravitySolver implements GravitySolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectGravitySolver.class);
+
+    /** Amount of spheres per block, tiles are {@code BLOCK_SIZE²} interactions. */
+    private static final int BLOCK_SIZE = 256;
+
+    /**
+     * Buffers of the workers, by pool index plus one, the first slot being the thread calling the
+     * solver. Replaced as a whole when a slot is added, slots are then only touched by their
+     * thread until the reduction.
+     */
+    private volatile Accumulator[] accumulators = new Accumulator[0];
+
+    /** Pool running the current evaluation, whose workers own the slots. */
+    private ForkJoinPool currentPool;
+    private final PairKernel kernel;
+    private final BodySnapshot bodies = new BodySnapshot();
+
+    /** Creates the solver with the fastest pair kernel this JVM supports. */
+    public DirectGravitySolver() {
+        this(selectKernel());
+    }
+
+    /**
+     * Creates the solver with a given pair kernel, so that the kernels can be compared.
+     *
+     * @param kernelParam Pair kernel to use.
+     */
+    DirectGravitySolver(final PairKernel kernelParam) {
+        this.kernel = kernelParam;
+    }
+
+    /**
+     * Picks the vectorized kernel if the Vector API module was added to the boot layer. The
+     * vectorized kernel must not even be loaded otherwise.
+     *
+     * @return The pair kernel to use.
+     */
+    private static PairKernel selectKernel() {
+        if (VectorSupport.isAvailable()) {
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("Direct gravity uses the vectorized kernel");
+            }
+            return new VectorPairKernel();
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(
+                    "Direct gravity uses the scalar kernel, start the JVM with --add-modules {} "
+                            + "to vectorize it",
+                    VectorSupport.VECTOR_MODULE);
+        }
+        return new ScalarPairKernel();
+    }
+
+    @Override
+    public void computeAccelerations(final ParticleStore store, final ForkJoinPool workerPool) {
+        bodies.capture(store);
+        final int count = store.size();
+        final int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int[] tileRows = new int[blocks * (blocks + 1) / 2];
+        final int[] tileColumns = new int[tileRows.length];
+        int tile = 0;
+        for (int row = 0; row < blocks; row++) {
+            for (int column = row; column < blocks; column++) {
+                tileRows[tile] = row;
+                tileColumns[tile] = column;
+                tile++;
+            }
+        }
+
+        currentPool = workerPool;
+        workerPool.invoke(new TileTask(tileRows, tileColumns, 0, tileRows.length));
+        workerPool
+                .submit(() -> IntStream.range(0, count).parallel().forEach(i -> reduce(store, i)))
+                .join();
+    }
+
+    @Override
+    public void computeAccelerations(
+            final ParticleStore store,
+            final ForkJoinPool workerPool,
+            final int[] spheres,
+            final int sphereCount) {
+        // A sphere summed on its own costs twice its share of the symmetric tiles.
+        if (2 * sphereCount >= store.size()) {
+            computeAccelerations(store, workerPool);
+            return;
+        }
+        bodies.capture(store);
+        workerPool
+                .submit(
+                        () ->
+                                IntStream.range(0, sphereCount)
+                                        .parallel()
+                                        .forEach(k -> computeAcceleration(store, spheres[k])))
+                .join();
+    }
+
+    /**
+     * Sums the interactions of a single sphere with every other sphere, and writes the result to
+     * the store if it is a number.
+     *
+     * @param store Store receiving the acceleration.
+     * @param index Index of the sphere to update.
+     */
+    private void computeAcceleration(final ParticleStore store, final int index) {
+        final float[] x = bodies.getX();
+        final float[] y = bodies.getY();
+        final float[] z = bodies.getZ();
+        final float[] mass = bodies.getMass();
+        final float gravityConstant = SimulationHandler.getGravityConstant();
+        final float softening = SimulationHandler.getSofteningLength();
+        final float softeningSquared = softening * softening;
+        final float px = x[index];
+        final float py = y[index];
+        final float pz = z[index];
+        float accX = 0;
+        float accY = 0;
+        float accZ = 0;
+        float nearest = Float.POSITIVE_INFINITY;
+        for (int j = 0; j < bodies.getCount(); j++) {
+            if (j == index) {
+                continue;
+            }
+            final float dx = px - x[j];
+            final float dy = py - y[j];
+            final float dz = pz - z[j];
+            final float distanceSquared = dx * dx + dy * dy + dz * dz;
+            final float towardJ =
+                    mass[j] * (-gravityConstant / (distanceSquared + softeningSquared));
+            accX += dx * towardJ;
+            accY += dy * towardJ;
+            accZ += dz * towardJ;
+            nearest = Math.min(nearest, distanceSquared);
+        }
+        if (!Float.isNaN(accX + accY + accZ)) {
+            store.setAcceleration(index, accX, accY, accZ);
+        }
+        store.setNearestDistance(index, (float) Math.sqrt(nearest));
+    }
+
+    /**
+     * Finds the accumulator of the current thread, creating it on its first tile. There are never
+     * more slots than the pool has worker indices, however often workers come and go.
+     *
+     * @return The accumulator of the current thread.
+     */
+    private Accumulator currentAccumulator() {
+        final int slot =
+                Thread.currentThread() instanceof ForkJoinWorkerThread worker
+                                && worker.getPool() == currentPool
+                        ? worker.getPoolIndex() + 1
+                        : 0;
+        final Accumulator[] slots = accumulators;
+        if (slot < slots.length && slots[slot] != null) {
+            return slots[slot];
+        }
+        synchronized (this) {
+            final Accumulator[] grown =
+                    Arrays.copyOf(accumulators, Math.max(accumulators.length, slot + 1));
+            final Accumulator accumulator = new Accumulator();
+            grown[slot] = accumulator;
+            accumulators = grown;
+            return accumulator;
+        }
+    }
+
+    /**
+     * Computes every interaction of a tile.
+     *
+     * @param rowBlock Block of the spheres along the rows.
+     * @param columnBlock Block of the spheres along the columns, never below {@code rowBlock}.
+     */
+    private void computeTile(final int rowBlock, final int columnBlock) {
+        final int count = bodies.getCount();
+        final float gravityConstant = SimulationHandler.getGravityConstant();
+        final Accumulator accumulator = currentAccumulator();
+        accumulator.ensureCapacity(count);
+        final float[] accX = accumulator.accX;
+        final float[] accY = accumulator.accY;
+        final float[] accZ = accumulator.accZ;
+
+        final int rowEnd = Math.min((rowBlock + 1) * BLOCK_SIZE, count);
+        final int columnStart = columnBlock * BLOCK_SIZE;
+        final int columnEnd = Math.min(columnStart + BLOCK_SIZE, count);
+        for (int i = rowBlock * BLOCK_SIZE; i < rowEnd; i++) {
+            kernel.accumulateRow(
+                    bodies,
+                    i,
+                    Math.max(columnStart, i + 1),
+                    columnEnd,
+                    gravityConstant,
+                    accX,
+                    accY,
+                    accZ,
+                    accumulator.nearest);
+        }
+    }
+
+    /**
+     * Sums the accumulators of every worker for one sphere, writes the result to the store and
+     * clears the accumulators for the next step.
+     *
+     * @param store Store receiving the acceleration.
+     * @param index Sphere index.
+     */
+    private void reduce(final ParticleStore store, final int index) {
+        float sumX = 0;
+        float sumY = 0;
+        float sumZ = 0;
+        float nearest = Float.POSITIVE_INFINITY;
+        for (final Accumulator accumulator : accumulators) {
+            if (accumulator != null && index < accumulator.accX.length) {
+                sumX += accumulator.accX[index];
+                sumY += accumulator.accY[index];
+                sumZ += accumulator.accZ[index];
+                nearest = Math.min(nearest, accumulator.nearest[index]);
+                accumulator.accX[index] = 0;
+                accumulator.accY[index] = 0;
+                accumulator.accZ[index] = 0;
+                accumulator.nearest[index] = Float.POSITIVE_INFINITY;
+            }
+        }
+        if (!Float.isNaN(sumX + sumY + sumZ)) {
+            store.setAcceleration(index, sumX, sumY, sumZ);
+        }
+        store.setNearestDistance(index, (float) Math.sqrt(nearest));
+    }
+
+    /** Acceleration buffers owned by a single worker thread. */
+    private static final class Accumulator {
+        private float[] accX = new float[0];
+        private float[] accY = new float[0];
+        private float[] accZ = new float[0];
+        private float[] nearest = new float[0];
+
+        /**
+         * Grows the buffers, keeping what was already accumulated.
+         *
+         * @param count Amount of spheres.
+         */
+        private void ensureCapacity(final int count) {
+            if (accX.length < count) {
+                final int previous = accX.length;
+                accX = Arrays.copyOf(accX, count);
+                accY = Arrays.copyOf(accY, count);
+                accZ = Arrays.copyOf(accZ, count);
+                nearest = Arrays.copyOf(nearest, count);
+                Arrays.fill(nearest, previous, count, Float.POSITIVE_INFINITY);
+            }
+        }
+    }
+
+    /** Range of tiles, split in halves until a single tile is left. */
+    private final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] tileRows;
+        private final int[] tileColumns;
+        private final int firstTile;
+        private final int lastTile;
+
+        private TileTask(
+                final int[] tileRowsParam,
+                final int[] tileColumnsParam,
+                final int firstTileParam,
+                final int lastTileParam) {
+            this.tileRows = tileRowsParam;
+            this.tileColumns = tileColumnsParam;
+            this.firstTile = firstTileParam;
+            this.lastTile = lastTileParam;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastTile - firstTile <= 1) {
+                if (lastTile > firstTile) {
+                    computeTile(tileRows[firstTile], tileColumns[firstTile]);
+                }
+                return;
+            }
+            final int middle = (firstTile + lastTile) >>> 1;
+            invokeAll(
+                    new TileTask(tileRows, tileColumns, firstTile, middle),
+                    new TileTask(tileRows, tileColumns, middle, lastTile));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package model;
+
+/** Spheres always bounce off each other, losing what their bounciness says. <i>Boing.</i> */
+public final class ElasticCollisionResponse implements CollisionResponse {
+    @Override
+    public String getName() {
+        return "Elastic";
+    }
+
+    @Override
+    public boolean merges(final ParticleStore store, final int sphere, final int other) {
+        return false;
+    }
+}
@@ -0,0 +1,12 @@
+package model;
+
+/**
+ * Semi-implicit Euler: kick by the whole substep, then drift with the new velocity. First order
+ * and a single evaluation per substep. <i>The classic.</i>
+ */
+public final class EulerIntegrator extends SplittingIntegrator {
+    /** Creates the scheme. */
+    public EulerIntegrator() {
+        super("Euler", new float[] {1}, new float[] {1}, false);
+    }
+}
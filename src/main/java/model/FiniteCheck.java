@@ -0,0 +1,16 @@
+package model;
+
+/**
+ * Scan of a state column for values that are not finite. Kept behind an interface so that the
+ * {@link StabilityGuard} can pick a vectorized implementation when the platform offers one.
+ */
+interface FiniteCheck {
+    /**
+     * Checks whether a column only holds finite values.
+     *
+     * @param values Column to scan.
+     * @param count Number of values to scan from the start of the column.
+     * @return {@code false} if any value is infinite or not a number.
+     */
+    boolean allFinite(float[] values, int count);
+}
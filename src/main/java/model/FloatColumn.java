@@ -0,0 +1,72 @@
+package model;
+
+/**
+ * Column of floats of a {@link ParticleStore}, one value per sphere. Kept behind an interface so
+ * that the store can live on the heap or off it, see {@link ColumnStorage}. Distinct indices may
+ * be written concurrently, like the elements of an array. <i>A float by any other name.</i>
+ */
+public interface FloatColumn {
+    /**
+     * Reads a value.
+     *
+     * @param index Sphere index.
+     * @return The value of the sphere.
+     */
+    float get(int index);
+
+    /**
+     * Writes a value.
+     *
+     * @param index Sphere index.
+     * @param value New value of the sphere.
+     */
+    void set(int index, float value);
+
+    /**
+     * Adds to a value.
+     *
+     * @param index Sphere index.
+     * @param delta Amount to add to the value of the sphere.
+     */
+    void add(int index, float delta);
+
+    /**
+     * Writes the same value to a range of spheres.
+     *
+     * @param from First sphere index.
+     * @param to Sphere index right after the last one.
+     * @param value Value to write.
+     */
+    void fill(int from, int to, float value);
+
+    /**
+     * Copies a range of values to another column, which may be this one if the ranges don't
+     * overlap.
+     *
+     * @param from First sphere index to copy.
+     * @param target Column receiving the values.
+     * @param to First sphere index to write in the target.
+     * @param length Number of values.
+     */
+    void copyTo(int from, FloatColumn target, int to, int length);
+
+    /**
+     * Copies a range of values to an array.
+     *
+     * @param from First sphere index to copy.
+     * @param target Array receiving the values.
+     * @param to First array index to write.
+     * @param length Number of values.
+     */
+    void read(int from, float[] target, int to, int length);
+
+    /**
+     * Copies a range of values from an array.
+     *
+     * @param source Array holding the values.
+     * @param from First array index to copy.
+     * @param to First sphere index to write.
+     * @param length Number of values.
+     */
+    void write(float[] source, int from, int to, int length);
+}
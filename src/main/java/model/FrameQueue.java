@@ -0,0 +1,83 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded single-producer single-consumer ring of frame slots, such as {@link RecordedFrame}s on
+ * their way to the disk or {@link ReplayFrame}s on their way back from it. The producer fills
+ * the slot it claimed and publishes it, the consumer reads the oldest published slot and releases
+ * it. Slots are allocated once and recycled, and neither side ever takes a lock: the producer is
+ * told the ring is full instead of waiting. <i>Please wait in line.</i>
+ */
+final class FrameQueue<T> {
+    private final T[] slots;
+
+    /** Count of frames released by the consumer, written by the consumer only. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Count of frames published by the producer, written by the producer only. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Creates a ring with empty slots.
+     *
+     * @param capacity Number of slots.
+     * @param factory Creates the empty slots.
+     */
+    @SuppressWarnings("unchecked")
+    FrameQueue(final int capacity, final Supplier<T> factory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        }
+        slots = (T[]) new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = factory.get();
+        }
+    }
+
+    /**
+     * Returns the next slot to fill, to be published with {@link #publish()}. Producer only.
+     *
+     * @return The slot, or {@code null} if every slot still waits for the consumer.
+     */
+    T claim() {
+        final long produced = tail.getPlain();
+        if (produced - head.getAcquire() >= slots.length) {
+            return null;
+        }
+        return slots[(int) (produced % slots.length)];
+    }
+
+    /** Hands the claimed slot over to the consumer. Producer only. */
+    void publish() {
+        tail.setRelease(tail.getPlain() + 1);
+    }
+
+    /**
+     * Returns the oldest published slot, to be released with {@link #release()}. Consumer only.
+     *
+     * @return The slot, or {@code null} if nothing was published.
+     */
+    T peek() {
+        final long consumed = head.getPlain();
+        if (consumed >= tail.getAcquire()) {
+            return null;
+        }
+        return slots[(int) (consumed % slots.length)];
+    }
+
+    /**
+     * Returns the number of published slots not released yet. Consumer only.
+     *
+     * @return The number of slots, at least the real one since the producer only adds to it.
+     */
+    int size() {
+        return (int) (tail.getAcquire() - head.getPlain());
+    }
+
+    /** Gives the peeked slot back to the producer. Consumer only. */
+    void release() {
+        head.setRelease(head.getPlain() + 1);
+    }
+}
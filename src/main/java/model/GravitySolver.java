@@ -0,0 +1,34 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Strategy computing the gravitational acceleration of the spheres held in a {@link
+ * ParticleStore}. Solvers only read the current state of the store, and are free to split their
+ * work on the physics worker pool as they see fit. Every distance is softened by {@link
+ * SimulationHandler#getSofteningLength()}, so that no pair of spheres can produce an infinite
+ * acceleration. <i>What goes up must come down, the only question is how fast.</i>
+ */
+public interface GravitySolver {
+    /**
+     * Computes the acceleration of every sphere and writes it to the store, along with the distance
+     * to its nearest neighbor. The acceleration of a sphere is left untouched if its result is not
+     * a number.
+     *
+     * @param store Store holding the sphere state.
+     * @param workerPool Pool to run the computation on.
+     */
+    void computeAccelerations(ParticleStore store, ForkJoinPool workerPool);
+
+    /**
+     * Computes the acceleration of some spheres only, still attracted by every sphere. Solvers may
+     * update more spheres than requested when that is cheaper.
+     *
+     * @param store Store holding the sphere state.
+     * @param workerPool Pool to run the computation on.
+     * @param spheres Indices of the spheres to update.
+     * @param sphereCount Number of valid entries in {@code spheres}.
+     */
+    void computeAccelerations(
+            ParticleStore store, ForkJoinPool workerPool, int[] spheres, int sphereCount);
+}
@@ -0,0 +1,126 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * {@link ColumnStorage} backed by plain Java arrays, the default. Closing it is left to the garbage
+ * collector. <i>Home sweet heap.</i>
+ */
+final class HeapColumnStorage implements ColumnStorage {
+    /** Name of this storage. */
+    static final String NAME = "Heap";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public FloatColumn allocateFloats(final int capacity) {
+        return new Floats(new float[capacity]);
+    }
+
+    @Override
+    public IntColumn allocateInts(final int capacity) {
+        return new Ints(new int[capacity]);
+    }
+
+    @Override
+    public void close() {
+        // Unreachable arrays are collected like everything else.
+    }
+
+    /** Float column over an array. */
+    private static final class Floats implements FloatColumn {
+        private final float[] values;
+
+        /**
+         * Wraps an array.
+         *
+         * @param valuesParam Array holding the column.
+         */
+        Floats(final float[] valuesParam) {
+            this.values = valuesParam;
+        }
+
+        @Override
+        public float get(final int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(final int index, final float value) {
+            values[index] = value;
+        }
+
+        @Override
+        public void add(final int index, final float delta) {
+            values[index] += delta;
+        }
+
+        @Override
+        public void fill(final int from, final int to, final float value) {
+            Arrays.fill(values, from, to, value);
+        }
+
+        @Override
+        public void copyTo(
+                final int from, final FloatColumn target, final int to, final int length) {
+            target.write(values, from, to, length);
+        }
+
+        @Override
+        public void read(final int from, final float[] target, final int to, final int length) {
+            System.arraycopy(values, from, target, to, length);
+        }
+
+        @Override
+        public void write(final float[] source, final int from, final int to, final int length) {
+            System.arraycopy(source, from, values, to, length);
+        }
+    }
+
+    /** Int column over an array. */
+    private static final class Ints implements IntColumn {
+        private final int[] values;
+
+        /**
+         * Wraps an array.
+         *
+         * @param valuesParam Array holding the column.
+         */
+        Ints(final int[] valuesParam) {
+            this.values = valuesParam;
+        }
+
+        @Override
+        public int get(final int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(final int index, final int value) {
+            values[index] = value;
+        }
+
+        @Override
+        public void fill(final int from, final int to, final int value) {
+            Arrays.fill(values, from, to, value);
+        }
+
+        @Override
+        public void copyTo(final int from, final IntColumn target, final int to, final int length) {
+            target.write(values, from, to, length);
+        }
+
+        @Override
+        public void read(final int from, final int[] target, final int to, final int length) {
+            System.arraycopy(values, from, target, to, length);
+        }
+
+        @Override
+        public void write(final int[] source, final int from, final int to, final int length) {
+            System.arraycopy(source, from, values, to, length);
+        }
+    }
+}
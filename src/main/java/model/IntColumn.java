@@ -0,0 +1,63 @@
+package model;
+
+/**
+ * Column of ints of a {@link ParticleStore}, one value per sphere, the integer twin of {@link
+ * FloatColumn}.
+ */
+public interface IntColumn {
+    /**
+     * Reads a value.
+     *
+     * @param index Sphere index.
+     * @return The value of the sphere.
+     */
+    int get(int index);
+
+    /**
+     * Writes a value.
+     *
+     * @param index Sphere index.
+     * @param value New value of the sphere.
+     */
+    void set(int index, int value);
+
+    /**
+     * Writes the same value to a range of spheres.
+     *
+     * @param from First sphere index.
+     * @param to Sphere index right after the last one.
+     * @param value Value to write.
+     */
+    void fill(int from, int to, int value);
+
+    /**
+     * Copies a range of values to another column, which may be this one if the ranges don't
+     * overlap.
+     *
+     * @param from First sphere index to copy.
+     * @param target Column receiving the values.
+     * @param to First sphere index to write in the target.
+     * @param length Number of values.
+     */
+    void copyTo(int from, IntColumn target, int to, int length);
+
+    /**
+     * Copies a range of values to an array.
+     *
+     * @param from First sphere index to copy.
+     * @param target Array receiving the values.
+     * @param to First array index to write.
+     * @param length Number of values.
+     */
+    void read(int from, int[] target, int to, int length);
+
+    /**
+     * Copies a range of values from an array.
+     *
+     * @param source Array holding the values.
+     * @param from First array index to copy.
+     * @param to First sphere index to write.
+     * @param length Number of values.
+     */
+    void write(int[] source, int from, int to, int length);
+}
@@ -0,0 +1,51 @@
+package model;
+
+/**
+ * Scheme advancing the spheres over a substep, given as a splitting into stages. Each stage
+ * computes the accelerations of the active spheres, kicks them (velocity += acceleration * kick),
+ * then drifts every sphere (position += velocity * drift). The first stage never drifts before its
+ * kick, so every scheme starts from the positions the timestep levels were picked for. <i>Step by
+ * step, stage by stage.</i>
+ *
+ * <p>Implementations only describe the scheme, {@link SimulationHandler} runs it. New schemes
+ * become selectable once added to {@link Integrators}.
+ */
+public interface Integrator {
+    /**
+     * Returns the name shown in the interface and used to select the scheme.
+     *
+     * @return The name.
+     */
+    String getName();
+
+    /**
+     * Returns the number of stages of a substep.
+     *
+     * @return The stage count, at least 1.
+     */
+    int getStageCount();
+
+    /**
+     * Returns the kick of a stage, as a fraction of the block of the sphere.
+     *
+     * @param stage Stage index.
+     * @return The kick coefficient.
+     */
+    float getKick(int stage);
+
+    /**
+     * Returns the drift of a stage, as a fraction of the substep.
+     *
+     * @param stage Stage index.
+     * @return The drift coefficient.
+     */
+    float getDrift(int stage);
+
+    /**
+     * Returns whether the first stage may reuse the accelerations computed by the last stage of
+     * the previous substep, when the spheres have not drifted since (first same as last).
+     *
+     * @return {@code true} to skip the first evaluation whenever possible.
+     */
+    boolean reusesLastAcceleration();
+}
@@ -0,0 +1,57 @@
+package model;
+
+import java.util.List;
+
+/** Registry of the integrators the simulation can switch between. <i>Pick your poison.</i> */
+public final class Integrators {
+    /** System property naming the integrator used at startup. */
+    public static final String INTEGRATOR_PROPERTY = "gravity.integrator";
+
+    /** Every selectable integrator, in the order the interface cycles through them. */
+    public static final List<Integrator> ALL =
+            List.of(
+                    new EulerIntegrator(),
+                    new LeapfrogIntegrator(),
+                    new VelocityVerletIntegrator(),
+                    new YoshidaIntegrator());
+
+    /** <i>NO TOUCHY.</i> */
+    private Integrators() {}
+
+    /**
+     * Finds an integrator by name, ignoring case.
+     *
+     * @param name Name of the integrator.
+     * @return The integrator.
+     * @throws IllegalArgumentException If no integrator has this name.
+     */
+    public static Integrator byName(final String name) {
+        for (final Integrator integrator : ALL) {
+            if (integrator.getName().equalsIgnoreCase(name)) {
+                return integrator;
+            }
+        }
+        throw new IllegalArgumentException("Unknown integrator: " + name);
+    }
+
+    /**
+     * Returns the integrator named by the {@value #INTEGRATOR_PROPERTY} system property, or Euler
+     * if it is not set.
+     *
+     * @return The startup integrator.
+     */
+    public static Integrator fromSystemProperties() {
+        final String name = System.getProperty(INTEGRATOR_PROPERTY);
+        return name == null ? ALL.get(0) : byName(name);
+    }
+
+    /**
+     * Returns the integrator following the given one, wrapping around.
+     *
+     * @param integrator Current integrator.
+     * @return The next integrator.
+     */
+    public static Integrator next(final Integrator integrator) {
+        return ALL.get((ALL.indexOf(integrator) + 1) % ALL.size());
+    }
+}
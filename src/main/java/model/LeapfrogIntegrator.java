@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * Kick-drift-kick leapfrog: half a kick, a whole drift, then half a kick with the accelerations at
+ * the new positions. Second order and time-reversible. Both kicks are evaluated afresh, so the
+ * opening kick stays exact when collisions moved the spheres since the last step. <i>Hop, skip and
+ * jump.</i>
+ */
+public final class LeapfrogIntegrator extends SplittingIntegrator {
+    /** Creates the scheme. */
+    public LeapfrogIntegrator() {
+        super("Leapfrog KDK", new float[] {0.5f, 0.5f}, new float[] {1, 0}, false);
+    }
+}
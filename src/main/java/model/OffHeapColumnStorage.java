@@ -0,0 +1,200 @@
+package model;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * {@link ColumnStorage} outside of the Java heap, built on the Foreign Function &amp; Memory API.
+ * Every column is a native {@link MemorySegment} of a shared {@link Arena}, aligned on a cache
+ * line, and is read and written through {@link ValueLayout} accessors. The garbage collector never
+ * scans nor moves it, however big the simulation gets. <i>Out of sight, out of GC.</i>
+ *
+ * <p>Only the store columns leave the heap. The gravity solvers, the states published to the
+ * renderer, the timestep scheduler and the trails keep heap arrays of their own, sized by the
+ * sphere count, and their kernels run on those arrays rather than on the segments.
+ *
+ * <p>The API is a preview in Java 21, so this class only loads when the JVM was started with
+ * {@code --enable-preview}, see {@link ColumnStorages}.
+ */
+final class OffHeapColumnStorage implements ColumnStorage {
+    /** Name of this storage. */
+    static final String NAME = "Off-heap";
+
+    /** Alignment of the columns, in bytes: a cache line. */
+    private static final long ALIGNMENT = 64;
+
+    private final Arena arena = Arena.ofShared();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public FloatColumn allocateFloats(final int capacity) {
+        return new Floats(
+                arena.allocate(capacity * ValueLayout.JAVA_FLOAT.byteSize(), ALIGNMENT));
+    }
+
+    @Override
+    public IntColumn allocateInts(final int capacity) {
+        return new Ints(arena.allocate(capacity * ValueLayout.JAVA_INT.byteSize(), ALIGNMENT));
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    /** Float column over a native segment. */
+    private static final class Floats implements FloatColumn {
+        private final MemorySegment segment;
+
+        /**
+         * Wraps a segment.
+         *
+         * @param segmentParam Segment holding the column.
+         */
+        Floats(final MemorySegment segmentParam) {
+            this.segment = segmentParam;
+        }
+
+        @Override
+        public float get(final int index) {
+            return segment.getAtIndex(ValueLayout.JAVA_FLOAT, index);
+        }
+
+        @Override
+        public void set(final int index, final float value) {
+            segment.setAtIndex(ValueLayout.JAVA_FLOAT, index, value);
+        }
+
+        @Override
+        public void add(final int index, final float delta) {
+            segment.setAtIndex(
+                    ValueLayout.JAVA_FLOAT,
+                    index,
+                    segment.getAtIndex(ValueLayout.JAVA_FLOAT, index) + delta);
+        }
+
+        @Override
+        public void fill(final int from, final int to, final float value) {
+            for (int i = from; i < to; i++) {
+                segment.setAtIndex(ValueLayout.JAVA_FLOAT, i, value);
+            }
+        }
+
+        @Override
+        public void copyTo(
+                final int from, final FloatColumn target, final int to, final int length) {
+            if (target instanceof Floats other) {
+                MemorySegment.copy(
+                        segment,
+                        ValueLayout.JAVA_FLOAT,
+                        from * ValueLayout.JAVA_FLOAT.byteSize(),
+                        other.segment,
+                        ValueLayout.JAVA_FLOAT,
+                        to * ValueLayout.JAVA_FLOAT.byteSize(),
+                        length);
+                return;
+            }
+            for (int k = 0; k < length; k++) {
+                target.set(to + k, get(from + k));
+            }
+        }
+
+        @Override
+        public void read(final int from, final float[] target, final int to, final int length) {
+            MemorySegment.copy(
+                    segment,
+                    ValueLayout.JAVA_FLOAT,
+                    from * ValueLayout.JAVA_FLOAT.byteSize(),
+                    target,
+                    to,
+                    length);
+        }
+
+        @Override
+        public void write(final float[] source, final int from, final int to, final int length) {
+            MemorySegment.copy(
+                    source,
+                    from,
+                    segment,
+                    ValueLayout.JAVA_FLOAT,
+                    to * ValueLayout.JAVA_FLOAT.byteSize(),
+                    length);
+        }
+    }
+
+    /** Int column over a native segment. */
+    private static final class Ints implements IntColumn {
+        private final MemorySegment segment;
+
+        /**
+         * Wraps a segment.
+         *
+         * @param segmentParam Segment holding the column.
+         */
+        Ints(final MemorySegment segmentParam) {
+            this.segment = segmentParam;
+        }
+
+        @Override
+        public int get(final int index) {
+            return segment.getAtIndex(ValueLayout.JAVA_INT, index);
+        }
+
+        @Override
+        public void set(final int index, final int value) {
+            segment.setAtIndex(ValueLayout.JAVA_INT, index, value);
+        }
+
+        @Override
+        public void fill(final int from, final int to, final int value) {
+            for (int i = from; i < to; i++) {
+                segment.setAtIndex(ValueLayout.JAVA_INT, i, value);
+            }
+        }
+
+        @Override
+        public void copyTo(final int from, final IntColumn target, final int to, final int length) {
+            if (target instanceof Ints other) {
+                MemorySegment.copy(
+                        segment,
+                        ValueLayout.JAVA_INT,
+                        from * ValueLayout.JAVA_INT.byteSize(),
+                        other.segment,
+                        ValueLayout.JAVA_INT,
+                        to * ValueLayout.JAVA_INT.byteSize(),
+                        length);
+                return;
+            }
+            for (int k = 0; k < length; k++) {
+                target.set(to + k, get(from + k));
+            }
+        }
+
+        @Override
+        public void read(final int from, final int[] target, final int to, final int length) {
+            MemorySegment.copy(
+                    segment,
+                    ValueLayout.JAVA_INT,
+                    from * ValueLayout.JAVA_INT.byteSize(),
+                    target,
+                    to,
+                    length);
+        }
+
+        @Override
+        public void write(final int[] source, final int from, final int to, final int length) {
+            MemorySegment.copy(
+                    source,
+                    from,
+                    segment,
+                    ValueLayout.JAVA_INT,
+                    to * ValueLayout.JAVA_INT.byteSize(),
+                    length);
+        }
+    }
+}
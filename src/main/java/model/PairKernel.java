@@ -0,0 +1,34 @@
+package model;
+
+/**
+ * Inner loop of the direct gravity solver: the interactions between one sphere and a contiguous
+ * run of higher-indexed spheres. Kept behind an interface so that the solver can pick a vectorized
+ * implementation when the platform offers one.
+ */
+interface PairKernel {
+    /**
+     * Accumulates the pairwise accelerations between a sphere and the spheres in {@code
+     * [columnStart, columnEnd)}, applying equal and opposite contributions to both sides of every
+     * pair. The squared distance of the closest pair seen so far is kept for both sides as well.
+     *
+     * @param bodies Positions and masses of the spheres.
+     * @param row Index of the sphere, below {@code columnStart}.
+     * @param columnStart First sphere to interact with.
+     * @param columnEnd Sphere right after the last one to interact with.
+     * @param gravityConstant Gravitational constant.
+     * @param accX X acceleration accumulator.
+     * @param accY Y acceleration accumulator.
+     * @param accZ Z acceleration accumulator.
+     * @param nearest Smallest squared distance accumulator.
+     */
+    void accumulateRow(
+            BodySnapshot bodies,
+            int row,
+            int columnStart,
+            int columnEnd,
+            float gravityConstant,
+            float[] accX,
+            float[] accY,
+            float[] accZ,
+            float[] nearest);
+}
@@ -0,0 +1,451 @@
+package model;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Structure-of-arrays storage for the state of every sphere in the simulation. Each property lives
+ * in its own contiguous primitive column, and a sphere is nothing more than an index into those
+ * columns. <i>Everybody gets a number, nobody gets a heap object.</i>
+ *
+ * <p>Positions and velocities are double-buffered. The current columns ({@link #getX()}, ...) are
+ * only read during a step, while the next columns ({@link #getNextX()}, ...) receive the results.
+ * {@link #swapBuffers()} publishes them once every worker is done.
+ *
+ * <p>Columns are allocated from a {@link ColumnStorage}, on the heap or off it, which the store
+ * owns: {@link #close()} releases them all.
+ */
+@SuppressFBWarnings(
+        value = "EI_EXPOSE_REP",
+        justification = "Columns are shared with the physics kernels, copying defeats the point.")
+public final class ParticleStore {
+    /** Value of {@link #getSleepingIsland()} for a sphere that is not part of a sleeping island. */
+    public static final int AWAKE = -1;
+
+    private final ColumnStorage storage;
+    private final int capacity;
+    private int size;
+
+    private FloatColumn x;
+    private FloatColumn y;
+    private FloatColumn z;
+    private FloatColumn vx;
+    private FloatColumn vy;
+    private FloatColumn vz;
+    private FloatColumn nextX;
+    private FloatColumn nextY;
+    private FloatColumn nextZ;
+    private FloatColumn nextVx;
+    private FloatColumn nextVy;
+    private FloatColumn nextVz;
+    private final FloatColumn ax;
+    private final FloatColumn ay;
+    private final FloatColumn az;
+    private final FloatColumn nearestDistance;
+    private final FloatColumn mass;
+    private final FloatColumn radius;
+    private final FloatColumn bounciness;
+    private final IntColumn color;
+    private final IntColumn sleepingIsland;
+
+    /**
+     * Allocates every column up front on the heap for the given amount of spheres.
+     *
+     * @param capacityParam Maximum number of spheres the store can hold.
+     */
+    public ParticleStore(final int capacityParam) {
+        this(capacityParam, new HeapColumnStorage());
+    }
+
+    /**
+     * Allocates every column up front from a storage for the given amount of spheres.
+     *
+     * @param capacityParam Maximum number of spheres the store can hold.
+     * @param storageParam Storage to allocate from, owned by the store from now on.
+     */
+    @SuppressFBWarnings(
+            value = "EI_EXPOSE_REP2",
+            justification = "The storage is handed over to the store, which closes it.")
+    public ParticleStore(final int capacityParam, final ColumnStorage storageParam) {
+        if (capacityParam < 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacityParam);
+        }
+        this.storage = storageParam;
+        this.capacity = capacityParam;
+        this.x = storageParam.allocateFloats(capacityParam);
+        this.y = storageParam.allocateFloats(capacityParam);
+        this.z = storageParam.allocateFloats(capacityParam);
+        this.vx = storageParam.allocateFloats(capacityParam);
+        this.vy = storageParam.allocateFloats(capacityParam);
+        this.vz = storageParam.allocateFloats(capacityParam);
+        this.nextX = storageParam.allocateFloats(capacityParam);
+        this.nextY = storageParam.allocateFloats(capacityParam);
+        this.nextZ = storageParam.allocateFloats(capacityParam);
+        this.nextVx = storageParam.allocateFloats(capacityParam);
+        this.nextVy = storageParam.allocateFloats(capacityParam);
+        this.nextVz = storageParam.allocateFloats(capacityParam);
+        this.ax = storageParam.allocateFloats(capacityParam);
+        this.ay = storageParam.allocateFloats(capacityParam);
+        this.az = storageParam.allocateFloats(capacityParam);
+        this.nearestDistance = storageParam.allocateFloats(capacityParam);
+        this.mass = storageParam.allocateFloats(capacityParam);
+        this.radius = storageParam.allocateFloats(capacityParam);
+        this.bounciness = storageParam.allocateFloats(capacityParam);
+        this.color = storageParam.allocateInts(capacityParam);
+        this.sleepingIsland = storageParam.allocateInts(capacityParam);
+    }
+
+    /**
+     * Reserves the next free slot. The sphere starts at rest at the origin with perfect
+     * bounciness, callers are expected to fill it in with the setters.
+     *
+     * @return The index of the new sphere.
+     */
+    public int add() {
+        if (size >= capacity) {
+            throw new IllegalStateException("Particle store is full (" + capacity + " spheres)");
+        }
+        return addAll(1);
+    }
+
+    /**
+     * Appends several spheres at once, each initialized as by {@link #add()}. Their columns can
+     * then be filled from several threads, each writing its own range of indices.
+     *
+     * @param count Number of spheres to append.
+     * @return The index of the first appended sphere.
+     */
+    public int addAll(final int count) {
+        if (count < 0 || count > capacity - size) {
+            throw new IllegalStateException(
+                    "Particle store can't fit " + count + " more spheres (" + size + " of "
+                            + capacity + ")");
+        }
+        final int start = size;
+        final int end = size + count;
+        for (final FloatColumn column : new FloatColumn[] {x, y, z, vx, vy, vz, ax, ay, az}) {
+            column.fill(start, end, 0);
+        }
+        nearestDistance.fill(start, end, Float.POSITIVE_INFINITY);
+        bounciness.fill(start, end, 1.0f);
+        sleepingIsland.fill(start, end, AWAKE);
+        size = end;
+        return start;
+    }
+
+    /** Removes every sphere, keeping the columns for the next ones. */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Releases the columns. The store must not be used anymore, off-heap columns throw if it is.
+     */
+    public void close() {
+        storage.close();
+    }
+
+    /**
+     * Returns the storage the columns were allocated from.
+     *
+     * @return The storage.
+     */
+    public ColumnStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Changes the number of spheres without touching the columns. Used to bring back spheres
+     * removed by {@link #compact}, whose columns are about to be overwritten.
+     *
+     * @param sizeParam New sphere count, at most the capacity.
+     */
+    public void setSize(final int sizeParam) {
+        if (sizeParam < 0 || sizeParam > capacity) {
+            throw new IllegalArgumentException(
+                    "Size must be between 0 and " + capacity + ", got " + sizeParam);
+        }
+        size = sizeParam;
+    }
+
+    /**
+     * Removes spheres, moving the remaining ones down in every column so that they keep their
+     * order. <i>Squeeze in, there's room for everyone left.</i>
+     *
+     * @param removed Whether each sphere is removed, indexed by sphere.
+     * @param newIndex Receives the new index of each sphere, {@code -1} for the removed ones.
+     * @return The new sphere count.
+     */
+    public int compact(final boolean[] removed, final int[] newIndex) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (removed[i]) {
+                newIndex[i] = -1;
+                continue;
+            }
+            if (kept != i) {
+                moveSphere(i, kept);
+            }
+            newIndex[i] = kept++;
+        }
+        size = kept;
+        return kept;
+    }
+
+    /**
+     * Copies every column of a sphere to another slot.
+     *
+     * @param from Index of the sphere to move.
+     * @param to Index of its new slot.
+     */
+    private void moveSphere(final int from, final int to) {
+        x.set(to, x.get(from));
+        y.set(to, y.get(from));
+        z.set(to, z.get(from));
+        vx.set(to, vx.get(from));
+        vy.set(to, vy.get(from));
+        vz.set(to, vz.get(from));
+        nextX.set(to, nextX.get(from));
+        nextY.set(to, nextY.get(from));
+        nextZ.set(to, nextZ.get(from));
+        nextVx.set(to, nextVx.get(from));
+        nextVy.set(to, nextVy.get(from));
+        nextVz.set(to, nextVz.get(from));
+        ax.set(to, ax.get(from));
+        ay.set(to, ay.get(from));
+        az.set(to, az.get(from));
+        nearestDistance.set(to, nearestDistance.get(from));
+        mass.set(to, mass.get(from));
+        radius.set(to, radius.get(from));
+        bounciness.set(to, bounciness.get(from));
+        color.set(to, color.get(from));
+        sleepingIsland.set(to, sleepingIsland.get(from));
+    }
+
+    /**
+     * Returns the number of spheres currently stored.
+     *
+     * @return The sphere count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of spheres the store can hold.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Starts a step by copying the current positions and velocities into the next buffers, which
+     * then only have to receive the changes made during the step.
+     */
+    public void beginStep() {
+        x.copyTo(0, nextX, 0, size);
+        y.copyTo(0, nextY, 0, size);
+        z.copyTo(0, nextZ, 0, size);
+        vx.copyTo(0, nextVx, 0, size);
+        vy.copyTo(0, nextVy, 0, size);
+        vz.copyTo(0, nextVz, 0, size);
+    }
+
+    /**
+     * Ends a step: the next positions and velocities become the current ones. Must only be called
+     * once no worker reads the store anymore. <i>Out with the old, in with the new.</i>
+     */
+    public void swapBuffers() {
+        FloatColumn swap = x;
+        x = nextX;
+        nextX = swap;
+        swap = y;
+        y = nextY;
+        nextY = swap;
+        swap = z;
+        z = nextZ;
+        nextZ = swap;
+        swap = vx;
+        vx = nextVx;
+        nextVx = swap;
+        swap = vy;
+        vy = nextVy;
+        nextVy = swap;
+        swap = vz;
+        vz = nextVz;
+        nextVz = swap;
+    }
+
+    /**
+     * Sets the current position of a sphere.
+     *
+     * @param index Sphere index.
+     * @param px X coordinate.
+     * @param py Y coordinate.
+     * @param pz Z coordinate.
+     */
+    public void setPosition(final int index, final float px, final float py, final float pz) {
+        x.set(index, px);
+        y.set(index, py);
+        z.set(index, pz);
+    }
+
+    /**
+     * Sets the current velocity of a sphere.
+     *
+     * @param index Sphere index.
+     * @param velX X component.
+     * @param velY Y component.
+     * @param velZ Z component.
+     */
+    public void setVelocity(final int index, final float velX, final float velY, final float velZ) {
+        vx.set(index, velX);
+        vy.set(index, velY);
+        vz.set(index, velZ);
+    }
+
+    /**
+     * Sets the acceleration of a sphere.
+     *
+     * @param index Sphere index.
+     * @param accX X component.
+     * @param accY Y component.
+     * @param accZ Z component.
+     */
+    public void setAcceleration(
+            final int index, final float accX, final float accY, final float accZ) {
+        ax.set(index, accX);
+        ay.set(index, accY);
+        az.set(index, accZ);
+    }
+
+    /**
+     * Sets the distance from a sphere to its nearest neighbor, as seen by the gravity solver.
+     *
+     * @param index Sphere index.
+     * @param distance Distance between the centers, infinite if the sphere is alone.
+     */
+    public void setNearestDistance(final int index, final float distance) {
+        nearestDistance.set(index, distance);
+    }
+
+    /** Resets the acceleration of every sphere to zero, and forgets their nearest neighbors. */
+    public void clearAccelerations() {
+        ax.fill(0, size, 0);
+        ay.fill(0, size, 0);
+        az.fill(0, size, 0);
+        nearestDistance.fill(0, size, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Sets the intrinsic properties of a sphere.
+     *
+     * @param index Sphere index.
+     * @param radiusParam Sphere radius (float>0).
+     * @param massParam Sphere mass (float>0).
+     * @param bouncinessParam Sphere bounciness (0<=float<=1).
+     * @param colorParam Sphere color.
+     */
+    public void setBody(
+            final int index,
+            final float radiusParam,
+            final float massParam,
+            final float bouncinessParam,
+            final int colorParam) {
+        radius.set(index, radiusParam);
+        mass.set(index, massParam);
+        bounciness.set(index, bouncinessParam);
+        color.set(index, colorParam);
+    }
+
+    public FloatColumn getX() {
+        return x;
+    }
+
+    public FloatColumn getY() {
+        return y;
+    }
+
+    public FloatColumn getZ() {
+        return z;
+    }
+
+    public FloatColumn getVx() {
+        return vx;
+    }
+
+    public FloatColumn getVy() {
+        return vy;
+    }
+
+    public FloatColumn getVz() {
+        return vz;
+    }
+
+    public FloatColumn getNextX() {
+        return nextX;
+    }
+
+    public FloatColumn getNextY() {
+        return nextY;
+    }
+
+    public FloatColumn getNextZ() {
+        return nextZ;
+    }
+
+    public FloatColumn getNextVx() {
+        return nextVx;
+    }
+
+    public FloatColumn getNextVy() {
+        return nextVy;
+    }
+
+    public FloatColumn getNextVz() {
+        return nextVz;
+    }
+
+    public FloatColumn getAx() {
+        return ax;
+    }
+
+    public FloatColumn getAy() {
+        return ay;
+    }
+
+    public FloatColumn getAz() {
+        return az;
+    }
+
+    public FloatColumn getNearestDistance() {
+        return nearestDistance;
+    }
+
+    public FloatColumn getMass() {
+        return mass;
+    }
+
+    public FloatColumn getRadius() {
+        return radius;
+    }
+
+    public FloatColumn getBounciness() {
+        return bounciness;
+    }
+
+    public IntColumn getColor() {
+        return color;
+    }
+
+    /**
+     * Returns the sleeping island of every sphere, see {@link SleepingIslands}.
+     *
+     * @return The index of the sphere anchoring the island each sphere sleeps in, or {@link
+     *     #AWAKE}.
+     */
+    public IntColumn getSleepingIsland() {
+        return sleepingIsland;
+    }
+}
@@ -1,186 +1,69 @@
 package model;
 
-import static misc.MathUtils.getNormalVector;
-import static misc.VectorUtils.correctPVectorNaN;
-import static misc.VectorUtils.nullifyPVectorNaN;
-import static processing.core.PApplet.floor;
-import static processing.core.PApplet.lerp;
-import static processing.core.PConstants.SQUARE;
+import static misc.CollisionMath.length;
+import static misc.CollisionMath.normalVector;
 
-import app.GravityCollisionApp;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import java.util.ArrayList;
-import java.util.List;
-import misc.CollisionIndex;
-import processing.core.PVector;
 
 /**
  * Base class for the spheres. Core of the simulation. Each sphere has an update function that
  * allows it to look at all other objects and apply their gravity to it, while they do the same for
- * each other. A sphere has position (3D vector), a radius (float>0), a velocity (3D vector), a mass
- * (float>0), an acceleration (3D vector), a color (processing Color>=(255, 255, 255)), an index
- * (int>=0) and a bounciness (0<=float<=1).
+ * each other. The sphere itself is only a view over one index of the {@link ParticleStore}, which
+ * holds its position (3D vector), radius (float>0), velocity (3D vector), mass (float>0),
+ * acceleration (3D vector), color (processing Color>=(255, 255, 255)) and bounciness
+ * (0<=float<=1).
  */
 public class PhysicSphere {
-    private final float maxWidth;
-    private final float maxHeight;
-    private final float maxDepth;
-    private final int sphereColor;
-    private final PVector position;
-    private PVector velocity;
-    private final List<PVector> prevPos = new ArrayList<>();
-    // int maxSpeed = 5; // todo: implement this.
-    private final float radius;
-    private final float mass;
-    private final float bounciness;
-    private final int index;
-    private PVector acceleration;
-    private static GravityCollisionApp app;
+    /** Size of the scratch array needed by {@link #applyCollisions}. */
+    public static final int COLLISION_SCRATCH_SIZE = 6;
 
-    /**
-     * Overload for normal bounciness sphere. Bounciness is optional and has been known to cause
-     * some issues when too many spheres are colliding, so it is 1 by default (perfect bounciness)
-     * todo: Switch to builder pattern, this is going to be a nightmare soon enough.
-     *
-     * @param indexParam Sphere index.
-     * @param sphereColorParam Sphere color.
-     * @param positionParam Sphere initial position.
-     * @param velocityParam Sphere initial velocity.
-     * @param radiusParam Sphere radius.
-     * @param massParam Sphere mass.
-     */
-    public PhysicSphere(
-            final GravityCollisionApp appParam,
-            final int indexParam,
-            final int sphereColorParam,
-            final PVector positionParam,
-            final PVector velocityParam,
-            final float radiusParam,
-            final float massParam) {
-        this.maxWidth = 1000.0f;
-        this.maxHeight = 1000.0f;
-        this.maxDepth = 1000.0f;
-        this.index = indexParam;
-        this.sphereColor = sphereColorParam;
-        this.position = positionParam;
-        this.velocity = velocityParam;
-        this.radius = radiusParam * 2;
-        this.mass = massParam;
-        this.acceleration = new PVector(0.0f, 0.0f, 0.0f);
-        this.bounciness = 1.0f;
-        setApp(appParam);
-    }
+    private static final int SELF = 0;
+    private static final int OTHER = 3;
 
-    /**
-     * Sets the Processing app for all spheres.
-     *
-     * @param appParam Processing app. <i>Omagaaad, setaaaapp!</i>
-     */
-    @SuppressFBWarnings(
-            value = "EI_EXPOSE_STATIC_REP2",
-            justification = "PApplet must be shared in Processing; Renderer never exposes app.")
-    public static void setApp(final GravityCollisionApp appParam) {
-        if (app == null) {
-            app = appParam;
-        }
-    }
+    private final ParticleStore store;
+    private final int index;
 
     /**
-     * Draws an arrow. Adapted from <a
-     * href="https://forum.processing.org/one/topic/drawing-an-arrow.html">here</a>. <i>It's only
-     * stealing if it comes from StackOverflow, otherwise it's citing sources.</i>
+     * Creates a view over an already populated slot of the particle store.
      *
-     * @param originX X-coordinate of the arrow's origin.
-     * @param originY Y-coordinate of the arrow's origin.
-     * @param originZ Z-coordinate of the arrow's origin.
-     * @param lengthScalar Scalar applied to the length of the arrow.
-     * @param targetDirection Target direction, expressed as a PVector.
+     * @param storeParam Store holding the sphere's state.
+     * @param indexParam Sphere index in the store.
      */
-    private void drawArrow(
-            final float originX,
-            final float originY,
-            final float originZ,
-            final float lengthScalar,
-            final PVector targetDirection) {
-        app.pushMatrix();
-        app.strokeWeight(radius / 2);
-        app.translate(originX, originY, originZ);
-        final PVector targetDirectionCopy = targetDirection.copy();
-        targetDirectionCopy.normalize();
-        targetDirectionCopy.mult(lengthScalar * targetDirectionCopy.mag() * 10);
-
-        app.stroke(
-                255 - app.red(sphereColor),
-                255 - app.green(sphereColor),
-                255 - app.blue(sphereColor));
-        app.line(0, 0, 0, targetDirectionCopy.x, targetDirectionCopy.y, targetDirectionCopy.z);
-        app.fill(
-                255 - app.red(sphereColor),
-                255 - app.green(sphereColor),
-                255 - app.blue(sphereColor));
-        final float halfBaseSize = radius / 2;
-        final float tipLength = radius;
-        app.translate(targetDirectionCopy.x, targetDirectionCopy.y, targetDirectionCopy.z);
-        app.noStroke();
-        app.beginShape();
-        app.vertex(-halfBaseSize, -halfBaseSize, -halfBaseSize);
-        app.vertex(halfBaseSize, -halfBaseSize, -halfBaseSize);
-        app.vertex(
-                tipLength * targetDirectionCopy.x / 100,
-                tipLength * targetDirectionCopy.y / 100,
-                tipLength * targetDirectionCopy.z / 100);
-        app.endShape();
-        app.beginShape();
-        app.vertex(halfBaseSize, -halfBaseSize, -halfBaseSize);
-        app.vertex(halfBaseSize, halfBaseSize, -halfBaseSize);
-        app.vertex(
-                tipLength * targetDirectionCopy.x / 100,
-                tipLength * targetDirectionCopy.y / 100,
-                tipLength * targetDirectionCopy.z / 100);
-        app.endShape();
-
-        app.beginShape();
-        app.vertex(halfBaseSize, halfBaseSize, -halfBaseSize);
-        app.vertex(-halfBaseSize, halfBaseSize, -halfBaseSize);
-        app.vertex(
-                tipLength * targetDirectionCopy.x / 100,
-                tipLength * targetDirectionCopy.y / 100,
-                tipLength * targetDirectionCopy.z / 100);
-        app.endShape();
-
-        app.beginShape();
-        app.vertex(-halfBaseSize, halfBaseSize, -halfBaseSize);
-        app.vertex(-halfBaseSize, -halfBaseSize, -halfBaseSize);
-        app.vertex(
-                tipLength * targetDirectionCopy.x / 100,
-                tipLength * targetDirectionCopy.y / 100,
-                tipLength * targetDirectionCopy.z / 100);
-        app.endShape();
-
-        app.popMatrix();
+    @SuppressFBWarnings(
+            value = "EI_EXPOSE_REP2",
+            justification = "The store is shared by every sphere view by design.")
+    public PhysicSphere(final ParticleStore storeParam, final int indexParam) {
+        this.store = storeParam;
+        this.index = indexParam;
     }
 
     /**
-     * Checks whether one given sphere is colliding with the current instance. Accounts for both the
-     * current frame and the next one in case of high speeds. <i>Are you hitting on me?</i>
+     * Computes when one given sphere hits the current instance during this step, in the current
+     * state of the store. <i>Are you hitting on me?</i>
      *
-     * @param other Another instance of a sphere.
-     * @return {@code true} if the spheres are colliding.
+     * @param other Index of another sphere.
+     * @return The fraction of the step at which they touch, or {@link
+     *     ContinuousCollision#NO_IMPACT}.
      */
-    private boolean isCollidingWith(final PhysicSphere other) {
-        if (index == other.index) {
-            return false;
+    private float timeOfImpactWith(final int other) {
+        if (index == other) {
+            return ContinuousCollision.NO_IMPACT;
         }
-
-        final float sumR = radius + other.radius;
-
-        final boolean isFrameColliding = position.dist(other.position) < sumR;
-
-        final PVector nextPos = PVector.add(position, velocity);
-        final PVector otherNextPos = PVector.add(other.position, other.velocity);
-        final boolean isVectorColliding = nextPos.dist(otherNextPos) < sumR;
-
-        return isFrameColliding || isVectorColliding;
+        final FloatColumn x = store.getX();
+        final FloatColumn y = store.getY();
+        final FloatColumn z = store.getZ();
+        final FloatColumn vx = store.getVx();
+        final FloatColumn vy = store.getVy();
+        final FloatColumn vz = store.getVz();
+        final FloatColumn radius = store.getRadius();
+        return ContinuousCollision.timeOfImpact(
+                x.get(index) - x.get(other),
+                y.get(index) - y.get(other),
+                z.get(index) - z.get(other),
+                vx.get(index) - vx.get(other),
+                vy.get(index) - vy.get(other),
+                vz.get(index) - vz.get(other),
+                radius.get(index) + radius.get(other));
     }
 
     /**
@@ -194,254 +77,236 @@ public class PhysicSphere {
      * href="https://www.euclideanspace.com/physics/dynamics/collision/threed/index.htm">here</a>).
      * ISSUE: don't know how to handle rotation of objects yet <i>Are you insured?</i>
      *
-     * @param other The other sphere involved in the collision.
+     * <p>Only the current state is read. The response is recorded in the collision buffer for both
+     * spheres and applied once every batch is done. The spheres only bounce at the time of impact,
+     * see {@link #separate}.
+     *
+     * <p>Everything is computed on primitive locals and in the caller's scratch array, so a
+     * collision allocates nothing. Spheres the collision response wants merged don't bounce, the
+     * pair is recorded for {@link SphereMerger} instead.
+     *
+     * @param other Index of the other sphere involved in the collision.
+     * @param collisionBuffer Buffer receiving the response.
+     * @param scratch Scratch array of at least {@link #COLLISION_SCRATCH_SIZE} floats.
+     * @param response Collision response deciding whether the spheres merge.
      */
-    private void collideWith(final PhysicSphere other) {
-        if (isCollidingWith(other) && CollisionIndex.tryLock(this.index, other.index)) {
-            try {
-                final PVector impulseSelf =
-                        getNormalVector(
-                                velocity,
-                                position,
-                                other.position); // selfImpulseVector & v_imp_1 are swapped
-                final PVector impulseOther =
-                        getNormalVector(other.velocity, other.position, position);
-
-                final PVector residualVelocityOther = velocity.copy();
-                residualVelocityOther.sub(impulseOther);
-
-                final PVector residualVelocitySelf = other.velocity.copy();
-                residualVelocitySelf.sub(impulseSelf);
-
-                PVector impactVelocitySelf = velocity.copy();
-                final PVector impactVelocityOther;
-
-                impactVelocityOther =
-                        new PVector(
-                                impactVelocitySelf.mag()
-                                        * (residualVelocitySelf.x / residualVelocitySelf.mag()),
-                                impactVelocitySelf.mag()
-                                        * (residualVelocitySelf.y / residualVelocitySelf.mag()),
-                                impactVelocitySelf.mag()
-                                        * (residualVelocitySelf.z / residualVelocitySelf.mag()));
-                impactVelocitySelf =
-                        new PVector(
-                                impactVelocityOther.mag()
-                                        * (residualVelocityOther.x / residualVelocityOther.mag()),
-                                impactVelocityOther.mag()
-                                        * (residualVelocityOther.y / residualVelocityOther.mag()),
-                                impactVelocityOther.mag()
-                                        * (residualVelocityOther.z / residualVelocityOther.mag()));
-
-                final PVector momentumSelf = impactVelocitySelf.copy();
-                momentumSelf.mult(mass);
-
-                final PVector momentumOther = impactVelocityOther.copy();
-                momentumOther.mult(other.mass);
-
-                final PVector totalMomentum = momentumSelf.copy();
-                totalMomentum.add(momentumOther);
-
-                final PVector bounceVelocitySelf = impactVelocitySelf.copy();
-                bounceVelocitySelf.mult(bounciness);
-                final PVector bounceVelocityOther = impactVelocityOther.copy();
-                bounceVelocityOther.mult(bounciness);
-
-                // b_part => (((1-bounciness)(v_1_i-v_2_i)+v_1_f)*other.mass)/mass
-                final PVector restitutionDelta = bounceVelocitySelf.copy();
-                restitutionDelta.sub(bounceVelocityOther);
-
-                // v_1_f => (v_1_i*mass+v_2_i*other.mass-(1-bounciness)*(v_1_i-v_2_i))/(mass+1)
-                final PVector finalVelocitySelf = totalMomentum.copy();
-                finalVelocitySelf.sub(restitutionDelta);
-
-                finalVelocitySelf.div(mass + 1.0f);
-
-                // v_2_f => (1-bounciness)*(v_1_i-v_2_i)+v_1_f
-                final PVector finalVelocityOther = finalVelocitySelf.copy();
-                finalVelocityOther.add(restitutionDelta);
-
-                if (!Float.isNaN(finalVelocitySelf.x + finalVelocitySelf.y + finalVelocitySelf.z)) {
-                    velocity = finalVelocitySelf;
-                }
+    private void collideWith(
+            final int other,
+            final CollisionBuffer collisionBuffer,
+            final float[] scratch,
+            final CollisionResponse response) {
+        final float impactTime = timeOfImpactWith(other);
+        if (impactTime < 0) {
+            return;
+        }
+        if (response.merges(store, index, other)) {
+            collisionBuffer.addMerge(index, other);
+            return;
+        }
+        final FloatColumn x = store.getX();
+        final FloatColumn y = store.getY();
+        final FloatColumn z = store.getZ();
+        final FloatColumn mass = store.getMass();
+        final float bounciness = store.getBounciness().get(index);
+        final float velocityX = store.getVx().get(index);
+        final float velocityY = store.getVy().get(index);
+        final float velocityZ = store.getVz().get(index);
+        final float otherVelocityX = store.getVx().get(other);
+        final float otherVelocityY = store.getVy().get(other);
+        final float otherVelocityZ = store.getVz().get(other);
+        final float deltaX = x.get(other) - x.get(index);
+        final float deltaY = y.get(other) - y.get(index);
+        final float deltaZ = z.get(other) - z.get(index);
+
+        // selfImpulseVector & v_imp_1 are swapped
+        normalVector(velocityX, velocityY, velocityZ, deltaX, deltaY, deltaZ, scratch, SELF);
+        normalVector(
+                otherVelocityX,
+                otherVelocityY,
+                otherVelocityZ,
+                -deltaX,
+                -deltaY,
+                -deltaZ,
+                scratch,
+                OTHER);
+
+        final float residualOtherX = velocityX - scratch[OTHER];
+        final float residualOtherY = velocityY - scratch[OTHER + 1];
+        final float residualOtherZ = velocityZ - scratch[OTHER + 2];
+        final float residualSelfX = otherVelocityX - scratch[SELF];
+        final float residualSelfY = otherVelocityY - scratch[SELF + 1];
+        final float residualSelfZ = otherVelocityZ - scratch[SELF + 2];
+
+        final float speed = length(velocityX, velocityY, velocityZ);
+        final float residualSelfLength = length(residualSelfX, residualSelfY, residualSelfZ);
+        final float impactOtherX = speed * (residualSelfX / residualSelfLength);
+        final float impactOtherY = speed * (residualSelfY / residualSelfLength);
+        final float impactOtherZ = speed * (residualSelfZ / residualSelfLength);
+
+        final float otherSpeed = length(impactOtherX, impactOtherY, impactOtherZ);
+        final float residualOtherLength = length(residualOtherX, residualOtherY, residualOtherZ);
+        final float impactSelfX = otherSpeed * (residualOtherX / residualOtherLength);
+        final float impactSelfY = otherSpeed * (residualOtherY / residualOtherLength);
+        final float impactSelfZ = otherSpeed * (residualOtherZ / residualOtherLength);
+
+        // b_part => (((1-bounciness)(v_1_i-v_2_i)+v_1_f)*other.mass)/mass
+        final float restitutionX = impactSelfX * bounciness - impactOtherX * bounciness;
+        final float restitutionY = impactSelfY * bounciness - impactOtherY * bounciness;
+        final float restitutionZ = impactSelfZ * bounciness - impactOtherZ * bounciness;
+
+        // v_1_f => (v_1_i*mass+v_2_i*other.mass-(1-bounciness)*(v_1_i-v_2_i))/(mass+1)
+        final float massDivisor = mass.get(index) + 1.0f;
+        final float finalSelfX =
+                (impactSelfX * mass.get(index) + impactOtherX * mass.get(other) - restitutionX)
+                        / massDivisor;
+        final float finalSelfY =
+                (impactSelfY * mass.get(index) + impactOtherY * mass.get(other) - restitutionY)
+                        / massDivisor;
+        final float finalSelfZ =
+                (impactSelfZ * mass.get(index) + impactOtherZ * mass.get(other) - restitutionZ)
+                        / massDivisor;
+
+        // v_2_f => (1-bounciness)*(v_1_i-v_2_i)+v_1_f
+        final float finalOtherX = finalSelfX + restitutionX;
+        final float finalOtherY = finalSelfY + restitutionY;
+        final float finalOtherZ = finalSelfZ + restitutionZ;
+
+        float changeX = 0;
+        float changeY = 0;
+        float changeZ = 0;
+        if (!Float.isNaN(finalSelfX + finalSelfY + finalSelfZ)) {
+            changeX = velocityX - finalSelfX;
+            changeY = velocityY - finalSelfY;
+            changeZ = velocityZ - finalSelfZ;
+            collisionBuffer.addVelocity(index, -changeX, -changeY, -changeZ);
+        }
 
-                if (!Float.isNaN(
-                        finalVelocityOther.x + finalVelocityOther.y + finalVelocityOther.z)) {
-                    other.velocity = finalVelocityOther;
-                }
+        float otherChangeX = 0;
+        float otherChangeY = 0;
+        float otherChangeZ = 0;
+        if (!Float.isNaN(finalOtherX + finalOtherY + finalOtherZ)) {
+            otherChangeX = otherVelocityX - finalOtherX;
+            otherChangeY = otherVelocityY - finalOtherY;
+            otherChangeZ = otherVelocityZ - finalOtherZ;
+            collisionBuffer.addVelocity(other, -otherChangeX, -otherChangeY, -otherChangeZ);
+        }
 
-                correctClipping(other);
-            } finally {
-                CollisionIndex.unlock(this.index, other.index);
-            }
+        if (impactTime > 0) {
+            collisionBuffer.addDisplacement(
+                    index, impactTime * changeX, impactTime * changeY, impactTime * changeZ);
+            collisionBuffer.addDisplacement(
+                    other,
+                    impactTime * otherChangeX,
+                    impactTime * otherChangeY,
+                    impactTime * otherChangeZ);
+        } else {
+            separate(other, collisionBuffer);
         }
     }
 
     /**
-     * Attempts to correct some of the clipping issues. Note: very unoptimal.
+     * Pushes two overlapping spheres apart along their normal, each by a share of the overlap
+     * proportional to the other's mass. Spheres that touch later during the step are placed by
+     * {@link #collideWith} instead: the integration moves each sphere by its new velocity over the
+     * whole step, while it actually kept its old velocity until the time of impact {@code t}, so
+     * the difference {@code t * (oldVelocity - newVelocity)} is added back. Either way, the cost
+     * per pair is constant. <i>No more nudging until it fits.</i>
      *
-     * @param other Other sphere involved in the collision.
+     * @param other Index of the other sphere involved in the collision.
+     * @param collisionBuffer Buffer receiving the displacements.
      */
-    private void correctClipping(final PhysicSphere other) {
-        final PVector tCorrector = velocity.copy();
-        tCorrector.sub(getNormalVector(velocity, position, other.position));
-        tCorrector.mult(.1f);
-        int safetyCounter = 0;
-        while (isCollidingWith(other) && safetyCounter < 10_000) {
-            position.add(tCorrector);
-            safetyCounter++;
+    private void separate(final int other, final CollisionBuffer collisionBuffer) {
+        final FloatColumn mass = store.getMass();
+        final float normalX = store.getX().get(index) - store.getX().get(other);
+        final float normalY = store.getY().get(index) - store.getY().get(other);
+        final float normalZ = store.getZ().get(index) - store.getZ().get(other);
+        final float distance = length(normalX, normalY, normalZ);
+        final FloatColumn radius = store.getRadius();
+        final float overlap = radius.get(index) + radius.get(other) - distance;
+        if (distance <= 0 || overlap <= 0) {
+            return;
         }
+        final float scale = overlap / (distance * (mass.get(index) + mass.get(other)));
+        collisionBuffer.addDisplacement(
+                index,
+                normalX * scale * mass.get(other),
+                normalY * scale * mass.get(other),
+                normalZ * scale * mass.get(other));
+        collisionBuffer.addDisplacement(
+                other,
+                -normalX * scale * mass.get(index),
+                -normalY * scale * mass.get(index),
+                -normalZ * scale * mass.get(index));
     }
 
     /**
-     * Applies gravity forces (provided they are enabled) to a sphere as well as all the others.
-     * Note: this part accesses other spheres without going through the thread structures, as the
-     * movement from one frame to the other should be negligible. <i>I think I'm falling for
-     * you.</i>
+     * Runs the narrow phase against the collision candidates the broad phase found for this
+     * sphere, except the ones sleeping in the same island. <i>Brace for impact.</i>
      *
-     * @param others List of all the other spheres.
+     * @param collisionGrid Broad phase, already built for the current frame.
+     * @param collisionBuffer Buffer receiving the collision responses.
+     * @param scratch Scratch array of at least {@link #COLLISION_SCRATCH_SIZE} floats, owned by
+     *     the calling thread.
+     * @param response Collision response deciding whether colliding spheres merge.
      */
-    public void applyAttraction(final List<PhysicSphere> others) {
-        final PVector finalAcc = new PVector(0, 0, 0);
-        PVector tAcc = new PVector(0, 0, 0);
-        for (final PhysicSphere other : others) {
-            collideWith(other);
-            if (other.index != index && SimulationHandler.isGravityEnabled()) {
-                float smallGFactor = -other.mass * SimulationHandler.getGravityConstant();
-                smallGFactor /= other.position.dist(position) * other.position.dist(position);
-                final PVector smallG = position.copy();
-                smallG.sub(other.position);
-                smallG.mult(smallGFactor);
-                tAcc = smallG.copy();
-                tAcc.mult(mass);
-                finalAcc.add(smallG);
-            }
-            if (!Float.isNaN(tAcc.x + tAcc.y + tAcc.z)) {
-                acceleration = finalAcc.copy();
+    public void applyCollisions(
+            final CollisionGrid collisionGrid,
+            final CollisionBuffer collisionBuffer,
+            final float[] scratch,
+            final CollisionResponse response) {
+        final IntColumn sleepingIsland = store.getSleepingIsland();
+        final int island = sleepingIsland.get(index);
+        final int end = collisionGrid.getCandidateEnd(index);
+        for (int slot = collisionGrid.getCandidateStart(index); slot < end; slot++) {
+            final int other = collisionGrid.getCandidate(slot);
+            // Spheres of a sleeping island rest against each other, see SleepingIslands.
+            if (island == ParticleStore.AWAKE || sleepingIsland.get(other) != island) {
+                collideWith(other, collisionBuffer, scratch, response);
             }
         }
     }
 
-    /** Updates the position of the sphere. <i>Take care of them.</i> */
-    public void update() {
-        final float fpsCount = 60.0f;
-        if (SimulationHandler.getTargetPhysicsFPS() < fpsCount) {
-            final int frameInterval =
-                    Math.round(fpsCount / SimulationHandler.getTargetPhysicsFPS());
-            if (app.getFrames() % frameInterval == 0) {
-                updatePhysics();
-            }
-        } else {
-            int physicsStepsThisFrame =
-                    Math.round(SimulationHandler.getTargetPhysicsFPS() / fpsCount);
-            physicsStepsThisFrame = Math.max(1, Math.min(physicsStepsThisFrame, 10));
-
-            for (int i = 0; i < physicsStepsThisFrame; i++) {
-                updatePhysics();
-            }
-        }
-    }
-
-    /** Updates the position and the velocity of the sphere. */
-    private void updatePhysics() {
-        prevPos.add(position.copy());
-        velocity.add(acceleration);
+    /**
+     * Updates the next position and the next velocity of the sphere by one substep. Only touches
+     * the sphere's own next state, so every sphere can be updated concurrently. <i>Take care of
+     * them.</i>
+     *
+     * @param kick Fraction of a step the acceleration is applied for, zero if the sphere is not
+     *     active.
+     * @param drift Fraction of a step the velocity is applied for.
+     */
+    public void update(final float kick, final float drift) {
+        final FloatColumn x = store.getNextX();
+        final FloatColumn y = store.getNextY();
+        final FloatColumn z = store.getNextZ();
+        final FloatColumn vx = store.getNextVx();
+        final FloatColumn vy = store.getNextVy();
+        final FloatColumn vz = store.getNextVz();
+        final float bounciness = store.getBounciness().get(index);
+        final float bound = SimulationHandler.BOUNDS_SIZE;
+
+        vx.add(index, store.getAx().get(index) * kick);
+        vy.add(index, store.getAy().get(index) * kick);
+        vz.add(index, store.getAz().get(index) * kick);
         if (SimulationHandler.areBoundsEnabled()) {
-            if (position.x <= 0 && velocity.x < 0) {
-                velocity.x = -velocity.x * bounciness;
-            } else if (position.x >= maxWidth && velocity.x > 0) {
-                velocity.x = -velocity.x * bounciness;
+            if (x.get(index) <= 0 && vx.get(index) < 0) {
+                vx.set(index, -vx.get(index) * bounciness);
+            } else if (x.get(index) >= bound && vx.get(index) > 0) {
+                vx.set(index, -vx.get(index) * bounciness);
             }
-            if (position.y <= 0 && velocity.y < 0) {
-                velocity.y = -velocity.y * bounciness;
-            } else if (position.y >= maxHeight && velocity.y > 0) {
-                velocity.y = -velocity.y * bounciness;
+            if (y.get(index) <= 0 && vy.get(index) < 0) {
+                vy.set(index, -vy.get(index) * bounciness);
+            } else if (y.get(index) >= bound && vy.get(index) > 0) {
+                vy.set(index, -vy.get(index) * bounciness);
             }
-            if (position.z <= 0 && velocity.z < 0) {
-                velocity.z = -velocity.z * bounciness;
-            } else if (position.z >= maxDepth && velocity.z > 0) {
-                velocity.z = -velocity.z * bounciness;
+            if (z.get(index) <= 0 && vz.get(index) < 0) {
+                vz.set(index, -vz.get(index) * bounciness);
+            } else if (z.get(index) >= bound && vz.get(index) > 0) {
+                vz.set(index, -vz.get(index) * bounciness);
             }
         }
-        nullifyPVectorNaN(velocity);
-        position.add(velocity);
-        correctPVectorNaN(position, prevPos);
-    }
-
-    /**
-     * Draws a sphere according to its position radius, color, index (name) and tail effect.
-     * <i>Datnoplay.</i>
-     */
-    public void display() {
-        app.pushMatrix();
-        app.translate(position.x, position.y, position.z);
-        app.noStroke();
-        app.fill(sphereColor, 200);
-        app.sphere(radius * 2);
-        app.popMatrix();
-        app.fill(
-                255 - app.red(sphereColor),
-                255 - app.green(sphereColor),
-                255 - app.blue(sphereColor));
-        app.textSize(radius * 3);
-        if (SimulationHandler.isDrawNames()) {
-            app.text(
-                    (char) (index + 65),
-                    lerp(maxWidth * 0.05f, maxWidth * 0.95f, (position.x - radius) / maxWidth),
-                    lerp(maxHeight * 0.05f, maxHeight * 0.95f, (position.y + radius) / maxHeight)
-                            + 100f,
-                    position.z + radius * 2f);
-        }
-        if (SimulationHandler.isDrawWeights()) {
-            app.text(
-                    floor(mass * 100),
-                    lerp(maxWidth * 0.05f, maxWidth * 0.95f, (position.x - radius) / maxWidth),
-                    lerp(maxHeight * 0.05f, maxHeight * 0.95f, (position.y + radius) / maxHeight),
-                    position.z + radius * 2);
-        }
-        app.noFill();
-        app.beginShape();
-        app.curveVertex(position.x, position.y, position.z);
-        app.strokeCap(SQUARE);
-        if (SimulationHandler.isDrawTrails()) {
-            // Note: Processing's way of drawing strokes gives them no depth on the Z axis, which
-            // makes them look flat when the balls turn at sharp angles or face slightly away from
-            // the camera.
-            for (int i = prevPos.isEmpty() ? 0 : prevPos.size() - 1;
-                    i > (prevPos.size() > 20 ? prevPos.size() - 20 : 0);
-                    i--) {
-                app.stroke(
-                        sphereColor,
-                        lerp(
-                                255f,
-                                25f,
-                                ((float) (prevPos.size() < 20 ? i : prevPos.size() - i))
-                                        / Math.min(prevPos.size(), 20)));
-                app.strokeWeight(
-                        lerp(
-                                0,
-                                radius * 2,
-                                lerp(
-                                        1.0f,
-                                        0,
-                                        ((float) (prevPos.size() - i))
-                                                / Math.min(prevPos.size(), 20))));
-                app.curveVertex(prevPos.get(i).x, prevPos.get(i).y, prevPos.get(i).z);
-            }
-        }
-        app.endShape();
-
-        if (index >= 0 && SimulationHandler.isDrawArrows()) {
-            drawArrow(position.x, position.y, position.z, radius, velocity);
-        }
-    }
-
-    /**
-     * Returns the position of the sphere.
-     *
-     * @return The position of the sphere. <i>Ah, I finally found my bearings.</i>
-     */
-    public PVector getPosition() {
-        return position;
+        x.add(index, vx.get(index) * drift);
+        y.add(index, vy.get(index) * drift);
+        z.add(index, vz.get(index) * drift);
     }
 }
@@ -0,0 +1,94 @@
+package model;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Positions of the spheres at the end of a step, handed from the physics thread to the trajectory
+ * writer. Radii and colors only come along when the spheres changed since the last handed frame.
+ * Slots are reused, so arrays only grow. <i>Say cheese.</i>
+ */
+@SuppressFBWarnings(
+        value = "EI_EXPOSE_REP",
+        justification = "Read in place by the encoder, copying defeats the point.")
+final class RecordedFrame {
+    private long step;
+    private long generation;
+    private int count;
+    private boolean attributes;
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] z = new float[0];
+    private float[] radius = new float[0];
+    private int[] color = new int[0];
+
+    /**
+     * Copies the current positions of a store.
+     *
+     * @param store Store to copy.
+     * @param stepParam Index of the step that just ended.
+     * @param generationParam Seed generation, see {@link SimulationState#getGeneration()}.
+     * @param withAttributes Whether to copy the radii and colors as well.
+     */
+    void capture(
+            final ParticleStore store,
+            final long stepParam,
+            final long generationParam,
+            final boolean withAttributes) {
+        step = stepParam;
+        generation = generationParam;
+        count = store.size();
+        attributes = withAttributes;
+        if (x.length < count) {
+            x = new float[count];
+            y = new float[count];
+            z = new float[count];
+        }
+        store.getX().read(0, x, 0, count);
+        store.getY().read(0, y, 0, count);
+        store.getZ().read(0, z, 0, count);
+        if (withAttributes) {
+            if (radius.length < count) {
+                radius = new float[count];
+                color = new int[count];
+            }
+            store.getRadius().read(0, radius, 0, count);
+            store.getColor().read(0, color, 0, count);
+        }
+    }
+
+    long getStep() {
+        return step;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    boolean hasAttributes() {
+        return attributes;
+    }
+
+    float[] getX() {
+        return x;
+    }
+
+    float[] getY() {
+        return y;
+    }
+
+    float[] getZ() {
+        return z;
+    }
+
+    float[] getRadius() {
+        return radius;
+    }
+
+    int[] getColor() {
+        return color;
+    }
+}
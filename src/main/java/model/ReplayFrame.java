@@ -0,0 +1,105 @@
+package model;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Frame of a trajectory file decoded ahead of the playhead, handed from the replay decoder to the
+ * draw thread. Slots are reused, so arrays only grow. <i>Previously on Gravity Collision.</i>
+ */
+@SuppressFBWarnings(
+        value = "EI_EXPOSE_REP",
+        justification = "Read in place by the player, copying defeats the point.")
+final class ReplayFrame {
+    private long frame;
+    private long epoch;
+    private long segment;
+    private long step;
+    private int count;
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] z = new float[0];
+    private float[] radius = new float[0];
+    private int[] color = new int[0];
+
+    /**
+     * Grows the arrays so that they can hold the given amount of spheres, and sets the count.
+     *
+     * @param countParam Amount of spheres of the frame.
+     */
+    void resize(final int countParam) {
+        count = countParam;
+        if (x.length < countParam) {
+            x = new float[countParam];
+            y = new float[countParam];
+            z = new float[countParam];
+            radius = new float[countParam];
+            color = new int[countParam];
+        }
+    }
+
+    /**
+     * Tags the frame with its place in the file and the seek it answers.
+     *
+     * @param frameParam Index of the frame in the file.
+     * @param epochParam Seek request the frame was decoded for.
+     */
+    void tag(final long frameParam, final long epochParam) {
+        frame = frameParam;
+        epoch = epochParam;
+    }
+
+    void setSegment(final long segmentParam) {
+        segment = segmentParam;
+    }
+
+    void setStep(final long stepParam) {
+        step = stepParam;
+    }
+
+    long getFrame() {
+        return frame;
+    }
+
+    long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns the run of frames this one belongs to. Two frames of the same segment hold the same
+     * spheres and were decoded one after the other, so that positions can be interpolated and
+     * trails drawn between them.
+     *
+     * @return The segment, increasing over the life of the decoder.
+     */
+    long getSegment() {
+        return segment;
+    }
+
+    long getStep() {
+        return step;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    float[] getX() {
+        return x;
+    }
+
+    float[] getY() {
+        return y;
+    }
+
+    float[] getZ() {
+        return z;
+    }
+
+    float[] getRadius() {
+        return radius;
+    }
+
+    int[] getColor() {
+        return color;
+    }
+}
@@ -0,0 +1,17 @@
+package model;
+
+/**
+ * Plain scalar {@link FiniteCheck}. {@code v - v} is zero for finite values and not a number
+ * otherwise, so the whole column folds into a single sum checked once at the end, without a branch
+ * per value. <i>Nothing from nothing leaves nothing.</i>
+ */
+final class ScalarFiniteCheck implements FiniteCheck {
+    @Override
+    public boolean allFinite(final float[] values, final int count) {
+        float sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i] - values[i];
+        }
+        return sum == 0;
+    }
+}
@@ -0,0 +1,55 @@
+package model;
+
+/**
+ * Plain scalar {@link PairKernel}, one pair at a time, with Plummer softening. <i>Slow and
+ * steady.</i>
+ */
+final class ScalarPairKernel implements PairKernel {
+    @Override
+    public void accumulateRow(
+            final BodySnapshot bodies,
+            final int row,
+            final int columnStart,
+            final int columnEnd,
+            final float gravityConstant,
+            final float[] accX,
+            final float[] accY,
+            final float[] accZ,
+            final float[] nearest) {
+        final float[] x = bodies.getX();
+        final float[] y = bodies.getY();
+        final float[] z = bodies.getZ();
+        final float[] mass = bodies.getMass();
+        final float px = x[row];
+        final float py = y[row];
+        final float pz = z[row];
+        final float massI = mass[row];
+        final float softening = SimulationHandler.getSofteningLength();
+        final float softeningSquared = softening * softening;
+        float rowAccX = 0;
+        float rowAccY = 0;
+        float rowAccZ = 0;
+        float rowNearest = nearest[row];
+        for (int j = columnStart; j < columnEnd; j++) {
+            final float dx = px - x[j];
+            final float dy = py - y[j];
+            final float dz = pz - z[j];
+            final float distanceSquared = dx * dx + dy * dy + dz * dz;
+            final float pairFactor = -gravityConstant / (distanceSquared + softeningSquared);
+            final float towardJ = mass[j] * pairFactor;
+            final float towardI = massI * pairFactor;
+            rowAccX += dx * towardJ;
+            rowAccY += dy * towardJ;
+            rowAccZ += dz * towardJ;
+            accX[j] -= dx * towardI;
+            accY[j] -= dy * towardI;
+            accZ[j] -= dz * towardI;
+            rowNearest = Math.min(rowNearest, distanceSquared);
+            nearest[j] = Math.min(nearest[j], distanceSquared);
+        }
+        accX[row] += rowAccX;
+        accY[row] += rowAccY;
+        accZ[row] += rowAccZ;
+        nearest[row] = rowNearest;
+    }
+}
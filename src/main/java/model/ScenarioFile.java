@@ -0,0 +1,681 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Initial conditions read from a scenario file, straight into a fresh store. <i>Once upon a
+ * time, in a galaxy not so far away.</i>
+ *
+ * <p>Two formats are read, one sphere per row with its position, velocity, mass, radius and color:
+ *
+ * <ul>
+ *   <li>CSV, for files ending in {@code .csv}: comma-separated {@code x,y,z,vx,vy,vz,mass,radius,
+ *       color}, the color being a decimal ARGB int, {@code #RRGGBB}, {@code #AARRGGBB} or {@code
+ *       0xAARRGGBB}. Blank lines and lines starting with {@code #} are skipped, and so is the first
+ *       line if it starts with a letter, as a header.
+ *   <li>Binary, for any other file: a {@value #HEADER_BYTES}-byte little-endian header holding the
+ *       magic number {@code GSCN}, the format version, the sphere count and a reserved int, then
+ *       {@value #ROW_BYTES}-byte rows of eight floats in the order above and an int color.
+ * </ul>
+ *
+ * <p>Files are read in chunks of a few megabytes with positional reads, every chunk parsed by a
+ * worker into the store at its own range of indices. The store can't grow, so a CSV file is read
+ * twice: a first pass counts the rows of every chunk, which tells where each chunk starts in the
+ * store, and the second one parses them.
+ */
+public final class ScenarioFile {
+    /** Magic number opening every binary scenario file, {@code GSCN} in ASCII. */
+    static final int MAGIC = 0x4753434E;
+
+    /** Current version of the binary format. */
+    static final int VERSION = 1;
+
+    /** Size of the binary header, in bytes. */
+    static final int HEADER_BYTES = 16;
+
+    /** Size of a binary row, in bytes. */
+    static final int ROW_BYTES = 8 * Float.BYTES + Integer.BYTES;
+
+    /** Bytes read at once by a worker. */
+    static final int CHUNK_BYTES = 4 << 20;
+
+    /** Binary rows read at once by a worker. */
+    private static final int CHUNK_ROWS = CHUNK_BYTES / ROW_BYTES;
+
+    /** Longest CSV line, read past the end of a chunk to finish its last row. */
+    private static final int MAX_LINE_BYTES = 4096;
+
+    /** Largest significand parsed without rounding, below 2^53. */
+    private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+
+    /** Exact powers of ten of a double. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+        1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Follows the progress of a read. */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called from the workers as chunks are parsed, in no particular order.
+         *
+         * @param done Amount of work done, in bytes read.
+         * @param total Total amount of work, in bytes read.
+         */
+        void onProgress(long done, long total);
+    }
+
+    /** <i>NO TOUCHY.</i> */
+    private ScenarioFile() {}
+
+    /**
+     * Tells whether a file is read as CSV, from its extension.
+     *
+     * @param path Scenario file.
+     * @return {@code true} for CSV, {@code false} for binary.
+     */
+    public static boolean isCsv(final Path path) {
+        final Path name = path.getFileName();
+        return name != null && name.toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+    }
+
+    /**
+     * Reads a scenario file into a new store. Spheres start with perfect bounciness.
+     *
+     * @param path File to read.
+     * @param storage Storage of the store columns.
+     * @param workerPool Pool to parse the chunks on.
+     * @param progress Listener told about the progress.
+     * @return A store holding the spheres, owned by the caller.
+     * @throws IOException If the file can't be read, or holds an invalid row.
+     */
+    public static ParticleStore read(
+            final Path path,
+            final ColumnStorage storage,
+            final ForkJoinPool workerPool,
+            final ProgressListener progress)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return isCsv(path)
+                    ? readCsv(path, channel, storage, workerPool, progress)
+                    : readBinary(path, channel, storage, workerPool, progress);
+        }
+    }
+
+    /**
+     * Reads a binary scenario file, one chunk of rows per task.
+     *
+     * @param path File to read, for error messages.
+     * @param channel Channel of the file.
+     * @param storage Storage of the store columns.
+     * @param workerPool Pool to parse the chunks on.
+     * @param progress Listener told about the progress.
+     * @return The filled store.
+     * @throws IOException If the file can't be read, or holds an invalid row.
+     */
+    private static ParticleStore readBinary(
+            final Path path,
+            final FileChannel channel,
+            final ColumnStorage storage,
+            final ForkJoinPool workerPool,
+            final ProgressListener progress)
+            throws IOException {
+        final long size = channel.size();
+        final ByteBuffer header =
+                ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (size < HEADER_BYTES || readFully(channel, header, 0) < HEADER_BYTES) {
+            throw new IOException("Not a scenario file: " + path);
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a scenario file: " + path);
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException(
+                    "Unsupported scenario file version " + header.getInt(4) + " in " + path);
+        }
+        final int count = header.getInt(8);
+        if (count < 0 || size != HEADER_BYTES + (long) count * ROW_BYTES) {
+            throw new IOException(
+                    "Scenario file " + path + " should hold " + count + " rows, found "
+                            + (size - HEADER_BYTES) / ROW_BYTES);
+        }
+
+        final ParticleStore store = new ParticleStore(count, storage);
+        store.addAll(count);
+        final AtomicLong done = new AtomicLong();
+        final int chunkCount = (count + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        try {
+            runChunks(
+                    workerPool,
+                    chunkCount,
+                    chunk -> {
+                        final int first = chunk * CHUNK_ROWS;
+                        final int length = Math.min(CHUNK_ROWS, count - first);
+                        final ByteBuffer data =
+                                ByteBuffer.allocate(length * ROW_BYTES)
+                                        .order(ByteOrder.LITTLE_ENDIAN);
+                        if (readFully(channel, data, HEADER_BYTES + (long) first * ROW_BYTES)
+                                < data.capacity()) {
+                            throw new IOException("Scenario file " + path + " was cut short");
+                        }
+                        final Rows rows = new Rows(length);
+                        for (int row = 0; row < length; row++) {
+                            final int offset = row * ROW_BYTES;
+                            for (int column = 0; column < 8; column++) {
+                                rows.floats[column][row] =
+                                        data.getFloat(offset + column * Float.BYTES);
+                            }
+                            rows.colors[row] = data.getInt(offset + 8 * Float.BYTES);
+                            rows.check(row, first, path);
+                        }
+                        rows.flush(store, first, length);
+                        progress.onProgress(
+                                done.addAndGet((long) length * ROW_BYTES), size - HEADER_BYTES);
+                    });
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Reads a CSV scenario file in two passes over the same chunks, counting the rows of every
+     * chunk, then parsing them at the indices given by the counts.
+     *
+     * @param path File to read, for error messages.
+     * @param channel Channel of the file.
+     * @param storage Storage of the store columns.
+     * @param workerPool Pool to parse the chunks on.
+     * @param progress Listener told about the progress, counting both passes.
+     * @return The filled store.
+     * @throws IOException If the file can't be read, or holds an invalid row.
+     */
+    private static ParticleStore readCsv(
+            final Path path,
+            final FileChannel channel,
+            final ColumnStorage storage,
+            final ForkJoinPool workerPool,
+            final ProgressListener progress)
+            throws IOException {
+        final long size = channel.size();
+        final int chunkCount = (int) ((size + CHUNK_BYTES - 1) / CHUNK_BYTES);
+        final int[] rowCounts = new int[chunkCount];
+        final AtomicLong done = new AtomicLong();
+        runChunks(
+                workerPool,
+                chunkCount,
+                chunk -> {
+                    final long start = (long) chunk * CHUNK_BYTES;
+                    final long end = Math.min(size, start + CHUNK_BYTES);
+                    final Lines lines = Lines.read(channel, size, start, end, 0);
+                    int rows = 0;
+                    for (int line = lines.firstLine(); line < lines.end; line = lines.next(line)) {
+                        if (lines.isRow(line)) {
+                            rows++;
+                        }
+                    }
+                    rowCounts[chunk] = rows;
+                    progress.onProgress(done.addAndGet(end - start), 2 * size);
+                });
+
+        final int[] firstRows = new int[chunkCount];
+        long count = 0;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            firstRows[chunk] = (int) Math.min(count, Integer.MAX_VALUE);
+            count += rowCounts[chunk];
+        }
+        if (count > Integer.MAX_VALUE) {
+            throw new IOException("Scenario file " + path + " holds too many rows: " + count);
+        }
+
+        final ParticleStore store = new ParticleStore((int) count, storage);
+        store.addAll((int) count);
+        try {
+            runChunks(
+                    workerPool,
+                    chunkCount,
+                    chunk -> {
+                        final long start = (long) chunk * CHUNK_BYTES;
+                        final long end = Math.min(size, start + CHUNK_BYTES);
+                        final Lines lines =
+                                Lines.read(channel, size, start, end, MAX_LINE_BYTES);
+                        final Rows rows = new Rows(rowCounts[chunk]);
+                        final RowParser parser = new RowParser(lines, path);
+                        int row = 0;
+                        for (int line = lines.firstLine();
+                                line < lines.end;
+                                line = lines.next(line)) {
+                            if (lines.isRow(line)) {
+                                parser.parse(line, rows, row, firstRows[chunk] + row);
+                                rows.check(row, firstRows[chunk], path);
+                                row++;
+                            }
+                        }
+                        rows.flush(store, firstRows[chunk], row);
+                        progress.onProgress(done.addAndGet(end - start), 2 * size);
+                    });
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Runs a task per chunk on the worker pool, and waits for all of them.
+     *
+     * @param workerPool Pool to run the tasks on.
+     * @param chunkCount Number of chunks.
+     * @param task Task reading a chunk.
+     * @throws IOException The first failure of a task.
+     */
+    private static void runChunks(
+            final ForkJoinPool workerPool, final int chunkCount, final ChunkTask task)
+            throws IOException {
+        try {
+            workerPool
+                    .submit(
+                            () ->
+                                    IntStream.range(0, chunkCount)
+                                            .parallel()
+                                            .forEach(
+                                                    chunk -> {
+                                                        try {
+                                                            task.run(chunk);
+                                                        } catch (IOException e) {
+                                                            throw new UncheckedIOException(e);
+                                                        }
+                                                    }))
+                    .join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads bytes at a position until the buffer is full or the file ends.
+     *
+     * @param channel Channel to read from.
+     * @param buffer Buffer to fill from its position.
+     * @param position Offset in the file.
+     * @return Number of bytes read.
+     * @throws IOException If the file can't be read.
+     */
+    private static int readFully(
+            final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the float columns of a store in row order.
+     *
+     * @param store Store to read from.
+     * @return x, y, z, vx, vy, vz, mass and radius.
+     */
+    private static FloatColumn[] floatColumns(final ParticleStore store) {
+        return new FloatColumn[] {
+            store.getX(),
+            store.getY(),
+            store.getZ(),
+            store.getVx(),
+            store.getVy(),
+            store.getVz(),
+            store.getMass(),
+            store.getRadius()
+        };
+    }
+
+    /** Reads a chunk. */
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run(int chunk) throws IOException;
+    }
+
+    /** Rows of a chunk, parsed into arrays before being copied to the store in one go. */
+    private static final class Rows {
+        private final float[][] floats;
+        private final int[] colors;
+
+        Rows(final int capacity) {
+            floats = new float[8][capacity];
+            colors = new int[capacity];
+        }
+
+        /**
+         * Rejects a row the physics can't work with.
+         *
+         * @param row Row in the chunk.
+         * @param first Index of the first row of the chunk in the file.
+         * @param path File read, for the message.
+         * @throws IOException If the row holds a value that is not finite, or a mass or a radius
+         *     that is not positive.
+         */
+        void check(final int row, final int first, final Path path) throws IOException {
+            for (final float[] column : floats) {
+                if (!Float.isFinite(column[row])) {
+                    throw new IOException(
+                            "Row " + (first + row + 1) + " of " + path + " holds " + column[row]);
+                }
+            }
+            if (!(floats[6][row] > 0) || !(floats[7][row] > 0)) {
+                throw new IOException(
+                        "Row " + (first + row + 1) + " of " + path
+                                + " needs a positive mass and radius");
+            }
+        }
+
+        /**
+         * Copies the rows into the store.
+         *
+         * @param store Store to write to.
+         * @param first Index of the first row in the store.
+         * @param length Number of rows.
+         */
+        void flush(final ParticleStore store, final int first, final int length) {
+            final FloatColumn[] columns = floatColumns(store);
+            for (int column = 0; column < columns.length; column++) {
+                columns[column].write(floats[column], 0, first, length);
+            }
+            store.getColor().write(colors, 0, first, length);
+        }
+    }
+
+    /**
+     * Bytes of a CSV chunk and the lines starting in it. The chunk is read along with the byte
+     * before it, to know whether it starts on a line, and enough bytes after it to finish its last
+     * line.
+     */
+    private static final class Lines {
+        private final byte[] bytes;
+        private final int length;
+        private final int end;
+        private final boolean fileStart;
+        private final boolean fileEnd;
+
+        private Lines(
+                final byte[] bytesParam,
+                final int lengthParam,
+                final int endParam,
+                final boolean fileStartParam,
+                final boolean fileEndParam) {
+            this.bytes = bytesParam;
+            this.length = lengthParam;
+            this.end = endParam;
+            this.fileStart = fileStartParam;
+            this.fileEnd = fileEndParam;
+        }
+
+        /**
+         * Reads a chunk.
+         *
+         * @param channel Channel of the file.
+         * @param size Size of the file.
+         * @param start Offset of the chunk.
+         * @param end Offset right after the chunk.
+         * @param overflow Bytes to read past the end.
+         * @return The chunk.
+         * @throws IOException If the file can't be read.
+         */
+        static Lines read(
+                final FileChannel channel,
+                final long size,
+                final long start,
+                final long end,
+                final int overflow)
+                throws IOException {
+            final long from = Math.max(0, start - 1);
+            final ByteBuffer buffer = ByteBuffer.allocate((int) (end - from) + overflow);
+            final int read = readFully(channel, buffer, from);
+            return new Lines(
+                    buffer.array(), read, (int) (end - from), start == 0, from + read >= size);
+        }
+
+        /**
+         * Returns the first line starting in the chunk.
+         *
+         * @return Offset of the line, {@link #end} if none.
+         */
+        int firstLine() {
+            if (fileStart) {
+                return 0;
+            }
+            int line = 1;
+            while (line < end && bytes[line - 1] != '\n') {
+                line++;
+            }
+            return line;
+        }
+
+        /**
+         * Returns the line after a line.
+         *
+         * @param line Offset of the line.
+         * @return Offset of the next line, at least {@link #end} if none in the chunk.
+         */
+        int next(final int line) {
+            int next = line;
+            while (next < end && bytes[next] != '\n') {
+                next++;
+            }
+            return next + 1;
+        }
+
+        /**
+         * Tells whether a line holds a sphere rather than nothing, a comment or the header.
+         *
+         * @param line Offset of the line.
+         * @return {@code true} for a sphere.
+         */
+        boolean isRow(final int line) {
+            if (line >= length) {
+                return false;
+            }
+            final byte first = bytes[line];
+            return first != '\n'
+                    && first != '\r'
+                    && first != '#'
+                    && !(fileStart && line == 0 && Character.isLetter(first));
+        }
+    }
+
+    /**
+     * Parses the rows of a CSV chunk. Numbers with few enough digits are parsed in place, the
+     * others go through {@link Float#parseFloat(String)}.
+     */
+    private static final class RowParser {
+        private final byte[] bytes;
+        private final int length;
+        private final boolean fileEnd;
+        private final Path path;
+        private int position;
+        private long row;
+
+        RowParser(final Lines lines, final Path pathParam) {
+            this.bytes = lines.bytes;
+            this.length = lines.length;
+            this.fileEnd = lines.fileEnd;
+            this.path = pathParam;
+        }
+
+        /**
+         * Parses a line into a row.
+         *
+         * @param line Offset of the line.
+         * @param rows Rows to fill.
+         * @param index Index of the row in the chunk.
+         * @param rowParam Index of the row in the file, for error messages.
+         * @throws IOException If the line is not a valid row.
+         */
+        void parse(final int line, final Rows rows, final int index, final long rowParam)
+                throws IOException {
+            position = line;
+            row = rowParam;
+            for (final float[] column : rows.floats) {
+                column[index] = nextFloat();
+                expect(',');
+            }
+            rows.colors[index] = nextColor();
+            skipBlanks();
+            if (position < length && bytes[position] == '\r') {
+                position++;
+            }
+            if (position < length && bytes[position] != '\n') {
+                throw malformed("expected the end of the line");
+            }
+            if (position >= length && !fileEnd) {
+                throw malformed("line longer than " + MAX_LINE_BYTES + " bytes");
+            }
+        }
+
+        private float nextFloat() throws IOException {
+            skipBlanks();
+            final int start = position;
+            boolean negative = false;
+            if (position < length && (bytes[position] == '-' || bytes[position] == '+')) {
+                negative = bytes[position] == '-';
+                position++;
+            }
+            long significand = 0;
+            int exponent = 0;
+            boolean digits = false;
+            boolean exact = true;
+            while (position < length && isDigit(bytes[position])) {
+                digits = true;
+                if (significand < MAX_EXACT_SIGNIFICAND / 10) {
+                    significand = significand * 10 + bytes[position] - '0';
+                } else {
+                    exact = false;
+                }
+                position++;
+            }
+            if (position < length && bytes[position] == '.') {
+                position++;
+                while (position < length && isDigit(bytes[position])) {
+                    digits = true;
+                    if (significand < MAX_EXACT_SIGNIFICAND / 10) {
+                        significand = significand * 10 + bytes[position] - '0';
+                        exponent--;
+                    } else if (bytes[position] != '0') {
+                        exact = false;
+                    }
+                    position++;
+                }
+            }
+            if (digits && position < length && (bytes[position] | 0x20) == 'e') {
+                position++;
+                boolean negativeExponent = false;
+                if (position < length && (bytes[position] == '-' || bytes[position] == '+')) {
+                    negativeExponent = bytes[position] == '-';
+                    position++;
+                }
+                int value = 0;
+                boolean exponentDigits = false;
+                while (position < length && isDigit(bytes[position])) {
+                    exponentDigits = true;
+                    value = Math.min(value * 10 + bytes[position] - '0', 1_000);
+                    position++;
+                }
+                digits = exponentDigits;
+                exponent += negativeExponent ? -value : value;
+            }
+            if (digits && exact && Math.abs(exponent) < POWERS_OF_TEN.length) {
+                // Both operands are exact doubles, so the result is correctly rounded.
+                final double value =
+                        exponent < 0
+                                ? significand / POWERS_OF_TEN[-exponent]
+                                : significand * POWERS_OF_TEN[exponent];
+                return (float) (negative ? -value : value);
+            }
+            position = start;
+            while (position < length && !isSeparator(bytes[position])) {
+                position++;
+            }
+            try {
+                return Float.parseFloat(
+                        new String(bytes, start, position - start, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw malformed("expected a number");
+            }
+        }
+
+        private int nextColor() throws IOException {
+            skipBlanks();
+            final int start = position;
+            while (position < length && !isSeparator(bytes[position])) {
+                position++;
+            }
+            final String text =
+                    new String(bytes, start, position - start, StandardCharsets.US_ASCII);
+            try {
+                if (text.startsWith("#") && text.length() == 7) {
+                    return 0xFF_00_00_00 | Integer.parseInt(text, 1, 7, 16);
+                }
+                if (text.startsWith("#") && text.length() == 9) {
+                    return Integer.parseUnsignedInt(text, 1, 9, 16);
+                }
+                if (text.startsWith("0x") || text.startsWith("0X")) {
+                    return Integer.parseUnsignedInt(text, 2, text.length(), 16);
+                }
+                final long value = Long.parseLong(text);
+                if (value >= Integer.MIN_VALUE && value <= 0xFF_FF_FF_FFL) {
+                    return (int) value;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below.
+            }
+            throw malformed("expected a color");
+        }
+
+        private void expect(final char separator) throws IOException {
+            skipBlanks();
+            if (position >= length || bytes[position] != separator) {
+                throw malformed("expected '" + separator + "'");
+            }
+            position++;
+        }
+
+        private void skipBlanks() {
+            while (position < length && (bytes[position] == ' ' || bytes[position] == '\t')) {
+                position++;
+            }
+        }
+
+        private IOException malformed(final String reason) {
+            return new IOException("Row " + (row + 1) + " of " + path + " is malformed: " + reason);
+        }
+
+        private static boolean isDigit(final byte character) {
+            return character >= '0' && character <= '9';
+        }
+
+        private static boolean isSeparator(final byte character) {
+            return character == ','
+                    || character == ' '
+                    || character == '\t'
+                    || character == '\r'
+                    || character == '\n';
+        }
+    }
+}
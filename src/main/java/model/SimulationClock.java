@@ -0,0 +1,18 @@
+package model;
+
+/**
+ * Monotonic time source of the simulation, in nanoseconds. Only differences between two readings
+ * are meaningful. <i>Tick tock.</i>
+ */
+@FunctionalInterface
+public interface SimulationClock {
+    /** Clock backed by {@link System#nanoTime()}. */
+    SimulationClock SYSTEM = System::nanoTime;
+
+    /**
+     * Reads the clock.
+     *
+     * @return The current time, in nanoseconds.
+     */
+    long nanoTime();
+}
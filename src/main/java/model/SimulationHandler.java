@@ -1,17 +1,38 @@
 package model;
 
-import app.GravityCollisionApp;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import events.core.Event;
 import events.core.EventManager;
 import events.graphics.gui.GUIStateChangedEvent;
+import events.graphics.gui.GUIStateChangedEvent.UIElement;
 import events.physics.GravityChangedEvent;
+import events.physics.InstabilityDetectedEvent;
+import events.physics.IntegratorChangedEvent;
 import events.physics.SpeedChangedEvent;
+import events.simulation.ScenarioProgressEvent;
+import events.simulation.SimulationLoadEvent;
 import events.simulation.SimulationRestartEvent;
+import events.simulation.SimulationSaveEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
+import misc.PhaseProfiler;
+import misc.PhaseProfiler.Phase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import processing.core.PVector;
 
 /**
  * Manages the physics simulation, sphere creation, and threading. <i>The conductor of the physics
@@ -19,33 +40,156 @@ import processing.core.PVector;
  */
 public class SimulationHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(SimulationHandler.class);
-    private static float gravityConstant = 6.6743f;
-    private static float targetPhysicsFPS = 60.0f;
-    private static boolean gravityEnabled;
-    private static boolean boundsEnabled;
-    private static boolean paused;
-    private static boolean drawTrails;
-    private static boolean drawArrows;
-    private static boolean drawNames;
-    private static boolean drawWeights;
+    private static volatile float gravityConstant = 6.6743f;
+    private static volatile float targetPhysicsFPS = 60.0f;
+    private static volatile boolean gravityEnabled;
+    private static volatile boolean boundsEnabled;
+    private static volatile boolean paused;
+    private static volatile boolean drawTrails;
+    private static volatile boolean drawArrows;
+    private static volatile boolean drawNames;
+    private static volatile boolean drawWeights;
 
     public static final int DEFAULT_SPHERE_COUNT = 20;
 
-    private final GravityCollisionApp app;
+    /** Sphere count from which gravity switches from the direct sum to Barnes-Hut. */
+    public static final int BARNES_HUT_THRESHOLD = 2_000;
+
+    /** System property overriding the number of physics worker threads. */
+    public static final String PARALLELISM_PROPERTY = "gravity.physics.threads";
+
+    /** Size of the simulation cube along every axis when bounds are enabled. */
+    public static final float BOUNDS_SIZE = 1000.0f;
+
+    /** System property setting the Plummer softening length of gravity. */
+    public static final String SOFTENING_PROPERTY = "gravity.softening";
+
+    /** Default softening length, well below the radius of the smallest spheres. */
+    public static final float DEFAULT_SOFTENING = 1.0f;
+
+    private static final float SOFTENING_LENGTH =
+            Float.parseFloat(
+                    System.getProperty(SOFTENING_PROPERTY, Float.toString(DEFAULT_SOFTENING)));
+
+    /** Duration of a step in simulation time units, every timestep is a fraction of it. */
+    public static final float STEP_DURATION = 1.0f;
+
+    /** System property naming the state file of quicksaves and scheduled saves. */
+    public static final String STATE_FILE_PROPERTY = "gravity.state.file";
+
+    /** State file used by quicksaves and scheduled saves, in the working directory by default. */
+    public static final Path STATE_FILE =
+            Path.of(System.getProperty(STATE_FILE_PROPERTY, "gravity-state.bin"));
+
+    /** System property naming a scenario file to start from instead of random spheres. */
+    public static final String SCENARIO_FILE_PROPERTY = "gravity.scenario.file";
+
+    /** Scenario file the simulation starts and restarts from, {@code null} for random spheres. */
+    public static final Path SCENARIO_FILE =
+            System.getProperty(SCENARIO_FILE_PROPERTY) == null
+                    ? null
+                    : Path.of(System.getProperty(SCENARIO_FILE_PROPERTY));
+
+    /** System property setting the number of steps between two scheduled saves, 0 disables them. */
+    public static final String SAVE_INTERVAL_PROPERTY = "gravity.state.interval";
+
+    private static final int SAVE_INTERVAL = Integer.getInteger(SAVE_INTERVAL_PROPERTY, 0);
+
+    /** Number of times a blown-up step is retried, each time with timesteps halved again. */
+    private static final int MAX_STABILITY_RETRIES = 3;
+
+    /** Number of sphere batches per physics worker, for work stealing to balance the load. */
+    private static final int BATCHES_PER_THREAD = 4;
+
     private final EventManager eventManager;
+    private final RandomGenerator random;
+    private final SimulationClock clock;
     private final int threadCount;
+    private final ForkJoinPool workerPool;
+    private final GravitySolver directGravitySolver = new DirectGravitySolver();
+    private final BarnesHutGravitySolver barnesHutGravitySolver = new BarnesHutGravitySolver();
+    private final CollisionGrid collisionGrid = new CollisionGrid();
+    private final BlockTimesteps timesteps = BlockTimesteps.fromSystemProperties();
+    private final StabilityGuard stabilityGuard = StabilityGuard.fromSystemProperties();
+    private final SleepingIslands sleepingIslands = SleepingIslands.fromSystemProperties();
+    private final SphereMerger sphereMerger = new SphereMerger();
+    private final CollisionResponse collisionResponse = CollisionResponses.fromSystemProperties();
+    private final TrajectoryRecorder trajectoryRecorder = TrajectoryRecorder.fromSystemProperties();
+    private final StateExchange stateExchange = new StateExchange();
+    private final SimulationLoop simulationLoop;
+    private final Object stepLock = new Object();
+    private final PhaseProfiler profiler = new PhaseProfiler();
+    private final AtomicBoolean fileTaskRunning = new AtomicBoolean();
+    private volatile boolean started;
+    private final Queue<Event> uiEvents = new ConcurrentLinkedQueue<>();
+    private volatile Integrator integrator = Integrators.fromSystemProperties();
+    private long generation;
+    private long stepIndex;
+    private boolean steppedSinceSeed;
+    private boolean accelerationsCurrent;
+    private long activationCount;
 
+    private ParticleStore store = new ParticleStore(0);
     private List<PhysicSphere> spheres = new ArrayList<>();
     private List<SphereBatchThread> sphereBatchThreads = new ArrayList<>();
 
+    /**
+     * Creates the simulation handler with a fresh random generator and the system clock. The
+     * parallelism of the physics worker pool is read from the {@value #PARALLELISM_PROPERTY} system
+     * property, and defaults to the number of available processors.
+     *
+     * @param eventManagerParam Event manager.
+     */
+    public SimulationHandler(final EventManager eventManagerParam) {
+        this(
+                eventManagerParam,
+                new SplittableRandom(),
+                SimulationClock.SYSTEM,
+                Integer.getInteger(
+                        PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates the simulation handler with explicit sources of randomness and time, and an explicit
+     * worker pool size. The pool lives as long as the handler and is shared by every step and
+     * every reseed. <i>No window required.</i>
+     *
+     * @param eventManagerParam Event manager.
+     * @param randomParam Random generator used to seed the spheres.
+     * @param clockParam Clock pacing the simulation thread.
+     * @param parallelism Number of physics worker threads.
+     */
     @SuppressFBWarnings(
             value = "EI_EXPOSE_REP2",
-            justification = "PApplet must be shared in Processing; Renderer never exposes app.")
+            justification = "The event manager and the random generator are shared by design.")
     public SimulationHandler(
-            final GravityCollisionApp appParam, final EventManager eventManagerParam) {
-        this.app = appParam;
+            final EventManager eventManagerParam,
+            final RandomGenerator randomParam,
+            final SimulationClock clockParam,
+            final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    "Parallelism must be at least 1, got " + parallelism);
+        }
         this.eventManager = eventManagerParam;
-        this.threadCount = Runtime.getRuntime().availableProcessors();
+        this.random = randomParam;
+        this.clock = clockParam;
+        this.threadCount = parallelism;
+        this.workerPool =
+                new ForkJoinPool(
+                        parallelism,
+                        pool -> {
+                            final ForkJoinWorkerThread worker =
+                                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                            profiler.registerWorker(worker);
+                            return worker;
+                        },
+                        null,
+                        false);
+        this.simulationLoop = new SimulationLoop(this, clockParam);
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Physics worker pool started with {} threads", parallelism);
+        }
         setDefaultSimulationProps();
         setupEventHandlers();
     }
@@ -66,12 +210,43 @@ public class SimulationHandler {
         eventManager.subscribe(
                 SimulationRestartEvent.class,
                 event -> {
+                    if (isIdle("restart")) {
+                        return;
+                    }
+                    if (event.scenario() != null) {
+                        loadScenarioInBackground(event.scenario());
+                        return;
+                    }
                     seed(event.sphereCount());
                     if (LOGGER.isInfoEnabled()) {
                         LOGGER.info("Simulation restarted with {} spheres", event.sphereCount());
                     }
                 });
 
+        eventManager.subscribe(
+                SimulationSaveEvent.class,
+                event -> {
+                    if (!isIdle("save")) {
+                        runInBackground(
+                                "state-saver",
+                                "save the simulation to",
+                                event.path(),
+                                () -> saveState(event.path()));
+                    }
+                });
+
+        eventManager.subscribe(
+                SimulationLoadEvent.class,
+                event -> {
+                    if (!isIdle("load")) {
+                        runInBackground(
+                                "state-loader",
+                                "load the simulation from",
+                                event.path(),
+                                () -> loadState(event.path()));
+                    }
+                });
+
         eventManager.subscribe(
                 GravityChangedEvent.class,
                 event -> {
@@ -81,6 +256,15 @@ public class SimulationHandler {
                     }
                 });
 
+        eventManager.subscribe(
+                IntegratorChangedEvent.class,
+                event -> {
+                    integrator = Integrators.byName(event.integratorName());
+                    if (LOGGER.isInfoEnabled()) {
+                        LOGGER.info("Integrator changed to: {}", integrator.getName());
+                    }
+                });
+
         eventManager.subscribe(
                 SpeedChangedEvent.class,
                 event -> {
@@ -94,6 +278,7 @@ public class SimulationHandler {
                 GUIStateChangedEvent.class,
                 event -> {
                     switch (event.element()) {
+                        case PROFILER_HUD -> profiler.setEnabled(event.newState());
                         case SIMULATION_PAUSED -> {
                             paused = event.newState();
                             if (LOGGER.isInfoEnabled()) {
@@ -152,103 +337,698 @@ public class SimulationHandler {
      * @param amount Number of spheres to seed.
      */
     public void seed(final int amount) {
-        spheres = new ArrayList<>();
-        sphereBatchThreads = new ArrayList<>();
-        int randColor;
+        synchronized (stepLock) {
+            final ParticleStore seeded =
+                    new ParticleStore(amount, ColumnStorages.fromSystemProperties());
+            SphereSeeder.seed(seeded, random, workerPool, amount, BOUNDS_SIZE);
+            installStore(seeded, 0);
+        }
+    }
 
-        for (int i = 0; i < amount; i++) {
-            randColor = app.color(app.random(200) + 55, app.random(200) + 55, app.random(200) + 55);
-            float randX = app.random(1000.0f);
-            float randY = app.random(1000.0f);
-            float randZ = app.random(1000.0f);
-            float randR = app.random(2.0f + app.random(10.0f));
-            PVector tPos = new PVector(randX, randY, randZ);
-
-            for (final PhysicSphere sphere : spheres) {
-                while (PVector.dist(tPos, sphere.getPosition()) < randR) {
-                    randX = app.random(1000.0f);
-                    randY = app.random(1000.0f);
-                    randZ = app.random(1000.0f);
-                    randR = app.random(2 + app.random(10.0f));
-                    tPos = new PVector(randX, randY, randZ);
-                }
+    /**
+     * Replaces the simulation with the spheres of a scenario file, see {@link ScenarioFile}. The
+     * file is parsed on the physics workers into a new store, which is then swapped in between two
+     * steps, so the simulation keeps running meanwhile. Progress is published as {@link
+     * ScenarioProgressEvent}s. <i>Previously on Gravity Collision.</i>
+     *
+     * @param path File to read.
+     * @throws IOException If the file can't be read, or holds an invalid row.
+     */
+    public void loadScenario(final Path path) throws IOException {
+        final long start = System.nanoTime();
+        final long size = Files.size(path);
+        eventManager.publish(new ScenarioProgressEvent(path, 0, size));
+        final int count;
+        try {
+            final ParticleStore loaded =
+                    ScenarioFile.read(
+                            path,
+                            ColumnStorages.fromSystemProperties(),
+                            workerPool,
+                            (done, total) ->
+                                    eventManager.publish(
+                                            new ScenarioProgressEvent(path, done, total)));
+            count = loaded.size();
+            synchronized (stepLock) {
+                installStore(loaded, 0);
+            }
+        } finally {
+            eventManager.publish(new ScenarioProgressEvent(path, size, size));
+        }
+        if (LOGGER.isInfoEnabled()) {
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            LOGGER.info(
+                    "Loaded {} spheres from {} in {} ms, {} MB/s",
+                    count,
+                    path,
+                    millis,
+                    size / 1_000 / Math.max(millis, 1));
+        }
+    }
+
+    /**
+     * Tells whether the simulation was never started, as when a recording is replayed instead, in
+     * which case restarts, saves and loads are ignored: there's nothing to save, and nothing would
+     * run what was loaded. <i>Nobody's home.</i>
+     *
+     * @param request Request ignored, for the log.
+     * @return {@code true} if the request must be ignored.
+     */
+    private boolean isIdle(final String request) {
+        if (started) {
+            return false;
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("The simulation isn't running, ignoring the {} request", request);
+        }
+        return true;
+    }
+
+    /**
+     * Loads a scenario file on a thread of its own, unless a file is already being read or
+     * written. Failures are logged, and leave the simulation as it was.
+     *
+     * @param path File to read.
+     */
+    private void loadScenarioInBackground(final Path path) {
+        runInBackground("scenario-loader", "load the scenario", path, () -> loadScenario(path));
+    }
+
+    /** Reads or writes a file, see {@link #runInBackground}. */
+    @FunctionalInterface
+    private interface FileTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs a file task on a thread of its own, keeping the draw thread and the event publishers
+     * responsive however large the file. Only one task runs at a time, the ones asked for
+     * meanwhile are dropped with a warning. <i>One thing at a time, please.</i>
+     *
+     * @param name Name of the thread.
+     * @param action What the task does, completing "Could not" in the failure message.
+     * @param path File read or written.
+     * @param task Task to run.
+     * @return Whether the task was started.
+     */
+    private boolean runInBackground(
+            final String name, final String action, final Path path, final FileTask task) {
+        if (!fileTaskRunning.compareAndSet(false, true)) {
+            if (LOGGER.isWarnEnabled()) {
+                LOGGER.warn("A file is already being read or written, ignoring {}", path);
             }
+            return false;
+        }
+        Thread.ofPlatform()
+                .name(name)
+                .daemon()
+                .start(
+                        () -> {
+                            try {
+                                task.run();
+                            } catch (IOException | RuntimeException e) {
+                                if (LOGGER.isErrorEnabled()) {
+                                    LOGGER.error("Could not {} {}", action, path, e);
+                                }
+                            } finally {
+                                fileTaskRunning.set(false);
+                            }
+                        });
+        return true;
+    }
+
+    /**
+     * Saves the simulation to a state file, see {@link StateFile}. Waits for the current step to
+     * end and copies the spheres, the file is then written from the copy while the simulation goes
+     * on.
+     *
+     * @param path File to write, replaced if it exists.
+     * @throws IOException If the file can't be written.
+     */
+    public void saveState(final Path path) throws IOException {
+        final ParticleStore copy;
+        final StateFile.Header header;
+        synchronized (stepLock) {
+            copy = StateFile.copy(store, ColumnStorages.fromSystemProperties());
+            header = stateHeader(copy.size());
+        }
+        writeState(path, copy, header);
+    }
+
+    /**
+     * Describes the simulation for a state file. Caller must hold the step lock.
+     *
+     * @param count Number of spheres saved.
+     * @return The header.
+     */
+    private StateFile.Header stateHeader(final int count) {
+        final int flags =
+                (gravityEnabled ? StateFile.FLAG_GRAVITY : 0)
+                        | (boundsEnabled ? StateFile.FLAG_BOUNDS : 0);
+        return new StateFile.Header(
+                count, stepIndex, STEP_DURATION, gravityConstant, SOFTENING_LENGTH, flags);
+    }
+
+    /**
+     * Writes a copy of the spheres to a state file, and closes the copy.
+     *
+     * @param path File to write, replaced if it exists.
+     * @param copy Copy of the spheres, see {@link StateFile#copy}.
+     * @param header Header of the copy.
+     * @throws IOException If the file can't be written.
+     */
+    private static void writeState(
+            final Path path, final ParticleStore copy, final StateFile.Header header)
+            throws IOException {
+        try {
+            StateFile.write(path, copy, header);
+        } finally {
+            copy.close();
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Saved {} spheres at step {} to {}", header.count(), header.step(), path);
+        }
+    }
 
-            spheres.add(
-                    new PhysicSphere(
-                            app,
-                            i,
-                            randColor,
-                            new PVector(randX, randY, randZ),
-                            new PVector(1 - app.random(5), 1 - app.random(5), 1 - app.random(5)),
-                            randR,
-                            0.5f + app.random(0.5f)));
+    /**
+     * Replaces the simulation with the content of a state file, see {@link StateFile}. The file is
+     * read into a new store first, which is then swapped in between two steps: the simulation
+     * never sees a half-loaded state, and keeps running if the file can't be read.
+     *
+     * @param path File to read.
+     * @throws IOException If the file can't be read, or isn't a state file.
+     */
+    public void loadState(final Path path) throws IOException {
+        final StateFile.Loaded loaded = StateFile.read(path, ColumnStorages.fromSystemProperties());
+        final StateFile.Header header = loaded.header();
+        if ((header.stepDuration() != STEP_DURATION || header.softening() != SOFTENING_LENGTH)
+                && LOGGER.isWarnEnabled()) {
+            LOGGER.warn(
+                    "{} was saved with steps of {} and a softening of {}, running with {} and {}",
+                    path,
+                    header.stepDuration(),
+                    header.softening(),
+                    STEP_DURATION,
+                    SOFTENING_LENGTH);
+        }
+        synchronized (stepLock) {
+            gravityConstant = header.gravityConstant();
+            gravityEnabled = (header.flags() & StateFile.FLAG_GRAVITY) != 0;
+            boundsEnabled = (header.flags() & StateFile.FLAG_BOUNDS) != 0;
+            installStore(loaded.store(), header.step());
         }
+        publishToUi(new GUIStateChangedEvent(UIElement.GRAVITY_ENABLED, gravityEnabled));
+        publishToUi(new GUIStateChangedEvent(UIElement.BOUNDS_ENABLED, boundsEnabled));
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(
+                    "Loaded {} spheres at step {} from {}", header.count(), header.step(), path);
+        }
+    }
 
+    /**
+     * Replaces the store, closing the previous one, and splits the new spheres in batches. The
+     * simulation starts over from the given step, with nothing carried over from the previous
+     * store. Caller must hold the step lock.
+     *
+     * @param newStore Store to simulate from now on.
+     * @param firstStep Index of the next step.
+     */
+    private void installStore(final ParticleStore newStore, final long firstStep) {
+        final ParticleStore previous = store;
+        store = newStore;
+        previous.close();
+        final int amount = store.size();
+        spheres = new ArrayList<>(amount);
+        for (int i = 0; i < amount; i++) {
+            spheres.add(new PhysicSphere(store, i));
+        }
         setupBatchThreads(amount);
+
+        generation++;
+        stepIndex = firstStep;
+        stabilityGuard.clear();
+        sleepingIslands.wakeAll(store);
+        steppedSinceSeed = false;
+        accelerationsCurrent = false;
+        publishState(0);
+        if (trajectoryRecorder.isEnabled()) {
+            trajectoryRecorder.record(store, stepIndex, generation);
+        }
     }
 
-    /** Set up batch threads for parallel physics processing. */
+    /**
+     * Set up batch threads for parallel physics processing. The spheres are cut into {@value
+     * #BATCHES_PER_THREAD} contiguous batches per worker, whose sizes differ by at most one sphere.
+     * Having more batches than workers lets idle workers steal the batches of busy ones, since the
+     * cost of a batch depends on how crowded its spheres are.
+     */
     private void setupBatchThreads(final int amount) {
         sphereBatchThreads = new ArrayList<>();
-        final List<Integer> spheresIdxBatch = new ArrayList<>();
+        final int batchCount = Math.max(1, Math.min(amount, threadCount * BATCHES_PER_THREAD));
+        for (int batch = 0; batch < batchCount; batch++) {
+            sphereBatchThreads.add(new SphereBatchThread(spheres, timesteps));
+        }
+        assignBatches();
+    }
+
+    /**
+     * Spreads the spheres of the store over the existing batches, in contiguous ranges whose sizes
+     * differ by at most one sphere. Called again whenever the sphere count changes, so the batches
+     * and their buffers are kept.
+     */
+    private void assignBatches() {
+        final int amount = store.size();
+        final int batchCount = sphereBatchThreads.size();
+        int globalIdx = 0;
+        for (int batch = 0; batch < batchCount; batch++) {
+            final int batchSize = amount / batchCount + (batch < amount % batchCount ? 1 : 0);
+            sphereBatchThreads.get(batch).assignRange(globalIdx, globalIdx + batchSize);
+            globalIdx += batchSize;
+        }
+    }
 
-        if (threadCount > amount) {
-            for (int i = 0; i < amount; i++) {
-                spheresIdxBatch.add(i);
+    /**
+     * Advances the physics simulation by one fixed step. A step reads the current state of the
+     * store and writes the next one, in phases separated by barriers: broad phase, collisions,
+     * reduction of the collision buffers, then gravity and integration for every stage of the
+     * {@link Integrator} and every substep of the {@link BlockTimesteps}. The buffers are swapped
+     * once every worker is done with a stage.
+     *
+     * @throws InterruptedException If interrupted while waiting for the workers.
+     */
+    public void step() throws InterruptedException {
+        synchronized (stepLock) {
+            if (paused) {
+                return;
+            }
+            final long stepStart = profiler.start();
+            if (stabilityGuard.isCheckpointDue(stepIndex)) {
+                stabilityGuard.checkpoint(store, stepIndex);
             }
-            sphereBatchThreads.add(new SphereBatchThread(spheresIdxBatch, spheres));
-            spheresIdxBatch.clear();
+            runStep();
+            final long checkStart = profiler.start();
+            if (!stabilityGuard.isStable(store)) {
+                recover();
+            }
+            profiler.stop(Phase.NAN_HANDLING, checkStart);
+            stepIndex++;
+            steppedSinceSeed = true;
+            if (trajectoryRecorder.isEnabled()) {
+                trajectoryRecorder.record(store, stepIndex, generation);
+            }
+            if (SAVE_INTERVAL > 0 && stepIndex % SAVE_INTERVAL == 0) {
+                saveScheduled();
+            }
+            profiler.stop(Phase.STEP, stepStart);
+            profiler.commitStep();
+        }
+    }
+
+    /**
+     * Saves the simulation to the {@link #STATE_FILE}. The spheres are copied right away, and
+     * written on a thread of its own so that the step doesn't wait for the disk. Caller must hold
+     * the step lock.
+     */
+    private void saveScheduled() {
+        final ParticleStore copy = StateFile.copy(store, ColumnStorages.fromSystemProperties());
+        final StateFile.Header header = stateHeader(copy.size());
+        if (!runInBackground(
+                "state-saver",
+                "save the simulation to",
+                STATE_FILE,
+                () -> writeState(STATE_FILE, copy, header))) {
+            copy.close();
+        }
+    }
+
+    /**
+     * Rolls a blown-up step back to the last checkpoint, and runs the steps since then again with
+     * every timestep halved, up to {@value #MAX_STABILITY_RETRIES} times. If even that fails, the
+     * simulation is paused at the checkpoint. Caller must hold the step lock. <i>Measure twice,
+     * cut once.</i>
+     *
+     * @throws InterruptedException If interrupted while waiting for the workers.
+     */
+    private void recover() throws InterruptedException {
+        final long failedStep = stepIndex;
+        boolean stable = false;
+        int retries = 0;
+        while (!stable && retries < MAX_STABILITY_RETRIES) {
+            retries++;
+            final long checkpointStep = restoreCheckpoint();
+            timesteps.setMinimumLevel(retries);
+            stable = true;
+            for (long step = checkpointStep; stable && step <= failedStep; step++) {
+                runStep();
+                stable = stabilityGuard.isStable(store);
+            }
+        }
+        timesteps.setMinimumLevel(0);
+
+        if (!stable) {
+            stepIndex = restoreCheckpoint() - 1;
+            // The previous buffers hold a retry, the renderer must not interpolate from them.
+            store.beginStep();
+            paused = true;
+            publishToUi(new GUIStateChangedEvent(UIElement.SIMULATION_PAUSED, true));
+        }
+        if (stable ? LOGGER.isWarnEnabled() : LOGGER.isErrorEnabled()) {
+            final String message =
+                    stable
+                            ? "Step {} blew up, recovered after {} retries with smaller timesteps"
+                            : "Step {} blew up, still unstable after {} retries: paused";
+            if (stable) {
+                LOGGER.warn(message, failedStep, retries);
+            } else {
+                LOGGER.error(message, failedStep, retries);
+            }
+        }
+        publishToUi(new InstabilityDetectedEvent(failedStep, retries, stable));
+    }
+
+    /**
+     * Publishes an event for the interface, which is only ever touched by the draw thread. Once
+     * started, the events raised by the physics and file threads wait for the next frame, see
+     * {@link #publishUiEvents()}. Before that, whoever steps the simulation gets them right away.
+     *
+     * @param event Event to publish.
+     */
+    private void publishToUi(final Event event) {
+        if (started) {
+            uiEvents.add(event);
         } else {
-            final int itemsPerThread = amount / threadCount;
-            int globalIdx = 0;
+            eventManager.publish(event);
+        }
+    }
 
-            for (int i = 0; i < threadCount; i++) {
-                for (int j = 0; j < itemsPerThread; j++) {
-                    spheresIdxBatch.add(globalIdx);
-                    globalIdx++;
-                }
-                sphereBatchThreads.add(new SphereBatchThread(spheresIdxBatch, spheres));
-                spheresIdxBatch.clear();
+    /**
+     * Publishes the events raised for the interface since the last frame. Draw thread only. <i>You
+     * have new mail.</i>
+     */
+    public void publishUiEvents() {
+        for (Event event = uiEvents.poll(); event != null; event = uiEvents.poll()) {
+            eventManager.publish(event);
+        }
+    }
+
+    /**
+     * Rolls back to the last checkpoint, bringing back the spheres merged since. Caller must hold
+     * the step lock.
+     *
+     * @return Index of the step to run next.
+     */
+    private long restoreCheckpoint() {
+        final int sizeBefore = store.size();
+        final long checkpointStep = stabilityGuard.restore(store);
+        sleepingIslands.wakeAll(store);
+        if (store.size() != sizeBefore) {
+            assignBatches();
+            generation++;
+        }
+        accelerationsCurrent = false;
+        return checkpointStep;
+    }
+
+    /**
+     * Merges the spheres the collision response paired up during the step, and hands the
+     * renumbered spheres to the batches and the sleeping islands. Caller must hold the step lock.
+     */
+    private void mergeSpheres() {
+        for (final SphereBatchThread batch : sphereBatchThreads) {
+            sphereMerger.addPairs(batch.getCollisionBuffer());
+        }
+        final int sizeBefore = store.size();
+        if (sphereMerger.apply(store)) {
+            sleepingIslands.compact(store, sphereMerger.getNewIndex(), sizeBefore);
+            assignBatches();
+            // Indices moved: the renderer must not carry trails over.
+            generation++;
+            accelerationsCurrent = false;
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("Merged {} spheres into others", sizeBefore - store.size());
             }
+        }
+    }
+
+    /**
+     * Runs the phases of a step. Caller must hold the step lock.
+     *
+     * @throws InterruptedException If interrupted while waiting for the workers.
+     */
+    private void runStep() throws InterruptedException {
+        long phaseStart = profiler.start();
+        // Ran on the pool so that the parallel passes of the broad phase use the physics workers.
+        workerPool.submit(() -> collisionGrid.build(store)).join();
+        if (sleepingIslands.update(store, collisionGrid)) {
+            accelerationsCurrent = false;
+        }
+        for (final SphereBatchThread batch : sphereBatchThreads) {
+            batch.setCollisionGrid(collisionGrid);
+        }
+        profiler.stop(Phase.BROAD_PHASE, phaseStart);
+        phaseStart = profiler.start();
+        runBatches(batch -> batch.resolveCollisions(collisionResponse));
+        profiler.stop(Phase.COLLISIONS, phaseStart);
+        if (!gravityEnabled) {
+            store.clearAccelerations();
+        }
+
+        final Integrator stepIntegrator = integrator;
+        final int stageCount = stepIntegrator.getStageCount();
+        timesteps.beginStep(store.size(), stepIntegrator);
+        boolean firstSubstep = true;
+        while (timesteps.hasSubstep()) {
+            int activeCount = timesteps.selectActive();
+            for (int stage = 0; stage < stageCount; stage++) {
+                if (stage > 0) {
+                    // Closing kicks only go to the spheres whose block ends here.
+                    activeCount = timesteps.selectClosing();
+                }
+                final boolean reuse =
+                        stage == 0
+                                && accelerationsCurrent
+                                && stepIntegrator.reusesLastAcceleration();
+                if (gravityEnabled && !reuse) {
+                    phaseStart = profiler.start();
+                    computeGravity(activeCount);
+                    profiler.stop(Phase.GRAVITY, phaseStart);
+                }
+                if (stage == 0) {
+                    timesteps.assignLevels(store);
+                }
 
-            if (amount % threadCount != 0) {
-                final int remainingObjs = amount - globalIdx;
-                for (int i = 0; i < remainingObjs; i++) {
-                    sphereBatchThreads.get(i).addToObjects(globalIdx);
-                    globalIdx++;
+                store.beginStep();
+                if (firstSubstep) {
+                    phaseStart = profiler.start();
+                    for (final SphereBatchThread batch : sphereBatchThreads) {
+                        batch.getCollisionBuffer().applyTo(store);
+                    }
+                    profiler.stop(Phase.COLLISIONS, phaseStart);
+                    firstSubstep = false;
                 }
+                phaseStart = profiler.start();
+                final float kick = stepIntegrator.getKick(stage);
+                final float drift = stepIntegrator.getDrift(stage);
+                runBatches(batch -> batch.integrate(kick, drift));
+                store.swapBuffers();
+                profiler.stop(Phase.INTEGRATION, phaseStart);
             }
+            // The closing spheres were evaluated after their last drift, and are the ones the next
+            // substep opens with: it may start with their accelerations.
+            accelerationsCurrent =
+                    gravityEnabled
+                            && stepIntegrator.getDrift(stageCount - 1) == 0
+                            && (stageCount > 1 || !stepIntegrator.reusesLastAcceleration());
+            timesteps.advance();
         }
+        timesteps.restoreStart(store);
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Step cut in {} substeps", timesteps.getSubstepCount());
+        }
+        phaseStart = profiler.start();
+        mergeSpheres();
+        profiler.stop(Phase.COLLISIONS, phaseStart);
+    }
+
+    /**
+     * Computes the accelerations of the active spheres, or of every sphere if they are all active.
+     * Sleeping islands are seen as single bodies, see {@link SleepingIslands}.
+     *
+     * @param activeCount Number of active spheres, see {@link BlockTimesteps#getActive()}.
+     */
+    private void computeGravity(final int activeCount) {
+        activationCount += activeCount;
+        sleepingIslands.computeAccelerations(
+                selectGravitySolver(), store, workerPool, timesteps.getActive(), activeCount);
     }
 
-    /** Update the physics simulation. */
-    public void update() throws InterruptedException {
-        if (!paused) {
-            sphereBatchThreads.forEach(Thread::run);
+    /**
+     * Runs one phase of every batch on the worker pool and waits for all of them. <i>Nobody leaves
+     * until everybody's done.</i>
+     *
+     * @param phase Phase to run.
+     */
+    private void runBatches(final Consumer<SphereBatchThread> phase) throws InterruptedException {
+        final List<Future<?>> pendingBatches = new ArrayList<>(sphereBatchThreads.size());
+        for (final SphereBatchThread batch : sphereBatchThreads) {
+            pendingBatches.add(workerPool.submit(() -> phase.accept(batch)));
         }
 
-        for (final Thread t : sphereBatchThreads) {
+        for (final Future<?> pendingBatch : pendingBatches) {
             try {
-                t.join();
+                pendingBatch.get();
             } catch (InterruptedException exc) {
                 if (LOGGER.isErrorEnabled()) {
                     LOGGER.error(
-                            "Interrupted while waiting for thread to finish: {}", exc.getMessage());
+                            "Interrupted while waiting for batch to finish: {}", exc.getMessage());
                 }
                 throw exc;
+            } catch (ExecutionException exc) {
+                throw new IllegalStateException("Physics batch failed", exc.getCause());
             }
         }
     }
 
-    /** Render all spheres. <i>Show me them balls.</i> */
-    public void renderSpheres() {
-        spheres.forEach(PhysicSphere::display);
+    /**
+     * Picks the gravity solver for the current sphere count. <i>Right tool, right job.</i>
+     *
+     * @return The direct solver for small simulations, Barnes-Hut past the threshold.
+     */
+    private GravitySolver selectGravitySolver() {
+        return store.size() >= BARNES_HUT_THRESHOLD ? barnesHutGravitySolver : directGravitySolver;
     }
 
-    /** Initialize the simulation with default settings. <i>And thus, the universe was born.</i> */
+    /**
+     * Sets the opening angle θ of the Barnes-Hut solver. Smaller is more accurate, larger is
+     * faster.
+     *
+     * @param openingAngle Opening angle, must be positive.
+     */
+    public void setOpeningAngle(final float openingAngle) {
+        barnesHutGravitySolver.setOpeningAngle(openingAngle);
+    }
+
+    /**
+     * Publishes the current state of the simulation to the renderer.
+     *
+     * @param stepNanos Wall-clock duration of a step, used by the renderer to interpolate.
+     */
+    public void publishState(final long stepNanos) {
+        synchronized (stepLock) {
+            stateExchange
+                    .back()
+                    .capture(store, steppedSinceSeed, generation, clock.nanoTime(), stepNanos);
+            stateExchange.publish();
+        }
+    }
+
+    /**
+     * Initialize the simulation with default settings, or from the scenario file named by the
+     * {@value #SCENARIO_FILE_PROPERTY} system property, loaded in the background. <i>And thus, the
+     * universe was born.</i>
+     */
     public void initialize() {
-        seed(DEFAULT_SPHERE_COUNT);
+        if (SCENARIO_FILE != null) {
+            loadScenarioInBackground(SCENARIO_FILE);
+        } else {
+            seed(DEFAULT_SPHERE_COUNT);
+        }
+    }
+
+    /** Starts stepping the simulation on its own thread. <i>Let there be motion.</i> */
+    public void start() {
+        started = true;
+        simulationLoop.start();
+    }
+
+    /**
+     * Stops the simulation thread and the physics workers, completes the trajectory file if one is
+     * being recorded, and releases the memory of the store.
+     *
+     * @throws InterruptedException If interrupted while waiting for the simulation thread.
+     */
+    public void shutdown() throws InterruptedException {
+        simulationLoop.stop();
+        workerPool.shutdown();
+        synchronized (stepLock) {
+            trajectoryRecorder.close();
+            store.close();
+        }
+    }
+
+    /**
+     * Returns the profiler timing the phases of the steps, shared with the renderer for its own.
+     *
+     * @return The profiler.
+     */
+    @SuppressFBWarnings(
+            value = "EI_EXPOSE_REP",
+            justification = "The profiler is shared with the renderer by design.")
+    public PhaseProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Returns the clock pacing the simulation, which also timestamps the published states.
+     *
+     * @return The simulation clock.
+     */
+    public SimulationClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Returns the number of times a sphere had its acceleration computed since the handler was
+     * created. Without any refinement, that is the sphere count once per gravity evaluation of the
+     * integrator and per step.
+     *
+     * @return The activation count.
+     */
+    public long getActivationCount() {
+        synchronized (stepLock) {
+            return activationCount;
+        }
+    }
+
+    /**
+     * Returns the number of spheres resting in sleeping islands after the last step.
+     *
+     * @return The sleeping sphere count.
+     */
+    public int getSleepingSphereCount() {
+        synchronized (stepLock) {
+            return sleepingIslands.getSleepingSphereCount();
+        }
+    }
+
+    /**
+     * Returns the integration scheme used by the next steps.
+     *
+     * @return The integrator.
+     */
+    public Integrator getIntegrator() {
+        return integrator;
+    }
+
+    /**
+     * Returns the exchange through which the simulation thread publishes its states.
+     *
+     * @return The state exchange, to be read by a single renderer.
+     */
+    public StateExchange getStateExchange() {
+        return stateExchange;
+    }
+
+    /**
+     * Returns the store holding the state of every sphere.
+     *
+     * @return The particle store. <i>Everything must go!</i>
+     */
+    @SuppressFBWarnings(
+            value = "EI_EXPOSE_REP",
+            justification = "The store is the shared simulation state, copying it is pointless.")
+    public ParticleStore getParticleStore() {
+        return store;
     }
 
     /**
@@ -278,6 +1058,16 @@ public class SimulationHandler {
         return gravityConstant;
     }
 
+    /**
+     * Returns the Plummer softening length: gravity acts as if every distance {@code d} was {@code
+     * sqrt(d² + softening²)}, so that it stays finite when two centers get close.
+     *
+     * @return The softening length. <i>Let's not get too close.</i>
+     */
+    public static float getSofteningLength() {
+        return SOFTENING_LENGTH;
+    }
+
     /**
      * Returns the target physics FPS.
      *
@@ -0,0 +1,119 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dedicated physics thread advancing the simulation at a fixed timestep, independently of the
+ * render frame rate. Elapsed wall-clock time is accumulated, and one step is run for every {@code
+ * 1 / targetPhysicsFPS} seconds of it. Completed states are published to the renderer through the
+ * {@link StateExchange}. <i>Time waits for no one, and neither does physics.</i>
+ */
+public final class SimulationLoop implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SimulationLoop.class);
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** Longest backlog caught up on, older time is dropped rather than stalling the loop. */
+    private static final long MAX_BACKLOG_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /** Shortest time between two publications, publishing more often is wasted on the display. */
+    private static final long PUBLISH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+
+    /** Longest nap between two checks, so that speed changes and unpausing are picked up. */
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final SimulationHandler simulationHandler;
+    private final SimulationClock clock;
+    private final Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Creates the loop, which does nothing until started.
+     *
+     * @param simulationHandlerParam Simulation to step.
+     * @param clockParam Clock measuring the elapsed time.
+     */
+    public SimulationLoop(
+            final SimulationHandler simulationHandlerParam, final SimulationClock clockParam) {
+        this.simulationHandler = simulationHandlerParam;
+        this.clock = clockParam;
+        this.thread = Thread.ofPlatform().name("physics-loop").daemon().unstarted(this);
+    }
+
+    /** Starts the physics thread. */
+    public void start() {
+        running = true;
+        thread.start();
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Physics loop started");
+        }
+    }
+
+    /**
+     * Stops the physics thread and waits for the step in progress to complete.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        thread.join();
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Physics loop stopped");
+        }
+    }
+
+    /**
+     * Returns the wall-clock duration of a step for the current speed.
+     *
+     * @return The step duration in nanoseconds.
+     */
+    private static long stepNanos() {
+        return Math.max(1, NANOS_PER_SECOND / Math.max(1, SimulationHandler.getTargetPhysicsFPS()));
+    }
+
+    @Override
+    public void run() {
+        long previousTick = clock.nanoTime();
+        long lastPublish = previousTick;
+        long accumulator = 0;
+        while (running) {
+            final long now = clock.nanoTime();
+            final long stepNanos = stepNanos();
+            accumulator = Math.min(accumulator + now - previousTick, MAX_BACKLOG_NANOS);
+            previousTick = now;
+
+            if (simulationHandler.isPaused()) {
+                accumulator = 0;
+                LockSupport.parkNanos(MAX_IDLE_NANOS);
+                continue;
+            }
+
+            try {
+                while (running && accumulator >= stepNanos) {
+                    simulationHandler.step();
+                    accumulator -= stepNanos;
+                    final long stepped = clock.nanoTime();
+                    if (accumulator < stepNanos
+                            || stepped - lastPublish >= PUBLISH_INTERVAL_NANOS) {
+                        simulationHandler.publishState(stepNanos);
+                        lastPublish = stepped;
+                    }
+                }
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception exc) {
+                if (LOGGER.isErrorEnabled()) {
+                    LOGGER.error("Error in physics loop", exc);
+                }
+            }
+            LockSupport.parkNanos(Math.min(stepNanos - accumulator, MAX_IDLE_NANOS));
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package model;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Arrays;
+
+/**
+ * Snapshot of the simulation handed from the physics thread to the renderer. It holds the last
+ * completed step and the one before it, so that the renderer can interpolate between them while
+ * the next step is being computed. <i>Say cheese.</i>
+ *
+ * <p>When replaying a recording, the {@link TrajectoryPlayer} fills a snapshot of its own from the
+ * decoded frames instead.
+ *
+ * <p>Snapshots are recycled by the {@link StateExchange}, a reader must not keep the arrays around
+ * after acquiring a newer snapshot.
+ */
+@SuppressFBWarnings(
+        value = "EI_EXPOSE_REP",
+        justification = "Snapshots are read in place by the renderer, copying defeats the point.")
+public final class SimulationState {
+    private int count;
+    private long generation;
+    private long publishedAtNanos;
+    private long stepNanos = 1;
+
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] z = new float[0];
+    private float[] previousX = new float[0];
+    private float[] previousY = new float[0];
+    private float[] previousZ = new float[0];
+    private float[] vx = new float[0];
+    private float[] vy = new float[0];
+    private float[] vz = new float[0];
+    private float[] radius = new float[0];
+    private float[] mass = new float[0];
+    private int[] color = new int[0];
+
+    /**
+     * Copies the state of the store. Right after a step, the next buffers of the store still hold
+     * the state of the previous step.
+     *
+     * @param store Store to copy, between two steps.
+     * @param hasPrevious Whether the next buffers hold the previous step, {@code false} right after
+     *     seeding.
+     * @param generationParam Seed generation, changes every time the simulation is reseeded or its
+     *     spheres are renumbered.
+     * @param publishedAtNanosParam Time at which the step was completed, in {@link
+     *     System#nanoTime()} units.
+     * @param stepNanosParam Wall-clock duration of a step.
+     */
+    void capture(
+            final ParticleStore store,
+            final boolean hasPrevious,
+            final long generationParam,
+            final long publishedAtNanosParam,
+            final long stepNanosParam) {
+        count = store.size();
+        generation = generationParam;
+        publishedAtNanos = publishedAtNanosParam;
+        stepNanos = Math.max(stepNanosParam, 1);
+        ensureCapacity(count);
+
+        store.getX().read(0, x, 0, count);
+        store.getY().read(0, y, 0, count);
+        store.getZ().read(0, z, 0, count);
+        (hasPrevious ? store.getNextX() : store.getX()).read(0, previousX, 0, count);
+        (hasPrevious ? store.getNextY() : store.getY()).read(0, previousY, 0, count);
+        (hasPrevious ? store.getNextZ() : store.getZ()).read(0, previousZ, 0, count);
+        store.getVx().read(0, vx, 0, count);
+        store.getVy().read(0, vy, 0, count);
+        store.getVz().read(0, vz, 0, count);
+        store.getRadius().read(0, radius, 0, count);
+        store.getMass().read(0, mass, 0, count);
+        store.getColor().read(0, color, 0, count);
+    }
+
+    /**
+     * Shows a frame of a trajectory file. Within a segment, the positions shown so far become the
+     * previous ones and velocities are estimated from the move; a new segment starts afresh.
+     * Masses are not recorded and read as zero.
+     *
+     * @param frame Decoded frame.
+     * @param stepGap Steps since the frame shown so far.
+     * @param publishedAtNanosParam Time at which the playhead reached the frame, in {@link
+     *     System#nanoTime()} units.
+     * @param stepNanosParam Wall-clock duration of a frame at the playback rate.
+     */
+    void load(
+            final ReplayFrame frame,
+            final long stepGap,
+            final long publishedAtNanosParam,
+            final long stepNanosParam) {
+        final boolean continuous =
+                frame.getSegment() == generation && frame.getCount() == count && count > 0;
+        count = frame.getCount();
+        generation = frame.getSegment();
+        publishedAtNanos = publishedAtNanosParam;
+        stepNanos = Math.max(stepNanosParam, 1);
+        ensureCapacity(count);
+
+        if (continuous) {
+            float[] swap = previousX;
+            previousX = x;
+            x = swap;
+            swap = previousY;
+            previousY = y;
+            y = swap;
+            swap = previousZ;
+            previousZ = z;
+            z = swap;
+        }
+        System.arraycopy(frame.getX(), 0, x, 0, count);
+        System.arraycopy(frame.getY(), 0, y, 0, count);
+        System.arraycopy(frame.getZ(), 0, z, 0, count);
+        if (!continuous) {
+            System.arraycopy(x, 0, previousX, 0, count);
+            System.arraycopy(y, 0, previousY, 0, count);
+            System.arraycopy(z, 0, previousZ, 0, count);
+        }
+        final float invGap = continuous && stepGap != 0 ? 1f / stepGap : 0f;
+        for (int i = 0; i < count; i++) {
+            vx[i] = (x[i] - previousX[i]) * invGap;
+            vy[i] = (y[i] - previousY[i]) * invGap;
+            vz[i] = (z[i] - previousZ[i]) * invGap;
+        }
+        System.arraycopy(frame.getRadius(), 0, radius, 0, count);
+        System.arraycopy(frame.getColor(), 0, color, 0, count);
+        Arrays.fill(mass, 0, count, 0f);
+    }
+
+    /**
+     * Grows the arrays so that they can hold the given amount of spheres.
+     *
+     * @param capacity Amount of spheres.
+     */
+    private void ensureCapacity(final int capacity) {
+        if (x.length < capacity) {
+            x = new float[capacity];
+            y = new float[capacity];
+            z = new float[capacity];
+            previousX = new float[capacity];
+            previousY = new float[capacity];
+            previousZ = new float[capacity];
+            vx = new float[capacity];
+            vy = new float[capacity];
+            vz = new float[capacity];
+            radius = new float[capacity];
+            mass = new float[capacity];
+            color = new int[capacity];
+        }
+    }
+
+    /**
+     * Computes how far the display should be between the previous step and the last one.
+     *
+     * @param nowNanos Current time, in {@link System#nanoTime()} units.
+     * @return The interpolation factor, from 0 (previous step) to 1 (last step).
+     */
+    public float interpolationFactor(final long nowNanos) {
+        final float factor = (float) (nowNanos - publishedAtNanos) / stepNanos;
+        return Math.max(0, Math.min(factor, 1));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public long getPublishedAtNanos() {
+        return publishedAtNanos;
+    }
+
+    public float[] getX() {
+        return x;
+    }
+
+    public float[] getY() {
+        return y;
+    }
+
+    public float[] getZ() {
+        return z;
+    }
+
+    public float[] getPreviousX() {
+        return previousX;
+    }
+
+    public float[] getPreviousY() {
+        return previousY;
+    }
+
+    public float[] getPreviousZ() {
+        return previousZ;
+    }
+
+    public float[] getVx() {
+        return vx;
+    }
+
+    public float[] getVy() {
+        return vy;
+    }
+
+    public float[] getVz() {
+        return vz;
+    }
+
+    public float[] getRadius() {
+        return radius;
+    }
+
+    public float[] getMass() {
+        return mass;
+    }
+
+    public int[] getColor() {
+        return color;
+    }
+}
@@ -0,0 +1,590 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Puts resting agglomerates of spheres to sleep. Spheres in contact are grouped in islands (the
+ * connected components of the contact graph), and an island whose internal kinetic energy stays
+ * below a threshold for enough steps falls asleep: its spheres get the velocity of its center of
+ * mass and move as one rigid body. <i>Let sleeping clumps lie.</i>
+ *
+ * <p>A sleeping island costs next to nothing: the collisions between its own spheres are skipped,
+ * and gravity sees it as a single pseudo-body at its center of mass, whose acceleration is given
+ * to every one of its spheres. It wakes up as soon as its contacts change (a foreign sphere
+ * touches it, or one of its spheres leaves), its spheres stop moving together (a bounce on the
+ * bounds), or the external field it sits in changes by more than a tolerance since it fell
+ * asleep.
+ *
+ * <p>The sleeping island of every sphere lives in {@link ParticleStore#getSleepingIsland()}, named
+ * after one of its spheres, the anchor.
+ */
+public final class SleepingIslands {
+    /** System property setting the number of quiet steps before an island sleeps, 0 disables. */
+    public static final String SLEEP_STEPS_PROPERTY = "gravity.sleep.steps";
+
+    /** System property setting the internal kinetic energy per unit mass of a quiet island. */
+    public static final String SLEEP_ENERGY_PROPERTY = "gravity.sleep.energy";
+
+    /** System property setting the relative change of the field that wakes an island up. */
+    public static final String WAKE_TOLERANCE_PROPERTY = "gravity.sleep.tolerance";
+
+    /** Default number of quiet steps before an island sleeps, a second at 60 steps per second. */
+    public static final int DEFAULT_SLEEP_STEPS = 60;
+
+    /** Default internal kinetic energy per unit mass below which an island is quiet. */
+    public static final float DEFAULT_SLEEP_ENERGY = 1e-3f;
+
+    /** Default relative change of the external acceleration that wakes an island up. */
+    public static final float DEFAULT_WAKE_TOLERANCE = 0.5f;
+
+    /**
+     * Spheres closer than this factor times the sum of their radii are in contact. The {@link
+     * CollisionGrid} cells are widened by as much, so that those pairs are always candidates.
+     */
+    static final float CONTACT_SLOP = 1.02f;
+
+    /** Value of {@link #islandKey} for an island mixing spheres from different islands. */
+    private static final int MIXED = -2;
+
+    private static final byte KEEP = 0;
+    private static final byte WAKE = 1;
+    private static final byte SLEEP = 2;
+
+    private final int sleepSteps;
+    private final float sleepEnergy;
+    private final float wakeTolerance;
+    private ParticleStore reducedStore = new ParticleStore(0);
+    private int sleepingCount;
+    private int sleepingSphereCount;
+
+    private int[] parent = new int[0];
+    private int[] quietSteps = new int[0];
+    private int[] islandSize = new int[0];
+    private int[] sleepingSize = new int[0];
+    private int[] islandKey = new int[0];
+    private int[] islandQuiet = new int[0];
+    private byte[] islandAction = new byte[0];
+    private float[] islandMass = new float[0];
+    private float[] momentumX = new float[0];
+    private float[] momentumY = new float[0];
+    private float[] momentumZ = new float[0];
+    private float[] internalEnergy = new float[0];
+    private float[] referenceAx = new float[0];
+    private float[] referenceAy = new float[0];
+    private float[] referenceAz = new float[0];
+    private int[] reducedIndex = new int[0];
+    private int[] reducedActive = new int[0];
+    private boolean[] requested = new boolean[0];
+
+    /**
+     * Creates the island tracker.
+     *
+     * @param sleepStepsParam Number of quiet steps before an island sleeps, {@code 0} to never
+     *     sleep.
+     * @param sleepEnergyParam Internal kinetic energy per unit mass below which an island is
+     *     quiet.
+     * @param wakeToleranceParam Relative change of the external acceleration that wakes an island
+     *     up.
+     */
+    public SleepingIslands(
+            final int sleepStepsParam,
+            final float sleepEnergyParam,
+            final float wakeToleranceParam) {
+        if (sleepStepsParam < 0) {
+            throw new IllegalArgumentException(
+                    "Sleep steps must be positive, got " + sleepStepsParam);
+        }
+        if (!(sleepEnergyParam >= 0) || !(wakeToleranceParam >= 0)) {
+            throw new IllegalArgumentException(
+                    "Sleep thresholds must be positive, got "
+                            + sleepEnergyParam
+                            + " and "
+                            + wakeToleranceParam);
+        }
+        this.sleepSteps = sleepStepsParam;
+        this.sleepEnergy = sleepEnergyParam;
+        this.wakeTolerance = wakeToleranceParam;
+    }
+
+    /**
+     * Creates the island tracker with the settings read from the {@value #SLEEP_STEPS_PROPERTY},
+     * {@value #SLEEP_ENERGY_PROPERTY} and {@value #WAKE_TOLERANCE_PROPERTY} system properties.
+     *
+     * @return The island tracker.
+     */
+    public static SleepingIslands fromSystemProperties() {
+        return new SleepingIslands(
+                Integer.getInteger(SLEEP_STEPS_PROPERTY, DEFAULT_SLEEP_STEPS),
+                Float.parseFloat(
+                        System.getProperty(
+                                SLEEP_ENERGY_PROPERTY, Float.toString(DEFAULT_SLEEP_ENERGY))),
+                Float.parseFloat(
+                        System.getProperty(
+                                WAKE_TOLERANCE_PROPERTY,
+                                Float.toString(DEFAULT_WAKE_TOLERANCE))));
+    }
+
+    /**
+     * Groups the spheres in islands from the contacts found by the broad phase, then puts the
+     * quiet islands to sleep and wakes the disturbed ones. Must run at the start of a step, before
+     * any worker reads the store.
+     *
+     * @param store Store holding the current state, whose sleeping islands are updated.
+     * @param collisionGrid Broad phase, already built for the current state.
+     * @return {@code true} if an island fell asleep or woke up, which changes the accelerations.
+     */
+    public boolean update(final ParticleStore store, final CollisionGrid collisionGrid) {
+        if (sleepSteps == 0) {
+            return false;
+        }
+        final int count = store.size();
+        ensureCapacity(count);
+        groupContacts(store, collisionGrid, count);
+        accumulateIslands(store, count);
+
+        boolean changed = false;
+        for (int root = 0; root < count; root++) {
+            if (parent[root] != root) {
+                continue;
+            }
+            final int key = islandKey[root];
+            final boolean quiet = internalEnergy[root] <= sleepEnergy * islandMass[root];
+            islandAction[root] = KEEP;
+            if (key >= 0 && islandSize[root] == sleepingSize[key]) {
+                // Same spheres as when it fell asleep, whose anchor is still the lowest index.
+                if (!quiet || fieldChanged(store, key)) {
+                    islandAction[root] = WAKE;
+                }
+            } else if (key != ParticleStore.AWAKE) {
+                // Contacts changed: the island lost spheres, or was joined by others.
+                islandAction[root] = WAKE;
+            } else if (islandSize[root] > 1 && islandQuiet[root] >= sleepSteps) {
+                islandAction[root] = SLEEP;
+                sleepingSize[root] = islandSize[root];
+                referenceAx[root] = 0;
+                referenceAy[root] = 0;
+                referenceAz[root] = 0;
+            }
+            changed |= islandAction[root] != KEEP;
+        }
+        if (changed) {
+            applyActions(store, count);
+        }
+        countSleeping(store, count);
+        return changed;
+    }
+
+    /**
+     * Joins every pair of touching spheres in the same island, leaving {@link #parent} pointing at
+     * the root of each island.
+     *
+     * @param store Store holding the positions and radii.
+     * @param collisionGrid Broad phase holding the candidate pairs.
+     * @param count Number of spheres.
+     */
+    private void groupContacts(
+            final ParticleStore store, final CollisionGrid collisionGrid, final int count) {
+        final FloatColumn x = store.getX();
+        final FloatColumn y = store.getY();
+        final FloatColumn z = store.getZ();
+        final FloatColumn radius = store.getRadius();
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < count; i++) {
+            final int end = collisionGrid.getCandidateEnd(i);
+            for (int slot = collisionGrid.getCandidateStart(i); slot < end; slot++) {
+                final int j = collisionGrid.getCandidate(slot);
+                final float dx = x.get(i) - x.get(j);
+                final float dy = y.get(i) - y.get(j);
+                final float dz = z.get(i) - z.get(j);
+                final float contact = (radius.get(i) + radius.get(j)) * CONTACT_SLOP;
+                if (dx * dx + dy * dy + dz * dz <= contact * contact) {
+                    union(i, j);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            parent[i] = find(i);
+        }
+    }
+
+    /**
+     * Sums the mass, momentum and internal kinetic energy of every island, and finds whether its
+     * spheres all belong to the same sleeping island (or are all awake) and how long its quietest
+     * sphere was quiet. The quiet step counters are updated on the way.
+     *
+     * @param store Store holding the sphere state.
+     * @param count Number of spheres.
+     */
+    private void accumulateIslands(final ParticleStore store, final int count) {
+        final FloatColumn vx = store.getVx();
+        final FloatColumn vy = store.getVy();
+        final FloatColumn vz = store.getVz();
+        final FloatColumn mass = store.getMass();
+        final IntColumn sleeping = store.getSleepingIsland();
+        Arrays.fill(islandMass, 0, count, 0);
+        Arrays.fill(momentumX, 0, count, 0);
+        Arrays.fill(momentumY, 0, count, 0);
+        Arrays.fill(momentumZ, 0, count, 0);
+        Arrays.fill(internalEnergy, 0, count, 0);
+        Arrays.fill(islandQuiet, 0, count, Integer.MAX_VALUE);
+        for (int i = 0; i < count; i++) {
+            final int root = parent[i];
+            islandMass[root] += mass.get(i);
+            momentumX[root] += mass.get(i) * vx.get(i);
+            momentumY[root] += mass.get(i) * vy.get(i);
+            momentumZ[root] += mass.get(i) * vz.get(i);
+        }
+        for (int i = 0; i < count; i++) {
+            if (parent[i] == i) {
+                islandSize[i] = 0;
+                islandKey[i] = sleeping.get(i);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            final int root = parent[i];
+            final float inverseMass = islandMass[root] > 0 ? 1 / islandMass[root] : 0;
+            final float dvx = vx.get(i) - momentumX[root] * inverseMass;
+            final float dvy = vy.get(i) - momentumY[root] * inverseMass;
+            final float dvz = vz.get(i) - momentumZ[root] * inverseMass;
+            internalEnergy[root] += 0.5f * mass.get(i) * (dvx * dvx + dvy * dvy + dvz * dvz);
+            islandSize[root]++;
+            if (islandKey[root] != sleeping.get(i)) {
+                islandKey[root] = MIXED;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            final int root = parent[i];
+            if (internalEnergy[root] <= sleepEnergy * islandMass[root]) {
+                quietSteps[i]++;
+            } else {
+                quietSteps[i] = 0;
+            }
+            islandQuiet[root] = Math.min(islandQuiet[root], quietSteps[i]);
+        }
+    }
+
+    /**
+     * Checks whether the acceleration of a sleeping island moved away from the one it fell asleep
+     * in by more than the tolerance. Every sphere of the island shares the same acceleration.
+     *
+     * @param store Store holding the accelerations.
+     * @param anchor Anchor of the island.
+     * @return {@code true} if the island must wake up.
+     */
+    private boolean fieldChanged(final ParticleStore store, final int anchor) {
+        final float ax = store.getAx().get(anchor);
+        final float ay = store.getAy().get(anchor);
+        final float az = store.getAz().get(anchor);
+        final float dx = ax - referenceAx[anchor];
+        final float dy = ay - referenceAy[anchor];
+        final float dz = az - referenceAz[anchor];
+        final float reference =
+                Math.max(
+                        ax * ax + ay * ay + az * az,
+                        referenceAx[anchor] * referenceAx[anchor]
+                                + referenceAy[anchor] * referenceAy[anchor]
+                                + referenceAz[anchor] * referenceAz[anchor]);
+        return dx * dx + dy * dy + dz * dz > wakeTolerance * wakeTolerance * reference;
+    }
+
+    /**
+     * Wakes the islands marked {@link #WAKE} and freezes the ones marked {@link #SLEEP}. A frozen
+     * island gets the velocity of its center of mass on every sphere, which keeps its momentum,
+     * and the mean acceleration of its spheres as the reference of the field: internal forces
+     * cancel out, so that is the external field at its center of mass.
+     *
+     * @param store Store holding the current state.
+     * @param count Number of spheres.
+     */
+    private void applyActions(final ParticleStore store, final int count) {
+        final FloatColumn mass = store.getMass();
+        final FloatColumn ax = store.getAx();
+        final FloatColumn ay = store.getAy();
+        final FloatColumn az = store.getAz();
+        final IntColumn sleeping = store.getSleepingIsland();
+        for (int i = 0; i < count; i++) {
+            final int root = parent[i];
+            if (islandAction[root] == WAKE) {
+                sleeping.set(i, ParticleStore.AWAKE);
+                quietSteps[i] = 0;
+            } else if (islandAction[root] == SLEEP) {
+                final float share = mass.get(i) / islandMass[root];
+                referenceAx[root] += share * ax.get(i);
+                referenceAy[root] += share * ay.get(i);
+                referenceAz[root] += share * az.get(i);
+                store.setVelocity(
+                        i,
+                        momentumX[root] / islandMass[root],
+                        momentumY[root] / islandMass[root],
+                        momentumZ[root] / islandMass[root]);
+                sleeping.set(i, root);
+            }
+        }
+    }
+
+    /**
+     * Counts the sleeping islands and spheres.
+     *
+     * @param store Store holding the sleeping islands.
+     * @param count Number of spheres.
+     */
+    private void countSleeping(final ParticleStore store, final int count) {
+        final IntColumn sleeping = store.getSleepingIsland();
+        sleepingCount = 0;
+        sleepingSphereCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (sleeping.get(i) != ParticleStore.AWAKE) {
+                sleepingSphereCount++;
+                if (sleeping.get(i) == i) {
+                    sleepingCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Follows the spheres renumbered by {@link ParticleStore#compact}. The store already moved the
+     * sleeping islands along, but they are still named after the old index of their anchor.
+     * Islands whose anchor is gone wake up, the others notice they lost spheres on the next
+     * update.
+     *
+     * @param store Compacted store.
+     * @param newIndex New index of every old index, {@code -1} for the removed spheres.
+     * @param oldCount Number of spheres before the compaction.
+     */
+    public void compact(final ParticleStore store, final int[] newIndex, final int oldCount) {
+        ensureCapacity(oldCount);
+        for (int i = 0; i < oldCount; i++) {
+            final int moved = newIndex[i];
+            if (moved >= 0) {
+                quietSteps[moved] = quietSteps[i];
+                sleepingSize[moved] = sleepingSize[i];
+                referenceAx[moved] = referenceAx[i];
+                referenceAy[moved] = referenceAy[i];
+                referenceAz[moved] = referenceAz[i];
+            }
+        }
+        final IntColumn sleeping = store.getSleepingIsland();
+        for (int i = 0; i < store.size(); i++) {
+            final int anchor = sleeping.get(i);
+            if (anchor != ParticleStore.AWAKE) {
+                final int movedAnchor = newIndex[anchor];
+                if (movedAnchor < 0) {
+                    sleeping.set(i, ParticleStore.AWAKE);
+                    quietSteps[i] = 0;
+                } else {
+                    sleeping.set(i, movedAnchor);
+                }
+            }
+        }
+        countSleeping(store, store.size());
+    }
+
+    /**
+     * Wakes every island up, and forgets how long the spheres were quiet. Used when the state is
+     * replaced behind the tracker's back.
+     *
+     * @param store Store holding the sleeping islands.
+     */
+    public void wakeAll(final ParticleStore store) {
+        store.getSleepingIsland().fill(0, store.size(), ParticleStore.AWAKE);
+        Arrays.fill(quietSteps, 0);
+        sleepingCount = 0;
+        sleepingSphereCount = 0;
+    }
+
+    /**
+     * Computes the acceleration of some spheres, each sleeping island standing for a single
+     * pseudo-body at its center of mass. The solver runs on a reduced store holding the awake
+     * spheres and the pseudo-bodies, whose results are copied back to the requested spheres. Falls
+     * straight back to the solver when nothing sleeps.
+     *
+     * @param solver Solver to run.
+     * @param store Store holding the sphere state.
+     * @param workerPool Pool to run the solver on.
+     * @param spheres Indices of the spheres to update.
+     * @param sphereCount Number of valid entries in {@code spheres}.
+     */
+    public void computeAccelerations(
+            final GravitySolver solver,
+            final ParticleStore store,
+            final ForkJoinPool workerPool,
+            final int[] spheres,
+            final int sphereCount) {
+        if (sleepingCount == 0) {
+            if (sphereCount == store.size()) {
+                solver.computeAccelerations(store, workerPool);
+            } else {
+                solver.computeAccelerations(store, workerPool, spheres, sphereCount);
+            }
+            return;
+        }
+
+        gatherReduced(store);
+        int reducedCount = 0;
+        for (int k = 0; k < sphereCount; k++) {
+            final int r = reducedIndex[spheres[k]];
+            if (!requested[r]) {
+                requested[r] = true;
+                reducedActive[reducedCount++] = r;
+            }
+        }
+        for (int k = 0; k < reducedCount; k++) {
+            requested[reducedActive[k]] = false;
+        }
+        if (reducedCount == reducedStore.size()) {
+            solver.computeAccelerations(reducedStore, workerPool);
+        } else {
+            solver.computeAccelerations(reducedStore, workerPool, reducedActive, reducedCount);
+        }
+
+        final FloatColumn ax = reducedStore.getAx();
+        final FloatColumn ay = reducedStore.getAy();
+        final FloatColumn az = reducedStore.getAz();
+        final FloatColumn nearest = reducedStore.getNearestDistance();
+        for (int k = 0; k < sphereCount; k++) {
+            final int i = spheres[k];
+            final int r = reducedIndex[i];
+            store.setAcceleration(i, ax.get(r), ay.get(r), az.get(r));
+            store.setNearestDistance(i, nearest.get(r));
+        }
+    }
+
+    /**
+     * Fills the reduced store with the awake spheres, followed by one pseudo-body per sleeping
+     * island carrying its whole mass at its center of mass.
+     *
+     * @param store Store holding the sphere state.
+     */
+    private void gatherReduced(final ParticleStore store) {
+        final int count = store.size();
+        final String storageName = store.getStorage().getName();
+        if (reducedStore.capacity() < count
+                || !storageName.equals(reducedStore.getStorage().getName())) {
+            reducedStore.close();
+            reducedStore = new ParticleStore(count, ColumnStorages.byName(storageName));
+        }
+        reducedStore.clear();
+        final FloatColumn x = store.getX();
+        final FloatColumn y = store.getY();
+        final FloatColumn z = store.getZ();
+        final FloatColumn mass = store.getMass();
+        final FloatColumn radius = store.getRadius();
+        final IntColumn sleeping = store.getSleepingIsland();
+        for (int i = 0; i < count; i++) {
+            if (sleeping.get(i) == ParticleStore.AWAKE) {
+                final int r = reducedStore.add();
+                reducedStore.setPosition(r, x.get(i), y.get(i), z.get(i));
+                reducedStore.setBody(r, radius.get(i), mass.get(i), 1.0f, 0);
+                reducedIndex[i] = r;
+            } else if (sleeping.get(i) == i) {
+                reducedIndex[i] = reducedStore.add();
+                reducedStore.setBody(reducedIndex[i], radius.get(i), 0, 1.0f, 0);
+            }
+        }
+
+        final FloatColumn reducedX = reducedStore.getX();
+        final FloatColumn reducedY = reducedStore.getY();
+        final FloatColumn reducedZ = reducedStore.getZ();
+        final FloatColumn reducedMass = reducedStore.getMass();
+        for (int i = 0; i < count; i++) {
+            if (sleeping.get(i) != ParticleStore.AWAKE) {
+                final int r = reducedIndex[sleeping.get(i)];
+                reducedIndex[i] = r;
+                reducedX.add(r, mass.get(i) * x.get(i));
+                reducedY.add(r, mass.get(i) * y.get(i));
+                reducedZ.add(r, mass.get(i) * z.get(i));
+                reducedMass.add(r, mass.get(i));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (sleeping.get(i) == i) {
+                final int r = reducedIndex[i];
+                reducedX.set(r, reducedX.get(r) / reducedMass.get(r));
+                reducedY.set(r, reducedY.get(r) / reducedMass.get(r));
+                reducedZ.set(r, reducedZ.get(r) / reducedMass.get(r));
+            }
+        }
+    }
+
+    /**
+     * Finds the root of the island of a sphere, halving the path on the way.
+     *
+     * @param sphere Sphere index.
+     * @return The root of its island.
+     */
+    private int find(final int sphere) {
+        int node = sphere;
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    /**
+     * Joins the islands of two spheres, under the lowest root.
+     *
+     * @param first First sphere index.
+     * @param second Second sphere index.
+     */
+    private void union(final int first, final int second) {
+        final int firstRoot = find(first);
+        final int secondRoot = find(second);
+        if (firstRoot < secondRoot) {
+            parent[secondRoot] = firstRoot;
+        } else if (secondRoot < firstRoot) {
+            parent[firstRoot] = secondRoot;
+        }
+    }
+
+    /**
+     * Grows the per-sphere arrays, keeping the quiet step counters and the sleeping island data.
+     *
+     * @param count Number of spheres.
+     */
+    private void ensureCapacity(final int count) {
+        if (parent.length >= count) {
+            return;
+        }
+        parent = new int[count];
+        quietSteps = Arrays.copyOf(quietSteps, count);
+        islandSize = new int[count];
+        sleepingSize = Arrays.copyOf(sleepingSize, count);
+        islandKey = new int[count];
+        islandQuiet = new int[count];
+        islandAction = new byte[count];
+        islandMass = new float[count];
+        momentumX = new float[count];
+        momentumY = new float[count];
+        momentumZ = new float[count];
+        internalEnergy = new float[count];
+        referenceAx = Arrays.copyOf(referenceAx, count);
+        referenceAy = Arrays.copyOf(referenceAy, count);
+        referenceAz = Arrays.copyOf(referenceAz, count);
+        reducedIndex = new int[count];
+        reducedActive = new int[count];
+        requested = new boolean[count];
+    }
+
+    /**
+     * Returns the number of islands asleep after the last update.
+     *
+     * @return The sleeping island count.
+     */
+    public int getSleepingCount() {
+        return sleepingCount;
+    }
+
+    /**
+     * Returns the number of spheres in the islands asleep after the last update.
+     *
+     * @return The sleeping sphere count.
+     */
+    public int getSleepingSphereCount() {
+        return sleepingSphereCount;
+    }
+}
@@ -1,38 +1,94 @@
 package model;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Thread wrapper for batches of sphere objects Spheres are distributed as evenly as possible in the
- * threads so that the balancing is somewhat reasonable.
+ * Batch of sphere objects, run on the physics worker pool. Spheres are distributed as evenly as
+ * possible in the batches so that the balancing is somewhat reasonable. A step is made of two
+ * phases separated by a barrier: {@link #resolveCollisions} then {@link #integrate}, the latter
+ * once per stage of every substep.
  */
-public class SphereBatchThread extends Thread {
-    private final List<Integer> objectIndexList;
-    private final List<PhysicSphere> colliderList;
+public class SphereBatchThread {
+    private final List<PhysicSphere> sphereList;
+    private final BlockTimesteps timesteps;
+    private final CollisionBuffer collisionBuffer = new CollisionBuffer();
+    private final float[] collisionScratch = new float[PhysicSphere.COLLISION_SCRATCH_SIZE];
+    private CollisionGrid collisionGrid = new CollisionGrid();
+    private int start;
+    private int end;
 
+    /**
+     * Creates an empty batch, given its objects by {@link #assignRange}.
+     *
+     * @param sphereListParam Every sphere of the simulation.
+     * @param timestepsParam Timesteps of the spheres, read when integrating.
+     */
+    @SuppressFBWarnings(
+            value = "EI_EXPOSE_REP2",
+            justification = "The timesteps are shared by every batch by design.")
     public SphereBatchThread(
-            final List<Integer> objectIndexListParam, final List<PhysicSphere> colliderListParam) {
+            final List<PhysicSphere> sphereListParam, final BlockTimesteps timestepsParam) {
+        this.sphereList = new ArrayList<>(sphereListParam);
+        this.timesteps = timestepsParam;
+    }
 
-        this.objectIndexList = new ArrayList<>(objectIndexListParam);
-        this.colliderList = new ArrayList<>(colliderListParam);
+    /**
+     * Replaces the objects of the batch with a contiguous range, once the spheres were renumbered.
+     * The sphere views stay valid, they are bound to indices rather than to spheres.
+     *
+     * @param startParam First object index of the batch.
+     * @param endParam Object index after the last one of the batch.
+     */
+    public void assignRange(final int startParam, final int endParam) {
+        this.start = startParam;
+        this.end = endParam;
     }
 
     /**
-     * Add an object index to the list of objects to be processed.
+     * Sets the collision broad phase used by the next runs.
      *
-     * @param objIdx Object index. <i>One more to add to my collection.</i>
+     * @param collisionGridParam Collision grid, already built for the current frame.
      */
-    public void addToObjects(final int objIdx) {
-        objectIndexList.add(objIdx);
+    public void setCollisionGrid(final CollisionGrid collisionGridParam) {
+        this.collisionGrid = collisionGridParam;
     }
 
-    /** Apply attraction to all objects in the batch. <i>RUN FORREST, RUN!</i> */
-    @Override
-    public void run() {
-        for (final Integer objectIndex : objectIndexList) {
-            colliderList.get(objectIndex).applyAttraction(colliderList);
-            colliderList.get(objectIndex).update();
+    /**
+     * Returns the buffer holding the collision responses of the last {@link #resolveCollisions}.
+     *
+     * @return The collision buffer.
+     */
+    public CollisionBuffer getCollisionBuffer() {
+        return collisionBuffer;
+    }
+
+    /**
+     * Resolves the collisions of every object in the batch. Only reads the current state of the
+     * store. <i>RUN FORREST, RUN!</i>
+     *
+     * @param response Collision response deciding whether colliding spheres merge.
+     */
+    public void resolveCollisions(final CollisionResponse response) {
+        collisionBuffer.clear();
+        for (int objectIndex = start; objectIndex < end; objectIndex++) {
+            sphereList.get(objectIndex).applyCollisions(
+                    collisionGrid, collisionBuffer, collisionScratch, response);
+        }
+    }
+
+    /**
+     * Moves every object in the batch by one stage of a substep, writing to the next state of the
+     * store. Only the active objects are kicked, see {@link BlockTimesteps}.
+     *
+     * @param stageKick Kick coefficient of the stage, see {@link Integrator#getKick}.
+     * @param stageDrift Drift coefficient of the stage, see {@link Integrator#getDrift}.
+     */
+    public void integrate(final float stageKick, final float stageDrift) {
+        final float drift = timesteps.getDrift() * stageDrift;
+        for (int objectIndex = start; objectIndex < end; objectIndex++) {
+            sphereList.get(objectIndex).update(timesteps.getKick(objectIndex) * stageKick, drift);
         }
     }
 }
@@ -0,0 +1,200 @@
+package model;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Arrays;
+
+/**
+ * Applies the merges recorded by the {@link CollisionResponse} once a step is over. Spheres linked
+ * by merges are grouped (a sphere may hit several others during the same step), every group
+ * becomes its lowest-indexed sphere, and the store is compacted in one go. <i>Two become one.</i>
+ *
+ * <p>A merged sphere conserves momentum and sits at the center of mass of the group, both in the
+ * current state and in the previous one kept for the renderer. Its mass is the sum of the masses,
+ * its volume the sum of the volumes, and its color and bounciness are averaged by mass.
+ */
+public final class SphereMerger {
+    private int[] parent = new int[0];
+    private boolean[] removed = new boolean[0];
+    private int[] newIndex = new int[0];
+    private int pairCount;
+    private int[] pairs = new int[0];
+
+    /**
+     * Collects the merges recorded in a collision buffer, to be applied by the next {@link
+     * #apply}.
+     *
+     * @param collisionBuffer Buffer of a batch, after the collisions were resolved.
+     */
+    public void addPairs(final CollisionBuffer collisionBuffer) {
+        final int count = collisionBuffer.getMergeCount();
+        if (pairs.length < (pairCount + count) * 2) {
+            pairs = Arrays.copyOf(pairs, Math.max((pairCount + count) * 2, pairs.length * 2));
+        }
+        for (int k = 0; k < count; k++) {
+            pairs[pairCount * 2] = collisionBuffer.getMergeSphere(k);
+            pairs[pairCount * 2 + 1] = collisionBuffer.getMergeOther(k);
+            pairCount++;
+        }
+    }
+
+    /**
+     * Merges the collected pairs and compacts the store. Caller must hold the step lock, once the
+     * step is over.
+     *
+     * @param store Store to update.
+     * @return {@code true} if any sphere was merged, in which case {@link #getNewIndex()} maps the
+     *     old indices to the new ones.
+     */
+    public boolean apply(final ParticleStore store) {
+        if (pairCount == 0) {
+            return false;
+        }
+        final int count = store.size();
+        if (parent.length < count) {
+            parent = new int[count];
+            removed = new boolean[count];
+            newIndex = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+        }
+        for (int k = 0; k < pairCount; k++) {
+            union(pairs[k * 2], pairs[k * 2 + 1]);
+        }
+        pairCount = 0;
+
+        // Roots are the lowest index of their group, so they are always merged into first.
+        for (int i = 0; i < count; i++) {
+            final int root = find(i);
+            removed[i] = root != i;
+            if (removed[i]) {
+                absorb(store, root, i);
+            }
+        }
+        store.compact(removed, newIndex);
+        return true;
+    }
+
+    /**
+     * Merges a sphere into another one.
+     *
+     * @param store Store holding both spheres.
+     * @param into Index of the sphere that remains.
+     * @param absorbed Index of the sphere that disappears.
+     */
+    private static void absorb(final ParticleStore store, final int into, final int absorbed) {
+        final FloatColumn mass = store.getMass();
+        final FloatColumn radius = store.getRadius();
+        final FloatColumn bounciness = store.getBounciness();
+        final IntColumn color = store.getColor();
+        final float total = mass.get(into) + mass.get(absorbed);
+        final float keep = mass.get(into) / total;
+        final float take = mass.get(absorbed) / total;
+
+        blend(store.getX(), into, absorbed, keep, take);
+        blend(store.getY(), into, absorbed, keep, take);
+        blend(store.getZ(), into, absorbed, keep, take);
+        blend(store.getVx(), into, absorbed, keep, take);
+        blend(store.getVy(), into, absorbed, keep, take);
+        blend(store.getVz(), into, absorbed, keep, take);
+        blend(store.getNextX(), into, absorbed, keep, take);
+        blend(store.getNextY(), into, absorbed, keep, take);
+        blend(store.getNextZ(), into, absorbed, keep, take);
+        blend(store.getNextVx(), into, absorbed, keep, take);
+        blend(store.getNextVy(), into, absorbed, keep, take);
+        blend(store.getNextVz(), into, absorbed, keep, take);
+        blend(bounciness, into, absorbed, keep, take);
+
+        final float radiusInto = radius.get(into);
+        final float radiusAbsorbed = radius.get(absorbed);
+        radius.set(into, (float)
+                        Math.cbrt(
+                                radiusInto * radiusInto * radiusInto
+                                        + radiusAbsorbed * radiusAbsorbed * radiusAbsorbed));
+        color.set(into, blendColor(color.get(into), color.get(absorbed), keep, take));
+        mass.set(into, total);
+    }
+
+    /**
+     * Replaces a value by the weighted average of two values of a column.
+     *
+     * @param column Column to update.
+     * @param into Index of the value to replace.
+     * @param absorbed Index of the other value.
+     * @param keep Weight of the replaced value.
+     * @param take Weight of the other value.
+     */
+    private static void blend(
+            final FloatColumn column,
+            final int into,
+            final int absorbed,
+            final float keep,
+            final float take) {
+        column.set(into, column.get(into) * keep + column.get(absorbed) * take);
+    }
+
+    /**
+     * Averages two packed ARGB colors channel by channel. <i>Purple, obviously.</i>
+     *
+     * @param first First color.
+     * @param second Second color.
+     * @param firstWeight Weight of the first color.
+     * @param secondWeight Weight of the second color.
+     * @return The blended color.
+     */
+    private static int blendColor(
+            final int first, final int second, final float firstWeight, final float secondWeight) {
+        int blended = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+            final int channel =
+                    Math.round(
+                            (first >>> shift & 0xFF) * firstWeight
+                                    + (second >>> shift & 0xFF) * secondWeight);
+            blended |= Math.min(channel, 0xFF) << shift;
+        }
+        return blended;
+    }
+
+    /**
+     * Returns where every sphere went after the last {@link #apply}.
+     *
+     * @return The new index of each old index, {@code -1} for the merged ones.
+     */
+    @SuppressFBWarnings(
+            value = "EI_EXPOSE_REP",
+            justification = "Read right away to renumber the sphere state, copying is wasteful.")
+    public int[] getNewIndex() {
+        return newIndex;
+    }
+
+    /**
+     * Finds the root of the group of a sphere, halving the path on the way.
+     *
+     * @param sphere Sphere index.
+     * @return The root of its group.
+     */
+    private int find(final int sphere) {
+        int node = sphere;
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    /**
+     * Joins the groups of two spheres, under the lowest root.
+     *
+     * @param first First sphere index.
+     * @param second Second sphere index.
+     */
+    private void union(final int first, final int second) {
+        final int firstRoot = find(first);
+        final int secondRoot = find(second);
+        if (firstRoot < secondRoot) {
+            parent[secondRoot] = firstRoot;
+        } else if (secondRoot < firstRoot) {
+            parent[firstRoot] = secondRoot;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/**
+ * Fills a store with random spheres that don't overlap, by jittered-grid placement. The cube is cut
+ * into at least as many cells as there are spheres, every sphere gets a cell of its own and is
+ * placed at a random spot of it, small enough to stay inside. Spheres are apart by construction, so
+ * no placement is ever tested against the others. <i>Everyone gets a room.</i>
+ *
+ * <p>Spheres are generated in fixed chunks, each drawing from its own {@link SplittableRandom}
+ * split off the handler's generator in chunk order. Chunks run in parallel, yet a given generator
+ * always produces the same spheres, whatever the number of threads.
+ */
+public final class SphereSeeder {
+    /** Number of spheres generated by each random stream. */
+    private static final int CHUNK_SIZE = 4096;
+
+    /** Largest sphere radius, as a fraction of the cell side, leaving a gap between neighbors. */
+    private static final float MAX_RADIUS_FRACTION = 0.45f;
+
+    /** <i>NO TOUCHY.</i> */
+    private SphereSeeder() {}
+
+    /**
+     * Appends random spheres to a store. Radii, masses, velocities and colors follow the
+     * historical distributions, except that radii are capped by the size of the cells.
+     *
+     * @param store Store to fill, with room for the spheres.
+     * @param random Generator the streams are split from, advanced by a single draw.
+     * @param workerPool Pool to generate the chunks on.
+     * @param amount Number of spheres to add.
+     * @param boundsSize Side of the cube the spheres are placed in.
+     */
+    public static void seed(
+            final ParticleStore store,
+            final RandomGenerator random,
+            final ForkJoinPool workerPool,
+            final int amount,
+            final float boundsSize) {
+        final int first = store.addAll(amount);
+        if (amount == 0) {
+            return;
+        }
+        final int cellsPerAxis = cellsPerAxis(amount);
+        final long cellCount = (long) cellsPerAxis * cellsPerAxis * cellsPerAxis;
+        final float cellSize = boundsSize / cellsPerAxis;
+
+        // Spheres walk the cells along a random affine permutation, so that a partial fill is
+        // scattered across the cube instead of piling up at one end.
+        final SplittableRandom root = new SplittableRandom(random.nextLong());
+        long stride = 1 + root.nextLong(cellCount);
+        while (gcd(stride, cellCount) != 1) {
+            stride = 1 + root.nextLong(cellCount);
+        }
+        final CellWalk walk =
+                new CellWalk(stride, root.nextLong(cellCount), cellCount, cellsPerAxis, cellSize);
+
+        final int chunkCount = (amount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final SplittableRandom[] streams = new SplittableRandom[chunkCount];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            streams[chunk] = root.split();
+        }
+        workerPool
+                .submit(
+                        () ->
+                                IntStream.range(0, chunkCount)
+                                        .parallel()
+                                        .forEach(
+                                                chunk ->
+                                                        seedChunk(
+                                                                store,
+                                                                streams[chunk],
+                                                                walk,
+                                                                first,
+                                                                chunk * CHUNK_SIZE,
+                                                                amount)))
+                .join();
+    }
+
+    /**
+     * Draws the spheres of a chunk.
+     *
+     * @param store Store to write to.
+     * @param random Stream of the chunk.
+     * @param walk Assignment of the cells.
+     * @param first Index of the first seeded sphere in the store.
+     * @param start First sphere of the chunk, counted from {@code first}.
+     * @param amount Number of seeded spheres.
+     */
+    private static void seedChunk(
+            final ParticleStore store,
+            final SplittableRandom random,
+            final CellWalk walk,
+            final int first,
+            final int start,
+            final int amount) {
+        final int end = Math.min(amount, start + CHUNK_SIZE);
+        for (int k = start; k < end; k++) {
+            placeSphere(store, random, walk, first + k, walk.cellOf(k));
+        }
+    }
+
+    /**
+     * Draws a sphere inside a cell.
+     *
+     * @param store Store to write to.
+     * @param random Stream of the chunk.
+     * @param walk Assignment of the cells, for their size.
+     * @param index Sphere index.
+     * @param cell Linear cell index.
+     */
+    private static void placeSphere(
+            final ParticleStore store,
+            final SplittableRandom random,
+            final CellWalk walk,
+            final int index,
+            final long cell) {
+        final int cellsPerAxis = walk.cellsPerAxis();
+        final float cellSize = walk.cellSize();
+        final int color =
+                opaqueColor(
+                        random.nextFloat(200) + 55,
+                        random.nextFloat(200) + 55,
+                        random.nextFloat(200) + 55);
+        final float radius =
+                Math.min(
+                        random.nextFloat(2.0f + random.nextFloat(10.0f)) * 2,
+                        cellSize * MAX_RADIUS_FRACTION);
+        final int cellX = (int) (cell % cellsPerAxis);
+        final int cellY = (int) (cell / cellsPerAxis % cellsPerAxis);
+        final int cellZ = (int) (cell / cellsPerAxis / cellsPerAxis);
+        store.setPosition(
+                index,
+                jitter(random, cellX, cellSize, radius),
+                jitter(random, cellY, cellSize, radius),
+                jitter(random, cellZ, cellSize, radius));
+        store.setVelocity(
+                index, 1 - random.nextFloat(5), 1 - random.nextFloat(5), 1 - random.nextFloat(5));
+        store.setBody(index, radius, 0.5f + random.nextFloat(0.5f), 1.0f, color);
+    }
+
+    /**
+     * Picks a coordinate keeping a sphere inside its cell along one axis.
+     *
+     * @param random Stream of the chunk.
+     * @param cell Cell coordinate along the axis.
+     * @param cellSize Side of a cell.
+     * @param radius Sphere radius, at most half the cell side.
+     * @return The coordinate of the sphere center.
+     */
+    private static float jitter(
+            final SplittableRandom random,
+            final int cell,
+            final float cellSize,
+            final float radius) {
+        final float room = cellSize - 2 * radius;
+        return cell * cellSize + radius + (room > 0 ? random.nextFloat(room) : 0);
+    }
+
+    /**
+     * Returns the smallest number of cells per axis giving every sphere a cell.
+     *
+     * @param amount Number of spheres.
+     * @return The number of cells along every axis.
+     */
+    private static int cellsPerAxis(final int amount) {
+        int cells = Math.max(1, (int) Math.cbrt(amount));
+        while ((long) cells * cells * cells < amount) {
+            cells++;
+        }
+        return cells;
+    }
+
+    /**
+     * Computes the greatest common divisor of two positive numbers.
+     *
+     * @param first First number.
+     * @param second Second number.
+     * @return Their greatest common divisor.
+     */
+    private static long gcd(final long first, final long second) {
+        long a = first;
+        long b = second;
+        while (b != 0) {
+            final long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    /**
+     * Packs an opaque RGB color the way Processing does. <i>Paint it black, or anything else.</i>
+     *
+     * @param red Red channel (0-255).
+     * @param green Green channel (0-255).
+     * @param blue Blue channel (0-255).
+     * @return The packed ARGB color.
+     */
+    private static int opaqueColor(final float red, final float green, final float blue) {
+        return 0xFF_00_00_00 | (int) red << 16 | (int) green << 8 | (int) blue;
+    }
+
+    /**
+     * Affine permutation of the cells, handing the {@code k}-th sphere the cell {@code (k * stride
+     * + offset) mod cellCount}. The stride being coprime with the cell count, no cell is given
+     * twice.
+     *
+     * @param stride Stride of the walk, coprime with the cell count.
+     * @param offset Cell of the first sphere.
+     * @param cellCount Total number of cells.
+     * @param cellsPerAxis Number of cells along every axis.
+     * @param cellSize Side of a cell.
+     */
+    private record CellWalk(
+            long stride, long offset, long cellCount, int cellsPerAxis, float cellSize) {
+        /**
+         * Returns the cell of a sphere.
+         *
+         * @param sphere Rank of the sphere among the seeded ones.
+         * @return The linear cell index.
+         */
+        long cellOf(final int sphere) {
+            return (sphere * stride + offset) % cellCount;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Base of the built-in integrators, holding the coefficients of their stages. <i>Divide and
+ * conquer.</i>
+ */
+public abstract class SplittingIntegrator implements Integrator {
+    private final String name;
+    private final float[] kicks;
+    private final float[] drifts;
+    private final boolean reuse;
+
+    /**
+     * Creates the scheme.
+     *
+     * @param nameParam Name of the scheme.
+     * @param kicksParam Kick coefficient of every stage.
+     * @param driftsParam Drift coefficient of every stage.
+     * @param reuseParam Whether the first stage may reuse the last accelerations.
+     */
+    protected SplittingIntegrator(
+            final String nameParam,
+            final float[] kicksParam,
+            final float[] driftsParam,
+            final boolean reuseParam) {
+        if (kicksParam.length == 0 || kicksParam.length != driftsParam.length) {
+            throw new IllegalArgumentException(
+                    "Every stage needs a kick and a drift, got "
+                            + kicksParam.length
+                            + " kicks and "
+                            + driftsParam.length
+                            + " drifts");
+        }
+        this.name = nameParam;
+        this.kicks = Arrays.copyOf(kicksParam, kicksParam.length);
+        this.drifts = Arrays.copyOf(driftsParam, driftsParam.length);
+        this.reuse = reuseParam;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getStageCount() {
+        return kicks.length;
+    }
+
+    @Override
+    public float getKick(final int stage) {
+        return kicks[stage];
+    }
+
+    @Override
+    public float getDrift(final int stage) {
+        return drifts[stage];
+    }
+
+    @Override
+    public boolean reusesLastAcceleration() {
+        return reuse;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
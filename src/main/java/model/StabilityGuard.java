@@ -0,0 +1,216 @@
+package model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects blown-up steps and keeps what is needed to undo them. After every step, the positions
+ * and velocities are scanned for values that are not finite, and every {@code interval} steps
+ * they are copied to an in-memory checkpoint, along with the bodies. A step that blew up is rolled
+ * back to the last checkpoint and retried by {@link SimulationHandler} with smaller timesteps.
+ * <i>Have you tried turning it off and on again?</i>
+ *
+ * <p>The happy path only costs one scan of the state per step, vectorized with the {@code
+ * jdk.incubator.vector} module when the JVM was started with it. The state is scanned in chunks
+ * small enough to stay in cache, whatever storage it lives in. The checkpoint is allocated from
+ * the same kind of {@link ColumnStorage} as the store.
+ */
+public final class StabilityGuard {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StabilityGuard.class);
+
+    /** System property setting the number of steps between two checkpoints. */
+    public static final String CHECKPOINT_INTERVAL_PROPERTY = "gravity.checkpoint.interval";
+
+    /** Default number of steps between two checkpoints. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 64;
+
+    /** Number of values scanned at once for non-finite ones. */
+    private static final int SCAN_CHUNK = 4096;
+
+    private final FiniteCheck finiteCheck;
+    private final int interval;
+    private long checkpointStep = -1;
+    private int checkpointCount;
+    private int capacity;
+    private final float[] scanBuffer = new float[SCAN_CHUNK];
+    private ColumnStorage storage;
+    private FloatColumn x;
+    private FloatColumn y;
+    private FloatColumn z;
+    private FloatColumn vx;
+    private FloatColumn vy;
+    private FloatColumn vz;
+    private FloatColumn mass;
+    private FloatColumn radius;
+    private FloatColumn bounciness;
+    private IntColumn color;
+
+    /**
+     * Creates the guard.
+     *
+     * @param intervalParam Number of steps between two checkpoints, at least 1.
+     */
+    public StabilityGuard(final int intervalParam) {
+        if (intervalParam < 1) {
+            throw new IllegalArgumentException(
+                    "Checkpoint interval must be at least 1, got " + intervalParam);
+        }
+        this.interval = intervalParam;
+        this.finiteCheck = selectCheck();
+    }
+
+    /**
+     * Creates the guard with the interval read from the {@value #CHECKPOINT_INTERVAL_PROPERTY}
+     * system property.
+     *
+     * @return The guard.
+     */
+    public static StabilityGuard fromSystemProperties() {
+        return new StabilityGuard(
+                Integer.getInteger(CHECKPOINT_INTERVAL_PROPERTY, DEFAULT_CHECKPOINT_INTERVAL));
+    }
+
+    /**
+     * Picks the vectorized check if the Vector API module was added to the boot layer.
+     *
+     * @return The finite check to use.
+     */
+    private static FiniteCheck selectCheck() {
+        if (VectorSupport.isAvailable()) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Stability checks are vectorized");
+            }
+            return new VectorFiniteCheck();
+        }
+        return new ScalarFiniteCheck();
+    }
+
+    /**
+     * Checks whether the current positions and velocities are all finite.
+     *
+     * @param store Store to check.
+     * @return {@code false} if the last step blew up.
+     */
+    public boolean isStable(final ParticleStore store) {
+        final int count = store.size();
+        return allFinite(store.getX(), count)
+                && allFinite(store.getY(), count)
+                && allFinite(store.getZ(), count)
+                && allFinite(store.getVx(), count)
+                && allFinite(store.getVy(), count)
+                && allFinite(store.getVz(), count);
+    }
+
+    /**
+     * Scans a column chunk by chunk.
+     *
+     * @param column Column to scan.
+     * @param count Number of values to scan from the start of the column.
+     * @return {@code false} if any value is infinite or not a number.
+     */
+    private boolean allFinite(final FloatColumn column, final int count) {
+        for (int start = 0; start < count; start += SCAN_CHUNK) {
+            final int length = Math.min(SCAN_CHUNK, count - start);
+            column.read(start, scanBuffer, 0, length);
+            if (!finiteCheck.allFinite(scanBuffer, length)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a checkpoint is due before running a step.
+     *
+     * @param step Index of the step about to run, counted from the last seed.
+     * @return {@code true} every {@code interval} steps, and whenever there is no checkpoint yet,
+     *     as after loading a state saved in the middle of an interval.
+     */
+    public boolean isCheckpointDue(final long step) {
+        return checkpointStep < 0 || step % interval == 0;
+    }
+
+    /**
+     * Copies the current positions, velocities and bodies to the checkpoint. Bodies are kept too,
+     * since merges change them and remove spheres.
+     *
+     * @param store Store to copy.
+     * @param step Index of the step about to run from this state.
+     */
+    public void checkpoint(final ParticleStore store, final long step) {
+        checkpointCount = store.size();
+        final String storageName = store.getStorage().getName();
+        if (storage == null
+                || capacity < checkpointCount
+                || !storageName.equals(storage.getName())) {
+            allocate(ColumnStorages.byName(storageName), checkpointCount);
+        }
+        store.getX().copyTo(0, x, 0, checkpointCount);
+        store.getY().copyTo(0, y, 0, checkpointCount);
+        store.getZ().copyTo(0, z, 0, checkpointCount);
+        store.getVx().copyTo(0, vx, 0, checkpointCount);
+        store.getVy().copyTo(0, vy, 0, checkpointCount);
+        store.getVz().copyTo(0, vz, 0, checkpointCount);
+        store.getMass().copyTo(0, mass, 0, checkpointCount);
+        store.getRadius().copyTo(0, radius, 0, checkpointCount);
+        store.getBounciness().copyTo(0, bounciness, 0, checkpointCount);
+        store.getColor().copyTo(0, color, 0, checkpointCount);
+        checkpointStep = step;
+    }
+
+    /**
+     * Replaces the checkpoint columns, releasing the previous ones.
+     *
+     * @param storageParam Storage to allocate the new columns from.
+     * @param capacityParam Number of spheres the checkpoint can hold.
+     */
+    private void allocate(final ColumnStorage storageParam, final int capacityParam) {
+        if (storage != null) {
+            storage.close();
+        }
+        storage = storageParam;
+        capacity = capacityParam;
+        x = storage.allocateFloats(capacity);
+        y = storage.allocateFloats(capacity);
+        z = storage.allocateFloats(capacity);
+        vx = storage.allocateFloats(capacity);
+        vy = storage.allocateFloats(capacity);
+        vz = storage.allocateFloats(capacity);
+        mass = storage.allocateFloats(capacity);
+        radius = storage.allocateFloats(capacity);
+        bounciness = storage.allocateFloats(capacity);
+        color = storage.allocateInts(capacity);
+    }
+
+    /**
+     * Puts the checkpoint back as the current positions, velocities and bodies, along with the
+     * sphere count it was taken with.
+     *
+     * @param store Store to restore, the one the checkpoint was taken from.
+     * @return Index of the step to run next from the restored state.
+     * @throws IllegalStateException If no checkpoint was taken since the last seed.
+     */
+    public long restore(final ParticleStore store) {
+        if (checkpointStep < 0) {
+            throw new IllegalStateException("No checkpoint to roll back to");
+        }
+        store.setSize(checkpointCount);
+        x.copyTo(0, store.getX(), 0, checkpointCount);
+        y.copyTo(0, store.getY(), 0, checkpointCount);
+        z.copyTo(0, store.getZ(), 0, checkpointCount);
+        vx.copyTo(0, store.getVx(), 0, checkpointCount);
+        vy.copyTo(0, store.getVy(), 0, checkpointCount);
+        vz.copyTo(0, store.getVz(), 0, checkpointCount);
+        mass.copyTo(0, store.getMass(), 0, checkpointCount);
+        radius.copyTo(0, store.getRadius(), 0, checkpointCount);
+        bounciness.copyTo(0, store.getBounciness(), 0, checkpointCount);
+        color.copyTo(0, store.getColor(), 0, checkpointCount);
+        return checkpointStep;
+    }
+
+    /** Forgets the checkpoint, whose spheres are gone after a seed. */
+    public void clear() {
+        checkpointStep = -1;
+        checkpointCount = 0;
+    }
+}
@@ -0,0 +1,49 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer of {@link SimulationState} between the physics thread (single writer)
+ * and the renderer (single reader). The writer fills its back snapshot and swaps it with the
+ * middle one, the reader swaps its front snapshot with the middle one whenever a newer one was
+ * published. Neither side ever waits for the other. <i>One for you, one for me, one for the
+ * road.</i>
+ */
+public final class StateExchange {
+    private static final int INDEX_MASK = 0b11;
+    private static final int FRESH = 0b100;
+
+    private final SimulationState[] states = {
+        new SimulationState(), new SimulationState(), new SimulationState()
+    };
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back;
+    private int front = 2;
+
+    /**
+     * Returns the snapshot the writer may fill. Writer thread only.
+     *
+     * @return The back snapshot.
+     */
+    SimulationState back() {
+        return states[back];
+    }
+
+    /** Publishes the back snapshot to the reader. Writer thread only. */
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the latest published snapshot. Reader thread only: the previously returned snapshot
+     * may be recycled by the writer once a newer one is acquired.
+     *
+     * @return The latest snapshot, empty until the first publication.
+     */
+    public SimulationState acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return states[front];
+    }
+}
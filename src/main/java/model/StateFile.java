@@ -0,0 +1,315 @@
+package model;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Binary snapshot of a simulation, written and read through memory-mapped files. <i>Save early,
+ * save often.</i>
+ *
+ * <p>The file starts with a {@value #HEADER_BYTES}-byte little-endian header: the magic number
+ * {@code GRAV}, the format version, the sphere count, the step index, the step duration, the
+ * gravity constant, the softening length and the {@code FLAG_*} bits. It is followed by one block
+ * per column, each starting on a {@value #BLOCK_ALIGNMENT}-byte boundary: x, y, z, vx, vy, vz,
+ * mass, radius and bounciness as floats, then colors as ints. Accelerations and sleeping islands
+ * are not saved, they are recomputed on the first step after a load.
+ *
+ * <p>Files are mapped in a confined {@link Arena}, closed as soon as the file is written or read:
+ * the mapping is gone before the file is replaced, which some systems refuse while it is mapped.
+ */
+public final class StateFile {
+    /** Magic number opening every state file, {@code GRAV} in ASCII. */
+    static final int MAGIC = 0x47524156;
+
+    /** Current version of the format, bumped whenever the layout changes. */
+    static final int VERSION = 1;
+
+    /** Size of the header, in bytes. */
+    static final int HEADER_BYTES = 64;
+
+    /** Alignment of the column blocks, in bytes. */
+    static final int BLOCK_ALIGNMENT = 64;
+
+    /** Flag set when gravity was enabled. */
+    public static final int FLAG_GRAVITY = 1;
+
+    /** Flag set when the simulation was bounded. */
+    public static final int FLAG_BOUNDS = 1 << 1;
+
+    // Byte offsets of the header fields, the step is 8-byte aligned.
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int STEP_OFFSET = 16;
+    private static final int STEP_DURATION_OFFSET = 24;
+    private static final int GRAVITY_OFFSET = 28;
+    private static final int SOFTENING_OFFSET = 32;
+    private static final int FLAGS_OFFSET = 36;
+
+    /** Number of values moved between a column and a mapped block at once. */
+    private static final int CHUNK_SIZE = 16_384;
+
+    // Layouts of the file values, little-endian whatever the platform.
+    private static final ValueLayout.OfInt INT =
+            ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG =
+            ValueLayout.JAVA_LONG.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT =
+            ValueLayout.JAVA_FLOAT.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /** Float columns in file order. */
+    private static final List<Function<ParticleStore, FloatColumn>> FLOAT_COLUMNS =
+            List.of(
+                    ParticleStore::getX,
+                    ParticleStore::getY,
+                    ParticleStore::getZ,
+                    ParticleStore::getVx,
+                    ParticleStore::getVy,
+                    ParticleStore::getVz,
+                    ParticleStore::getMass,
+                    ParticleStore::getRadius,
+                    ParticleStore::getBounciness);
+
+    /**
+     * Global parameters of a saved simulation.
+     *
+     * @param count Number of spheres.
+     * @param step Index of the next step, counted from the last seed.
+     * @param stepDuration Duration of a step in simulation time units.
+     * @param gravityConstant Gravity constant.
+     * @param softening Softening length of gravity.
+     * @param flags {@code FLAG_*} bits.
+     */
+    public record Header(
+            int count,
+            long step,
+            float stepDuration,
+            float gravityConstant,
+            float softening,
+            int flags) {}
+
+    /**
+     * A state file read back into a fresh store.
+     *
+     * @param header Global parameters of the simulation.
+     * @param store Store holding the spheres, owned by the caller.
+     */
+    public record Loaded(Header header, ParticleStore store) {}
+
+    /** <i>NO TOUCHY.</i> */
+    private StateFile() {}
+
+    /**
+     * Copies the columns of a store that a state file holds, so that the copy can be written while
+     * the simulation goes on.
+     *
+     * @param store Store to copy, left untouched.
+     * @param storage Storage the copy allocates its columns from.
+     * @return The copy, owned by the caller.
+     */
+    public static ParticleStore copy(final ParticleStore store, final ColumnStorage storage) {
+        final int count = store.size();
+        final ParticleStore copy = new ParticleStore(count, storage);
+        copy.addAll(count);
+        for (final Function<ParticleStore, FloatColumn> column : FLOAT_COLUMNS) {
+            column.apply(store).copyTo(0, column.apply(copy), 0, count);
+        }
+        store.getColor().copyTo(0, copy.getColor(), 0, count);
+        return copy;
+    }
+
+    /**
+     * Writes the spheres of a store and the header to a file. The file is written and forced next
+     * to the target, and only moved over it once complete, so an interrupted save never leaves a
+     * torn file behind.
+     *
+     * @param path File to write, replaced if it exists.
+     * @param store Store to save, left untouched.
+     * @param header Global parameters to save, its count must match the store.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(final Path path, final ParticleStore store, final Header header)
+            throws IOException {
+        if (header.count() != store.size()) {
+            throw new IllegalArgumentException(
+                    "Header counts " + header.count() + " spheres, store has " + store.size());
+        }
+        final Path directory = path.toAbsolutePath().getParent();
+        final Path temporary =
+                Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            final int count = header.count();
+            try (FileChannel channel =
+                            FileChannel.open(
+                                    temporary,
+                                    StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE);
+                    Arena arena = Arena.ofConfined()) {
+                final MemorySegment file =
+                        channel.map(MapMode.READ_WRITE, 0, fileBytes(count), arena);
+                writeHeader(file, header);
+                final float[] chunk = new float[Math.min(count, CHUNK_SIZE)];
+                long offset = HEADER_BYTES;
+                for (final Function<ParticleStore, FloatColumn> column : FLOAT_COLUMNS) {
+                    for (int from = 0; from < count; from += CHUNK_SIZE) {
+                        final int length = Math.min(CHUNK_SIZE, count - from);
+                        column.apply(store).read(from, chunk, 0, length);
+                        MemorySegment.copy(
+                                chunk, 0, file, FLOAT, offset + (long) from * Float.BYTES, length);
+                    }
+                    offset += blockBytes(count);
+                }
+                final int[] intChunk = new int[chunk.length];
+                for (int from = 0; from < count; from += CHUNK_SIZE) {
+                    final int length = Math.min(CHUNK_SIZE, count - from);
+                    store.getColor().read(from, intChunk, 0, length);
+                    MemorySegment.copy(
+                            intChunk, 0, file, INT, offset + (long) from * Integer.BYTES, length);
+                }
+                file.force();
+            }
+            Files.move(
+                    temporary,
+                    path,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads a state file into a fresh store. The columns are copied in bulk from the mapped file
+     * rather than backed by it: the store outlives the mapping, and the file is replaced by the
+     * next save.
+     *
+     * @param path File to read.
+     * @param storage Storage the new store allocates its columns from, closed if the read fails.
+     * @return The header and the store, sized for exactly the saved spheres.
+     * @throws IOException If the file can't be read, or isn't a state file of this version.
+     */
+    public static Loaded read(final Path path, final ColumnStorage storage) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                Arena arena = Arena.ofConfined()) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a simulation state file: " + path);
+            }
+            final Header header =
+                    readHeader(channel.map(MapMode.READ_ONLY, 0, HEADER_BYTES, arena), path);
+            final int count = header.count();
+            final long expectedSize = fileBytes(count);
+            if (channel.size() < expectedSize) {
+                throw new IOException(
+                        "Truncated state file " + path + ": " + channel.size() + " bytes, "
+                                + expectedSize + " expected for " + count + " spheres");
+            }
+
+            final MemorySegment file = channel.map(MapMode.READ_ONLY, 0, expectedSize, arena);
+            final ParticleStore store = new ParticleStore(count, storage);
+            store.addAll(count);
+            final float[] chunk = new float[Math.min(count, CHUNK_SIZE)];
+            long offset = HEADER_BYTES;
+            for (final Function<ParticleStore, FloatColumn> column : FLOAT_COLUMNS) {
+                for (int from = 0; from < count; from += CHUNK_SIZE) {
+                    final int length = Math.min(CHUNK_SIZE, count - from);
+                    MemorySegment.copy(
+                            file, FLOAT, offset + (long) from * Float.BYTES, chunk, 0, length);
+                    column.apply(store).write(chunk, 0, from, length);
+                }
+                offset += blockBytes(count);
+            }
+            final int[] intChunk = new int[chunk.length];
+            for (int from = 0; from < count; from += CHUNK_SIZE) {
+                final int length = Math.min(CHUNK_SIZE, count - from);
+                MemorySegment.copy(
+                        file, INT, offset + (long) from * Integer.BYTES, intChunk, 0, length);
+                store.getColor().write(intChunk, 0, from, length);
+            }
+            return new Loaded(header, store);
+        } catch (IOException | RuntimeException e) {
+            storage.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Size of a whole file.
+     *
+     * @param count Number of spheres.
+     * @return The size in bytes.
+     */
+    private static long fileBytes(final int count) {
+        return HEADER_BYTES + (FLOAT_COLUMNS.size() + 1) * blockBytes(count);
+    }
+
+    /**
+     * Size of the block of a column, padded to the block alignment.
+     *
+     * @param count Number of spheres.
+     * @return The size in bytes.
+     */
+    private static long blockBytes(final int count) {
+        final long bytes = (long) count * Float.BYTES;
+        return (bytes + BLOCK_ALIGNMENT - 1) / BLOCK_ALIGNMENT * BLOCK_ALIGNMENT;
+    }
+
+    /**
+     * Writes the header at the start of a mapped region.
+     *
+     * @param segment Region holding the header.
+     * @param header Header to write.
+     */
+    private static void writeHeader(final MemorySegment segment, final Header header) {
+        segment.set(INT, MAGIC_OFFSET, MAGIC);
+        segment.set(INT, VERSION_OFFSET, VERSION);
+        segment.set(INT, COUNT_OFFSET, header.count());
+        segment.set(LONG, STEP_OFFSET, header.step());
+        segment.set(FLOAT, STEP_DURATION_OFFSET, header.stepDuration());
+        segment.set(FLOAT, GRAVITY_OFFSET, header.gravityConstant());
+        segment.set(FLOAT, SOFTENING_OFFSET, header.softening());
+        segment.set(INT, FLAGS_OFFSET, header.flags());
+    }
+
+    /**
+     * Reads and checks the header at the start of a mapped region.
+     *
+     * @param segment Region holding the header.
+     * @param path File being read, for error messages.
+     * @return The header.
+     * @throws IOException If the region isn't a header of this version.
+     */
+    private static Header readHeader(final MemorySegment segment, final Path path)
+            throws IOException {
+        if (segment.get(INT, MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not a simulation state file: " + path);
+        }
+        final int version = segment.get(INT, VERSION_OFFSET);
+        if (version != VERSION) {
+            throw new IOException(
+                    "Unsupported state file version " + version + " in " + path + ", expected "
+                            + VERSION);
+        }
+        final int count = segment.get(INT, COUNT_OFFSET);
+        if (count < 0) {
+            throw new IOException("Corrupted state file " + path + ": " + count + " spheres");
+        }
+        return new Header(
+                count,
+                segment.get(LONG, STEP_OFFSET),
+                segment.get(FLOAT, STEP_DURATION_OFFSET),
+                segment.get(FLOAT, GRAVITY_OFFSET),
+                segment.get(FLOAT, SOFTENING_OFFSET),
+                segment.get(INT, FLAGS_OFFSET));
+    }
+}
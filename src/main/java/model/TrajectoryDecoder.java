@@ -0,0 +1,209 @@
+package model;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the frames of a {@link TrajectoryReader} one after the other, undoing the work of {@link
+ * TrajectoryEncoder}: inflating the chunks, adding the prediction errors back to the predictions
+ * and scaling the quantized positions back to the box. Frames can only be decoded in order within
+ * a chunk, so seeking restarts at the first frame of a chunk. <i>Unzip me.</i>
+ */
+final class TrajectoryDecoder {
+    /** Size of the buffer receiving the inflated bytes. */
+    private static final int INPUT_BYTES = 1 << 16;
+
+    private final TrajectoryReader reader;
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] input = new byte[INPUT_BYTES];
+    private final float boxMin;
+    private final float step;
+
+    private int inputPosition;
+    private int inputLimit;
+    private int[][] history = new int[TrajectoryFormat.MAX_ORDER][0];
+    private float[] radius = new float[0];
+    private int[] color = new int[0];
+
+    private int chunk = -1;
+    private int chunkFrames;
+    private int count;
+    private long lastStep;
+    private long segment = -1;
+
+    /**
+     * Creates a decoder, to be positioned with {@link #seek(int)}.
+     *
+     * @param readerParam File to decode.
+     */
+    TrajectoryDecoder(final TrajectoryReader readerParam) {
+        this.reader = readerParam;
+        this.boxMin = readerParam.getBoxMin();
+        this.step = 1 / TrajectoryFormat.scale(readerParam.getBits(), readerParam.getBoxSize());
+    }
+
+    /**
+     * Moves to the first frame of a chunk. The frames decoded next start a new segment.
+     *
+     * @param chunkParam Index of the chunk.
+     * @throws IOException If the chunk is corrupt.
+     */
+    void seek(final int chunkParam) throws IOException {
+        segment++;
+        open(chunkParam);
+    }
+
+    /**
+     * Decodes the next frame, moving on to the next chunk if needed.
+     *
+     * @param frame Frame receiving the positions, radii and colors, {@code null} to skip the frame
+     *     while still keeping track of the predictions.
+     * @throws IOException If the chunk is corrupt, or there are no frames left.
+     */
+    void next(final ReplayFrame frame) throws IOException {
+        if (chunkFrames == reader.getFrames(chunk)) {
+            if (chunk + 1 >= reader.getChunkCount()) {
+                throw new IOException("No frames left after chunk " + chunk);
+            }
+            // The encoder only cuts a chunk before it is full when the spheres change.
+            final boolean spheresChanged =
+                    chunkFrames < reader.getFramesPerChunk()
+                            || reader.getCount(chunk + 1) != count;
+            if (spheresChanged) {
+                segment++;
+            }
+            open(chunk + 1);
+        }
+        try {
+            lastStep += TrajectoryFormat.unzigzag(readVarint());
+            if (frame != null) {
+                frame.resize(count);
+                frame.setStep(lastStep);
+                frame.setSegment(segment);
+                System.arraycopy(radius, 0, frame.getRadius(), 0, count);
+                System.arraycopy(color, 0, frame.getColor(), 0, count);
+            }
+            decodeAxis(frame == null ? null : frame.getX(), 0);
+            decodeAxis(frame == null ? null : frame.getY(), count);
+            decodeAxis(frame == null ? null : frame.getZ(), 2 * count);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt trajectory chunk " + chunk, e);
+        }
+        chunkFrames++;
+    }
+
+    /** Releases the inflater. */
+    void close() {
+        inflater.end();
+    }
+
+    /**
+     * Starts inflating a chunk and reads the radii and colors of its spheres.
+     *
+     * @param chunkParam Index of the chunk.
+     * @throws IOException If the chunk is corrupt.
+     */
+    private void open(final int chunkParam) throws IOException {
+        chunk = chunkParam;
+        chunkFrames = 0;
+        count = reader.getCount(chunkParam);
+        lastStep = reader.getFirstStep(chunkParam);
+        inflater.reset();
+        inflater.setInput(reader.getData(chunkParam));
+        inputPosition = 0;
+        inputLimit = 0;
+        if (history[0].length < 3 * count) {
+            history = new int[TrajectoryFormat.MAX_ORDER][3 * count];
+        }
+        if (radius.length < count) {
+            radius = new float[count];
+            color = new int[count];
+        }
+        try {
+            for (int i = 0; i < count; i++) {
+                radius[i] = Float.intBitsToFloat(readInt());
+            }
+            for (int i = 0; i < count; i++) {
+                color[i] = readInt();
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt trajectory chunk " + chunk, e);
+        }
+    }
+
+    /**
+     * Reads the prediction errors along an axis and rebuilds the positions.
+     *
+     * @param values Positions along the axis, {@code null} to only update the predictions.
+     * @param base Offset of the axis in the previous positions.
+     * @throws DataFormatException If the chunk is corrupt.
+     */
+    private void decodeAxis(final float[] values, final int base) throws DataFormatException {
+        final int order = Math.min(chunkFrames, TrajectoryFormat.MAX_ORDER);
+        final int[] last = history[0];
+        final int[] second = history[1];
+        final int[] third = history[2];
+        for (int i = 0; i < count; i++) {
+            final int index = base + i;
+            final int quantized =
+                    TrajectoryFormat.unzigzag(readVarint())
+                            + TrajectoryFormat.predict(
+                                    order, last[index], second[index], third[index]);
+            third[index] = second[index];
+            second[index] = last[index];
+            last[index] = quantized;
+            if (values != null) {
+                values[i] = boxMin + quantized * step;
+            }
+        }
+    }
+
+    /**
+     * Reads an unsigned varint, see {@link TrajectoryFormat#putVarint}.
+     *
+     * @return The value.
+     * @throws DataFormatException If the chunk is corrupt.
+     */
+    private int readVarint() throws DataFormatException {
+        int value = 0;
+        for (int shift = 0; shift < 7 * TrajectoryFormat.MAX_VARINT_BYTES; shift += 7) {
+            final int next = readByte();
+            value |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new DataFormatException("Varint longer than " + TrajectoryFormat.MAX_VARINT_BYTES);
+    }
+
+    /**
+     * Reads an int in little-endian order.
+     *
+     * @return The value.
+     * @throws DataFormatException If the chunk is corrupt.
+     */
+    private int readInt() throws DataFormatException {
+        return readByte() | readByte() << 8 | readByte() << 16 | readByte() << 24;
+    }
+
+    /**
+     * Reads the next inflated byte, inflating more of the chunk when needed.
+     *
+     * @return The byte, from 0 to 255.
+     * @throws DataFormatException If the chunk is corrupt or ends too early.
+     */
+    private int readByte() throws DataFormatException {
+        if (inputPosition == inputLimit) {
+            inputPosition = 0;
+            inputLimit = 0;
+            while (inputLimit == 0) {
+                if (inflater.finished() || inflater.needsInput()) {
+                    throw new DataFormatException("Chunk " + chunk + " ends too early");
+                }
+                inputLimit = inflater.inflate(input);
+            }
+        }
+        return input[inputPosition++] & 0xFF;
+    }
+}
@@ -0,0 +1,329 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes {@link RecordedFrame}s to a trajectory file, see {@link TrajectoryFormat} for the layout.
+ * Positions are quantized over a fixed box, predicted from the previous frames of their chunk, and
+ * only the prediction errors are stored and deflated. A chunk is cut every few frames so that
+ * readers can seek, and whenever the spheres change. <i>Less is more.</i>
+ */
+final class TrajectoryEncoder implements Closeable {
+    /** Size of the buffer receiving the compressed bytes. */
+    private static final int OUTPUT_BYTES = 1 << 16;
+
+    private final FileChannel channel;
+    private final int framesPerChunk;
+    private final float boxMin;
+    private final float scale;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    private final byte[] output = new byte[OUTPUT_BYTES];
+    private final List<IndexEntry> index = new ArrayList<>();
+
+    private byte[] frameBytes = new byte[0];
+    private int[][] history = new int[TrajectoryFormat.MAX_ORDER][0];
+    private float[] radius = new float[0];
+    private int[] color = new int[0];
+    private long position;
+    private long rawBytes;
+    private long frameCount;
+
+    private boolean chunkOpen;
+    private long chunkOffset;
+    private long chunkFirstStep;
+    private long chunkGeneration;
+    private int chunkFrames;
+    private int chunkCount;
+    private long chunkCompressed;
+    private long lastStep;
+
+    /**
+     * Chunk of the index.
+     *
+     * @param offset Offset of the chunk header in the file.
+     * @param firstStep Step of the first frame.
+     * @param frames Number of frames.
+     * @param count Number of spheres.
+     */
+    private record IndexEntry(long offset, long firstStep, int frames, int count) {}
+
+    /**
+     * Creates the file, replacing any previous one, and writes its header.
+     *
+     * @param path File to write.
+     * @param bits Quantization bits per coordinate, at most 24.
+     * @param framesPerChunkParam Frames between two seek points.
+     * @param boxMinParam Corner of the quantization cube, on every axis.
+     * @param boxSize Size of the quantization cube.
+     * @throws IOException If the file can't be created.
+     */
+    TrajectoryEncoder(
+            final Path path,
+            final int bits,
+            final int framesPerChunkParam,
+            final float boxMinParam,
+            final float boxSize)
+            throws IOException {
+        this.framesPerChunk = framesPerChunkParam;
+        this.boxMin = boxMinParam;
+        this.scale = TrajectoryFormat.scale(bits, boxSize);
+        this.channel =
+                FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        final ByteBuffer header =
+                ByteBuffer.allocate(TrajectoryFormat.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(TrajectoryFormat.MAGIC)
+                .putInt(TrajectoryFormat.VERSION)
+                .putInt(bits)
+                .putInt(framesPerChunkParam)
+                .putFloat(boxMinParam)
+                .putFloat(boxSize)
+                .rewind();
+        writeFully(header);
+    }
+
+    /**
+     * Appends a frame, starting a new chunk if needed.
+     *
+     * @param frame Frame to write, with its radii and colors if the spheres changed.
+     * @throws IOException If the file can't be written.
+     */
+    void encode(final RecordedFrame frame) throws IOException {
+        final int count = frame.getCount();
+        if (frame.hasAttributes()) {
+            if (radius.length < count) {
+                radius = new float[count];
+                color = new int[count];
+            }
+            System.arraycopy(frame.getRadius(), 0, radius, 0, count);
+            System.arraycopy(frame.getColor(), 0, color, 0, count);
+        }
+        if (!chunkOpen
+                || chunkFrames == framesPerChunk
+                || frame.getGeneration() != chunkGeneration
+                || count != chunkCount) {
+            if (chunkOpen) {
+                finishChunk();
+            }
+            startChunk(frame);
+        }
+
+        final int stepGap = (int) (frame.getStep() - lastStep);
+        int pos = TrajectoryFormat.putVarint(frameBytes, 0, TrajectoryFormat.zigzag(stepGap));
+        pos = encodeAxis(frame.getX(), 0, pos);
+        pos = encodeAxis(frame.getY(), count, pos);
+        pos = encodeAxis(frame.getZ(), 2 * count, pos);
+        deflate(frameBytes, pos);
+
+        lastStep = frame.getStep();
+        chunkFrames++;
+        frameCount++;
+        rawBytes += 3L * Float.BYTES * count;
+    }
+
+    /**
+     * Returns the number of frames written so far.
+     *
+     * @return The frame count.
+     */
+    long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the size the positions written so far would take as raw floats.
+     *
+     * @return The size in bytes.
+     */
+    long getRawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * Returns the size of the file so far, up to the last complete deflate block.
+     *
+     * @return The size in bytes.
+     */
+    long getFileBytes() {
+        return position;
+    }
+
+    /**
+     * Ends the last chunk, writes the index and the footer, and closes the file.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (chunkOpen) {
+                finishChunk();
+            }
+            final long indexOffset = position;
+            final ByteBuffer tail =
+                    ByteBuffer.allocate(
+                                    index.size() * TrajectoryFormat.INDEX_ENTRY_BYTES
+                                            + TrajectoryFormat.FOOTER_BYTES)
+                            .order(ByteOrder.LITTLE_ENDIAN);
+            for (final IndexEntry entry : index) {
+                tail.putLong(entry.offset())
+                        .putLong(entry.firstStep())
+                        .putInt(entry.frames())
+                        .putInt(entry.count());
+            }
+            tail.putLong(indexOffset).putInt(index.size()).putInt(TrajectoryFormat.END_MAGIC);
+            tail.rewind();
+            writeFully(tail);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    /**
+     * Opens a chunk at the current end of the file, and deflates the radii and colors of its
+     * spheres.
+     *
+     * @param frame First frame of the chunk.
+     * @throws IOException If the file can't be written.
+     */
+    private void startChunk(final RecordedFrame frame) throws IOException {
+        final int count = frame.getCount();
+        chunkOpen = true;
+        chunkOffset = position;
+        chunkFirstStep = frame.getStep();
+        chunkGeneration = frame.getGeneration();
+        chunkFrames = 0;
+        chunkCount = count;
+        chunkCompressed = 0;
+        lastStep = frame.getStep();
+        // The header is written once the chunk is complete.
+        position += TrajectoryFormat.CHUNK_HEADER_BYTES;
+
+        if (history[0].length < 3 * count) {
+            history = new int[TrajectoryFormat.MAX_ORDER][3 * count];
+        }
+        final int frameSize = TrajectoryFormat.MAX_VARINT_BYTES * (3 * count + 1);
+        if (frameBytes.length < Math.max(frameSize, 2 * Integer.BYTES * count)) {
+            frameBytes = new byte[Math.max(frameSize, 2 * Integer.BYTES * count)];
+        }
+        if (radius.length < count) {
+            radius = new float[count];
+            color = new int[count];
+        }
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            pos = TrajectoryFormat.putInt(frameBytes, pos, Float.floatToRawIntBits(radius[i]));
+        }
+        for (int i = 0; i < count; i++) {
+            pos = TrajectoryFormat.putInt(frameBytes, pos, color[i]);
+        }
+        deflate(frameBytes, pos);
+    }
+
+    /**
+     * Quantizes the positions along an axis and writes their prediction errors.
+     *
+     * @param values Positions along the axis.
+     * @param base Offset of the axis in the previous positions.
+     * @param position Position of the first byte in the frame buffer.
+     * @return Position right after the last byte written.
+     */
+    private int encodeAxis(final float[] values, final int base, final int position) {
+        final int order = Math.min(chunkFrames, TrajectoryFormat.MAX_ORDER);
+        final int[] last = history[0];
+        final int[] second = history[1];
+        final int[] third = history[2];
+        int pos = position;
+        for (int i = 0; i < chunkCount; i++) {
+            final int index = base + i;
+            final int quantized = TrajectoryFormat.quantize(values[i], boxMin, scale);
+            final int residual =
+                    quantized
+                            - TrajectoryFormat.predict(
+                                    order, last[index], second[index], third[index]);
+            third[index] = second[index];
+            second[index] = last[index];
+            last[index] = quantized;
+            pos = TrajectoryFormat.putVarint(frameBytes, pos, TrajectoryFormat.zigzag(residual));
+        }
+        return pos;
+    }
+
+    /**
+     * Feeds bytes to the deflater, writing whatever it outputs.
+     *
+     * @param bytes Bytes to compress.
+     * @param length Number of bytes.
+     * @throws IOException If the file can't be written.
+     */
+    private void deflate(final byte[] bytes, final int length) throws IOException {
+        deflater.setInput(bytes, 0, length);
+        while (!deflater.needsInput()) {
+            drain();
+        }
+    }
+
+    /**
+     * Flushes the deflate stream of the chunk, then writes its header and indexes it.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    private void finishChunk() throws IOException {
+        deflater.finish();
+        while (!deflater.finished()) {
+            drain();
+        }
+        deflater.reset();
+
+        final ByteBuffer header =
+                ByteBuffer.allocate(TrajectoryFormat.CHUNK_HEADER_BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(chunkFirstStep)
+                .putInt(chunkFrames)
+                .putInt(chunkCount)
+                .putLong(chunkCompressed)
+                .rewind();
+        long offset = chunkOffset;
+        while (header.hasRemaining()) {
+            offset += channel.write(header, offset);
+        }
+        index.add(new IndexEntry(chunkOffset, chunkFirstStep, chunkFrames, chunkCount));
+        chunkOpen = false;
+    }
+
+    /**
+     * Writes the next output of the deflater at the end of the file.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    private void drain() throws IOException {
+        final int length = deflater.deflate(output);
+        chunkCompressed += length;
+        writeFully(ByteBuffer.wrap(output, 0, length));
+    }
+
+    /**
+     * Writes a buffer at the end of the file.
+     *
+     * @param buffer Bytes to write.
+     * @throws IOException If the file can't be written.
+     */
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package model;
+
+/**
+ * Layout of the trajectory files written by {@link TrajectoryRecorder}. <i>Fine print.</i>
+ *
+ * <p>Every number is little-endian. The file opens with a {@value #HEADER_BYTES}-byte header: the
+ * magic number {@code GTRJ}, the format version, the quantization bits, the frames per chunk, then
+ * the corner and the size of the quantization box. Chunks follow, each made of a {@value
+ * #CHUNK_HEADER_BYTES}-byte header (first step, frame count, sphere count, compressed length) and a
+ * raw deflate stream. The stream holds the radii and colors of the spheres, which only change
+ * between chunks, then the frames: the step gap to the previous frame, which is negative after a
+ * rollback, and the positions along x, y and z as zigzag varints. Each position is stored as its
+ * error against a prediction from the previous frames of the chunk, see {@link #predict}: the first
+ * frame stores the quantized positions, the next ones their errors against constant position,
+ * velocity, then acceleration. Positions are quantized over the box, but not limited to it. The
+ * file ends with the chunk index ({@value #INDEX_ENTRY_BYTES} bytes per chunk: offset, first step,
+ * frame count, sphere count) and a {@value #FOOTER_BYTES}-byte footer (index offset, chunk count,
+ * end magic number).
+ */
+final class TrajectoryFormat {
+    /** Magic number opening every trajectory file, {@code GTRJ} in ASCII. */
+    static final int MAGIC = 0x4754524A;
+
+    /** Magic number closing a complete trajectory file, {@code JRTG} in ASCII. */
+    static final int END_MAGIC = 0x4A525447;
+
+    /** Current version of the format, bumped whenever the layout changes. */
+    static final int VERSION = 1;
+
+    /** Size of the file header, in bytes. */
+    static final int HEADER_BYTES = 32;
+
+    /** Size of a chunk header, in bytes. */
+    static final int CHUNK_HEADER_BYTES = 24;
+
+    /** Size of an index entry, in bytes. */
+    static final int INDEX_ENTRY_BYTES = 24;
+
+    /** Size of the footer, in bytes. */
+    static final int FOOTER_BYTES = 16;
+
+    /** Largest number of previous positions a prediction is made from. */
+    static final int MAX_ORDER = 3;
+
+    /** Longest varint, in bytes. */
+    static final int MAX_VARINT_BYTES = 5;
+
+    /** <i>NO TOUCHY.</i> */
+    private TrajectoryFormat() {}
+
+    /**
+     * Maps a signed value to an unsigned one, small magnitudes giving small values.
+     *
+     * @param value Signed value.
+     * @return Zigzag encoding of the value.
+     */
+    static int zigzag(final int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Reverses {@link #zigzag(int)}.
+     *
+     * @param value Zigzag encoding.
+     * @return Signed value.
+     */
+    static int unzigzag(final int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes an unsigned varint, seven bits per byte, low bits first.
+     *
+     * @param buffer Buffer to write to, with at least {@value #MAX_VARINT_BYTES} bytes left.
+     * @param position Position of the first byte.
+     * @param value Value, read as unsigned.
+     * @return Position right after the varint.
+     */
+    static int putVarint(final byte[] buffer, final int position, final int value) {
+        int pos = position;
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            buffer[pos++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        buffer[pos++] = (byte) remaining;
+        return pos;
+    }
+
+    /**
+     * Writes an int in little-endian order.
+     *
+     * @param buffer Buffer to write to.
+     * @param position Position of the first byte.
+     * @param value Value to write.
+     * @return Position right after the int.
+     */
+    static int putInt(final byte[] buffer, final int position, final int value) {
+        buffer[position] = (byte) value;
+        buffer[position + 1] = (byte) (value >>> 8);
+        buffer[position + 2] = (byte) (value >>> 16);
+        buffer[position + 3] = (byte) (value >>> 24);
+        return position + Integer.BYTES;
+    }
+
+    /**
+     * Scale turning positions into quantized steps, {@code 2^bits} steps covering the box.
+     *
+     * @param bits Quantization bits.
+     * @param boxSize Size of the quantization box.
+     * @return Number of steps per unit of length.
+     */
+    static float scale(final int bits, final float boxSize) {
+        return ((1 << bits) - 1) / boxSize;
+    }
+
+    /**
+     * Quantizes a position. Positions outside of the box keep the same resolution, they only
+     * saturate at the range of an int.
+     *
+     * @param value Position along an axis.
+     * @param boxMin Corner of the box along the axis.
+     * @param scale Steps per unit of length, see {@link #scale(int, float)}.
+     * @return The quantized position.
+     */
+    static int quantize(final float value, final float boxMin, final float scale) {
+        final long step = Math.round((value - boxMin) * (double) scale);
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, step));
+    }
+
+    /**
+     * Predicts a quantized position from the previous ones of its chunk. Overflows wrap around the
+     * same way when encoding and decoding, so they don't need to be guarded against.
+     *
+     * @param order Number of previous positions to use, at most {@value #MAX_ORDER}: none, the
+     *     last one (constant position), two (constant velocity) or three (constant acceleration).
+     * @param last Last position.
+     * @param second Position before the last one.
+     * @param third Position before that.
+     * @return The predicted position.
+     */
+    static int predict(final int order, final int last, final int second, final int third) {
+        return switch (order) {
+            case 0 -> 0;
+            case 1 -> last;
+            case 2 -> 2 * last - second;
+            default -> 3 * (last - second) + third;
+        };
+    }
+}
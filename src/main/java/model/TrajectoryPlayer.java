@@ -0,0 +1,246 @@
+package model;
+
+import events.core.EventManager;
+import events.graphics.gui.GUIStateChangedEvent;
+import events.physics.SpeedChangedEvent;
+import events.simulation.ReplaySeekEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a trajectory file written by the {@link TrajectoryRecorder}, without running any
+ * physics. A decoder thread inflates the frames ahead of the playhead into a {@link FrameQueue};
+ * the draw thread only picks the frame under the playhead and copies it into a {@link
+ * SimulationState}, so that the spheres are drawn exactly like the live simulation. Seeking tells
+ * the decoder to jump to the chunk holding the new frame, found through the index of the file,
+ * and never waits for it: the first frame of that chunk shows up as soon as it is inflated, and the
+ * frames after it until the playhead is reached. <i>Instant replay.</i>
+ *
+ * <p>The playback rate follows the speed slider, in recorded frames per second, and pausing the
+ * simulation pauses the replay.
+ */
+public final class TrajectoryPlayer {
+    /** System property naming a trajectory file to replay instead of running the simulation. */
+    public static final String FILE_PROPERTY = "gravity.replay.file";
+
+    /** Number of frames decoded ahead of the playhead. */
+    static final int PREFETCH_FRAMES = 8;
+
+    /** Playback rate until the speed slider says otherwise, in frames per second. */
+    private static final float DEFAULT_RATE = 60.0f;
+
+    /** Longest nap of the decoder between two checks of the queue. */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrajectoryPlayer.class);
+
+    private final Path path;
+    private final TrajectoryReader reader;
+    private final FrameQueue<ReplayFrame> queue =
+            new FrameQueue<>(PREFETCH_FRAMES, ReplayFrame::new);
+    private final SimulationState state = new SimulationState();
+    private final Thread decoder;
+    private volatile boolean running = true;
+
+    /** Seek request counter, bumped by the draw thread and followed by the decoder. */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /** Frame of the last seek request, written before {@link #epoch}. */
+    private volatile long seekFrame;
+
+    private volatile float rate = DEFAULT_RATE;
+    private volatile boolean paused;
+
+    // Draw thread only.
+    private double playhead;
+    private long lastUpdateNanos = Long.MIN_VALUE;
+    private long shownFrame = -1;
+    private long shownStep;
+    private long cursor;
+
+    /**
+     * Opens a trajectory file and starts decoding it from the first frame.
+     *
+     * @param eventManager Event manager, for the speed, pause and seek events.
+     * @param pathParam File to replay.
+     * @throws IOException If the file can't be read, or holds no complete frame.
+     */
+    public TrajectoryPlayer(final EventManager eventManager, final Path pathParam)
+            throws IOException {
+        this.path = pathParam;
+        this.reader = new TrajectoryReader(pathParam);
+        if (reader.getFrameCount() == 0) {
+            throw new IOException("No complete frame to replay in " + pathParam);
+        }
+        eventManager.subscribe(SpeedChangedEvent.class, event -> rate = event.newSpeed());
+        eventManager.subscribe(
+                GUIStateChangedEvent.class,
+                event -> {
+                    if (event.element() == GUIStateChangedEvent.UIElement.SIMULATION_PAUSED) {
+                        paused = event.newState();
+                    }
+                });
+        eventManager.subscribe(ReplaySeekEvent.class, event -> seek(event.frame()));
+        decoder = Thread.ofPlatform().name("trajectory-reader").daemon().start(this::decode);
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(
+                    "Replaying {} frames in {} chunks from {}",
+                    reader.getFrameCount(),
+                    reader.getChunkCount(),
+                    pathParam);
+        }
+    }
+
+    /**
+     * Returns the number of frames of the recording.
+     *
+     * @return The frame count.
+     */
+    public long getFrameCount() {
+        return reader.getFrameCount();
+    }
+
+    /**
+     * Returns the frame under the playhead. Draw thread only.
+     *
+     * @return Index of the frame.
+     */
+    public long getFrame() {
+        return (long) playhead;
+    }
+
+    /**
+     * Moves the playhead to a frame. Draw thread only.
+     *
+     * @param frame Index of the frame, clamped to the recording.
+     */
+    public void seek(final long frame) {
+        playhead = Math.max(0, Math.min(frame, reader.getFrameCount() - 1));
+    }
+
+    /**
+     * Advances the playhead and returns the state to draw. Never blocks: if the frame under the
+     * playhead is not decoded yet, the closest one decoded so far is shown. Draw thread only.
+     *
+     * @param nowNanos Current time, in {@link System#nanoTime()} units.
+     * @return The state holding the frame under the playhead.
+     */
+    public SimulationState update(final long nowNanos) {
+        if (lastUpdateNanos != Long.MIN_VALUE && !paused) {
+            playhead += (nowNanos - lastUpdateNanos) * (double) rate / NANOS_PER_SECOND;
+        }
+        lastUpdateNanos = nowNanos;
+        playhead = Math.max(0, Math.min(playhead, reader.getFrameCount() - 1));
+        final long target = (long) playhead;
+        if (target != shownFrame) {
+            pull(target, nowNanos);
+        }
+        return state;
+    }
+
+    /**
+     * Stops the decoder.
+     *
+     * @throws InterruptedException If interrupted while waiting for the decoder.
+     */
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(decoder);
+        decoder.join();
+    }
+
+    /**
+     * Takes a frame from the decoder, dropping the ones the playhead went past, or the latest one
+     * on the way if the decoder lags behind. Asks the decoder to seek when the frame is behind it,
+     * or far enough ahead that jumping to its chunk beats decoding every frame on the way.
+     *
+     * @param target Frame under the playhead.
+     * @param nowNanos Current time, in {@link System#nanoTime()} units.
+     */
+    private void pull(final long target, final long nowNanos) {
+        if (target < cursor || reader.chunkOf(target) > reader.chunkOf(cursor) + 1) {
+            seekFrame = target;
+            epoch.incrementAndGet();
+            cursor = target;
+        }
+        final long currentEpoch = epoch.get();
+        ReplayFrame frame = queue.peek();
+        while (frame != null) {
+            final boolean current = frame.getEpoch() == currentEpoch;
+            if (current && frame.getFrame() > target) {
+                break;
+            }
+            if (current) {
+                cursor = frame.getFrame();
+                // Short of the target, the latest decoded frame keeps the screen moving.
+                if (frame.getFrame() == target || queue.size() == 1) {
+                    state.load(
+                            frame,
+                            frame.getStep() - shownStep,
+                            nowNanos,
+                            (long) (NANOS_PER_SECOND / Math.max(rate, 1)));
+                    shownFrame = frame.getFrame();
+                    shownStep = frame.getStep();
+                    queue.release();
+                    break;
+                }
+            }
+            queue.release();
+            frame = queue.peek();
+        }
+        LockSupport.unpark(decoder);
+    }
+
+    /** Decodes frames ahead of the playhead until closed. Decoder thread only. */
+    private void decode() {
+        final TrajectoryDecoder frames = new TrajectoryDecoder(reader);
+        long seenEpoch = -1;
+        long next = 0;
+        long skipUntil = 0;
+        try {
+            while (running) {
+                final long requested = epoch.get();
+                if (requested != seenEpoch) {
+                    seenEpoch = requested;
+                    skipUntil = seekFrame;
+                    final int chunk = reader.chunkOf(skipUntil);
+                    frames.seek(chunk);
+                    next = reader.getFirstFrame(chunk);
+                }
+                if (next >= reader.getFrameCount()) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                if (next < skipUntil && next != reader.getFirstFrame(reader.chunkOf(next))) {
+                    // Frames before the seek target still feed the predictions. The first one of
+                    // the chunk is handed over anyway, to show something close right away.
+                    frames.next(null);
+                    next++;
+                    continue;
+                }
+                final ReplayFrame slot = queue.claim();
+                if (slot == null) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                frames.next(slot);
+                slot.tag(next, seenEpoch);
+                queue.publish();
+                next++;
+            }
+        } catch (IOException e) {
+            if (LOGGER.isErrorEnabled()) {
+                LOGGER.error("Could not decode {}, replay stopped", path, e);
+            }
+        } finally {
+            frames.close();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memory-mapped view of a trajectory file written by {@link TrajectoryEncoder}, see {@link
+ * TrajectoryFormat} for the layout. The chunk index at the end of the file is loaded once, so that
+ * finding the chunk of any frame never touches the rest of the file. Files cut short, by a crash or
+ * a recording still going on, have no index: their chunk headers are walked instead, up to the
+ * last complete chunk. <i>Let's go to the tape.</i>
+ *
+ * <p>The file is mapped in regions of up to 2 GiB, a chunk never straddling two regions, so that
+ * recordings of any size can be read without copying.
+ */
+final class TrajectoryReader {
+    /** Largest region mapped at once, the most a single buffer can address. */
+    private static final long MAX_REGION_BYTES = Integer.MAX_VALUE;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrajectoryReader.class);
+
+    private final int bits;
+    private final int framesPerChunk;
+    private final float boxMin;
+    private final float boxSize;
+
+    private final long[] chunkOffset;
+    private final long[] chunkFirstFrame;
+    private final long[] chunkFirstStep;
+    private final int[] chunkFrames;
+    private final int[] chunkCount;
+    private final int[] chunkLength;
+    private final int[] chunkRegion;
+    private final long frameCount;
+
+    private final MappedByteBuffer[] regions;
+    private final long[] regionStart;
+
+    /**
+     * Chunk found in the index or by walking the file.
+     *
+     * @param offset Offset of the chunk header in the file.
+     * @param firstStep Step of the first frame.
+     * @param frames Number of frames.
+     * @param count Number of spheres.
+     * @param length Length of the deflate stream.
+     */
+    private record Chunk(long offset, long firstStep, int frames, int count, long length) {}
+
+    /**
+     * Maps a trajectory file and loads its index.
+     *
+     * @param path File to read.
+     * @throws IOException If the file can't be read, or is not a trajectory file.
+     */
+    TrajectoryReader(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < TrajectoryFormat.HEADER_BYTES) {
+                throw new IOException("Not a trajectory file: " + path);
+            }
+            final ByteBuffer header = map(channel, 0, TrajectoryFormat.HEADER_BYTES);
+            if (header.getInt(0) != TrajectoryFormat.MAGIC) {
+                throw new IOException("Not a trajectory file: " + path);
+            }
+            if (header.getInt(4) != TrajectoryFormat.VERSION) {
+                throw new IOException(
+                        "Unsupported trajectory file version " + header.getInt(4) + " in " + path);
+            }
+            bits = header.getInt(8);
+            framesPerChunk = header.getInt(12);
+            boxMin = header.getFloat(16);
+            boxSize = header.getFloat(20);
+            if (bits < 1 || bits > 24 || framesPerChunk < 1 || !(boxSize > 0)) {
+                throw new IOException("Corrupt trajectory file header in " + path);
+            }
+
+            List<Chunk> chunks = readIndex(channel, size);
+            if (chunks == null) {
+                chunks = walkChunks(channel, size);
+                if (LOGGER.isWarnEnabled()) {
+                    LOGGER.warn(
+                            "Trajectory file {} has no index, recovered {} complete chunks",
+                            path,
+                            chunks.size());
+                }
+            }
+
+            final int chunkTotal = chunks.size();
+            chunkOffset = new long[chunkTotal];
+            chunkFirstFrame = new long[chunkTotal];
+            chunkFirstStep = new long[chunkTotal];
+            chunkFrames = new int[chunkTotal];
+            chunkCount = new int[chunkTotal];
+            chunkLength = new int[chunkTotal];
+            chunkRegion = new int[chunkTotal];
+            long frames = 0;
+            for (int i = 0; i < chunkTotal; i++) {
+                final Chunk chunk = chunks.get(i);
+                if (chunk.length() > MAX_REGION_BYTES - TrajectoryFormat.CHUNK_HEADER_BYTES) {
+                    throw new IOException("Chunk " + i + " of " + path + " is too large to map");
+                }
+                chunkOffset[i] = chunk.offset();
+                chunkFirstFrame[i] = frames;
+                chunkFirstStep[i] = chunk.firstStep();
+                chunkFrames[i] = chunk.frames();
+                chunkCount[i] = chunk.count();
+                chunkLength[i] = (int) chunk.length();
+                frames += chunk.frames();
+            }
+            frameCount = frames;
+
+            final List<MappedByteBuffer> mapped = new ArrayList<>();
+            final List<Long> starts = new ArrayList<>();
+            int first = 0;
+            while (first < chunkTotal) {
+                final long start = chunkOffset[first];
+                int last = first;
+                while (last + 1 < chunkTotal && chunkEnd(last + 1) - start <= MAX_REGION_BYTES) {
+                    last++;
+                }
+                for (int i = first; i <= last; i++) {
+                    chunkRegion[i] = mapped.size();
+                }
+                mapped.add(map(channel, start, chunkEnd(last) - start));
+                starts.add(start);
+                first = last + 1;
+            }
+            regions = mapped.toArray(new MappedByteBuffer[0]);
+            regionStart = starts.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    /**
+     * Returns the number of frames of the file.
+     *
+     * @return The frame count.
+     */
+    long getFrameCount() {
+        return frameCount;
+    }
+
+    int getBits() {
+        return bits;
+    }
+
+    int getFramesPerChunk() {
+        return framesPerChunk;
+    }
+
+    float getBoxMin() {
+        return boxMin;
+    }
+
+    float getBoxSize() {
+        return boxSize;
+    }
+
+    /**
+     * Returns the number of chunks of the file.
+     *
+     * @return The chunk count.
+     */
+    int getChunkCount() {
+        return chunkOffset.length;
+    }
+
+    /**
+     * Finds the chunk holding a frame, with a binary search over the index.
+     *
+     * @param frame Index of the frame, from 0 to {@link #getFrameCount()} excluded.
+     * @return Index of the chunk.
+     */
+    int chunkOf(final long frame) {
+        final int found = Arrays.binarySearch(chunkFirstFrame, frame);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    long getFirstFrame(final int chunk) {
+        return chunkFirstFrame[chunk];
+    }
+
+    long getFirstStep(final int chunk) {
+        return chunkFirstStep[chunk];
+    }
+
+    int getFrames(final int chunk) {
+        return chunkFrames[chunk];
+    }
+
+    int getCount(final int chunk) {
+        return chunkCount[chunk];
+    }
+
+    /**
+     * Returns the deflate stream of a chunk, straight from the mapping.
+     *
+     * @param chunk Index of the chunk.
+     * @return A buffer over the stream, positioned at its start.
+     */
+    ByteBuffer getData(final int chunk) {
+        final int region = chunkRegion[chunk];
+        final long start =
+                chunkOffset[chunk] + TrajectoryFormat.CHUNK_HEADER_BYTES - regionStart[region];
+        return regions[region].slice((int) start, chunkLength[chunk]);
+    }
+
+    /**
+     * Returns the offset right after a chunk.
+     *
+     * @param chunk Index of the chunk.
+     * @return Offset in the file.
+     */
+    private long chunkEnd(final int chunk) {
+        return chunkOffset[chunk] + TrajectoryFormat.CHUNK_HEADER_BYTES + chunkLength[chunk];
+    }
+
+    /**
+     * Loads the chunk index from the end of the file. Chunks are written back to back, so the
+     * length of each one is the gap to the next one, or to the index for the last one.
+     *
+     * @param channel Channel of the file.
+     * @param size Size of the file.
+     * @return The chunks, or {@code null} if the file has no valid footer.
+     * @throws IOException If the file can't be read.
+     */
+    private static List<Chunk> readIndex(final FileChannel channel, final long size)
+            throws IOException {
+        if (size < TrajectoryFormat.HEADER_BYTES + TrajectoryFormat.FOOTER_BYTES) {
+            return null;
+        }
+        final ByteBuffer footer =
+                map(channel, size - TrajectoryFormat.FOOTER_BYTES, TrajectoryFormat.FOOTER_BYTES);
+        final long indexOffset = footer.getLong(0);
+        final int count = footer.getInt(8);
+        if (footer.getInt(12) != TrajectoryFormat.END_MAGIC
+                || count < 0
+                || indexOffset < TrajectoryFormat.HEADER_BYTES
+                || indexOffset
+                                + (long) count * TrajectoryFormat.INDEX_ENTRY_BYTES
+                                + TrajectoryFormat.FOOTER_BYTES
+                        != size) {
+            return null;
+        }
+        final ByteBuffer index =
+                map(channel, indexOffset, (long) count * TrajectoryFormat.INDEX_ENTRY_BYTES);
+        final List<Chunk> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int entry = i * TrajectoryFormat.INDEX_ENTRY_BYTES;
+            final long offset = index.getLong(entry);
+            final long end =
+                    i + 1 < count
+                            ? index.getLong(entry + TrajectoryFormat.INDEX_ENTRY_BYTES)
+                            : indexOffset;
+            final long length = end - offset - TrajectoryFormat.CHUNK_HEADER_BYTES;
+            final int frames = index.getInt(entry + 16);
+            final int spheres = index.getInt(entry + 20);
+            if (offset < TrajectoryFormat.HEADER_BYTES
+                    || length <= 0
+                    || frames < 1
+                    || spheres < 0) {
+                return null;
+            }
+            chunks.add(new Chunk(offset, index.getLong(entry + 8), frames, spheres, length));
+        }
+        return chunks;
+    }
+
+    /**
+     * Walks the chunk headers from the start of the file, stopping at the first one that was not
+     * completed.
+     *
+     * @param channel Channel of the file.
+     * @param size Size of the file.
+     * @return The complete chunks.
+     * @throws IOException If the file can't be read.
+     */
+    private static List<Chunk> walkChunks(final FileChannel channel, final long size)
+            throws IOException {
+        final List<Chunk> chunks = new ArrayList<>();
+        long offset = TrajectoryFormat.HEADER_BYTES;
+        while (offset + TrajectoryFormat.CHUNK_HEADER_BYTES <= size) {
+            final ByteBuffer header = map(channel, offset, TrajectoryFormat.CHUNK_HEADER_BYTES);
+            final int frames = header.getInt(8);
+            final int spheres = header.getInt(12);
+            final long length = header.getLong(16);
+            final long end = offset + TrajectoryFormat.CHUNK_HEADER_BYTES + length;
+            if (frames < 1 || spheres < 0 || length <= 0 || end > size) {
+                break;
+            }
+            chunks.add(new Chunk(offset, header.getLong(0), frames, spheres, length));
+            offset = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Maps part of the file in little-endian order.
+     *
+     * @param channel Channel of the file.
+     * @param offset Offset of the first byte.
+     * @param size Number of bytes.
+     * @return The mapping.
+     * @throws IOException If the file can't be mapped.
+     */
+    private static MappedByteBuffer map(
+            final FileChannel channel, final long offset, final long size) throws IOException {
+        final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, offset, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
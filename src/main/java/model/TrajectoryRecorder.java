@@ -0,0 +1,193 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the positions of every sphere after every step to a compressed trajectory file, for
+ * offline analysis. The physics thread only copies the positions into a free slot of a {@link
+ * FrameQueue}; quantizing, compressing and writing happen on a writer thread of their own, see
+ * {@link TrajectoryEncoder}. If the disk can't keep up and every slot is taken, frames are dropped
+ * rather than slowing the simulation down, the steps of the frames tell where. <i>Roll tape.</i>
+ */
+public final class TrajectoryRecorder {
+    /** System property naming the trajectory file, recording is off when it is not set. */
+    public static final String FILE_PROPERTY = "gravity.record.file";
+
+    /** System property setting the bits per quantized coordinate, 16 or 24. */
+    public static final String BITS_PROPERTY = "gravity.record.bits";
+
+    /**
+     * Default bits per coordinate, steps of about a sixtieth of a unit over the bounds, well below
+     * the size of a sphere. 24 bits give steps of a sixty-thousandth, for files about 1.5x bigger.
+     */
+    public static final int DEFAULT_BITS = 16;
+
+    /** Frames between two seek points of the file. */
+    static final int FRAMES_PER_CHUNK = 32;
+
+    /** Number of frames waiting for the writer before frames get dropped. */
+    private static final int QUEUE_CAPACITY = 8;
+
+    /** Longest nap of the writer between two checks of the queue. */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrajectoryRecorder.class);
+
+    private final Path path;
+    private final int bits;
+    private final FrameQueue<RecordedFrame> queue =
+            new FrameQueue<>(QUEUE_CAPACITY, RecordedFrame::new);
+    private TrajectoryEncoder encoder;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile boolean failed;
+    private long handedGeneration = Long.MIN_VALUE;
+    private long droppedFrames;
+
+    /**
+     * Creates the recorder, which opens the file on the first recorded frame.
+     *
+     * @param pathParam File to write, {@code null} to record nothing.
+     * @param bitsParam Bits per quantized coordinate, 16 or 24.
+     */
+    public TrajectoryRecorder(final Path pathParam, final int bitsParam) {
+        if (bitsParam != 16 && bitsParam != 24) {
+            throw new IllegalArgumentException("Bits must be 16 or 24, got " + bitsParam);
+        }
+        this.path = pathParam;
+        this.bits = bitsParam;
+    }
+
+    /**
+     * Creates the recorder with the settings read from the {@value #FILE_PROPERTY} and {@value
+     * #BITS_PROPERTY} system properties.
+     *
+     * @return The recorder, disabled if no file was given.
+     */
+    public static TrajectoryRecorder fromSystemProperties() {
+        final String file = System.getProperty(FILE_PROPERTY);
+        return new TrajectoryRecorder(
+                file == null ? null : Path.of(file),
+                Integer.getInteger(BITS_PROPERTY, DEFAULT_BITS));
+    }
+
+    /**
+     * Checks whether frames are recorded.
+     *
+     * @return {@code false} if no file was given, or if writing it failed.
+     */
+    public boolean isEnabled() {
+        return path != null && !failed;
+    }
+
+    /**
+     * Hands the current positions of a store to the writer. Physics thread only, between steps.
+     *
+     * @param store Store to record.
+     * @param step Index of the step that just ended.
+     * @param generation Seed generation, changes whenever spheres are renumbered.
+     */
+    void record(final ParticleStore store, final long step, final long generation) {
+        if (!isEnabled() || !running && !start()) {
+            return;
+        }
+        final RecordedFrame frame = queue.claim();
+        if (frame == null) {
+            droppedFrames++;
+            if (droppedFrames == 1 && LOGGER.isWarnEnabled()) {
+                LOGGER.warn("Trajectory writer can't keep up, dropping frames from step {}", step);
+            }
+            return;
+        }
+        final boolean withAttributes = generation != handedGeneration;
+        frame.capture(store, step, generation, withAttributes);
+        handedGeneration = generation;
+        queue.publish();
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Writes the frames still queued, completes the file and stops the writer.
+     *
+     * @throws InterruptedException If interrupted while waiting for the writer.
+     */
+    public void close() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+        if (!failed && LOGGER.isInfoEnabled()) {
+            LOGGER.info(
+                    "Recorded {} frames to {}: {} bytes, {}x smaller than raw floats, {} dropped",
+                    encoder.getFrameCount(),
+                    path,
+                    encoder.getFileBytes(),
+                    String.format(
+                            "%.1f",
+                            encoder.getRawBytes() / (double) Math.max(1, encoder.getFileBytes())),
+                    droppedFrames);
+        }
+    }
+
+    /**
+     * Creates the file and starts the writer.
+     *
+     * @return {@code false} if the file can't be created, recording is then disabled.
+     */
+    private boolean start() {
+        try {
+            encoder =
+                    new TrajectoryEncoder(
+                            path,
+                            bits,
+                            FRAMES_PER_CHUNK,
+                            0,
+                            SimulationHandler.BOUNDS_SIZE);
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+        running = true;
+        writer = Thread.ofPlatform().name("trajectory-writer").daemon().start(this::write);
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Recording trajectories to {} with {}-bit coordinates", path, bits);
+        }
+        return true;
+    }
+
+    /** Encodes the queued frames until closed, then completes the file. Writer thread only. */
+    private void write() {
+        try (TrajectoryEncoder output = encoder) {
+            while (running || queue.peek() != null) {
+                final RecordedFrame frame = queue.peek();
+                if (frame == null) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                output.encode(frame);
+                queue.release();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Disables recording after an error.
+     *
+     * @param e The error.
+     */
+    private void fail(final IOException e) {
+        failed = true;
+        if (LOGGER.isErrorEnabled()) {
+            LOGGER.error("Could not record trajectories to {}, recording stopped", path, e);
+        }
+    }
+}
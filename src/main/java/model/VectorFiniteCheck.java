@@ -0,0 +1,32 @@
+package model;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link FiniteCheck} built on the incubating Vector API, folding {@code v - v} over {@code
+ * FloatVector.SPECIES_PREFERRED} lanes at a time like the {@link ScalarFiniteCheck} does one value
+ * at a time. <i>Many hands make light work, again.</i>
+ *
+ * <p>Only load this class after checking {@link VectorSupport#isAvailable()}.
+ */
+final class VectorFiniteCheck implements FiniteCheck {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean allFinite(final float[] values, final int count) {
+        final int vectorEnd = SPECIES.loopBound(count);
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < vectorEnd; i += SPECIES.length()) {
+            final FloatVector chunk = FloatVector.fromArray(SPECIES, values, i);
+            sum = sum.add(chunk.sub(chunk));
+        }
+        float tail = 0;
+        for (; i < count; i++) {
+            tail += values[i] - values[i];
+        }
+        return sum.reduceLanes(VectorOperators.ADD) + tail == 0;
+    }
+}
@@ -0,0 +1,74 @@
+package model;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link PairKernel} built on the incubating Vector API: the spheres interacting with the row are
+ * processed {@code FloatVector.SPECIES_PREFERRED} lanes at a time, the leftovers going through the
+ * scalar kernel. <i>Many hands make light work.</i>
+ *
+ * <p>Only load this class after checking that the {@code jdk.incubator.vector} module is present,
+ * see {@link DirectGravitySolver}.
+ */
+final class VectorPairKernel implements PairKernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private final PairKernel tailKernel = new ScalarPairKernel();
+
+    @Override
+    public void accumulateRow(
+            final BodySnapshot bodies,
+            final int row,
+            final int columnStart,
+            final int columnEnd,
+            final float gravityConstant,
+            final float[] accX,
+            final float[] accY,
+            final float[] accZ,
+            final float[] nearest) {
+        final float[] x = bodies.getX();
+        final float[] y = bodies.getY();
+        final float[] z = bodies.getZ();
+        final float[] mass = bodies.getMass();
+        final FloatVector px = FloatVector.broadcast(SPECIES, x[row]);
+        final FloatVector py = FloatVector.broadcast(SPECIES, y[row]);
+        final FloatVector pz = FloatVector.broadcast(SPECIES, z[row]);
+        final FloatVector negativeG = FloatVector.broadcast(SPECIES, -gravityConstant);
+        final float massI = mass[row];
+        final float softening = SimulationHandler.getSofteningLength();
+        final FloatVector softeningSquared = FloatVector.broadcast(SPECIES, softening * softening);
+        FloatVector rowAccX = FloatVector.zero(SPECIES);
+        FloatVector rowAccY = FloatVector.zero(SPECIES);
+        FloatVector rowAccZ = FloatVector.zero(SPECIES);
+        FloatVector rowNearest = FloatVector.broadcast(SPECIES, Float.POSITIVE_INFINITY);
+
+        final int vectorEnd = columnStart + SPECIES.loopBound(columnEnd - columnStart);
+        int j = columnStart;
+        for (; j < vectorEnd; j += SPECIES.length()) {
+            final FloatVector dx = px.sub(FloatVector.fromArray(SPECIES, x, j));
+            final FloatVector dy = py.sub(FloatVector.fromArray(SPECIES, y, j));
+            final FloatVector dz = pz.sub(FloatVector.fromArray(SPECIES, z, j));
+            final FloatVector distanceSquared = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+            final FloatVector pairFactor = negativeG.div(distanceSquared.add(softeningSquared));
+            final FloatVector towardJ = FloatVector.fromArray(SPECIES, mass, j).mul(pairFactor);
+            final FloatVector towardI = pairFactor.mul(massI);
+            rowAccX = rowAccX.add(dx.mul(towardJ));
+            rowAccY = rowAccY.add(dy.mul(towardJ));
+            rowAccZ = rowAccZ.add(dz.mul(towardJ));
+            FloatVector.fromArray(SPECIES, accX, j).sub(dx.mul(towardI)).intoArray(accX, j);
+            FloatVector.fromArray(SPECIES, accY, j).sub(dy.mul(towardI)).intoArray(accY, j);
+            FloatVector.fromArray(SPECIES, accZ, j).sub(dz.mul(towardI)).intoArray(accZ, j);
+            rowNearest = rowNearest.min(distanceSquared);
+            FloatVector.fromArray(SPECIES, nearest, j).min(distanceSquared).intoArray(nearest, j);
+        }
+        accX[row] += rowAccX.reduceLanes(VectorOperators.ADD);
+        accY[row] += rowAccY.reduceLanes(VectorOperators.ADD);
+        accZ[row] += rowAccZ.reduceLanes(VectorOperators.ADD);
+        nearest[row] = Math.min(nearest[row], rowNearest.reduceLanes(VectorOperators.MIN));
+
+        tailKernel.accumulateRow(
+                bodies, row, j, columnEnd, gravityConstant, accX, accY, accZ, nearest);
+    }
+}
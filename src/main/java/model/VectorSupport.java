@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * Detects whether the incubating Vector API can be used. The vectorized classes must not even be
+ * loaded when it can't. <i>Check before you wreck.</i>
+ */
+final class VectorSupport {
+    /** Module holding the Vector API. */
+    static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /** <i>NO TOUCHY.</i> */
+    private VectorSupport() {}
+
+    /**
+     * Checks whether the Vector API module was added to the boot layer.
+     *
+     * @return {@code true} if the vectorized classes can be loaded.
+     */
+    static boolean isAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+}
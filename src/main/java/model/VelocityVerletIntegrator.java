@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * Velocity Verlet: the same stages as the {@link LeapfrogIntegrator}, but the opening half kick
+ * reuses the accelerations of the previous closing one, which were computed at the same positions.
+ * Second order for a single evaluation per substep. <i>Waste not, want not.</i>
+ */
+public final class VelocityVerletIntegrator extends SplittingIntegrator {
+    /** Creates the scheme. */
+    public VelocityVerletIntegrator() {
+        super("Velocity Verlet", new float[] {0.5f, 0.5f}, new float[] {1, 0}, true);
+    }
+}
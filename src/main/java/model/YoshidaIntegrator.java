@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * Fourth-order Yoshida scheme: three velocity Verlet substeps of weights {@code w1}, {@code w0}
+ * and {@code w1}, chosen so that their second-order errors cancel out. The middle weight is
+ * negative, the spheres briefly step back in time. Three evaluations per substep. <i>Two steps
+ * forward, one step back.</i>
+ */
+public final class YoshidaIntegrator extends SplittingIntegrator {
+    private static final double CUBE_ROOT_OF_TWO = Math.cbrt(2);
+    private static final float W1 = (float) (1 / (2 - CUBE_ROOT_OF_TWO));
+    private static final float W0 = (float) (-CUBE_ROOT_OF_TWO / (2 - CUBE_ROOT_OF_TWO));
+
+    /** Creates the scheme. */
+    public YoshidaIntegrator() {
+        super(
+                "Yoshida 4",
+                new float[] {W1 / 2, (W0 + W1) / 2, (W0 + W1) / 2, W1 / 2},
+                new float[] {W1, W0, W1, 0},
+                true);
+    }
+}
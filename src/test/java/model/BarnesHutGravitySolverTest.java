@@ -0,0 +1,92 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Accelerations from {@link BarnesHutGravitySolver}, against the exact ones of {@link
+ * DirectGravitySolver}. <i>Close enough is good enough.</i>
+ */
+class BarnesHutGravitySolverTest {
+    @Test
+    void defaultOpeningAngleStaysCloseToTheDirectSum() {
+        final ParticleStore store = clusteredStore(new SplittableRandom(21));
+        final double error =
+                relativeError(store, new BarnesHutGravitySolver(), new DirectGravitySolver());
+        assertTrue(error < 0.02, "Relative error " + error);
+        assertTrue(error > 0, "Distant cells are approximated");
+    }
+
+    @Test
+    void zeroOpeningAngleIsTheDirectSum() {
+        final ParticleStore store = clusteredStore(new SplittableRandom(22));
+        final double error =
+                relativeError(store, new BarnesHutGravitySolver(0), new DirectGravitySolver());
+        assertTrue(error < 1e-4, "Relative error " + error);
+    }
+
+    /**
+     * Fills a store with a few dense clusters, and a handful of spheres outside the bounds.
+     *
+     * @param random Source of the positions and masses.
+     * @return The store.
+     */
+    private static ParticleStore clusteredStore(final SplittableRandom random) {
+        final int count = 1_500;
+        final ParticleStore store = new ParticleStore(count);
+        final float bound = SimulationHandler.BOUNDS_SIZE;
+        for (int i = 0; i < count; i++) {
+            final int index = store.add();
+            if (i % 100 == 0) {
+                store.setPosition(
+                        index,
+                        (float) random.nextDouble(-bound, 2 * bound),
+                        (float) random.nextDouble(-bound, 2 * bound),
+                        (float) random.nextDouble(-bound, 2 * bound));
+            } else {
+                final float center = (i % 3 + 1) * bound / 4;
+                store.setPosition(
+                        index,
+                        center + (float) random.nextGaussian() * 30,
+                        center + (float) random.nextGaussian() * 30,
+                        bound / 2 + (float) random.nextGaussian() * 30);
+            }
+            store.setBody(index, 1, (float) random.nextDouble(1, 100), 1, 0xFFFFFFFF);
+        }
+        return store;
+    }
+
+    /**
+     * Runs both solvers on copies of the spheres and compares their accelerations.
+     *
+     * @param store Spheres to compute the accelerations of.
+     * @param approximate Solver under test.
+     * @param exact Reference solver.
+     * @return The norm of the difference over the norm of the reference, over every sphere.
+     */
+    private static double relativeError(
+            final ParticleStore store, final GravitySolver approximate, final GravitySolver exact) {
+        DirectGravitySolverTest.compute(approximate, store);
+        final int count = store.size();
+        final float[][] approximated = new float[3][count];
+        store.getAx().read(0, approximated[0], 0, count);
+        store.getAy().read(0, approximated[1], 0, count);
+        store.getAz().read(0, approximated[2], 0, count);
+        DirectGravitySolverTest.compute(exact, store);
+        final FloatColumn[] reference = {store.getAx(), store.getAy(), store.getAz()};
+
+        double difference = 0;
+        double norm = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            for (int i = 0; i < count; i++) {
+                final double expected = reference[axis].get(i);
+                final double delta = approximated[axis][i] - expected;
+                difference += delta * delta;
+                norm += expected * expected;
+            }
+        }
+        return Math.sqrt(difference / norm);
+    }
+}
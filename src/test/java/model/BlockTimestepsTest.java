@@ -0,0 +1,149 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/** Levels and substeps picked by {@link BlockTimesteps}. <i>Mind the gap.</i> */
+class BlockTimestepsTest {
+    private static final float ACCURACY = 0.1f;
+
+    private static final Integrator EULER = Integrators.byName("Euler");
+
+    /** Accelerations wanting 3.5, 0 and 1.5 substeps per step, at a unit nearest distance. */
+    private static final float[] ACCELERATIONS = {0.1225f, 0, 0.0225f};
+
+    @Test
+    void quietSpheresTakeASingleSubstep() {
+        final BlockTimesteps timesteps = new BlockTimesteps(4, ACCURACY);
+        final ParticleStore store = store(new float[] {0, 0, 0});
+        timesteps.beginStep(store.size(), EULER);
+
+        assertTrue(timesteps.hasSubstep());
+        assertEquals(3, timesteps.selectActive());
+        timesteps.assignLevels(store);
+        assertEquals(1, timesteps.getSubstepCount());
+        assertEquals(1, timesteps.getDrift());
+        for (int i = 0; i < store.size(); i++) {
+            assertEquals(1, timesteps.getKick(i));
+        }
+        timesteps.advance();
+        assertFalse(timesteps.hasSubstep());
+    }
+
+    @Test
+    void everySphereMovesInItsOwnBlocks() {
+        final BlockTimesteps timesteps = new BlockTimesteps(4, ACCURACY);
+        final ParticleStore store = store(ACCELERATIONS);
+        timesteps.beginStep(store.size(), EULER);
+
+        // Levels 2, 0 and 1: blocks of one, four and two substeps.
+        final int[][] expectedActive = {{0, 1, 2}, {0}, {0, 2}, {0}};
+        final float[] expectedKicks = {0.25f, 1, 0.5f};
+        for (final int[] expected : expectedActive) {
+            assertTrue(timesteps.hasSubstep());
+            final int count = timesteps.selectActive();
+            timesteps.assignLevels(store);
+            assertArrayEquals(expected, Arrays.copyOf(timesteps.getActive(), count));
+            assertEquals(4, timesteps.getSubstepCount());
+            assertEquals(0.25f, timesteps.getDrift());
+            for (int i = 0; i < store.size(); i++) {
+                final int sphere = i;
+                final boolean active = Arrays.stream(expected).anyMatch(index -> index == sphere);
+                assertEquals(active ? expectedKicks[i] : 0, timesteps.getKick(i), "kick " + i);
+            }
+            timesteps.advance();
+        }
+        assertFalse(timesteps.hasSubstep());
+    }
+
+    @Test
+    void deepestLevelIsCapped() {
+        final BlockTimesteps timesteps = new BlockTimesteps(2, ACCURACY);
+        final ParticleStore store = store(new float[] {1e6f, 0});
+        timesteps.beginStep(store.size(), EULER);
+        timesteps.selectActive();
+        timesteps.assignLevels(store);
+        assertEquals(4, timesteps.getSubstepCount());
+        assertEquals(0.25f, timesteps.getKick(0));
+    }
+
+    @Test
+    void kickDriftKickClosesEveryBlockAtItsEnd() {
+        final BlockTimesteps timesteps = new BlockTimesteps(4, ACCURACY);
+        final ParticleStore store = store(ACCELERATIONS);
+        timesteps.beginStep(store.size(), Integrators.byName("Leapfrog KDK"));
+
+        final int[][] expectedClosing = {{0}, {0, 2}, {0}, {0, 1, 2}};
+        for (final int[] expected : expectedClosing) {
+            timesteps.selectActive();
+            timesteps.assignLevels(store);
+            final int count = timesteps.selectClosing();
+            assertArrayEquals(expected, Arrays.copyOf(timesteps.getActive(), count));
+            assertEquals(0.25f, timesteps.getKick(0));
+            timesteps.advance();
+        }
+        assertFalse(timesteps.hasSubstep());
+        assertEquals(1, timesteps.getKick(1), "The quiet sphere closes its only block");
+    }
+
+    @Test
+    void schemesDriftingBetweenKicksShareTheDeepestLevel() {
+        final BlockTimesteps timesteps = new BlockTimesteps(4, ACCURACY);
+        final ParticleStore store = store(ACCELERATIONS);
+        timesteps.beginStep(store.size(), Integrators.byName("Yoshida 4"));
+
+        for (int substep = 0; substep < 4; substep++) {
+            assertEquals(3, timesteps.selectActive(), "active at substep " + substep);
+            timesteps.assignLevels(store);
+            assertEquals(3, timesteps.selectClosing(), "closing at substep " + substep);
+            for (int i = 0; i < store.size(); i++) {
+                assertEquals(0.25f, timesteps.getKick(i));
+            }
+            timesteps.advance();
+        }
+        assertFalse(timesteps.hasSubstep());
+    }
+
+    @Test
+    void minimumLevelRefinesQuietSpheres() {
+        final BlockTimesteps timesteps = new BlockTimesteps(4, ACCURACY);
+        final ParticleStore store = store(new float[] {0, 0});
+        timesteps.setMinimumLevel(1);
+        timesteps.beginStep(store.size(), EULER);
+        timesteps.selectActive();
+        timesteps.assignLevels(store);
+        assertEquals(2, timesteps.getSubstepCount());
+        assertEquals(0.5f, timesteps.getKick(1));
+
+        timesteps.setMinimumLevel(0);
+        timesteps.advance();
+        timesteps.advance();
+        timesteps.beginStep(store.size(), EULER);
+        timesteps.selectActive();
+        timesteps.assignLevels(store);
+        assertEquals(1, timesteps.getSubstepCount(), "Lifting the constraint coarsens again");
+    }
+
+    /**
+     * Creates spheres with given accelerations, along x, all at a unit distance from their
+     * nearest neighbor.
+     *
+     * @param accelerations Acceleration of every sphere.
+     * @return The store.
+     */
+    private static ParticleStore store(final float[] accelerations) {
+        final ParticleStore store = new ParticleStore(accelerations.length);
+        for (final float acceleration : accelerations) {
+            final int index = store.add();
+            store.setBody(index, 1, 1, 1, 0xFFFFFFFF);
+            store.setAcceleration(index, acceleration, 0, 0);
+            store.setNearestDistance(index, 1);
+        }
+        return store;
+    }
+}
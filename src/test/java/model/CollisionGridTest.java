@@ -0,0 +1,79 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/** Candidate pairs found by {@link CollisionGrid}. <i>Nobody slips through the cracks.</i> */
+class CollisionGridTest {
+    @Test
+    void everyReachablePairIsACandidateOnce() {
+        final SplittableRandom random = new SplittableRandom(31);
+        final int count = 2_000;
+        final ParticleStore store = new ParticleStore(count);
+        for (int i = 0; i < count; i++) {
+            final int index = store.add();
+            // Around the origin, so that negative cells are hashed too.
+            store.setPosition(
+                    index,
+                    (float) random.nextDouble(-200, 200),
+                    (float) random.nextDouble(-200, 200),
+                    (float) random.nextDouble(-200, 200));
+            store.setVelocity(
+                    index,
+                    (float) random.nextDouble(-2, 2),
+                    (float) random.nextDouble(-2, 2),
+                    (float) random.nextDouble(-2, 2));
+            store.setBody(index, (float) random.nextDouble(1, 8), 1, 1, 0xFFFFFFFF);
+        }
+        final CollisionGrid grid = new CollisionGrid();
+        grid.build(store);
+
+        final Set<Long> candidates = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            for (int k = grid.getCandidateStart(i); k < grid.getCandidateEnd(i); k++) {
+                final int other = grid.getCandidate(k);
+                assertTrue(other > i, "Pairs are kept under their lowest index");
+                assertTrue(candidates.add((long) i * count + other), "Duplicate pair");
+            }
+        }
+        assertEquals(candidates.size(), grid.getCandidateCount());
+
+        int reachable = 0;
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                if (distance(store, i, j) <= reach(store, i) + reach(store, j)) {
+                    reachable++;
+                    assertTrue(candidates.contains((long) i * count + j), i + " and " + j);
+                }
+            }
+        }
+        assertTrue(reachable > 0, "Some spheres are within reach of each other");
+        assertTrue(candidates.size() < count * 20, "Far away pairs are culled");
+    }
+
+    private static double distance(final ParticleStore store, final int i, final int j) {
+        final double dx = store.getX().get(i) - store.getX().get(j);
+        final double dy = store.getY().get(i) - store.getY().get(j);
+        final double dz = store.getZ().get(i) - store.getZ().get(j);
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Returns how far a sphere reaches within a frame.
+     *
+     * @param store Store holding the sphere.
+     * @param i Sphere index.
+     * @return Its radius plus its speed.
+     */
+    private static double reach(final ParticleStore store, final int i) {
+        final double vx = store.getVx().get(i);
+        final double vy = store.getVy().get(i);
+        final double vz = store.getVz().get(i);
+        return store.getRadius().get(i) + Math.sqrt(vx * vx + vy * vy + vz * vz);
+    }
+}
@@ -0,0 +1,115 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/** Accelerations from {@link DirectGravitySolver}. <i>Every action has its reaction.</i> */
+class DirectGravitySolverTest {
+    @Test
+    void pairwiseSumConservesMomentum() {
+        // More spheres than a tile holds, so that pairs cross tiles and workers.
+        final ParticleStore store = randomStore(700, new SplittableRandom(11));
+        compute(new DirectGravitySolver(), store);
+
+        final FloatColumn[] accelerations = {store.getAx(), store.getAy(), store.getAz()};
+        final double[] momentum = new double[3];
+        double scale = 0;
+        for (int i = 0; i < store.size(); i++) {
+            final double mass = store.getMass().get(i);
+            for (int axis = 0; axis < 3; axis++) {
+                final double force = mass * accelerations[axis].get(i);
+                momentum[axis] += force;
+                scale += Math.abs(force);
+            }
+        }
+        assertTrue(scale > 0, "Spheres attract each other");
+        for (int axis = 0; axis < 3; axis++) {
+            assertEquals(0, momentum[axis] / scale, 1e-5, "Net force along axis " + axis);
+        }
+    }
+
+    @Test
+    void twoSpheresPullEachOtherEqually() {
+        final ParticleStore store = new ParticleStore(2);
+        addSphere(store, 100, 200, 300, 5);
+        addSphere(store, 130, 160, 300, 20);
+        compute(new DirectGravitySolver(), store);
+
+        // Sphere 0 is pulled along (3, -4, 0), four times harder than sphere 1 is pulled back.
+        assertTrue(store.getAx().get(0) > 0 && store.getAy().get(0) < 0);
+        assertEquals(0, store.getAz().get(0));
+        assertEquals(-4 * store.getAx().get(1), store.getAx().get(0), 1e-6);
+        assertEquals(-4 * store.getAy().get(1), store.getAy().get(0), 1e-6);
+        assertEquals(4 * store.getAx().get(0), -3 * store.getAy().get(0), 1e-5);
+    }
+
+    @Test
+    void vectorKernelMatchesScalarKernel() {
+        // Not a multiple of any vector length, so that the scalar tail is used too.
+        final ParticleStore scalar = randomStore(523, new SplittableRandom(12));
+        final ParticleStore vector = randomStore(523, new SplittableRandom(12));
+        compute(new DirectGravitySolver(new ScalarPairKernel()), scalar);
+        compute(new DirectGravitySolver(new VectorPairKernel()), vector);
+
+        for (int i = 0; i < scalar.size(); i++) {
+            final float ax = scalar.getAx().get(i);
+            final float ay = scalar.getAy().get(i);
+            final float az = scalar.getAz().get(i);
+            // Lanes sum in another order, only rounding may differ.
+            final double tolerance = 1e-4 * Math.sqrt(ax * ax + ay * ay + az * az);
+            assertEquals(ax, vector.getAx().get(i), tolerance, "ax of sphere " + i);
+            assertEquals(ay, vector.getAy().get(i), tolerance, "ay of sphere " + i);
+            assertEquals(az, vector.getAz().get(i), tolerance, "az of sphere " + i);
+        }
+    }
+
+    /**
+     * Runs a solver on a pool of its own.
+     *
+     * @param solver Solver to run.
+     * @param store Store receiving the accelerations.
+     */
+    static void compute(final GravitySolver solver, final ParticleStore store) {
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            solver.computeAccelerations(store, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Fills a store with spheres spread over the bounds, of various masses.
+     *
+     * @param count Number of spheres.
+     * @param random Source of the positions and masses.
+     * @return The store.
+     */
+    static ParticleStore randomStore(final int count, final SplittableRandom random) {
+        final ParticleStore store = new ParticleStore(count);
+        for (int i = 0; i < count; i++) {
+            addSphere(
+                    store,
+                    (float) random.nextDouble(0, SimulationHandler.BOUNDS_SIZE),
+                    (float) random.nextDouble(0, SimulationHandler.BOUNDS_SIZE),
+                    (float) random.nextDouble(0, SimulationHandler.BOUNDS_SIZE),
+                    (float) random.nextDouble(1, 100));
+        }
+        return store;
+    }
+
+    private static void addSphere(
+            final ParticleStore store,
+            final float px,
+            final float py,
+            final float pz,
+            final float mass) {
+        final int index = store.add();
+        store.setPosition(index, px, py, pz);
+        store.setBody(index, 1, mass, 1, 0xFFFFFFFF);
+    }
+}
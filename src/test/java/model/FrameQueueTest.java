@@ -0,0 +1,44 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/** Slots handed around by {@link FrameQueue}. <i>First come, first served.</i> */
+class FrameQueueTest {
+    @Test
+    void slotsComeOutInOrderAndAreRecycled() {
+        final FrameQueue<RecordedFrame> queue = new FrameQueue<>(2, RecordedFrame::new);
+        assertNull(queue.peek(), "Nothing published yet");
+
+        final RecordedFrame first = queue.claim();
+        assertNotNull(first);
+        assertSame(first, queue.claim(), "Claiming twice returns the same slot");
+        queue.publish();
+        final RecordedFrame second = queue.claim();
+        queue.publish();
+        assertNull(queue.claim(), "Every slot waits for the consumer");
+        assertEquals(2, queue.size());
+
+        assertSame(first, queue.peek());
+        queue.release();
+        assertSame(first, queue.claim(), "The released slot is reused");
+        queue.publish();
+        assertSame(second, queue.peek());
+        queue.release();
+        assertSame(first, queue.peek());
+        queue.release();
+        assertNull(queue.peek());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThrows(
+                IllegalArgumentException.class, () -> new FrameQueue<>(0, RecordedFrame::new));
+    }
+}
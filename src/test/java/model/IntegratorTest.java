@@ -0,0 +1,78 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Energy drift of every {@link Integrator} on an eccentric Kepler orbit, run in doubles so that
+ * only the scheme is measured. <i>What goes around comes around.</i>
+ */
+class IntegratorTest {
+    /** Substeps per orbit. */
+    private static final int STEPS_PER_ORBIT = 200;
+
+    /** Orbits run, enough for a secular drift to show. */
+    private static final int ORBITS = 10;
+
+    @Test
+    void coefficientsAddUpToAFullSubstep() {
+        for (final Integrator integrator : Integrators.ALL) {
+            double kicks = 0;
+            double drifts = 0;
+            for (int stage = 0; stage < integrator.getStageCount(); stage++) {
+                kicks += integrator.getKick(stage);
+                drifts += integrator.getDrift(stage);
+            }
+            assertEquals(1, kicks, 1e-6, integrator.getName() + " kicks");
+            assertEquals(1, drifts, 1e-6, integrator.getName() + " drifts");
+        }
+    }
+
+    @Test
+    void higherOrderSchemesDriftLess() {
+        final double euler = energyDrift(Integrators.byName("Euler"));
+        final double leapfrog = energyDrift(Integrators.byName("Leapfrog KDK"));
+        final double verlet = energyDrift(Integrators.byName("Velocity Verlet"));
+        final double yoshida = energyDrift(Integrators.byName("Yoshida 4"));
+
+        assertTrue(leapfrog < 2e-3, "Leapfrog drift " + leapfrog);
+        assertEquals(leapfrog, verlet, 1e-12, "Verlet only differs by reusing accelerations");
+        assertTrue(euler > 10 * leapfrog, "Euler drift " + euler + ", leapfrog " + leapfrog);
+        assertTrue(yoshida < leapfrog / 100, "Yoshida drift " + yoshida + ", leapfrog " + leapfrog);
+    }
+
+    /**
+     * Runs a scheme on an orbit of eccentricity 0.36 around a unit mass, with a unit gravity
+     * constant.
+     *
+     * @param integrator Scheme to run.
+     * @return The largest relative energy error seen.
+     */
+    private static double energyDrift(final Integrator integrator) {
+        final double[] position = {1, 0};
+        final double[] velocity = {0, 0.8};
+        final double semiMajorAxis = 1 / (2 - 0.8 * 0.8);
+        final double dt = 2 * Math.PI * Math.pow(semiMajorAxis, 1.5) / STEPS_PER_ORBIT;
+        final double initial = energy(position, velocity);
+        double worst = 0;
+        for (int step = 0; step < STEPS_PER_ORBIT * ORBITS; step++) {
+            for (int stage = 0; stage < integrator.getStageCount(); stage++) {
+                final double radius = Math.hypot(position[0], position[1]);
+                final double pull = -integrator.getKick(stage) * dt / (radius * radius * radius);
+                velocity[0] += position[0] * pull;
+                velocity[1] += position[1] * pull;
+                position[0] += velocity[0] * integrator.getDrift(stage) * dt;
+                position[1] += velocity[1] * integrator.getDrift(stage) * dt;
+            }
+            worst = Math.max(worst, Math.abs(energy(position, velocity) / initial - 1));
+        }
+        return worst;
+    }
+
+    private static double energy(final double[] position, final double[] velocity) {
+        return (velocity[0] * velocity[0] + velocity[1] * velocity[1]) / 2
+                - 1 / Math.hypot(position[0], position[1]);
+    }
+}
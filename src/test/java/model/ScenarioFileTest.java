@@ -0,0 +1,264 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Reading {@link ScenarioFile}s, binary and CSV. <i>Once upon a test.</i> */
+class ScenarioFileTest {
+    private static final ScenarioFile.ProgressListener NO_PROGRESS = (done, total) -> {};
+
+    @Test
+    void binaryRoundTripAcrossChunks(@TempDir final Path directory) throws IOException {
+        // More rows than a worker reads at once.
+        final int count = ScenarioFile.CHUNK_BYTES / ScenarioFile.ROW_BYTES * 2 + 17;
+        final ParticleStore store = new ParticleStore(count);
+        final SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < count; i++) {
+            final int index = store.add();
+            store.setPosition(
+                    index,
+                    (float) random.nextDouble(-1e3, 1e3),
+                    (float) random.nextDouble(-1e3, 1e3),
+                    (float) random.nextDouble(-1e3, 1e3));
+            store.setVelocity(
+                    index,
+                    (float) random.nextGaussian(),
+                    (float) random.nextGaussian(),
+                    (float) random.nextGaussian());
+            store.setBody(
+                    index,
+                    (float) random.nextDouble(0.1, 10),
+                    (float) random.nextDouble(0.1, 100),
+                    0.5f,
+                    random.nextInt());
+        }
+        final Path path = directory.resolve("scenario.bin");
+        write(path, store);
+        assertEquals(
+                ScenarioFile.HEADER_BYTES + (long) count * ScenarioFile.ROW_BYTES,
+                Files.size(path));
+
+        final ParticleStore loaded = read(path);
+        assertEquals(count, loaded.size());
+        assertColumnsEqual(store, loaded, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(1, loaded.getBounciness().get(i), "Spheres start perfectly bouncy");
+        }
+    }
+
+    @Test
+    void binaryRejectsACountNotMatchingTheRows(@TempDir final Path directory) throws IOException {
+        final ParticleStore store = new ParticleStore(3);
+        for (int i = 0; i < 3; i++) {
+            store.setBody(store.add(), 1, 1, 1, 0);
+        }
+        final Path path = directory.resolve("scenario.bin");
+        write(path, store);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 1);
+        }
+        assertThrows(IOException.class, () -> read(path));
+    }
+
+    @Test
+    void csvSkipsTheHeaderCommentsAndBlankLines(@TempDir final Path directory)
+            throws IOException {
+        final Path path = directory.resolve("scenario.csv");
+        Files.writeString(
+                path,
+                "x,y,z,vx,vy,vz,mass,radius,color\r\n"
+                        + "# Two suns and a comet\r\n"
+                        + "\r\n"
+                        + "1,2,3,0,0,0,1000,20,#FFCC00\r\n"
+                        + " -1.5 , 2e2 ,+3.25E-1, 0.1,-0.2,0.3, 1000, 20 , #80FF8000\r\n"
+                        + "\n"
+                        + "1e4,-0,0.000001,-12.5,0,0,0.5,1,0x00FF00FF\r\n"
+                        + "123456789012345678,0.1,1,0,0,0,1,1,-16777216",
+                StandardCharsets.US_ASCII);
+
+        final ParticleStore store = read(path);
+        assertEquals(4, store.size());
+        assertArrayEquals(
+                new float[] {1, -1.5f, 1e4f, 123456789012345678f}, floats(store.getX(), 4));
+        assertArrayEquals(new float[] {2, 200, -0f, 0.1f}, floats(store.getY(), 4));
+        assertArrayEquals(new float[] {3, 0.325f, 0.000001f, 1}, floats(store.getZ(), 4));
+        assertArrayEquals(new float[] {0, 0.1f, -12.5f, 0}, floats(store.getVx(), 4));
+        assertArrayEquals(new float[] {1000, 1000, 0.5f, 1}, floats(store.getMass(), 4));
+        assertArrayEquals(new float[] {20, 20, 1, 1}, floats(store.getRadius(), 4));
+        final int[] colors = new int[4];
+        store.getColor().read(0, colors, 0, 4);
+        assertArrayEquals(new int[] {0xFFFFCC00, 0x80FF8000, 0x00FF00FF, 0xFF000000}, colors);
+    }
+
+    @Test
+    void csvRowsAcrossChunkBoundaries(@TempDir final Path directory) throws IOException {
+        final int chunk = ScenarioFile.CHUNK_BYTES;
+        final StringBuilder text = new StringBuilder("x,y,z,vx,vy,vz,mass,radius,color\r\n");
+        int rows = 0;
+        boolean aligned = false;
+        boolean straddled = false;
+        while (text.length() < 2 * chunk + 100_000) {
+            final String row = csvRow(rows);
+            if (!aligned && text.length() + row.length() + 100 > chunk) {
+                // A row starting right on the first boundary.
+                text.append(comment(chunk - text.length()));
+                aligned = true;
+            } else if (!straddled && text.length() + row.length() + 100 > 2 * chunk) {
+                // A row cut in the middle by the second one.
+                text.append(comment(2 * chunk - text.length() - row.length() / 2));
+                straddled = true;
+            }
+            text.append(row);
+            rows++;
+        }
+        assertEquals('\n', text.charAt(chunk - 1));
+        assertTrue(text.charAt(2 * chunk - 1) != '\n');
+        final Path path = directory.resolve("scenario.csv");
+        Files.writeString(path, text, StandardCharsets.US_ASCII);
+
+        final ParticleStore store = read(path);
+        assertEquals(rows, store.size());
+        for (int i = 0; i < rows; i++) {
+            final String[] fields = csvRow(i).trim().split(",");
+            assertEquals(Float.parseFloat(fields[0]), store.getX().get(i), "x of row " + i);
+            assertEquals(Float.parseFloat(fields[1]), store.getY().get(i), "y of row " + i);
+            assertEquals(Float.parseFloat(fields[2]), store.getZ().get(i), "z of row " + i);
+            assertEquals(Float.parseFloat(fields[4]), store.getVy().get(i), "vy of row " + i);
+            assertEquals(Float.parseFloat(fields[6]), store.getMass().get(i), "mass of row " + i);
+            assertEquals(
+                    0xFF000000 | Integer.parseInt(fields[8].substring(1), 16),
+                    store.getColor().get(i),
+                    "color of row " + i);
+        }
+    }
+
+    @Test
+    void csvReportsTheInvalidRow(@TempDir final Path directory) throws IOException {
+        final Path path = directory.resolve("scenario.csv");
+        Files.writeString(
+                path,
+                "# comment\n1,2,3,0,0,0,1,1,0\n1,2,3,0,0,0,1,1,0\n1,2,3,0,0,0,-1,1,0\n",
+                StandardCharsets.US_ASCII);
+        final IOException negativeMass = assertThrows(IOException.class, () -> read(path));
+        assertTrue(negativeMass.getMessage().startsWith("Row 3 "), negativeMass.getMessage());
+
+        Files.writeString(path, "1,2,3,0,0,0,1,1,0\n1,2,three,0,0,0,1,1,0\n");
+        final IOException malformed = assertThrows(IOException.class, () -> read(path));
+        assertTrue(malformed.getMessage().startsWith("Row 2 "), malformed.getMessage());
+    }
+
+    /**
+     * Reads a scenario on a pool of its own.
+     *
+     * @param path File to read.
+     * @return The store.
+     * @throws IOException If the file can't be read.
+     */
+    private static ParticleStore read(final Path path) throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            return ScenarioFile.read(path, new HeapColumnStorage(), pool, NO_PROGRESS);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Writes the spheres of a store to a binary scenario file, in one go.
+     *
+     * @param path File to write.
+     * @param store Store to save.
+     * @throws IOException If the file can't be written.
+     */
+    private static void write(final Path path, final ParticleStore store) throws IOException {
+        final int count = store.size();
+        final ByteBuffer buffer =
+                ByteBuffer.allocate(ScenarioFile.HEADER_BYTES + count * ScenarioFile.ROW_BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(ScenarioFile.MAGIC).putInt(ScenarioFile.VERSION).putInt(count).putInt(0);
+        final FloatColumn[] columns = {
+            store.getX(),
+            store.getY(),
+            store.getZ(),
+            store.getVx(),
+            store.getVy(),
+            store.getVz(),
+            store.getMass(),
+            store.getRadius()
+        };
+        for (int i = 0; i < count; i++) {
+            for (final FloatColumn column : columns) {
+                buffer.putFloat(column.get(i));
+            }
+            buffer.putInt(store.getColor().get(i));
+        }
+        Files.write(path, buffer.array());
+    }
+
+    /**
+     * Writes a CSV row whose values follow from its index, ending in CRLF.
+     *
+     * @param index Index of the row.
+     * @return The row.
+     */
+    private static String csvRow(final int index) {
+        return String.format(
+                Locale.ROOT,
+                "%d,%d.25,-%de-3,0.5,-1.5E2,%d,%d,0.75,#%06x\r\n",
+                index,
+                index,
+                index,
+                index % 3,
+                1 + index % 7,
+                index & 0xFF_FF_FF);
+    }
+
+    /**
+     * Writes a comment line of an exact length.
+     *
+     * @param length Length of the line, end included, at least 3.
+     * @return The line.
+     */
+    private static String comment(final int length) {
+        return "#" + "-".repeat(length - 3) + "\r\n";
+    }
+
+    private static void assertColumnsEqual(
+            final ParticleStore expected, final ParticleStore actual, final int count) {
+        assertArrayEquals(floats(expected.getX(), count), floats(actual.getX(), count));
+        assertArrayEquals(floats(expected.getY(), count), floats(actual.getY(), count));
+        assertArrayEquals(floats(expected.getZ(), count), floats(actual.getZ(), count));
+        assertArrayEquals(floats(expected.getVx(), count), floats(actual.getVx(), count));
+        assertArrayEquals(floats(expected.getVy(), count), floats(actual.getVy(), count));
+        assertArrayEquals(floats(expected.getVz(), count), floats(actual.getVz(), count));
+        assertArrayEquals(floats(expected.getMass(), count), floats(actual.getMass(), count));
+        assertArrayEquals(floats(expected.getRadius(), count), floats(actual.getRadius(), count));
+        final int[] expectedColors = new int[count];
+        final int[] actualColors = new int[count];
+        expected.getColor().read(0, expectedColors, 0, count);
+        actual.getColor().read(0, actualColors, 0, count);
+        assertArrayEquals(expectedColors, actualColors);
+    }
+
+    private static float[] floats(final FloatColumn column, final int count) {
+        final float[] values = new float[count];
+        column.read(0, values, 0, count);
+        return values;
+    }
+}
@@ -0,0 +1,94 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Islands put to sleep and woken up by {@link SleepingIslands}. <i>Shh.</i> */
+class SleepingIslandsTest {
+    private static final int SLEEP_STEPS = 3;
+
+    @Test
+    void quietClumpFallsAsleepAndLonelySphereDoesNot() {
+        final ParticleStore store = store();
+        final SleepingIslands islands = new SleepingIslands(SLEEP_STEPS, 1e-3f, 0.5f);
+        final CollisionGrid grid = new CollisionGrid();
+        fallAsleep(store, islands, grid);
+
+        assertEquals(1, islands.getSleepingCount());
+        assertEquals(2, islands.getSleepingSphereCount());
+        final IntColumn sleeping = store.getSleepingIsland();
+        assertNotEquals(ParticleStore.AWAKE, sleeping.get(0));
+        assertEquals(sleeping.get(0), sleeping.get(1));
+        assertEquals(ParticleStore.AWAKE, sleeping.get(2));
+        // The clump moves as one, at the velocity of its center of mass.
+        assertEquals(1.5f, store.getVx().get(0), 1e-6f);
+        assertEquals(1.5f, store.getVx().get(1), 1e-6f);
+    }
+
+    @Test
+    void foreignContactWakesTheIslandUp() {
+        final ParticleStore store = store();
+        final SleepingIslands islands = new SleepingIslands(SLEEP_STEPS, 1e-3f, 0.5f);
+        final CollisionGrid grid = new CollisionGrid();
+        fallAsleep(store, islands, grid);
+
+        store.setPosition(2, 4, 0, 0);
+        grid.build(store);
+        assertTrue(islands.update(store, grid));
+        assertEquals(0, islands.getSleepingSphereCount());
+    }
+
+    @Test
+    void changingFieldWakesTheIslandUp() {
+        final ParticleStore store = store();
+        final SleepingIslands islands = new SleepingIslands(SLEEP_STEPS, 1e-3f, 0.5f);
+        final CollisionGrid grid = new CollisionGrid();
+        fallAsleep(store, islands, grid);
+
+        store.setAcceleration(0, 0.1f, 0, 0);
+        store.setAcceleration(1, 0.1f, 0, 0);
+        grid.build(store);
+        assertTrue(islands.update(store, grid));
+        assertEquals(0, islands.getSleepingCount());
+    }
+
+    /**
+     * Runs the tracker until the clump falls asleep, checking that it takes exactly the configured
+     * number of quiet steps.
+     *
+     * @param store Store holding the spheres.
+     * @param islands Tracker under test.
+     * @param grid Broad phase, rebuilt before every update.
+     */
+    private static void fallAsleep(
+            final ParticleStore store, final SleepingIslands islands, final CollisionGrid grid) {
+        for (int step = 1; step < SLEEP_STEPS; step++) {
+            grid.build(store);
+            assertFalse(islands.update(store, grid), "Still awake at step " + step);
+        }
+        grid.build(store);
+        assertTrue(islands.update(store, grid));
+    }
+
+    /**
+     * Creates two touching spheres moving almost together, the second one twice as heavy, and a
+     * third one at rest far away.
+     *
+     * @return The store.
+     */
+    private static ParticleStore store() {
+        final ParticleStore store = new ParticleStore(3);
+        final float[][] spheres = {{0, 1, 1.51f}, {2, 2, 1.495f}, {100, 1, 0}};
+        for (final float[] sphere : spheres) {
+            final int index = store.add();
+            store.setPosition(index, sphere[0], 0, 0);
+            store.setVelocity(index, sphere[2], 0, 0);
+            store.setBody(index, 1, sphere[1], 1, 0xFFFFFFFF);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,135 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Merges applied by {@link SphereMerger}. <i>Three become one, the math stays the same.</i> */
+class SphereMergerTest {
+    private static final float TOLERANCE = 1e-5f;
+
+    @Test
+    void chainOfThreeConservesMassMomentumAndVolume() {
+        final ParticleStore store = new ParticleStore(4);
+        addSphere(store, 0, 0, 0, 1, 0, 0, 1, 1);
+        addSphere(store, 2, 0, 0, -1, 2, 0, 3, 2);
+        addSphere(store, 4, 1, 0, 0, 0, -4, 6, 1.5f);
+        addSphere(store, 100, 100, 100, 5, 5, 5, 10, 3);
+        // The renderer interpolates from the next buffers, give them their own values.
+        store.beginStep();
+        for (int i = 0; i < 4; i++) {
+            store.getNextX().set(i, store.getX().get(i) + 0.5f);
+            store.getNextVy().set(i, store.getVy().get(i) - i);
+        }
+        final Totals before = Totals.of(store, 0, 3);
+
+        // 2 hit 1 and 1 hit 0, seen by two different batches.
+        final CollisionBuffer firstBatch = new CollisionBuffer();
+        final CollisionBuffer secondBatch = new CollisionBuffer();
+        firstBatch.addMerge(2, 1);
+        secondBatch.addMerge(1, 0);
+        final SphereMerger merger = new SphereMerger();
+        merger.addPairs(firstBatch);
+        merger.addPairs(secondBatch);
+        assertTrue(merger.apply(store));
+
+        assertEquals(2, store.size());
+        final int[] newIndex = new int[4];
+        System.arraycopy(merger.getNewIndex(), 0, newIndex, 0, 4);
+        assertArrayEquals(new int[] {0, -1, -1, 1}, newIndex);
+        final Totals after = Totals.of(store, 0, 1);
+        assertEquals(before.mass, after.mass, TOLERANCE * before.mass, "mass");
+        assertEquals(before.volume, after.volume, TOLERANCE * before.volume, "volume");
+        for (int axis = 0; axis < 3; axis++) {
+            assertEquals(before.momentum[axis], after.momentum[axis], TOLERANCE * 100, "p");
+            assertEquals(before.moment[axis], after.moment[axis], TOLERANCE * 100, "m x");
+            assertEquals(
+                    before.nextMomentum[axis], after.nextMomentum[axis], TOLERANCE * 100, "p'");
+            assertEquals(before.nextMoment[axis], after.nextMoment[axis], TOLERANCE * 100, "m x'");
+        }
+
+        // The bystander only moved down.
+        assertEquals(100, store.getX().get(1));
+        assertEquals(5, store.getVz().get(1));
+        assertEquals(10, store.getMass().get(1));
+        assertEquals(3, store.getRadius().get(1));
+    }
+
+    @Test
+    void nothingToMerge() {
+        final ParticleStore store = new ParticleStore(2);
+        addSphere(store, 0, 0, 0, 0, 0, 0, 1, 1);
+        addSphere(store, 1, 0, 0, 0, 0, 0, 1, 1);
+        final SphereMerger merger = new SphereMerger();
+        assertFalse(merger.apply(store));
+
+        final CollisionBuffer buffer = new CollisionBuffer();
+        buffer.addMerge(0, 1);
+        merger.addPairs(buffer);
+        assertTrue(merger.apply(store));
+        assertEquals(1, store.size());
+        assertFalse(merger.apply(store), "Pairs are only applied once");
+    }
+
+    private static void addSphere(
+            final ParticleStore store,
+            final float px,
+            final float py,
+            final float pz,
+            final float velX,
+            final float velY,
+            final float velZ,
+            final float mass,
+            final float radius) {
+        final int index = store.add();
+        store.setPosition(index, px, py, pz);
+        store.setVelocity(index, velX, velY, velZ);
+        store.setBody(index, radius, mass, 1, 0xFF808080);
+    }
+
+    /** Conserved quantities of a range of spheres, in doubles. */
+    private static final class Totals {
+        private double mass;
+        private double volume;
+        private final double[] momentum = new double[3];
+        private final double[] moment = new double[3];
+        private final double[] nextMomentum = new double[3];
+        private final double[] nextMoment = new double[3];
+
+        /**
+         * Sums the spheres of a range, in the current and in the next buffers.
+         *
+         * @param store Store holding the spheres.
+         * @param first First sphere.
+         * @param last Last sphere, included.
+         * @return The sums.
+         */
+        private static Totals of(final ParticleStore store, final int first, final int last) {
+            final Totals totals = new Totals();
+            final FloatColumn[] positions = {store.getX(), store.getY(), store.getZ()};
+            final FloatColumn[] velocities = {store.getVx(), store.getVy(), store.getVz()};
+            final FloatColumn[] nextPositions = {
+                store.getNextX(), store.getNextY(), store.getNextZ()
+            };
+            final FloatColumn[] nextVelocities = {
+                store.getNextVx(), store.getNextVy(), store.getNextVz()
+            };
+            for (int i = first; i <= last; i++) {
+                final double mass = store.getMass().get(i);
+                final double radius = store.getRadius().get(i);
+                totals.mass += mass;
+                totals.volume += radius * radius * radius;
+                for (int axis = 0; axis < 3; axis++) {
+                    totals.momentum[axis] += mass * velocities[axis].get(i);
+                    totals.moment[axis] += mass * positions[axis].get(i);
+                    totals.nextMomentum[axis] += mass * nextVelocities[axis].get(i);
+                    totals.nextMoment[axis] += mass * nextPositions[axis].get(i);
+                }
+            }
+            return totals;
+        }
+    }
+}
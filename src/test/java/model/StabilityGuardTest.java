@@ -0,0 +1,65 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Blow-ups caught and rolled back by {@link StabilityGuard}. <i>Undo, undo, undo.</i> */
+class StabilityGuardTest {
+    @Test
+    void nonFiniteValuesAreUnstable() {
+        final StabilityGuard guard = new StabilityGuard(4);
+        final ParticleStore store = store(300);
+        assertTrue(guard.isStable(store));
+
+        store.setPosition(257, 1, Float.NaN, 1);
+        assertFalse(guard.isStable(store), "NaN past the first scan chunk");
+        store.setPosition(257, 1, 1, 1);
+        store.setVelocity(3, 0, 0, Float.NEGATIVE_INFINITY);
+        assertFalse(guard.isStable(store), "Infinite velocity");
+    }
+
+    @Test
+    void restoreRollsBackToTheCheckpoint() {
+        final StabilityGuard guard = new StabilityGuard(4);
+        final ParticleStore store = store(3);
+        assertThrows(IllegalStateException.class, () -> guard.restore(store));
+        assertTrue(guard.isCheckpointDue(1), "Nothing to roll back to yet");
+
+        guard.checkpoint(store, 8);
+        assertFalse(guard.isCheckpointDue(9));
+        assertTrue(guard.isCheckpointDue(12));
+        store.setPosition(1, Float.NaN, 0, 0);
+        store.setVelocity(2, 100, 100, 100);
+        store.setSize(2);
+
+        assertEquals(8, guard.restore(store));
+        assertEquals(3, store.size());
+        assertEquals(1, store.getX().get(1));
+        assertEquals(2, store.getVx().get(2));
+        assertTrue(guard.isStable(store));
+
+        guard.clear();
+        assertThrows(IllegalStateException.class, () -> guard.restore(store));
+    }
+
+    /**
+     * Creates spheres whose position and velocity along x are their index.
+     *
+     * @param count Number of spheres.
+     * @return The store.
+     */
+    private static ParticleStore store(final int count) {
+        final ParticleStore store = new ParticleStore(count);
+        for (int i = 0; i < count; i++) {
+            final int index = store.add();
+            store.setPosition(index, i, 1, 1);
+            store.setVelocity(index, i, 0, 0);
+            store.setBody(index, 1, 1, 1, 0xFFFFFFFF);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,159 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Round trips of {@link StateFile}. <i>There and back again.</i> */
+class StateFileTest {
+    /** More spheres than copied at once, so that the columns span several chunks. */
+    private static final int COUNT = 40_000;
+
+    private static final List<Function<ParticleStore, FloatColumn>> FLOAT_COLUMNS =
+            List.of(
+                    ParticleStore::getX,
+                    ParticleStore::getY,
+                    ParticleStore::getZ,
+                    ParticleStore::getVx,
+                    ParticleStore::getVy,
+                    ParticleStore::getVz,
+                    ParticleStore::getMass,
+                    ParticleStore::getRadius,
+                    ParticleStore::getBounciness);
+
+    @Test
+    void roundTripKeepsTheHeaderAndEverySphere(@TempDir final Path directory) throws IOException {
+        final ParticleStore store = randomStore(COUNT, new SplittableRandom(42));
+        final StateFile.Header header =
+                new StateFile.Header(
+                        COUNT,
+                        (1L << 40) + 7,
+                        0.025f,
+                        6.6743f,
+                        0.1f,
+                        StateFile.FLAG_GRAVITY | StateFile.FLAG_BOUNDS);
+        final Path path = directory.resolve("state.bin");
+        StateFile.write(path, store, header);
+
+        final StateFile.Loaded loaded = StateFile.read(path, new HeapColumnStorage());
+        assertEquals(header, loaded.header());
+        assertEquals(COUNT, loaded.store().size());
+        for (final Function<ParticleStore, FloatColumn> column : FLOAT_COLUMNS) {
+            assertArrayEquals(floats(column.apply(store)), floats(column.apply(loaded.store())));
+        }
+        final int[] colors = new int[COUNT];
+        final int[] loadedColors = new int[COUNT];
+        store.getColor().read(0, colors, 0, COUNT);
+        loaded.store().getColor().read(0, loadedColors, 0, COUNT);
+        assertArrayEquals(colors, loadedColors);
+    }
+
+    @Test
+    void roundTripOfAnEmptyStore(@TempDir final Path directory) throws IOException {
+        final Path path = directory.resolve("empty.bin");
+        final StateFile.Header header = new StateFile.Header(0, 0, 0.025f, 1, 0.1f, 0);
+        StateFile.write(path, new ParticleStore(0), header);
+
+        final StateFile.Loaded loaded = StateFile.read(path, new HeapColumnStorage());
+        assertEquals(header, loaded.header());
+        assertEquals(0, loaded.store().size());
+    }
+
+    @Test
+    void saveReplacesThePreviousFile(@TempDir final Path directory) throws IOException {
+        final Path path = directory.resolve("state.bin");
+        StateFile.write(
+                path,
+                randomStore(100, new SplittableRandom(1)),
+                new StateFile.Header(100, 1, 0.025f, 1, 0.1f, 0));
+        StateFile.write(
+                path,
+                randomStore(10, new SplittableRandom(2)),
+                new StateFile.Header(10, 2, 0.025f, 1, 0.1f, 0));
+
+        final StateFile.Loaded loaded = StateFile.read(path, new HeapColumnStorage());
+        assertEquals(10, loaded.store().size());
+        assertEquals(2, loaded.header().step());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count(), "No temporary file left behind");
+        }
+    }
+
+    @Test
+    void writeRejectsAHeaderNotMatchingTheStore(@TempDir final Path directory) {
+        final Path path = directory.resolve("state.bin");
+        final ParticleStore store = randomStore(3, new SplittableRandom(3));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> StateFile.write(path, store, new StateFile.Header(4, 0, 1, 1, 1, 0)));
+    }
+
+    @Test
+    void readRejectsATruncatedFile(@TempDir final Path directory) throws IOException {
+        final Path path = directory.resolve("state.bin");
+        StateFile.write(
+                path,
+                randomStore(1_000, new SplittableRandom(4)),
+                new StateFile.Header(1_000, 0, 0.025f, 1, 0.1f, 0));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        assertThrows(IOException.class, () -> StateFile.read(path, new HeapColumnStorage()));
+    }
+
+    @Test
+    void readRejectsAnotherFormat(@TempDir final Path directory) throws IOException {
+        final Path path = directory.resolve("notes.txt");
+        Files.writeString(path, "Not quite a simulation, but plenty of text anyway.\n".repeat(4));
+        assertThrows(IOException.class, () -> StateFile.read(path, new HeapColumnStorage()));
+    }
+
+    /**
+     * Fills a store with random spheres, values exact down to the last bit.
+     *
+     * @param count Number of spheres.
+     * @param random Source of the values.
+     * @return The store.
+     */
+    private static ParticleStore randomStore(final int count, final SplittableRandom random) {
+        final ParticleStore store = new ParticleStore(count);
+        for (int i = 0; i < count; i++) {
+            final int index = store.add();
+            store.setPosition(
+                    index,
+                    (float) random.nextDouble(-1e4, 1e4),
+                    (float) random.nextDouble(-1e4, 1e4),
+                    (float) random.nextDouble(-1e4, 1e4));
+            store.setVelocity(
+                    index,
+                    (float) random.nextGaussian(),
+                    (float) random.nextGaussian(),
+                    (float) random.nextGaussian());
+            store.setBody(
+                    index,
+                    (float) random.nextDouble(0.5, 5),
+                    (float) random.nextDouble(1, 100),
+                    (float) random.nextDouble(),
+                    random.nextInt());
+        }
+        return store;
+    }
+
+    private static float[] floats(final FloatColumn column) {
+        final float[] values = new float[COUNT];
+        column.read(0, values, 0, COUNT);
+        return values;
+    }
+}
@@ -0,0 +1,257 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips of trajectory files, from {@link TrajectoryEncoder} to {@link TrajectoryDecoder}.
+ * <i>Rewind, play, repeat.</i>
+ */
+class TrajectoryFileTest {
+    private static final int BITS = 16;
+    private static final int FRAMES_PER_CHUNK = 4;
+    private static final float BOX_MIN = -500;
+    private static final float BOX_SIZE = 2_000;
+
+    /** Worst error of a decoded position: half a quantization step, plus float rounding. */
+    private static final float TOLERANCE = 1 / TrajectoryFormat.scale(BITS, BOX_SIZE);
+
+    @Test
+    void roundTripAcrossFullChunks(@TempDir final Path directory) throws IOException {
+        final List<Snapshot> frames = new ArrayList<>();
+        final Swarm swarm = new Swarm(50, new SplittableRandom(1));
+        for (int step = 1; step <= 10; step++) {
+            frames.add(swarm.advance(step, 0));
+        }
+        final TrajectoryReader reader = write(directory, frames);
+
+        assertEquals(10, reader.getFrameCount());
+        assertEquals(3, reader.getChunkCount());
+        assertEquals(4, reader.getFrames(0));
+        assertEquals(2, reader.getFrames(2));
+        assertEquals(9, reader.getFirstStep(2));
+        final List<ReplayFrame> decoded = readAll(reader);
+        for (int frame = 0; frame < frames.size(); frame++) {
+            assertMatches(frames.get(frame), decoded.get(frame));
+            assertEquals(0, decoded.get(frame).getSegment(), "Full chunks continue the segment");
+        }
+    }
+
+    @Test
+    void chunkIsCutWhenTheSpheresChange(@TempDir final Path directory) throws IOException {
+        final List<Snapshot> frames = new ArrayList<>();
+        final Swarm swarm = new Swarm(30, new SplittableRandom(2));
+        frames.add(swarm.advance(1, 0));
+        frames.add(swarm.advance(2, 0));
+        frames.add(swarm.advance(3, 0));
+        swarm.merge(20);
+        frames.add(swarm.advance(4, 1));
+        frames.add(swarm.advance(5, 1));
+        final TrajectoryReader reader = write(directory, frames);
+
+        assertEquals(2, reader.getChunkCount());
+        assertEquals(3, reader.getFrames(0));
+        assertEquals(30, reader.getCount(0));
+        assertEquals(20, reader.getCount(1));
+        final List<ReplayFrame> decoded = readAll(reader);
+        for (int frame = 0; frame < frames.size(); frame++) {
+            assertMatches(frames.get(frame), decoded.get(frame));
+        }
+        assertEquals(decoded.get(0).getSegment(), decoded.get(2).getSegment());
+        assertEquals(decoded.get(2).getSegment() + 1, decoded.get(3).getSegment());
+    }
+
+    @Test
+    void stepsMayGoBackwards(@TempDir final Path directory) throws IOException {
+        // A rolled back step is recorded again, in the same chunk.
+        final long[] steps = {10, 11, 12, 8, 9, 10, 11};
+        final List<Snapshot> frames = new ArrayList<>();
+        final Swarm swarm = new Swarm(8, new SplittableRandom(3));
+        for (final long step : steps) {
+            frames.add(swarm.advance(step, 0));
+        }
+        final TrajectoryReader reader = write(directory, frames);
+
+        final List<ReplayFrame> decoded = readAll(reader);
+        final long[] decodedSteps = decoded.stream().mapToLong(ReplayFrame::getStep).toArray();
+        assertArrayEquals(steps, decodedSteps);
+        for (int frame = 0; frame < frames.size(); frame++) {
+            assertMatches(frames.get(frame), decoded.get(frame));
+        }
+    }
+
+    @Test
+    void seekingDecodesLikeReadingThrough(@TempDir final Path directory) throws IOException {
+        final List<Snapshot> frames = new ArrayList<>();
+        final Swarm swarm = new Swarm(40, new SplittableRandom(4));
+        for (int step = 1; step <= 11; step++) {
+            frames.add(swarm.advance(step, 0));
+        }
+        final TrajectoryReader reader = write(directory, frames);
+
+        final int chunk = reader.chunkOf(9);
+        assertEquals(2, chunk);
+        final TrajectoryDecoder decoder = new TrajectoryDecoder(reader);
+        try {
+            decoder.seek(chunk);
+            final ReplayFrame frame = new ReplayFrame();
+            for (long index = reader.getFirstFrame(chunk); index < frames.size(); index++) {
+                decoder.next(frame);
+                assertMatches(frames.get((int) index), frame);
+            }
+            assertThrows(IOException.class, () -> decoder.next(frame));
+        } finally {
+            decoder.close();
+        }
+    }
+
+    /**
+     * Encodes frames to a file, and opens it back.
+     *
+     * @param directory Directory of the file.
+     * @param frames Frames to encode.
+     * @return The reader of the file.
+     * @throws IOException If the file can't be written or read.
+     */
+    private static TrajectoryReader write(final Path directory, final List<Snapshot> frames)
+            throws IOException {
+        final Path path = directory.resolve("trajectory.bin");
+        try (TrajectoryEncoder encoder =
+                new TrajectoryEncoder(path, BITS, FRAMES_PER_CHUNK, BOX_MIN, BOX_SIZE)) {
+            long generation = -1;
+            int count = -1;
+            final RecordedFrame recorded = new RecordedFrame();
+            for (final Snapshot frame : frames) {
+                final boolean changed =
+                        frame.generation() != generation || frame.store().size() != count;
+                recorded.capture(frame.store(), frame.step(), frame.generation(), changed);
+                encoder.encode(recorded);
+                generation = frame.generation();
+                count = frame.store().size();
+            }
+        }
+        return new TrajectoryReader(path);
+    }
+
+    /**
+     * Decodes every frame of a file, from the start.
+     *
+     * @param reader File to decode.
+     * @return The frames, in order.
+     * @throws IOException If the file is corrupt.
+     */
+    private static List<ReplayFrame> readAll(final TrajectoryReader reader) throws IOException {
+        final List<ReplayFrame> frames = new ArrayList<>();
+        final TrajectoryDecoder decoder = new TrajectoryDecoder(reader);
+        try {
+            decoder.seek(0);
+            for (long index = 0; index < reader.getFrameCount(); index++) {
+                final ReplayFrame frame = new ReplayFrame();
+                decoder.next(frame);
+                frames.add(frame);
+            }
+        } finally {
+            decoder.close();
+        }
+        return frames;
+    }
+
+    private static void assertMatches(final Snapshot expected, final ReplayFrame actual) {
+        final ParticleStore store = expected.store();
+        final int count = store.size();
+        assertEquals(expected.step(), actual.getStep());
+        assertEquals(count, actual.getCount());
+        for (int i = 0; i < count; i++) {
+            assertEquals(store.getX().get(i), actual.getX()[i], TOLERANCE);
+            assertEquals(store.getY().get(i), actual.getY()[i], TOLERANCE);
+            assertEquals(store.getZ().get(i), actual.getZ()[i], TOLERANCE);
+            assertEquals(store.getRadius().get(i), actual.getRadius()[i]);
+            assertEquals(store.getColor().get(i), actual.getColor()[i]);
+        }
+    }
+
+    /**
+     * Spheres at the end of a step.
+     *
+     * @param store Copy of the spheres.
+     * @param step Index of the step.
+     * @param generation Seed generation.
+     */
+    private record Snapshot(ParticleStore store, long step, long generation) {}
+
+    /** Spheres drifting and speeding up, so that every order of prediction has work to do. */
+    private static final class Swarm {
+        private float[] x;
+        private float[] y;
+        private float[] z;
+        private float[] velocity;
+        private float[] radius;
+        private int[] color;
+        private int frame;
+
+        private Swarm(final int count, final SplittableRandom random) {
+            x = new float[count];
+            y = new float[count];
+            z = new float[count];
+            velocity = new float[count];
+            radius = new float[count];
+            color = new int[count];
+            for (int i = 0; i < count; i++) {
+                x[i] = (float) random.nextDouble(0, 1_000);
+                y[i] = (float) random.nextDouble(0, 1_000);
+                z[i] = (float) random.nextDouble(0, 1_000);
+                velocity[i] = (float) random.nextDouble(-5, 5);
+                radius[i] = (float) random.nextDouble(1, 10);
+                color[i] = random.nextInt();
+            }
+        }
+
+        /**
+         * Moves the spheres on, and copies them.
+         *
+         * @param step Index of the step.
+         * @param generation Seed generation.
+         * @return The copy.
+         */
+        private Snapshot advance(final long step, final long generation) {
+            frame++;
+            final ParticleStore store = new ParticleStore(x.length);
+            for (int i = 0; i < x.length; i++) {
+                x[i] += velocity[i] * frame;
+                y[i] -= velocity[i];
+                z[i] += 0.5f * i;
+                final int index = store.add();
+                store.setPosition(index, x[i], y[i], z[i]);
+                store.setBody(index, radius[i], 1, 1, color[i]);
+            }
+            return new Snapshot(store, step, generation);
+        }
+
+        /**
+         * Keeps the first spheres only, as if the others merged into them, and grows them.
+         *
+         * @param count Spheres left.
+         */
+        private void merge(final int count) {
+            x = Arrays.copyOf(x, count);
+            y = Arrays.copyOf(y, count);
+            z = Arrays.copyOf(z, count);
+            velocity = Arrays.copyOf(velocity, count);
+            radius = Arrays.copyOf(radius, count);
+            color = Arrays.copyOf(color, count);
+            for (int i = 0; i < count; i++) {
+                radius[i] *= 1.5f;
+            }
+        }
+    }
+}